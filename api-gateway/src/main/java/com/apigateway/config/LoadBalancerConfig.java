@@ -0,0 +1,10 @@
+package com.apigateway.config;
+
+import com.apigateway.loadbalancer.BagAffinityLoadBalancerConfiguration;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@LoadBalancerClient(name = "sale-service", configuration = BagAffinityLoadBalancerConfiguration.class)
+public class LoadBalancerConfig {
+}
@@ -0,0 +1,60 @@
+package com.apigateway.filter;
+
+import com.apigateway.loadbalancer.BagAffinityLoadBalancer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+
+/**
+ * Filter that forwards the route epoch of the chosen instance, set by {@link BagAffinityLoadBalancer}, in the
+ * {@value #ROUTE_EPOCH_HEADER} header. A sale-service instance that sees a new epoch drops its local bag cache,
+ * because bags it held may have been served by another instance while the routes were different.
+ * Any epoch header sent by the client is replaced.
+ * @author Emir Aktaş
+ */
+@Slf4j
+@Component
+public class RouteEpochFilter implements GlobalFilter, Ordered {
+
+    public static final String ROUTE_EPOCH_HEADER = "X-Route-Epoch";
+
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Response<ServiceInstance> response = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        String epoch = response != null && response.hasServer()
+                ? response.getServer().getMetadata().get(BagAffinityLoadBalancer.ROUTE_EPOCH_METADATA)
+                : null;
+
+        ServerHttpRequest request = exchange.getRequest().mutate()
+                .headers(headers -> {
+                    headers.remove(ROUTE_EPOCH_HEADER);
+                    if (epoch != null) {
+                        headers.set(ROUTE_EPOCH_HEADER, epoch);
+                    }
+                })
+                .build();
+
+        log.trace("filter(gateway): Route epoch: {}", epoch);
+        return chain.filter(exchange.mutate().request(request).build());
+    }
+
+
+    /**
+     * Runs right after the load balancer has chosen the instance.
+     */
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+}
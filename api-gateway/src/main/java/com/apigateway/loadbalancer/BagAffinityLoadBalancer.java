@@ -0,0 +1,132 @@
+package com.apigateway.loadbalancer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load balancer that sends every request for the same bag to the same sale-service instance, so that the instance
+ * can serve repeated scans on the bag from its local cache. The bag ID is taken from the {@code bagId} query
+ * parameter or from the path; requests without a bag ID are spread round robin.
+ * <p>
+ * The chosen instance carries the epoch of the ring in its metadata under {@link #ROUTE_EPOCH_METADATA}, which is
+ * forwarded to the instance so that it drops its cache when instances join or leave.
+ * @author Emir Aktaş
+ */
+@Slf4j
+public class BagAffinityLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    public static final String ROUTE_EPOCH_METADATA = "route-epoch";
+
+    private static final Pattern BAG_PATH = Pattern.compile("^/sale/(?:bags/(\\d+)(?:/.*)?|(\\d+))$");
+    private static final String BAG_ID_PARAMETER = "bagId";
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+    private final String serviceId;
+    private final int virtualNodes;
+
+    private final AtomicInteger position = new AtomicInteger(ThreadLocalRandom.current().nextInt(1000));
+    private final AtomicReference<ConsistentHashRing> ring = new AtomicReference<>();
+
+
+    public BagAffinityLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+                                   String serviceId,
+                                   int virtualNodes) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.serviceId = serviceId;
+        this.virtualNodes = virtualNodes;
+    }
+
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider
+                .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(instances -> select(instances, request));
+    }
+
+
+
+    private Response<ServiceInstance> select(List<ServiceInstance> instances, Request<?> request) {
+        if (instances.isEmpty()) {
+            log.warn("select: No servers available for service: {}", serviceId);
+            return new EmptyResponse();
+        }
+
+        ConsistentHashRing current = ringFor(instances);
+        Long bagId = bagIdOf(request);
+        ServiceInstance instance = bagId != null
+                ? current.select(bagId)
+                : instances.get((position.getAndIncrement() & Integer.MAX_VALUE) % instances.size());
+
+        log.trace("select: BagId: {}, Instance: {}", bagId, instance.getInstanceId());
+        return new DefaultResponse(withEpoch(instance, current.getEpoch()));
+    }
+
+
+    private ConsistentHashRing ringFor(List<ServiceInstance> instances) {
+        ConsistentHashRing current = ring.get();
+        if (current != null && current.getEpoch().equals(ConsistentHashRing.epochOf(instances))) {
+            return current;
+        }
+
+        ConsistentHashRing rebuilt = new ConsistentHashRing(instances, virtualNodes);
+        ring.set(rebuilt);
+        log.info("ringFor: Routes of {} rebuilt for {} instances. Epoch: {}", serviceId, instances.size(), rebuilt.getEpoch());
+        return rebuilt;
+    }
+
+
+    private static Long bagIdOf(Request<?> request) {
+        if (!(request.getContext() instanceof RequestDataContext context) || context.getClientRequest() == null) {
+            return null;
+        }
+
+        URI url = context.getClientRequest().getUrl();
+        String bagId = UriComponentsBuilder.fromUri(url).build().getQueryParams().getFirst(BAG_ID_PARAMETER);
+        if (bagId == null) {
+            Matcher matcher = BAG_PATH.matcher(url.getPath());
+            if (matcher.matches()) {
+                bagId = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            }
+        }
+
+        try {
+            return bagId == null || bagId.isEmpty() ? null : Long.valueOf(bagId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+
+    private static ServiceInstance withEpoch(ServiceInstance instance, String epoch) {
+        Map<String, String> metadata = new HashMap<>(instance.getMetadata());
+        metadata.put(ROUTE_EPOCH_METADATA, epoch);
+        DefaultServiceInstance copy = new DefaultServiceInstance(instance.getInstanceId(), instance.getServiceId(),
+                instance.getHost(), instance.getPort(), instance.isSecure(), metadata);
+        copy.setUri(instance.getUri());
+        return copy;
+    }
+}
@@ -0,0 +1,101 @@
+package com.apigateway.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Consistent-hash ring of service instances. Each instance is placed on the ring at a number of points derived
+ * from its ID, and a key is served by the first instance at or after the key's hash. When an instance joins or
+ * leaves, only the keys next to its points move; all other keys stay on the instance they were on.
+ * <p>
+ * The epoch is a fingerprint of the instance IDs, so every gateway with the same view of the instances computes
+ * the same ring and the same epoch.
+ * @author Emir Aktaş
+ */
+final class ConsistentHashRing {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final NavigableMap<Long, ServiceInstance> ring = new TreeMap<>();
+    private final String epoch;
+
+
+    ConsistentHashRing(List<ServiceInstance> instances, int virtualNodes) {
+        List<ServiceInstance> sorted = instances.stream()
+                .sorted(Comparator.comparing(ConsistentHashRing::idOf))
+                .toList();
+        for (ServiceInstance instance : sorted) {
+            String id = idOf(instance);
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.putIfAbsent(hash(id + "#" + i), instance);
+            }
+        }
+        this.epoch = Long.toHexString(hash(sorted.stream()
+                .map(ConsistentHashRing::idOf)
+                .collect(Collectors.joining(","))));
+    }
+
+
+    /**
+     * Returns the instance that serves the given key, or null if the ring is empty.
+     */
+    ServiceInstance select(long key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, ServiceInstance> entry = ring.ceilingEntry(mix(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+
+    String getEpoch() {
+        return epoch;
+    }
+
+
+    /**
+     * Returns the epoch the given instances would have, to check whether the ring has to be rebuilt.
+     */
+    static String epochOf(List<ServiceInstance> instances) {
+        return Long.toHexString(hash(instances.stream()
+                .map(ConsistentHashRing::idOf)
+                .sorted()
+                .collect(Collectors.joining(","))));
+    }
+
+
+
+    private static String idOf(ServiceInstance instance) {
+        return instance.getInstanceId() != null
+                ? instance.getInstanceId()
+                : instance.getHost() + ":" + instance.getPort();
+    }
+
+
+    private static long hash(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+
+    /**
+     * Spreads the bits of a value over the whole range, so that consecutive keys land far apart on the ring.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,61 @@
+package com.apigateway.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    @Test
+    void whenSameInstancesInAnyOrder_thenRingShouldBeTheSame() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(instance("a"), instance("b"), instance("c")), 160);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of(instance("c"), instance("a"), instance("b")), 160);
+
+        assertEquals(ring.getEpoch(), reordered.getEpoch());
+        assertEquals(ring.getEpoch(), ConsistentHashRing.epochOf(List.of(instance("b"), instance("c"), instance("a"))));
+        IntStream.range(0, 1000).forEach(key ->
+                assertEquals(ring.select(key).getInstanceId(), reordered.select(key).getInstanceId()));
+    }
+
+    @Test
+    void whenInstanceLeaves_thenOnlyItsKeysShouldMove() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(instance("a"), instance("b"), instance("c")), 160);
+        ConsistentHashRing shrunk = new ConsistentHashRing(List.of(instance("a"), instance("b")), 160);
+
+        assertNotEquals(ring.getEpoch(), shrunk.getEpoch());
+        for (long key = 0; key < 10_000; key++) {
+            String before = ring.select(key).getInstanceId();
+            if (!before.equals("c")) {
+                assertEquals(before, shrunk.select(key).getInstanceId());
+            }
+        }
+    }
+
+    @Test
+    void whenManyKeys_thenLoadShouldBeSpreadOverInstances() {
+        List<ServiceInstance> instances = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            instances.add(instance("sale-service-" + i));
+        }
+        ConsistentHashRing ring = new ConsistentHashRing(instances, 160);
+
+        for (ServiceInstance instance : instances) {
+            long served = IntStream.range(0, 40_000)
+                    .filter(key -> ring.select(key).getInstanceId().equals(instance.getInstanceId()))
+                    .count();
+            assertTrue(served > 6_000 && served < 14_000, instance.getInstanceId() + " served " + served);
+        }
+    }
+
+
+
+    private static ServiceInstance instance(String id) {
+        return new DefaultServiceInstance(id, "sale-service", id + ".local", 8080, false);
+    }
+}
@@ -0,0 +1,42 @@
+package com.productservice.config;
+
+import com.productservice.dto.ProductEventMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Publisher class for broadcasting product change events to RabbitMQ.
+ * Events are sent only after the surrounding transaction commits, so consumers such as
+ * the sale-service product cache never observe a change that was rolled back.
+ * @author Emir Aktaş
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ProductEventPublisher {
+
+    @Value("${product.event.rabbitmq.exchange}") private String productEventExchange;
+
+    private final AmqpTemplate amqpTemplate;
+
+
+    /**
+     * Publishes a product change event to the product event fanout exchange.
+     *
+     * @param message the product change event to be published
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void publishProductEvent(ProductEventMessage message) {
+        log.trace("publishProductEvent method begins. Barcode: {}, EventType: {}", message.getBarcode(), message.getEventType());
+
+        amqpTemplate.convertAndSend(productEventExchange, "", message);
+        log.debug("publishProductEvent: Published to {}. Barcode: {}, EventType: {}",
+                productEventExchange, message.getBarcode(), message.getEventType());
+
+        log.trace("publishProductEvent method ends. Barcode: {}, EventType: {}", message.getBarcode(), message.getEventType());
+    }
+}
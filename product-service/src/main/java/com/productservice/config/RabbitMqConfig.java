@@ -21,6 +21,15 @@ public class RabbitMqConfig {
     @Value("${stock.rabbitmq.routingKey}")
     String routingKey;
 
+    @Value("${stock.rabbitmq.adjustment.queue}")
+    String adjustmentQueueName;
+
+    @Value("${stock.rabbitmq.adjustment.routingKey}")
+    String adjustmentRoutingKey;
+
+    @Value("${product.event.rabbitmq.exchange}")
+    String productEventExchange;
+
 
     @Bean
     public DirectExchange exchange() {
@@ -37,6 +46,22 @@ public class RabbitMqConfig {
         return BindingBuilder.bind(firstStepQueue).to(exchange).with(routingKey);
     }
 
+    @Bean
+    public Queue adjustmentQueue(){
+        return new Queue(adjustmentQueueName, false);
+    }
+
+    @Bean
+    public Binding adjustmentBinding(Queue adjustmentQueue, DirectExchange exchange){
+        return BindingBuilder.bind(adjustmentQueue).to(exchange).with(adjustmentRoutingKey);
+    }
+
+
+    @Bean
+    public FanoutExchange productEventExchange() {
+        return new FanoutExchange(productEventExchange);
+    }
+
 
     @Bean
     public MessageConverter jsonMessageConverter(){
@@ -1,19 +1,28 @@
 package com.productservice.consumer;
 
+import com.productservice.dto.StockAdjustmentMessage;
 import com.productservice.dto.StockUpdateMessage;
 import com.productservice.service.ProductManagementService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.AmqpTemplate;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Consumer class for consuming stock update messages from a RabbitMQ queue.
+ * Stock adjustment messages carry every line item of a sale and are applied in one transaction;
+ * single-item stock update messages are still accepted from senders that have not been updated.
+ * Stock adjustment messages may be delivered more than once, so they are deduplicated by their message ID.
  * Includes retry mechanism for failed operations.
  */
 @Slf4j
@@ -37,14 +46,49 @@ public class ProductConsumer {
     private void consumeMessage(StockUpdateMessage message) {
         log.trace("consumeMessage method begins. Barcode: {}", message.getBarcode());
 
+        updateStock(message);
+
+        log.trace("consumeMessage method ends. Barcode: {}", message.getBarcode());
+    }
+
+
+    @RabbitListener(queues = "${stock.rabbitmq.adjustment.queue}", containerFactory = "rabbitListenerContainerFactory")
+    private void consumeAdjustmentMessage(StockAdjustmentMessage message,
+                                          @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
+        log.trace("consumeAdjustmentMessage method begins. SaleId: {}, MessageId: {}, Items: {}",
+                message.getSaleId(), messageId, message.getItems().size());
+
+        Map<String, Integer> stockChanges = new LinkedHashMap<>();
+        message.getItems().forEach(item -> stockChanges.merge(item.getBarcode(), item.getDelta(), Integer::sum));
+
+        try {
+            productManagementService.adjustStocks(messageId, message.getBagId(), stockChanges);
+        } catch (Exception e) {
+            log.warn("consumeAdjustmentMessage: Exception, adjusting stock for sale {}. Falling back to item by item updates: {}",
+                    message.getSaleId(), e.getMessage(), e);
+            if (productManagementService.markMessageProcessed(messageId)) {
+                stockChanges.forEach((barcode, delta) -> updateStock(new StockUpdateMessage(barcode, delta, 0)));
+            } else {
+                log.info("consumeAdjustmentMessage: Message {} has already been applied, skipping it", messageId);
+            }
+        }
+
+        log.trace("consumeAdjustmentMessage method ends. SaleId: {}", message.getSaleId());
+    }
+
+
+    /**
+     * Applies a single stock change in its own transaction, retrying it on failure.
+     * Also used when a stock adjustment cannot be applied as a whole, so that the valid items
+     * still go through and only the failing ones are retried.
+     */
+    private void updateStock(StockUpdateMessage message) {
         try {
             productManagementService.updateStock(message.getBarcode(), message.getStock());
         } catch (Exception e) {
-            log.warn("consumeMessage: Exception, updating stock for barcode {}: {}", message.getBarcode(), e.getMessage(), e);
+            log.warn("updateStock: Exception, updating stock for barcode {}: {}", message.getBarcode(), e.getMessage(), e);
             processRetry(message);
         }
-
-        log.trace("consumeMessage method ends. Barcode: {}", message.getBarcode());
     }
 
 
@@ -12,6 +12,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 @RequiredArgsConstructor
@@ -60,6 +61,15 @@ public class ProductSearchController {
     }
 
 
+    @GetMapping(value = "/catalog", produces = "text/tab-separated-values")
+    public ResponseEntity<StreamingResponseBody> exportCatalog() {
+        log.trace("exportCatalog endpoint called");
+
+        StreamingResponseBody body = productSearchService::exportCatalog;
+        return ResponseEntity.ok(body);
+    }
+
+
     @GetMapping("/image/{imageCode}")
     public ResponseEntity<byte[]> getImageByImageCode(@PathVariable Long imageCode) {
         log.trace("getImageByImageCode endpoint called for imageCode: {}", imageCode);
@@ -0,0 +1,12 @@
+package com.productservice.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection of the product fields included in the catalog export.
+ */
+public interface CatalogEntry {
+    String getBarcode();
+    String getName();
+    BigDecimal getPrice();
+}
@@ -0,0 +1,40 @@
+package com.productservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ProductEventMessage {
+
+    private EventType eventType;
+
+    private String barcode;
+    private String name;
+    private BigDecimal price;
+    private Integer stock;
+    /**
+     * The bag whose sale changed the stock, or null for any other change.
+     */
+    private Long bagId;
+
+
+    public ProductEventMessage(EventType eventType, String barcode, String name, BigDecimal price, Integer stock) {
+        this(eventType, barcode, name, price, stock, null);
+    }
+
+
+    /**
+     * Enumeration for product change types.
+     */
+    public enum EventType {
+        CREATED,
+        UPDATED,
+        STOCK_CHANGED,
+        DELETED
+    }
+}
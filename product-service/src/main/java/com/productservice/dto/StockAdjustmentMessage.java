@@ -0,0 +1,31 @@
+package com.productservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Stock changes of every line item of a sale, sent as a single message.
+ * The bag ID is set for completed sales and passed on in the resulting stock change events; it is null for cancellations.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class StockAdjustmentMessage {
+
+    private Long saleId;
+    private Long bagId;
+    private List<Item> items;
+
+
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Data
+    public static class Item {
+
+        private String barcode;
+        private int delta;
+    }
+}
@@ -0,0 +1,28 @@
+package com.productservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+
+/**
+ * A stock adjustment message that has already been applied. Messages are delivered at least once,
+ * so their IDs are kept for a while to skip redeliveries.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "processed_messages", indexes = @Index(name = "idx_processed_messages_processed_date", columnList = "processedDate"))
+public class ProcessedMessage {
+
+    @Id
+    private String messageId;
+
+    @Column(nullable = false)
+    private LocalDateTime processedDate;
+}
@@ -0,0 +1,27 @@
+package com.productservice.repository;
+
+import com.productservice.model.ProcessedMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+
+@Repository
+public interface ProcessedMessageRepository extends JpaRepository<ProcessedMessage, String> {
+
+    /**
+     * Records a message as processed in the caller's transaction. Returns zero if the message was already
+     * recorded; a concurrent delivery of the same message waits here until the first one commits or rolls back.
+     */
+    @Modifying
+    @Query(value = """
+          INSERT INTO processed_messages (message_id, processed_date)
+          VALUES (:messageId, :processedDate)
+          ON CONFLICT (message_id) DO NOTHING""", nativeQuery = true)
+    int insertIfAbsent(String messageId, LocalDateTime processedDate);
+
+    @Modifying
+    @Query("DELETE FROM ProcessedMessage m WHERE m.processedDate < :processedBefore")
+    int deleteProcessedBefore(LocalDateTime processedBefore);
+}
@@ -1,17 +1,24 @@
 package com.productservice.repository;
 
+import com.productservice.dto.CatalogEntry;
 import com.productservice.model.Product;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
@@ -34,6 +41,34 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
                                 Integer stock,
                                 LocalDateTime lastUpdateDate);
 
+    /**
+     * Applies every stock delta in one statement. Rows of deleted products, unknown barcodes and
+     * changes that would make the stock negative are skipped, so the returned count tells the caller
+     * whether the whole batch was applied. Barcodes must be distinct.
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = """
+          UPDATE products p SET
+          stock = p.stock + d.delta,
+          last_update_date = :lastUpdateDate
+          FROM unnest(CAST(:barcodes AS varchar[]), CAST(:deltas AS integer[])) AS d(barcode, delta)
+          WHERE p.barcode = d.barcode AND p.deleted = false AND p.stock + d.delta >= 0""", nativeQuery = true)
+    int adjustStocks(String[] barcodes,
+                     Integer[] deltas,
+                     LocalDateTime lastUpdateDate);
+
+    /**
+     * Streams the products that are not deleted for the catalog export, ordered by the byte order of
+     * their barcodes so that readers can binary search the result. Must be consumed inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = """
+          SELECT barcode, name, price FROM products
+          WHERE deleted = false
+          ORDER BY barcode COLLATE "C\"""", nativeQuery = true)
+    Stream<CatalogEntry> streamCatalog();
+
     @Query("SELECT p FROM Product p WHERE p.image.imageCode = :imageCode")
     Optional<Product> findByImageCode(Long imageCode);
     @Query("SELECT p FROM Product p WHERE LOWER(p.name) LIKE LOWER(concat(:prefix, '%')) AND p.deleted = false")
@@ -43,6 +78,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     Optional<Product> findById(Long id);
     Optional<Product> findByBarcode(String barcode);
     Optional<Product> findByBarcodeAndDeletedFalse(String barcode);
+    List<Product> findAllByBarcodeIn(Collection<String> barcodes);
 
 
     Page<Product> findAll(Pageable pageable);
@@ -6,6 +6,8 @@ import com.productservice.exception.*;
 import jakarta.transaction.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Map;
+
 /**
  * Service interface for managing products.
  * Provides methods for adding, updating, deleting, and managing stock of products.
@@ -58,6 +60,41 @@ public interface ProductManagementService {
     String updateStock(String barcode, int stock);
 
 
+    /**
+     * Applies the stock changes of several products in a single transaction.
+     * Either every change is applied or none is. The message ID is recorded in the same transaction,
+     * so a message that has already been applied is skipped when it is delivered again.
+     *
+     * @param  messageId the ID of the message carrying the changes, or null if the sender did not set one
+     * @param  bagId the bag whose sale caused the changes, passed on in the stock change events, or null
+     * @param  stockChanges the amount by which the stock of each product is to be changed, keyed by barcode
+     * @return a message indicating how many products were updated
+     * @throws InvalidInputException if a product is not found, is deleted, or would end up with negative stock
+     */
+    @Transactional
+    String adjustStocks(String messageId, Long bagId, Map<String, Integer> stockChanges);
+
+
+    /**
+     * Records a message as processed without applying it, before its changes are applied one by one.
+     *
+     * @param  messageId the ID of the message, or null if the sender did not set one
+     * @return false if the message has already been processed
+     */
+    @Transactional
+    boolean markMessageProcessed(String messageId);
+
+
+    /**
+     * Deletes the IDs of processed messages that are older than the retention period.
+     * Redeliveries of such messages are no longer recognised.
+     *
+     * @return the number of deleted message IDs
+     */
+    @Transactional
+    int purgeProcessedMessages();
+
+
     /**
      * Deletes a product by its barcode.
      *
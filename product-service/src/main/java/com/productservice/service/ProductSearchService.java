@@ -9,6 +9,8 @@ import com.productservice.exception.ProductNotFoundException;
 import jakarta.transaction.Transactional;
 import org.springframework.data.domain.Page;
 
+import java.io.OutputStream;
+
 /**
  * Service interface for searching and retrieving products.
  * Provides methods for searching products based on various criteria and retrieving product details.
@@ -64,4 +66,16 @@ public interface ProductSearchService {
      * @throws InvalidInputException if date input are invalid
      */
     Page<ProductDto> getProductsByCriteria(ProductSearchCriteria criteria);
+
+
+    /**
+     * Writes the catalog of products that are not deleted as UTF-8 text, one {@code barcode<TAB>name<TAB>price} line
+     * per product, ordered by the byte order of the barcodes. Tabs and line breaks in names are replaced with spaces.
+     * Products are streamed from the database, so the export does not hold the whole catalog in memory.
+     *
+     * @param outputStream the stream to write the catalog to
+     * @return the number of products written
+     */
+    @Transactional
+    long exportCatalog(OutputStream outputStream);
 }
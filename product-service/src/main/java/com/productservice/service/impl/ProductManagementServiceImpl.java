@@ -1,10 +1,12 @@
 package com.productservice.service.impl;
 
 import com.productservice.dto.ProductCreateRequestDto;
+import com.productservice.dto.ProductEventMessage;
 import com.productservice.dto.UpdateProductRequestDto;
 import com.productservice.model.Image;
 import com.productservice.model.Product;
 import com.productservice.repository.ImageRepository;
+import com.productservice.repository.ProcessedMessageRepository;
 import com.productservice.repository.ProductRepository;
 import com.productservice.service.ProductManagementService;
 import com.productservice.exception.*;
@@ -14,11 +16,15 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Map;
 
 
 @Slf4j
@@ -28,11 +34,15 @@ public class ProductManagementServiceImpl implements ProductManagementService {
 
     @Value("${file.max-size}")
     private long maxFileSize;
+    @Value("${stock.processed-message.retention}")
+    private Duration processedMessageRetention;
 
     private final ProductRepository productRepository;
+    private final ProcessedMessageRepository processedMessageRepository;
     private final ImageRepository imageRepository;
     private final EntityManager entityManager;
     private final ModelMapper modelMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
 
     @Transactional
@@ -76,6 +86,7 @@ public class ProductManagementServiceImpl implements ProductManagementService {
 
         product.setCreationDate(LocalDateTime.now());
         productRepository.save(product);
+        publishProductEvent(product, ProductEventMessage.EventType.CREATED);
         log.info("addProduct: Product added successfully with barcode {}", product.getBarcode());
 
         log.trace("addProduct method ends. Request: {}", request);
@@ -115,6 +126,7 @@ public class ProductManagementServiceImpl implements ProductManagementService {
                     LocalDateTime.now()
             );
             entityManager.refresh(product);
+            publishProductEvent(product, ProductEventMessage.EventType.UPDATED);
         }
 
         updateProductImage(product, file);
@@ -146,6 +158,7 @@ public class ProductManagementServiceImpl implements ProductManagementService {
         product.setStock(newStock);
         product.setLastUpdateDate(LocalDateTime.now());
         productRepository.save(product);
+        publishProductEvent(product, ProductEventMessage.EventType.STOCK_CHANGED);
         log.info("updateStock: Stock updated for product with barcode {}. New stock level: {}", barcode, newStock);
 
         log.trace("updateStock method ends. Barcode: {}, StockChange: {}", barcode, stockChange);
@@ -153,6 +166,59 @@ public class ProductManagementServiceImpl implements ProductManagementService {
     }
 
 
+    @Override
+    @Transactional
+    public String adjustStocks(String messageId, Long bagId, Map<String, Integer> stockChanges) {
+        log.trace("adjustStocks method begins. MessageId: {}, BagId: {}, Products: {}", messageId, bagId, stockChanges.size());
+
+        if (!markMessageProcessed(messageId)) {
+            log.info("adjustStocks: Message {} has already been applied, skipping it", messageId);
+            return String.format("Message %s has already been applied", messageId);
+        }
+
+        String[] barcodes = stockChanges.keySet().toArray(new String[0]);
+        Integer[] deltas = stockChanges.values().toArray(new Integer[0]);
+
+        int updated = productRepository.adjustStocks(barcodes, deltas, LocalDateTime.now());
+        if (updated != barcodes.length) {
+            log.warn("adjustStocks: Only {} of {} stock changes could be applied. Barcodes: {}", updated, barcodes.length, stockChanges.keySet());
+            throw new InvalidInputException(String.format("Stock could not be adjusted for %d of %d products. " +
+                    "Products may be missing, deleted or short of stock.", barcodes.length - updated, barcodes.length));
+        }
+
+        productRepository.findAllByBarcodeIn(stockChanges.keySet())
+                .forEach(product -> eventPublisher.publishEvent(new ProductEventMessage(ProductEventMessage.EventType.STOCK_CHANGED,
+                        product.getBarcode(), product.getName(), product.getPrice(), product.getStock(), bagId)));
+        log.info("adjustStocks: Stock adjusted for {} products", updated);
+
+        log.trace("adjustStocks method ends. Products: {}", stockChanges.size());
+        return String.format("Stock adjusted for %d products", updated);
+    }
+
+
+    @Override
+    @Transactional
+    public boolean markMessageProcessed(String messageId) {
+        return messageId == null || processedMessageRepository.insertIfAbsent(messageId, LocalDateTime.now()) > 0;
+    }
+
+
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${stock.processed-message.purge-fixed-delay-ms}")
+    public int purgeProcessedMessages() {
+        log.trace("purgeProcessedMessages method begins.");
+
+        int deleted = processedMessageRepository.deleteProcessedBefore(LocalDateTime.now().minus(processedMessageRetention));
+        if (deleted > 0) {
+            log.info("purgeProcessedMessages: Deleted {} processed message IDs", deleted);
+        }
+
+        log.trace("purgeProcessedMessages method ends. Deleted: {}", deleted);
+        return deleted;
+    }
+
+
     @Transactional
     @Override
     public String deleteProductByBarcode(String barcode){
@@ -175,6 +241,7 @@ public class ProductManagementServiceImpl implements ProductManagementService {
         }
 
         productRepository.save(product);
+        publishProductEvent(product, ProductEventMessage.EventType.DELETED);
         log.info("deleteProductByBarcode: Product deleted successfully with barcode {}", barcode);
 
         log.trace("deleteProductByBarcode method ends. Barcode: {}", barcode);
@@ -204,6 +271,7 @@ public class ProductManagementServiceImpl implements ProductManagementService {
         }
 
         productRepository.save(product);
+        publishProductEvent(product, ProductEventMessage.EventType.CREATED);
         log.info("reAddDeletedProductByBarcode: Product re-added successfully with barcode {}", barcode);
 
         log.trace("reAddDeletedProductByBarcode method ends. Barcode: {}", barcode);
@@ -279,4 +347,19 @@ public class ProductManagementServiceImpl implements ProductManagementService {
         }
         log.trace("updateProductImage method ends. product: {}", product);
     }
+
+
+    private void publishProductEvent(Product product, ProductEventMessage.EventType eventType) {
+        log.trace("publishProductEvent method begins. Barcode: {}, EventType: {}", product.getBarcode(), eventType);
+
+        ProductEventMessage message = new ProductEventMessage(
+                eventType,
+                product.getBarcode(),
+                product.getName(),
+                product.getPrice(),
+                product.getStock());
+        eventPublisher.publishEvent(message);
+
+        log.trace("publishProductEvent method ends. Barcode: {}, EventType: {}", product.getBarcode(), eventType);
+    }
 }
@@ -1,5 +1,6 @@
 package com.productservice.service.impl;
 
+import com.productservice.dto.CatalogEntry;
 import com.productservice.dto.ImageDto;
 import com.productservice.dto.ProductDto;
 import com.productservice.dto.ProductSearchCriteria;
@@ -23,11 +24,14 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 @Slf4j
@@ -219,4 +223,33 @@ public class ProductSearchServiceImpl implements ProductSearchService {
             throw new InvalidInputException("Date must be in the format 'yyyy-MM-ddTHH:mm:ss'");
         }
     }
+
+
+    @Transactional
+    @Override
+    public long exportCatalog(OutputStream outputStream) {
+        log.trace("exportCatalog method begins");
+
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+        try (Stream<CatalogEntry> entries = productRepository.streamCatalog()) {
+            for (CatalogEntry entry : (Iterable<CatalogEntry>) entries::iterator) {
+                writer.write(entry.getBarcode());
+                writer.write('\t');
+                writer.write(entry.getName().replaceAll("[\\t\\r\\n]", " "));
+                writer.write('\t');
+                writer.write(entry.getPrice().toPlainString());
+                writer.write('\n');
+                count++;
+            }
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("exportCatalog: Catalog export aborted after {} products: {}", count, e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+
+        log.info("exportCatalog: Exported {} products", count);
+        log.trace("exportCatalog method ends");
+        return count;
+    }
 }
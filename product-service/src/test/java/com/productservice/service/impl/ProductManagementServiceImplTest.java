@@ -1,11 +1,13 @@
 package com.productservice.service.impl;
 
 import com.productservice.dto.ProductCreateRequestDto;
+import com.productservice.dto.ProductEventMessage;
 import com.productservice.dto.UpdateProductRequestDto;
 import com.productservice.exception.*;
 import com.productservice.model.Image;
 import com.productservice.model.Product;
 import com.productservice.repository.ImageRepository;
+import com.productservice.repository.ProcessedMessageRepository;
 import com.productservice.repository.ProductRepository;
 import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Test;
@@ -14,10 +16,14 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -31,12 +37,18 @@ public class ProductManagementServiceImplTest {
     @Mock
     private ImageRepository imageRepository;
 
+    @Mock
+    private ProcessedMessageRepository processedMessageRepository;
+
     @Mock
     private EntityManager entityManager;
 
     @Mock
     private ModelMapper modelMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @Mock
     private MultipartFile imageFile;
 
@@ -330,6 +342,8 @@ public class ProductManagementServiceImplTest {
 
         assertEquals(15, product.getStock());
         assertNotNull(product.getLastUpdateDate());
+        verify(eventPublisher, times(1)).publishEvent(new ProductEventMessage(
+                ProductEventMessage.EventType.STOCK_CHANGED, barcode, "Test Product", new BigDecimal(100), 15));
         assertEquals(String.format("Stock updated for product with barcode %s. New stock level: %d", barcode, 15), result);
     }
 
@@ -374,11 +388,91 @@ public class ProductManagementServiceImplTest {
 
         verify(productRepository, times(1)).findByBarcodeAndDeletedFalse(barcode);
         verify(productRepository, never()).save(any(Product.class));
+        verify(eventPublisher, never()).publishEvent(any());
 
         assertEquals(String.format("Insufficient stock for product with barcode %s. Current stock: %s, requested change: %s",
                 barcode, 10, stockChange), exception.getMessage());
     }
 
+    @Test
+    void whenAdjustStocksWithValidChanges_thenAllStocksUpdatedInOneStatement() {
+        Map<String, Integer> stockChanges = new LinkedHashMap<>();
+        stockChanges.put("111", -2);
+        stockChanges.put("222", 3);
+
+        Product first = new Product();
+        first.setBarcode("111");
+        first.setName("First Product");
+        first.setPrice(new BigDecimal(10));
+        first.setStock(8);
+        Product second = new Product();
+        second.setBarcode("222");
+        second.setName("Second Product");
+        second.setPrice(new BigDecimal(20));
+        second.setStock(13);
+
+        when(processedMessageRepository.insertIfAbsent(eq("outbox-1"), any(LocalDateTime.class))).thenReturn(1);
+        when(productRepository.adjustStocks(eq(new String[]{"111", "222"}), eq(new Integer[]{-2, 3}), any(LocalDateTime.class)))
+                .thenReturn(2);
+        when(productRepository.findAllByBarcodeIn(stockChanges.keySet())).thenReturn(List.of(first, second));
+
+        String result = productManagementService.adjustStocks("outbox-1", 7L, stockChanges);
+
+        assertEquals("Stock adjusted for 2 products", result);
+        verify(productRepository, never()).save(any(Product.class));
+        verify(eventPublisher, times(1)).publishEvent(new ProductEventMessage(
+                ProductEventMessage.EventType.STOCK_CHANGED, "111", "First Product", new BigDecimal(10), 8, 7L));
+        verify(eventPublisher, times(1)).publishEvent(new ProductEventMessage(
+                ProductEventMessage.EventType.STOCK_CHANGED, "222", "Second Product", new BigDecimal(20), 13, 7L));
+    }
+
+    @Test
+    void whenAdjustStocksWithUnappliableChange_thenThrowInvalidInputException() {
+        Map<String, Integer> stockChanges = new LinkedHashMap<>();
+        stockChanges.put("111", -2);
+        stockChanges.put("222", -50);
+
+        when(processedMessageRepository.insertIfAbsent(eq("outbox-1"), any(LocalDateTime.class))).thenReturn(1);
+        when(productRepository.adjustStocks(any(String[].class), any(Integer[].class), any(LocalDateTime.class)))
+                .thenReturn(1);
+
+        InvalidInputException exception = assertThrows(InvalidInputException.class,
+                () -> productManagementService.adjustStocks("outbox-1", 7L, stockChanges));
+
+        assertEquals("Stock could not be adjusted for 1 of 2 products. Products may be missing, deleted or short of stock.",
+                exception.getMessage());
+        verify(productRepository, never()).findAllByBarcodeIn(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void whenAdjustStocksWithAlreadyAppliedMessage_thenStockShouldNotBeAdjustedAgain() {
+        Map<String, Integer> stockChanges = new LinkedHashMap<>();
+        stockChanges.put("111", -2);
+
+        when(processedMessageRepository.insertIfAbsent(eq("outbox-1"), any(LocalDateTime.class))).thenReturn(0);
+
+        String result = productManagementService.adjustStocks("outbox-1", 7L, stockChanges);
+
+        assertEquals("Message outbox-1 has already been applied", result);
+        verify(productRepository, never()).adjustStocks(any(), any(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void whenAdjustStocksWithoutMessageId_thenStockShouldBeAdjustedWithoutDeduplication() {
+        Map<String, Integer> stockChanges = new LinkedHashMap<>();
+        stockChanges.put("111", -2);
+
+        when(productRepository.adjustStocks(any(String[].class), any(Integer[].class), any(LocalDateTime.class)))
+                .thenReturn(1);
+
+        String result = productManagementService.adjustStocks(null, null, stockChanges);
+
+        assertEquals("Stock adjusted for 1 products", result);
+        verifyNoInteractions(processedMessageRepository);
+    }
+
     @Test
     void whenUpdateStockWithNonExistingProduct_thenThrowProductNotFoundException() {
         String barcode = "123456789";
@@ -416,6 +510,7 @@ public class ProductManagementServiceImplTest {
 
         assertTrue(product.isDeleted());
         assertEquals(barcode, result);
+        verify(eventPublisher, times(1)).publishEvent(any(ProductEventMessage.class));
     }
 
     @Test
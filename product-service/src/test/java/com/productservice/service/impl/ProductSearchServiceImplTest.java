@@ -1,5 +1,6 @@
 package com.productservice.service.impl;
 
+import com.productservice.dto.CatalogEntry;
 import com.productservice.dto.ImageDto;
 import com.productservice.dto.ProductDto;
 import com.productservice.dto.ProductSearchCriteria;
@@ -23,10 +24,13 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -453,4 +457,27 @@ public class ProductSearchServiceImplTest {
         imageDto.setImageCode(imageCode);
         return imageDto;
     }
-}
\ No newline at end of file
+
+
+    @Test
+    void whenExportCatalog_thenOneTabSeparatedLinePerProductShouldBeWritten() {
+        CatalogEntry milk = catalogEntry("111", "Milk", new BigDecimal("12.50"));
+        CatalogEntry bread = catalogEntry("222", "Bread\twith\nbreaks", new BigDecimal("7"));
+        when(productRepository.streamCatalog()).thenReturn(Stream.of(milk, bread));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        long count = productSearchService.exportCatalog(outputStream);
+
+        assertEquals(2, count);
+        assertEquals("111\tMilk\t12.50\n222\tBread with breaks\t7\n", outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+
+    private static CatalogEntry catalogEntry(String barcode, String name, BigDecimal price) {
+        CatalogEntry entry = mock(CatalogEntry.class);
+        when(entry.getBarcode()).thenReturn(barcode);
+        when(entry.getName()).thenReturn(name);
+        when(entry.getPrice()).thenReturn(price);
+        return entry;
+    }
+}
@@ -43,11 +43,12 @@ public class SalesServiceApplication {
         Faker faker = new Faker();
         Random random = new Random();
 
+        List<Sale> sales = new ArrayList<>(100);
         for (int i = 0; i < 100; i++) {
             SaleDto saleDto = createRandomSaleDto(faker, random);
-            Sale sale = convertToEntity(saleDto);
-            saleRepository.save(sale);
+            sales.add(convertToEntity(saleDto));
         }
+        saleRepository.saveAll(sales);
         return 1;
     }
 
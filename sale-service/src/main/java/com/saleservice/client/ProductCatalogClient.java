@@ -0,0 +1,17 @@
+package com.saleservice.client;
+
+import feign.Response;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+
+/**
+ * Downloads the product catalog export. Kept apart from {@link ProductServiceClient} so that the export
+ * can be given a much longer read timeout than the per-scan product lookups.
+ */
+@FeignClient(name = "product-service", contextId = "productCatalogClient", path = "/product/search")
+public interface ProductCatalogClient {
+
+    @GetMapping("/catalog")
+    Response exportCatalog();
+
+}
@@ -1,11 +1,19 @@
 package com.saleservice.config;
 
+import com.saleservice.model.Money;
+import org.modelmapper.Converter;
 import org.modelmapper.ModelMapper;
 import org.modelmapper.convention.MatchingStrategies;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.math.BigDecimal;
 
 @Configuration
+@EnableRetry
+@EnableScheduling
 public class AppConfig {
 
     @Bean
@@ -13,6 +21,10 @@ public class AppConfig {
         ModelMapper modelMapper = new ModelMapper();
         modelMapper.getConfiguration().setMatchingStrategy(MatchingStrategies.STRICT);
 
+        Converter<Money, BigDecimal> moneyToBigDecimal = context ->
+                context.getSource() == null ? null : context.getSource().toBigDecimal();
+        modelMapper.addConverter(moneyToBigDecimal, Money.class, BigDecimal.class);
+
         return modelMapper;
     }
 }
@@ -0,0 +1,67 @@
+package com.saleservice.config;
+
+import com.saleservice.repository.BagRepository;
+import com.saleservice.repository.CachingBagRepository;
+import com.saleservice.repository.EmbeddedBagRepository;
+import com.saleservice.repository.RedisBagRepository;
+import com.saleservice.repository.TieredBagRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class BagRepositoryConfig implements WebMvcConfigurer {
+
+    /**
+     * Header with which the api-gateway announces the version of its bag routes.
+     */
+    public static final String ROUTE_EPOCH_HEADER = "X-Route-Epoch";
+
+    private final ObjectProvider<CachingBagRepository> cachingBagRepository;
+
+
+    public BagRepositoryConfig(ObjectProvider<CachingBagRepository> cachingBagRepository) {
+        this.cachingBagRepository = cachingBagRepository;
+    }
+
+
+    /**
+     * The bag repository used by the services: the local cache if it is enabled, over the parked bag tier if
+     * parking is enabled, over the configured storage mode. The cache and the parked bag tier need one of the
+     * Redis storage modes.
+     */
+    @Bean
+    @Primary
+    public BagRepository bagRepository(ObjectProvider<RedisBagRepository> redisBagRepository,
+                                       ObjectProvider<EmbeddedBagRepository> embeddedBagRepository,
+                                       ObjectProvider<TieredBagRepository> tieredBagRepository) {
+        BagRepository cached = cachingBagRepository.getIfAvailable();
+        if (cached != null) {
+            return cached;
+        }
+        BagRepository tiered = tieredBagRepository.getIfAvailable();
+        if (tiered != null) {
+            return tiered;
+        }
+        BagRepository redis = redisBagRepository.getIfAvailable();
+        return redis != null ? redis : embeddedBagRepository.getObject();
+    }
+
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        cachingBagRepository.ifAvailable(cache -> registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                cache.onRouteEpoch(request.getHeader(ROUTE_EPOCH_HEADER));
+                return true;
+            }
+        }).addPathPatterns("/sale/**"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.saleservice.config;
+
+import com.saleservice.dto.CampaignEventMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Publisher class for broadcasting campaign change events to every sale-service instance.
+ * Events are sent only after the surrounding transaction commits, so an instance that reloads
+ * its active-campaign index on the event always reads the committed campaign.
+ * @author Emir Aktaş
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class CampaignEventPublisher {
+
+    @Value("${campaign.event.rabbitmq.exchange}") private String campaignEventExchange;
+
+    private final AmqpTemplate amqpTemplate;
+
+
+    /**
+     * Publishes a campaign change event to the campaign event fanout exchange.
+     *
+     * @param message the campaign change event to be published
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void publishCampaignEvent(CampaignEventMessage message) {
+        log.trace("publishCampaignEvent method begins. CampaignId: {}", message.getCampaignId());
+
+        amqpTemplate.convertAndSend(campaignEventExchange, "", message);
+        log.debug("publishCampaignEvent: Published to {}. CampaignId: {}", campaignEventExchange, message.getCampaignId());
+
+        log.trace("publishCampaignEvent method ends. CampaignId: {}", message.getCampaignId());
+    }
+}
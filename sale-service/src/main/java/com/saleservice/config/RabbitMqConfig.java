@@ -1,8 +1,10 @@
 package com.saleservice.config;
 
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
@@ -16,6 +18,8 @@ public class RabbitMqConfig {
     @Value("${stock.rabbitmq.exchange}") String stockExchange;
     @Value("${stock.rabbitmq.queue}") String stockQueueName;
     @Value("${stock.rabbitmq.routingKey}") String stockRoutingKey;
+    @Value("${stock.rabbitmq.adjustment.queue}") String stockAdjustmentQueueName;
+    @Value("${stock.rabbitmq.adjustment.routingKey}") String stockAdjustmentRoutingKey;
 
     @Value("${receipt.rabbitmq.exchange}") String receiptExchange;
     @Value("${receipt.rabbitmq.queue}") String receiptQueueName;
@@ -25,6 +29,10 @@ public class RabbitMqConfig {
     @Value("${event.rabbitmq.queue}") String eventQueueName;
     @Value("${event.rabbitmq.routingKey}") String eventRoutingKey;
 
+    @Value("${product.event.rabbitmq.exchange}") String productEventExchange;
+
+    @Value("${campaign.event.rabbitmq.exchange}") String campaignEventExchange;
+
 
     @Bean
     DirectExchange stockExchange() { return new DirectExchange(stockExchange); }
@@ -33,6 +41,11 @@ public class RabbitMqConfig {
     @Bean
     Binding stockBinding(Queue stockQueue, DirectExchange stockExchange){
         return BindingBuilder.bind(stockQueue).to(stockExchange).with(stockRoutingKey); }
+    @Bean
+    Queue stockAdjustmentQueue(){ return new Queue(stockAdjustmentQueueName, false); }
+    @Bean
+    Binding stockAdjustmentBinding(Queue stockAdjustmentQueue, DirectExchange stockExchange){
+        return BindingBuilder.bind(stockAdjustmentQueue).to(stockExchange).with(stockAdjustmentRoutingKey); }
 
 
     @Bean
@@ -53,6 +66,24 @@ public class RabbitMqConfig {
         return BindingBuilder.bind(eventQueue).to(eventExchange).with(eventRoutingKey);}
 
 
+    @Bean
+    FanoutExchange productEventExchange() { return new FanoutExchange(productEventExchange); }
+    @Bean
+    Queue productEventQueue() { return new AnonymousQueue(); }
+    @Bean
+    Binding productEventBinding(Queue productEventQueue, FanoutExchange productEventExchange) {
+        return BindingBuilder.bind(productEventQueue).to(productEventExchange);}
+
+
+    @Bean
+    FanoutExchange campaignEventExchange() { return new FanoutExchange(campaignEventExchange); }
+    @Bean
+    Queue campaignEventQueue() { return new AnonymousQueue(); }
+    @Bean
+    Binding campaignEventBinding(Queue campaignEventQueue, FanoutExchange campaignEventExchange) {
+        return BindingBuilder.bind(campaignEventQueue).to(campaignEventExchange);}
+
+
     @Bean
     public MessageConverter jsonMessageConverter(){
         return new Jackson2JsonMessageConverter();
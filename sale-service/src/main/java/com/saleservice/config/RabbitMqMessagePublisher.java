@@ -1,23 +1,41 @@
 package com.saleservice.config;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Publisher class for sending messages to RabbitMQ exchanges.
  * Provides methods to publish different types of messages to specific exchanges and routing keys.
+ * The synchronous methods return once the message is handed to the client library. The asynchronous
+ * methods return a future that completes when the broker confirms the message; they keep a bounded
+ * number of unconfirmed messages in flight and publish nacked messages again.
  * @author Emir Aktaş
  */
 @Component
 @Slf4j
-@RequiredArgsConstructor
 public class RabbitMqMessagePublisher {
 
     @Value("${stock.rabbitmq.routingKey}") private String stockRoutingKey;
     @Value("${stock.rabbitmq.exchange}") private String stockExchange;
+    @Value("${stock.rabbitmq.adjustment.routingKey}") private String stockAdjustmentRoutingKey;
 
     @Value("${receipt.rabbitmq.routingKey}") private String receiptRoutingKey;
     @Value("${receipt.rabbitmq.exchange}") private String receiptExchange;
@@ -25,7 +43,45 @@ public class RabbitMqMessagePublisher {
     @Value("${event.rabbitmq.exchange}") String eventExchange;
     @Value("${event.rabbitmq.routingKey}") String eventRoutingKey;
 
-    private final AmqpTemplate amqpTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final Executor executor;
+
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final long acquireTimeoutMs;
+    private final Semaphore inFlight;
+
+    private final Timer confirmLatencyTimer;
+    private final Counter nackCounter;
+    private final Counter failedCounter;
+
+
+    public RabbitMqMessagePublisher(RabbitTemplate rabbitTemplate,
+                                    @Qualifier("applicationTaskExecutor") Executor executor,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${rabbitmq.publisher.max-in-flight}") int maxInFlight,
+                                    @Value("${rabbitmq.publisher.max-attempts}") int maxAttempts,
+                                    @Value("${rabbitmq.publisher.acquire-timeout-ms}") long acquireTimeoutMs) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.inFlight = new Semaphore(maxInFlight);
+
+        Gauge.builder("rabbitmq.publisher.in.flight", inFlight, semaphore -> maxInFlight - semaphore.availablePermits())
+                .description("Messages published asynchronously and not yet confirmed by the broker")
+                .register(meterRegistry);
+        this.confirmLatencyTimer = Timer.builder("rabbitmq.publisher.confirm.latency")
+                .description("Time from an asynchronous publish to the broker's confirm")
+                .register(meterRegistry);
+        this.nackCounter = Counter.builder("rabbitmq.publisher.nacks")
+                .description("Asynchronous publishes nacked by the broker or not confirmed")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("rabbitmq.publisher.failed")
+                .description("Asynchronous publishes given up after the last attempt")
+                .register(meterRegistry);
+    }
 
 
     /**
@@ -38,30 +94,50 @@ public class RabbitMqMessagePublisher {
     public void publishMessage(Object payload, MessageType messageType) {
         log.trace("publishMessage method begins. messageType={}", messageType);
 
-        String exchange;
-        String routingKey;
+        String exchange = exchangeFor(messageType);
+        String routingKey = routingKeyFor(messageType);
 
-        switch (messageType) {
-            case STOCK:
-                exchange = stockExchange;
-                routingKey = stockRoutingKey;
-                break;
-            case RECEIPT:
-                exchange = receiptExchange;
-                routingKey = receiptRoutingKey;
-                break;
-            default:
-                throw new IllegalArgumentException("Unsupported message type: " + messageType);
-        }
-
-        log.info("publishMessage: Publishing to {} using routingKey {}. messageType: {}", exchange, routingKey, messageType);
-        amqpTemplate.convertAndSend(exchange, routingKey, payload);
-        log.info("publishMessage: Published to {} using routingKey {}. messageType: {}", exchange, routingKey, messageType);
+        rabbitTemplate.convertAndSend(exchange, routingKey, payload);
+        log.debug("publishMessage: Published to {} using routingKey {}. messageType: {}", exchange, routingKey, messageType);
 
         log.trace("publishMessage method ends. messageType={}", messageType);
     }
 
 
+    /**
+     * Publishes a message asynchronously to the exchange and routing key of its message type.
+     *
+     * @param payload     the message payload to be published
+     * @param messageType the type of the message, determining the target exchange and routing key
+     * @return a future completed when the broker confirms the message, or completed exceptionally
+     *         when it is still nacked after the last attempt
+     * @throws IllegalArgumentException if the message type is unsupported
+     */
+    public CompletableFuture<Void> publishMessageAsync(Object payload, MessageType messageType) {
+        Message message = rabbitTemplate.getMessageConverter().toMessage(payload, new MessageProperties());
+        return publishAsync(new OutgoingMessage(message, messageType));
+    }
+
+
+    /**
+     * Publishes already converted messages asynchronously on one channel, without waiting for
+     * confirms between them. Used by the outbox relay, which stores messages in their converted form.
+     *
+     * @param messages the messages to be published, with their message types
+     * @return one future per message, completed when the broker confirms that message
+     * @throws IllegalArgumentException if a message type is unsupported
+     */
+    public List<CompletableFuture<Void>> publishAllAsync(List<OutgoingMessage> messages) {
+        log.trace("publishAllAsync method begins. Messages: {}", messages.size());
+
+        List<CompletableFuture<Void>> confirms = rabbitTemplate.invoke(operations ->
+                messages.stream().map(this::publishAsync).toList());
+
+        log.trace("publishAllAsync method ends. Messages: {}", messages.size());
+        return confirms;
+    }
+
+
     /**
      * Publishes an event message to the event exchange and routing key.
      * The event queue is used to immediately notify of messages written to the queue.
@@ -72,20 +148,120 @@ public class RabbitMqMessagePublisher {
     public void publishEvent(Long saleId, String requestId){
         log.trace("publishEvent method begins. SaleId: {}, RequestId: {}", saleId, requestId);
 
-        amqpTemplate.convertAndSend(eventExchange, eventRoutingKey, saleId + "." + requestId);
-        log.info("publishEvent: Published to {} using routingKey {}. RequestId: {}, SaleId{}",
+        rabbitTemplate.convertAndSend(eventExchange, eventRoutingKey, saleId + "." + requestId);
+        log.debug("publishEvent: Published to {} using routingKey {}. RequestId: {}, SaleId{}",
                 eventExchange, eventRoutingKey, saleId, requestId);
 
         log.trace("publishEvent method ends. SaleId: {}, RequestId: {}", saleId, requestId);
     }
 
 
+    private CompletableFuture<Void> publishAsync(OutgoingMessage outgoingMessage) {
+        CompletableFuture<Void> confirmed = new CompletableFuture<>();
+        publishAsync(outgoingMessage, 1, confirmed);
+        return confirmed;
+    }
+
+
+    /**
+     * Publishes one attempt with correlation data. A permit is held from the publish until the confirm,
+     * so at most {@code maxInFlight} messages are unconfirmed at any time. Nacked or timed-out messages
+     * are published again from the task executor, not from the connection thread that delivers confirms.
+     */
+    private void publishAsync(OutgoingMessage outgoingMessage, int attempt, CompletableFuture<Void> confirmed) {
+        MessageType messageType = outgoingMessage.messageType();
+        try {
+            if (!inFlight.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                failedCounter.increment();
+                confirmed.completeExceptionally(new AmqpException(String.format(
+                        "Timed out waiting for one of %d in-flight publishes to be confirmed", maxInFlight)));
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            confirmed.completeExceptionally(e);
+            return;
+        }
+
+        long publishedAt = System.nanoTime();
+        CorrelationData correlationData = new CorrelationData(UUID.randomUUID().toString());
+        correlationData.getFuture().whenComplete((confirm, exception) -> {
+            inFlight.release();
+            confirmLatencyTimer.record(System.nanoTime() - publishedAt, TimeUnit.NANOSECONDS);
+
+            if (exception == null && confirm.isAck()) {
+                confirmed.complete(null);
+                return;
+            }
+            nackCounter.increment();
+            String reason = exception != null ? exception.getMessage() : confirm.getReason();
+            if (attempt < maxAttempts) {
+                log.warn("publishAsync: Message nacked, publishing again. messageType: {}, Attempt: {}, Reason: {}",
+                        messageType, attempt, reason);
+                executor.execute(() -> publishAsync(outgoingMessage, attempt + 1, confirmed));
+            } else {
+                failedCounter.increment();
+                log.error("publishAsync: Message nacked after {} attempts. messageType: {}, Reason: {}", attempt, messageType, reason);
+                confirmed.completeExceptionally(new AmqpException("Message was not confirmed by the broker: " + reason));
+            }
+        });
+
+        try {
+            rabbitTemplate.send(exchangeFor(messageType), routingKeyFor(messageType), outgoingMessage.message(), correlationData);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            failedCounter.increment();
+            confirmed.completeExceptionally(e);
+        }
+    }
+
+
+    private String exchangeFor(MessageType messageType) {
+        switch (messageType) {
+            case STOCK:
+            case STOCK_ADJUSTMENT:
+                return stockExchange;
+            case RECEIPT:
+                return receiptExchange;
+            case EVENT:
+                return eventExchange;
+            default:
+                throw new IllegalArgumentException("Unsupported message type: " + messageType);
+        }
+    }
+
+
+    private String routingKeyFor(MessageType messageType) {
+        switch (messageType) {
+            case STOCK:
+                return stockRoutingKey;
+            case STOCK_ADJUSTMENT:
+                return stockAdjustmentRoutingKey;
+            case RECEIPT:
+                return receiptRoutingKey;
+            case EVENT:
+                return eventRoutingKey;
+            default:
+                throw new IllegalArgumentException("Unsupported message type: " + messageType);
+        }
+    }
+
+
+    /**
+     * An already converted message together with the type that decides where it is published.
+     */
+    public record OutgoingMessage(Message message, MessageType messageType) {
+    }
+
+
     /**
      * Enumeration for message types.
      */
     public enum MessageType {
         STOCK,
-        RECEIPT
+        STOCK_ADJUSTMENT,
+        RECEIPT,
+        EVENT
     }
 }
 
@@ -6,10 +6,10 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
+import org.springframework.data.redis.listener.KeyExpirationEventMessageListener;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 @Configuration
-@EnableRedisRepositories
 public class RedisConfiguration {
 
     @Value("${redis.host.custom}")
@@ -18,6 +18,9 @@ public class RedisConfiguration {
     @Value("${redis.port.custom}")
     private int redisPort;
 
+    @Value("${bag.index.keyspace-notifications}")
+    private String keyspaceNotifications;
+
     @Bean
     public LettuceConnectionFactory lettuceConnectionFactory() {
         RedisStandaloneConfiguration redisStandaloneConfiguration = new RedisStandaloneConfiguration();
@@ -32,4 +35,23 @@ public class RedisConfiguration {
         template.setConnectionFactory(lettuceConnectionFactory());
         return template;
     }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer() {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(lettuceConnectionFactory());
+        return container;
+    }
+
+    /**
+     * Publishes Redis key expiry notifications as application events.
+     * If the server has keyspace notifications turned off, they are enabled with the configured flags;
+     * set the property to an empty value when the server does not allow CONFIG SET.
+     */
+    @Bean
+    public KeyExpirationEventMessageListener keyExpirationEventMessageListener(RedisMessageListenerContainer container) {
+        KeyExpirationEventMessageListener listener = new KeyExpirationEventMessageListener(container);
+        listener.setKeyspaceNotificationsConfigParameter(keyspaceNotifications);
+        return listener;
+    }
 }
@@ -0,0 +1,58 @@
+package com.saleservice.consumer;
+
+import com.saleservice.model.BagExpiredEvent;
+import com.saleservice.repository.BagRepository;
+import com.saleservice.service.StockReservationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisKeyExpiredEvent;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Consumer class for Redis key expiry notifications, and for {@link BagExpiredEvent} from the embedded bag store.
+ * When a bag expires, its ID is removed from the bag index so that listings do not have to skip it,
+ * and the stock it had reserved is released. Every instance receives the notification; releasing is idempotent.
+ * Notifications are not delivered while the service is down; bag listings remove any ID missed here.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BagExpirationConsumer {
+
+    private static final Pattern BAG_KEY = Pattern.compile("bag:(\\d+)");
+
+    private final BagRepository bagRepository;
+    private final StockReservationService stockReservationService;
+
+
+    @EventListener
+    public void consumeKeyExpiredEvent(RedisKeyExpiredEvent<?> event) {
+        String key = new String(event.getSource(), StandardCharsets.UTF_8);
+        Matcher matcher = BAG_KEY.matcher(key);
+        if (!matcher.matches()) {
+            return;
+        }
+        log.trace("consumeKeyExpiredEvent method begins. Key: {}", key);
+
+        Long bagId = Long.valueOf(matcher.group(1));
+        bagRepository.removeFromIndex(bagId);
+        stockReservationService.releaseAll(bagId);
+
+        log.trace("consumeKeyExpiredEvent method ends. Key: {}", key);
+    }
+
+
+    @EventListener
+    public void consumeBagExpiredEvent(BagExpiredEvent event) {
+        log.trace("consumeBagExpiredEvent method begins. BagId: {}", event.bagId());
+
+        stockReservationService.releaseAll(event.bagId());
+
+        log.trace("consumeBagExpiredEvent method ends. BagId: {}", event.bagId());
+    }
+}
@@ -0,0 +1,49 @@
+package com.saleservice.consumer;
+
+import com.saleservice.dto.CampaignEventMessage;
+import com.saleservice.service.CampaignService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.AsyncConsumerStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumer class for campaign change events broadcast by any sale-service instance.
+ * Every instance binds its own anonymous queue, so each active-campaign index is reloaded on every change.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CampaignEventConsumer {
+
+    static final String LISTENER_ID = "campaignEventListener";
+
+    private final CampaignService campaignService;
+
+
+    @RabbitListener(id = LISTENER_ID, queues = "#{campaignEventQueue.name}")
+    public void consumeCampaignEvent(CampaignEventMessage message) {
+        log.trace("consumeCampaignEvent method begins. CampaignId: {}", message.getCampaignId());
+
+        campaignService.refreshActiveCampaigns();
+
+        log.trace("consumeCampaignEvent method ends. CampaignId: {}", message.getCampaignId());
+    }
+
+
+    /**
+     * The anonymous queue is deleted when the broker connection is lost, together with the events sent meanwhile,
+     * so the index is reloaded whenever the consumer (re)starts on a new queue.
+     */
+    @EventListener
+    public void onConsumerStarted(AsyncConsumerStartedEvent event) {
+        if (event.getSource() instanceof AbstractMessageListenerContainer container
+                && LISTENER_ID.equals(container.getListenerId())) {
+            log.debug("onConsumerStarted: Campaign event consumer started, reloading the active campaign index");
+            campaignService.refreshActiveCampaigns();
+        }
+    }
+}
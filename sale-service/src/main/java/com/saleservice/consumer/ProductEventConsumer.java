@@ -0,0 +1,39 @@
+package com.saleservice.consumer;
+
+import com.saleservice.dto.ProductEventMessage;
+import com.saleservice.service.BarcodeFilterService;
+import com.saleservice.service.ProductCacheService;
+import com.saleservice.service.StockReservationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumer class for product change events broadcast by the product-service.
+ * Every sale-service instance binds its own anonymous queue, so each near-cache receives every event.
+ * A stock change caused by a sale also releases the stock held for the bag of that sale, since the cached stock now covers it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductEventConsumer {
+
+    private final ProductCacheService productCacheService;
+    private final BarcodeFilterService barcodeFilterService;
+    private final StockReservationService stockReservationService;
+
+
+    @RabbitListener(queues = "#{productEventQueue.name}")
+    public void consumeProductEvent(ProductEventMessage message) {
+        log.trace("consumeProductEvent method begins. Barcode: {}, EventType: {}", message.getBarcode(), message.getEventType());
+
+        productCacheService.handleProductEvent(message);
+        barcodeFilterService.handleProductEvent(message);
+        if (message.getEventType() == ProductEventMessage.EventType.STOCK_CHANGED && message.getBagId() != null) {
+            stockReservationService.releaseHeld(message.getBagId(), message.getBarcode());
+        }
+
+        log.trace("consumeProductEvent method ends. Barcode: {}, EventType: {}", message.getBarcode(), message.getEventType());
+    }
+}
@@ -1,15 +1,22 @@
 package com.saleservice.controller;
 
+import com.saleservice.dto.BagDeltaDto;
 import com.saleservice.dto.BagDto;
+import com.saleservice.dto.CursorPageDto;
+import com.saleservice.dto.ProductScanDto;
 import com.saleservice.service.BagService;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @Slf4j
 @RequiredArgsConstructor
 @RestController
@@ -32,6 +39,42 @@ public class BagController {
     }
 
 
+    @PostMapping(value = "/products", params = "delta=true")
+    public ResponseEntity<BagDeltaDto> addProductToBagDelta(@RequestParam(required = false) Long bagId,
+                                                            @RequestParam String barcode,
+                                                            @RequestParam @Positive(message = "Quantity must be positive.")
+                                                                int quantity) {
+        log.trace("addProductToBagDelta endpoint called with bagId: {}, barcode: {}, quantity: {}", bagId, barcode, quantity);
+
+        BagDeltaDto bagDeltaDto = bagService.addProductToBagDelta(bagId, barcode, quantity);
+        return ResponseEntity.ok(bagDeltaDto);
+    }
+
+
+    @PostMapping("/products/batch")
+    public ResponseEntity<BagDto> addProductsToBag(@RequestParam(required = false) Long bagId,
+                                                   @RequestBody
+                                                       @NotEmpty(message = "Scan list cannot be empty.")
+                                                       List<@Valid ProductScanDto> scans) {
+        log.trace("addProductsToBag endpoint called with bagId: {}, scan count: {}", bagId, scans.size());
+
+        BagDto bagDto = bagService.addProductsToBag(bagId, scans);
+        return ResponseEntity.ok(bagDto);
+    }
+
+
+    @PostMapping(value = "/products/batch", params = "delta=true")
+    public ResponseEntity<BagDeltaDto> addProductsToBagDelta(@RequestParam(required = false) Long bagId,
+                                                             @RequestBody
+                                                                 @NotEmpty(message = "Scan list cannot be empty.")
+                                                                 List<@Valid ProductScanDto> scans) {
+        log.trace("addProductsToBagDelta endpoint called with bagId: {}, scan count: {}", bagId, scans.size());
+
+        BagDeltaDto bagDeltaDto = bagService.addProductsToBagDelta(bagId, scans);
+        return ResponseEntity.ok(bagDeltaDto);
+    }
+
+
     @DeleteMapping("/products")
     public ResponseEntity<BagDto> removeProductFromBag(@RequestParam(defaultValue = "") Long bagId,
                                                        @RequestParam(defaultValue = "") String barcode,
@@ -45,6 +88,19 @@ public class BagController {
     }
 
 
+    @DeleteMapping(value = "/products", params = "delta=true")
+    public ResponseEntity<BagDeltaDto> removeProductFromBagDelta(@RequestParam(defaultValue = "") Long bagId,
+                                                                 @RequestParam(defaultValue = "") String barcode,
+                                                                 @RequestParam
+                                                                     @Positive(message = "Quantity must be positive.")
+                                                                     int quantity) {
+        log.trace("removeProductFromBagDelta endpoint called with bagId: {}, barcode: {}, quantity: {}", bagId, barcode, quantity);
+
+        BagDeltaDto bagDeltaDto = bagService.removeProductFromBagDelta(bagId, barcode, quantity);
+        return ResponseEntity.ok(bagDeltaDto);
+    }
+
+
     @DeleteMapping("/{bagId}/products")
     public ResponseEntity<BagDto> removeAllProductsInTheBag(@PathVariable Long bagId) {
         log.trace("removeAllProductsInTheBag endpoint called with bagId: {}", bagId);
@@ -63,12 +119,23 @@ public class BagController {
     }
 
 
+    @GetMapping(value = "/{bagId}", params = "knownVersion")
+    public ResponseEntity<BagDto> getBagIfChanged(@PathVariable Long bagId,
+                                                  @RequestParam long knownVersion) {
+        log.trace("getBagIfChanged endpoint called with bagId: {}, knownVersion: {}", bagId, knownVersion);
+
+        return bagService.getBagIfChanged(bagId, knownVersion)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+    }
+
+
     @GetMapping
-    public ResponseEntity<Page<BagDto>> getAllBags(@RequestParam(defaultValue = "1") int pageNumber,
-                                                   @RequestParam(defaultValue = "10") int pageSize) {
-        log.trace("getAllBags endpoint called with pageNumber: {}, pageSize: {}", pageNumber, pageSize);
+    public ResponseEntity<CursorPageDto<BagDto>> getAllBags(@RequestParam(defaultValue = "0") String cursor,
+                                                            @RequestParam(defaultValue = "10") int pageSize) {
+        log.trace("getAllBags endpoint called with cursor: {}, pageSize: {}", cursor, pageSize);
 
-        Page<BagDto> bagPage = bagService.getAllBags(pageNumber, pageSize);
+        CursorPageDto<BagDto> bagPage = bagService.getAllBags(cursor, pageSize);
         return ResponseEntity.ok().body(bagPage);
     }
 
@@ -82,6 +149,15 @@ public class BagController {
     }
 
 
+    @PostMapping("/{bagId}/campaign/best")
+    public ResponseEntity<BagDto> applyBestCampaignToBag(@PathVariable Long bagId) {
+        log.trace("applyBestCampaignToBag endpoint called with bagId: {}", bagId);
+
+        BagDto bagDto = bagService.applyBestCampaignToBag(bagId);
+        return ResponseEntity.ok(bagDto);
+    }
+
+
     @PostMapping("/{bagId}/campaign/{campaignId}")
     public ResponseEntity<BagDto> applyCampaignToBag(@PathVariable Long bagId,
                                                      @PathVariable Long campaignId) {
@@ -11,6 +11,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @Slf4j
 @RequiredArgsConstructor
 @RestController
@@ -69,6 +71,16 @@ public class CampaignController {
     }
 
 
+    @GetMapping("/active")
+    public ResponseEntity<List<CampaignResponseDto>> getActiveCampaigns() {
+        log.trace("getActiveCampaigns endpoint called");
+
+        List<CampaignResponseDto> campaigns = campaignService.getActiveCampaigns();
+
+        return ResponseEntity.ok().body(campaigns);
+    }
+
+
     @GetMapping("/{id}")
     public ResponseEntity<CampaignResponseDto> getCampaignById(@PathVariable Long id) {
         log.trace("getCampaignById endpoint called with id: {}", id);
@@ -3,6 +3,7 @@ package com.saleservice.controller;
 import com.saleservice.dto.CompleteSale;
 import com.saleservice.dto.ReceiptMessage;
 import com.saleservice.model.PaymentMethod;
+import com.saleservice.service.IdempotencyService;
 import com.saleservice.service.SaleService;
 import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
@@ -20,14 +21,24 @@ import java.math.BigDecimal;
 public class SaleController {
 
     private final SaleService saleService;
+    private final IdempotencyService idempotencyService;
 
 
     @PostMapping("/{bagId}")
     public ResponseEntity<ReceiptMessage> completeSale(@PathVariable Long bagId,
                                                        @RequestBody CompleteSale completeSale,
-                                                       @RequestHeader("Name") String cashierName) {
-        log.trace("completeSale endpoint called with bagId: {}, amountReceived: {}, paymentMethod: {}, cashierName: {}",
-                bagId, completeSale.getAmountReceived(), completeSale.getPaymentMethod(), cashierName);
+                                                       @RequestHeader("Name") String cashierName,
+                                                       @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        log.trace("completeSale endpoint called with bagId: {}, amountReceived: {}, paymentMethod: {}, cashierName: {}, idempotencyKey: {}",
+                bagId, completeSale.getAmountReceived(), completeSale.getPaymentMethod(), cashierName, idempotencyKey);
+
+        if (idempotencyKey != null) {
+            return ResponseEntity.ok(idempotencyService.completeSale(idempotencyKey,
+                    bagId,
+                    completeSale.getAmountReceived(),
+                    completeSale.getPaymentMethod(),
+                    cashierName));
+        }
 
         ReceiptMessage message = saleService.completeSale(  bagId,
                 completeSale.getAmountReceived(),
@@ -0,0 +1,35 @@
+package com.saleservice.dto;
+
+import com.saleservice.model.DiscountType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * The result of a bag change, holding only the lines that changed and the new totals.
+ * A terminal applies it to its copy of the bag if {@code version} is one more than the version it holds,
+ * otherwise its copy is stale and the full bag has to be fetched again.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BagDeltaDto {
+
+    private Long id;
+    private long version;
+
+    private BigDecimal totalPrice;
+    private Long campaignId;
+    private String campaignName;
+    private DiscountType discountType;
+    private double discountValue;
+    private BigDecimal discountedPrice;
+    private boolean autoCampaign;
+
+    private int itemCount;
+    private List<BagItemDto> changedItems;
+    private List<String> removedBarcodes;
+}
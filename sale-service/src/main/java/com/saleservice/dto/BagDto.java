@@ -21,6 +21,9 @@ public class BagDto {
     private DiscountType discountType;
     private double discountValue;
     private BigDecimal discountedPrice;
+    private boolean autoCampaign;
 
     private List<BagItemDto> items;
+
+    private long version;
 }
@@ -14,4 +14,9 @@ public class BagItemDto {
     private int quantity;
     private BigDecimal price;
     private String name;
+    private boolean verified = true;
+
+    public BagItemDto(String barcode, int quantity, BigDecimal price, String name) {
+        this(barcode, quantity, price, name, true);
+    }
 }
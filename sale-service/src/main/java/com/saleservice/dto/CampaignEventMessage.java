@@ -7,9 +7,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
-public class StockUpdateMessage {
+public class CampaignEventMessage {
 
-    private String barcode;
-    private int stock;
-    private int retryCount;
+    private Long campaignId;
 }
@@ -0,0 +1,17 @@
+package com.saleservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A sale as written to the sale journal: its receipt and the bag it was checked out from.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class JournaledSale {
+
+    private Long bagId;
+    private ReceiptMessage receipt;
+}
@@ -0,0 +1,19 @@
+package com.saleservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ProductScanDto {
+
+    @NotBlank(message = "Barcode cannot be empty or null.")
+    private String barcode;
+
+    @Positive(message = "Quantity must be positive.")
+    private int quantity;
+}
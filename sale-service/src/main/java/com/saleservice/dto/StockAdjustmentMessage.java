@@ -0,0 +1,32 @@
+package com.saleservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Stock changes of every line item of a sale, sent as a single message.
+ * The bag ID is set for completed sales, so that the stock change events of the product-service can release
+ * the reservations of that bag; it is null for cancellations.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class StockAdjustmentMessage {
+
+    private Long saleId;
+    private Long bagId;
+    private List<Item> items;
+
+
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Data
+    public static class Item {
+
+        private String barcode;
+        private int delta;
+    }
+}
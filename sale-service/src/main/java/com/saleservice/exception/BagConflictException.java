@@ -0,0 +1,5 @@
+package com.saleservice.exception;
+
+public class BagConflictException extends RuntimeException {
+    public BagConflictException(String message){ super (message); }
+}
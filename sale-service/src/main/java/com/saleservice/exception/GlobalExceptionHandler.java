@@ -25,7 +25,9 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(value = { CampaignAlreadyExistException.class,
                                 CampaignAlreadyDeletedException.class,
-                                SaleAlreadyCancelledException.class})
+                                SaleAlreadyCancelledException.class,
+                                BagConflictException.class,
+                                IdempotencyKeyInProgressException.class})
     public ResponseEntity<Object> handleConflictExceptions(RuntimeException e) {
         return buildResponseEntity(e, HttpStatus.CONFLICT);
     }
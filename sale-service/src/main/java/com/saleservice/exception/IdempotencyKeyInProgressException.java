@@ -0,0 +1,5 @@
+package com.saleservice.exception;
+
+public class IdempotencyKeyInProgressException extends RuntimeException {
+    public IdempotencyKeyInProgressException(String message){ super (message); }
+}
@@ -1,44 +1,114 @@
 package com.saleservice.model;
 
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
-import jakarta.persistence.Id;
 import lombok.*;
-import org.springframework.data.redis.core.RedisHash;
-import org.springframework.data.redis.core.TimeToLive;
 import java.io.Serializable;
-import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
-@RedisHash("bag")
 public class Bag implements Serializable {
 
-    @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    public static final long DEFAULT_EXPIRATION_SECONDS = 1800L;
+
     private Long id;
-    private BigDecimal totalPrice;
+    private Money totalPrice = Money.ZERO;
 
     private Long campaignId;
     private String campaignName;
     private DiscountType discountType;
     private double discountValue;
-    private BigDecimal discountedPrice;
+    private Money discountedPrice;
+
+    /**
+     * When set, the best active campaign is selected again on every change instead of keeping {@link #campaignId}.
+     */
+    private boolean autoCampaign;
+
+    /**
+     * Line items keyed by barcode, in the order they were first added.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<String, BagItem> items = new LinkedHashMap<>();
 
-    private List<BagItem> items;
+    private Long expiration = DEFAULT_EXPIRATION_SECONDS;
 
-    @TimeToLive
-    private Long expiration = 1800L;
+    private long version;
 
+    /**
+     * The change being saved, recorded in the bag's operation log when event log storage is enabled.
+     */
+    private transient BagOperation operation;
 
+    /**
+     * Field values last written to (or read from) the store, used by the repository to write only what changed.
+     */
+    private transient Map<String, String> persistedFields = new HashMap<>();
+    private transient Map<String, String> persistedItems = new HashMap<>();
+
+
+    /**
+     * Returns a read-only snapshot of the line items in the order they were added.
+     * Use {@link #addItem}, {@link #removeItem} and {@link #clearItems} to change them.
+     */
     public List<BagItem> getItems() {
-        if (this.items == null) {
-            this.items = new ArrayList<>();
+        return List.copyOf(this.items.values());
+    }
+
+
+    public void setItems(List<BagItem> items) {
+        this.items.clear();
+        items.forEach(this::addItem);
+    }
+
+
+    public BagItem getItem(String barcode) {
+        return this.items.get(barcode);
+    }
+
+
+    public void addItem(BagItem item) {
+        this.items.put(item.getBarcode(), item);
+    }
+
+
+    public BagItem removeItem(String barcode) {
+        return this.items.remove(barcode);
+    }
+
+
+    public void clearItems() {
+        this.items.clear();
+    }
+
+
+    /**
+     * Returns a deep copy of the bag, including the values last written to the store, so that changes to the copy
+     * do not affect the original.
+     */
+    public Bag copy() {
+        Bag copy = new Bag();
+        copy.id = this.id;
+        copy.totalPrice = this.totalPrice;
+        copy.campaignId = this.campaignId;
+        copy.campaignName = this.campaignName;
+        copy.discountType = this.discountType;
+        copy.discountValue = this.discountValue;
+        copy.discountedPrice = this.discountedPrice;
+        copy.autoCampaign = this.autoCampaign;
+        copy.expiration = this.expiration;
+        copy.version = this.version;
+        for (BagItem item : this.items.values()) {
+            BagItem itemCopy = new BagItem(item.getBarcode(), item.getQuantity(), item.getPrice(), item.getName());
+            itemCopy.setVerified(item.isVerified());
+            copy.items.put(itemCopy.getBarcode(), itemCopy);
         }
-        return this.items;
+        copy.persistedFields = new HashMap<>(this.persistedFields);
+        copy.persistedItems = new HashMap<>(this.persistedItems);
+        return copy;
     }
 }
@@ -0,0 +1,7 @@
+package com.saleservice.model;
+
+/**
+ * Published when a bag expires in a bag store that does not report expiry through Redis key notifications.
+ */
+public record BagExpiredEvent(Long bagId) {
+}
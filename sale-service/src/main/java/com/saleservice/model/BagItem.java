@@ -1,20 +1,29 @@
 package com.saleservice.model;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
-
 
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 public class BagItem {
     private String barcode;
     private int quantity;
-    private BigDecimal price;
+    private Money price;
     private String name;
+
+    /**
+     * False for items priced from the offline catalog snapshot while the product-service was unavailable;
+     * their price and stock were not confirmed by the product-service.
+     */
+    private boolean verified = true;
+
+    public BagItem(String barcode, int quantity, Money price, String name) {
+        this.barcode = barcode;
+        this.quantity = quantity;
+        this.price = price;
+        this.name = name;
+    }
 }
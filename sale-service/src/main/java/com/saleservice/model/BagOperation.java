@@ -0,0 +1,17 @@
+package com.saleservice.model;
+
+/**
+ * The kind of change a bag save records. In the event log storage mode every save is appended to the bag's
+ * operation log under this name, so reporting can tell scans, removals and campaign changes apart.
+ */
+public enum BagOperation {
+    UPDATE,
+    SCAN,
+    REMOVE,
+    CLEAR,
+    CAMPAIGN,
+    RESTORE,
+    PARK,
+    CHECKOUT,
+    DELETE;
+}
@@ -0,0 +1,9 @@
+package com.saleservice.model;
+
+import java.time.Instant;
+
+/**
+ * Published when a new offline catalog snapshot has been downloaded and mapped.
+ */
+public record CatalogSnapshotRefreshedEvent(Instant createdAt, int size) {
+}
@@ -0,0 +1,25 @@
+package com.saleservice.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.saleservice.dto.ReceiptMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * State of an idempotency key as stored in Redis.
+ * The receipt is null while the first request with the key is still being processed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+    private String owner;
+    private Long bagId;
+    private ReceiptMessage receipt;
+
+    @JsonIgnore
+    public boolean isCompleted() {
+        return receipt != null;
+    }
+}
@@ -0,0 +1,127 @@
+package com.saleservice.model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable amount of money held as a whole number of minor units (kuruş, 1/100 of a lira).
+ * Used on the bag pricing path, where every scan adjusts totals, so that arithmetic is exact
+ * and does not allocate a {@link BigDecimal} per line item.
+ * @author Emir Aktaş
+ */
+public final class Money implements Comparable<Money>, Serializable {
+
+    public static final Money ZERO = new Money(0);
+
+    private static final int SCALE = 2;
+    private static final long MINOR_UNITS_PER_UNIT = 100;
+    private static final long BASIS_POINTS_PER_UNIT = 10_000;
+
+    private final long minorUnits;
+
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+
+    /**
+     * Converts a decimal amount, rounding half up to whole kuruş.
+     */
+    public static Money of(BigDecimal amount) {
+        return ofMinor(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+
+    /**
+     * Converts a decimal amount held as a double, such as a fixed campaign discount, rounding to whole kuruş.
+     */
+    public static Money of(double amount) {
+        return ofMinor(Math.round(amount * MINOR_UNITS_PER_UNIT));
+    }
+
+
+    public static Money parse(String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+
+    public Money plus(Money other) {
+        return other.minorUnits == 0 ? this : ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+
+    public Money minus(Money other) {
+        return other.minorUnits == 0 ? this : ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+
+    public Money times(int quantity) {
+        return quantity == 1 ? this : ofMinor(Math.multiplyExact(minorUnits, quantity));
+    }
+
+
+    /**
+     * Returns the given share of this amount, rounded down to whole kuruş.
+     *
+     * @param basisPoints the share in hundredths of a percent, e.g. 1250 for 12.5%
+     */
+    public Money percentage(long basisPoints) {
+        return ofMinor(Math.floorDiv(Math.multiplyExact(minorUnits, basisPoints), BASIS_POINTS_PER_UNIT));
+    }
+
+
+    public Money min(Money other) {
+        return compareTo(other) <= 0 ? this : other;
+    }
+
+
+    public Money max(Money other) {
+        return compareTo(other) >= 0 ? this : other;
+    }
+
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || (other instanceof Money money && minorUnits == money.minorUnits);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
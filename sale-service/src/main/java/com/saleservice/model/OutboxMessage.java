@@ -0,0 +1,45 @@
+package com.saleservice.model;
+
+import com.saleservice.config.RabbitMqMessagePublisher.MessageType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A message written in the same transaction as the sale it belongs to and relayed to RabbitMQ afterwards.
+ * The payload is kept in the form produced by the JSON message converter, so the relay sends exactly
+ * what a direct publish would have sent.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "outbox_messages", indexes = {
+        @Index(name = "idx_outbox_messages_sent_id", columnList = "sent, id"),
+        @Index(name = "idx_outbox_messages_sent_date", columnList = "sentDate")})
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_message_seq_gen")
+    @SequenceGenerator(name = "outbox_message_seq_gen", sequenceName = "outbox_messages_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private MessageType messageType;
+
+    @Column(nullable = false)
+    private String payloadType;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Column(nullable = false)
+    private LocalDateTime createdDate;
+    private LocalDateTime sentDate;
+
+    private boolean sent;
+}
@@ -0,0 +1,33 @@
+package com.saleservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A bag that was idle long enough to be moved out of Redis. The bag is kept in the compact form written by
+ * {@link com.saleservice.repository.BagCodec} and moved back to Redis the next time it is used.
+ * It still expires when it would have expired in Redis.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "parked_bags", indexes = @Index(name = "idx_parked_bags_expiration_date", columnList = "expirationDate"))
+public class ParkedBag {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private byte[] data;
+
+    @Column(nullable = false)
+    private LocalDateTime parkedDate;
+
+    @Column(nullable = false)
+    private LocalDateTime expirationDate;
+}
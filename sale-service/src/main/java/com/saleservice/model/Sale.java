@@ -17,8 +17,14 @@ import java.util.List;
 @Table(name = "sales")
 public class Sale {
 
+    /**
+     * Number of IDs Hibernate takes from {@code sales_seq} at a time; each sequence value is the highest ID of its block.
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sale_seq_gen")
+    @SequenceGenerator(name = "sale_seq_gen", sequenceName = "sales_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     private String cashierName;
 
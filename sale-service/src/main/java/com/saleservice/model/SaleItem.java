@@ -12,8 +12,14 @@ import java.math.BigDecimal;
 @Entity
 @Table(name = "sale_items")
 public class SaleItem {
+    /**
+     * Number of IDs Hibernate takes from {@code sale_items_seq} at a time; each sequence value is the highest ID of its block.
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sale_item_seq_gen")
+    @SequenceGenerator(name = "sale_item_seq_gen", sequenceName = "sale_items_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
@@ -0,0 +1,261 @@
+package com.saleservice.repository;
+
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagItem;
+import com.saleservice.model.DiscountType;
+import com.saleservice.model.Money;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes a bag as one compact binary value, used by {@link RedisBinaryBagRepository}.
+ * <p>
+ * Format version 1: a format version byte, a varint of flags (1 auto campaign, 2 campaign, 4 discount type,
+ * 8 discount value, 16 discounted price), the total price, then the optional campaign id and name, discount type
+ * ordinal, discount value (8 byte double) and discounted price as announced by the flags, then the item count and
+ * the items in the order they were added. Each item is its barcode, a varint of quantity shifted left by one with
+ * the low bit set for unverified items, its price and its name.
+ * Prices are zigzag varints of kuruş, strings are a varint of UTF-8 length plus one (zero for null) and the bytes.
+ * Decoding checks the version byte, so later formats can be added next to this one.
+ * <p>
+ * Decoded product names are interned, so the many bags holding the same products share one string per name.
+ * @author Emir Aktaş
+ */
+public final class BagCodec {
+
+    static final byte FORMAT_VERSION = 1;
+
+    private static final int FLAG_AUTO_CAMPAIGN = 1;
+    private static final int FLAG_CAMPAIGN = 2;
+    private static final int FLAG_DISCOUNT_TYPE = 4;
+    private static final int FLAG_DISCOUNT_VALUE = 8;
+    private static final int FLAG_DISCOUNTED_PRICE = 16;
+
+    private static final int MAX_INTERNED_NAMES = 50_000;
+    private static final Map<String, String> NAMES = new ConcurrentHashMap<>();
+    private static final DiscountType[] DISCOUNT_TYPES = DiscountType.values();
+
+
+    private BagCodec() {
+    }
+
+
+    public static byte[] encode(Bag bag) {
+        Writer out = new Writer(32 + bag.getItems().size() * 48);
+        out.writeByte(FORMAT_VERSION);
+
+        int flags = (bag.isAutoCampaign() ? FLAG_AUTO_CAMPAIGN : 0)
+                | (bag.getCampaignId() != null ? FLAG_CAMPAIGN : 0)
+                | (bag.getDiscountType() != null ? FLAG_DISCOUNT_TYPE : 0)
+                | (bag.getDiscountValue() != 0 ? FLAG_DISCOUNT_VALUE : 0)
+                | (bag.getDiscountedPrice() != null ? FLAG_DISCOUNTED_PRICE : 0);
+        out.writeVarLong(flags);
+        out.writeMoney(bag.getTotalPrice());
+        if (bag.getCampaignId() != null) {
+            out.writeVarLong(bag.getCampaignId());
+            out.writeString(bag.getCampaignName());
+        }
+        if (bag.getDiscountType() != null) {
+            out.writeByte(bag.getDiscountType().ordinal());
+        }
+        if (bag.getDiscountValue() != 0) {
+            out.writeLong(Double.doubleToLongBits(bag.getDiscountValue()));
+        }
+        if (bag.getDiscountedPrice() != null) {
+            out.writeMoney(bag.getDiscountedPrice());
+        }
+
+        out.writeVarLong(bag.getItems().size());
+        for (BagItem item : bag.getItems()) {
+            out.writeString(item.getBarcode());
+            out.writeVarLong(((long) item.getQuantity() << 1) | (item.isVerified() ? 0 : 1));
+            out.writeMoney(item.getPrice());
+            out.writeString(item.getName());
+        }
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Decodes a bag. The ID and version are not part of the value and have to be set by the caller.
+     *
+     * @throws IllegalStateException if the value was written in an unknown format version
+     */
+    public static Bag decode(byte[] data) {
+        Reader in = new Reader(data);
+        int formatVersion = in.readByte();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IllegalStateException("Unknown bag format version: " + formatVersion);
+        }
+
+        Bag bag = new Bag();
+        int flags = (int) in.readVarLong();
+        bag.setAutoCampaign((flags & FLAG_AUTO_CAMPAIGN) != 0);
+        bag.setTotalPrice(in.readMoney());
+        if ((flags & FLAG_CAMPAIGN) != 0) {
+            bag.setCampaignId(in.readVarLong());
+            bag.setCampaignName(in.readString());
+        }
+        if ((flags & FLAG_DISCOUNT_TYPE) != 0) {
+            bag.setDiscountType(DISCOUNT_TYPES[in.readByte()]);
+        }
+        if ((flags & FLAG_DISCOUNT_VALUE) != 0) {
+            bag.setDiscountValue(Double.longBitsToDouble(in.readLong()));
+        }
+        if ((flags & FLAG_DISCOUNTED_PRICE) != 0) {
+            bag.setDiscountedPrice(in.readMoney());
+        }
+
+        long itemCount = in.readVarLong();
+        for (long i = 0; i < itemCount; i++) {
+            String barcode = in.readString();
+            long quantityAndFlag = in.readVarLong();
+            BagItem item = new BagItem(barcode, (int) (quantityAndFlag >>> 1), in.readMoney(), intern(in.readString()));
+            item.setVerified((quantityAndFlag & 1) == 0);
+            bag.addItem(item);
+        }
+        return bag;
+    }
+
+
+
+    private static String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String interned = NAMES.get(name);
+        if (interned != null) {
+            return interned;
+        }
+        if (NAMES.size() < MAX_INTERNED_NAMES) {
+            interned = NAMES.putIfAbsent(name, name);
+        }
+        return interned != null ? interned : name;
+    }
+
+
+    private static final class Writer {
+
+        private byte[] buffer;
+        private int position;
+
+
+        Writer(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+
+        void writeLong(long value) {
+            ensureCapacity(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+
+        void writeMoney(Money money) {
+            long minorUnits = money.getMinorUnits();
+            writeVarLong((minorUnits << 1) ^ (minorUnits >> 63));
+        }
+
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+
+        private void ensureCapacity(int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+    }
+
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int position;
+
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+
+        int readByte() {
+            return buffer[position++] & 0xFF;
+        }
+
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed varint in bag value");
+        }
+
+
+        Money readMoney() {
+            long zigzag = readVarLong();
+            return Money.ofMinor((zigzag >>> 1) ^ -(zigzag & 1));
+        }
+
+
+        String readString() {
+            int length = (int) readVarLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
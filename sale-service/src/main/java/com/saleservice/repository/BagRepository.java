@@ -1,9 +1,102 @@
 package com.saleservice.repository;
 
+import com.saleservice.dto.CursorPageDto;
+import com.saleservice.exception.BagConflictException;
 import com.saleservice.model.Bag;
-import org.springframework.data.repository.CrudRepository;
-import org.springframework.stereotype.Repository;
 
-@Repository
-public interface BagRepository extends CrudRepository<Bag, Long> {
+import java.util.Optional;
+
+/**
+ * Repository interface for storing shopping bags in Redis.
+ * Implementations are expected to write only the fields and line items that changed since the bag was loaded.
+ * @author Emir Aktaş
+ */
+public interface BagRepository {
+
+    /**
+     * Retrieves a bag by its ID.
+     *
+     * @param id the ID of the bag
+     * @return the bag, or an empty optional if it does not exist or has expired
+     */
+    Optional<Bag> findById(Long id);
+
+
+    /**
+     * Retrieves a bag by its ID from the shared store, bypassing any copy kept in memory.
+     * Used by reads that are not followed by a version-checked save.
+     *
+     * @param id the ID of the bag
+     * @return the bag, or an empty optional if it does not exist or has expired
+     */
+    default Optional<Bag> findLatestById(Long id) {
+        return findById(id);
+    }
+
+
+    /**
+     * Allocates a new bag ID, for callers that need the ID before the bag is first saved.
+     *
+     * @return the new bag ID
+     */
+    Long nextId();
+
+
+    /**
+     * Saves a bag, assigning a new ID if it has none, and refreshes its time to live.
+     * The save only succeeds if the stored version still matches the version of the given bag;
+     * on success the bag's version is incremented.
+     *
+     * @param bag the bag to be saved
+     * @return the saved bag
+     * @throws BagConflictException if the bag was changed by someone else since it was loaded
+     */
+    Bag save(Bag bag);
+
+
+    /**
+     * Deletes a bag and all of its line items.
+     *
+     * @param bag the bag to be deleted
+     */
+    void delete(Bag bag);
+
+
+    /**
+     * Reads and deletes a bag in a single atomic step, so that nothing can change the bag in between.
+     * A bag without line items is returned but not deleted.
+     *
+     * @param id the ID of the bag
+     * @return the bag as it was before it was deleted, or an empty optional if it does not exist or has expired
+     */
+    Optional<Bag> take(Long id);
+
+
+    /**
+     * Writes back a bag that was removed with {@link #take}, with a fresh version and time to live.
+     *
+     * @param bag the bag to be restored
+     * @throws BagConflictException if a bag with the same ID has been saved since it was taken
+     */
+    void restore(Bag bag);
+
+
+    /**
+     * Retrieves one page of bags by scanning the bag index from the given cursor.
+     * Ids of bags that have already expired are skipped and removed from the index.
+     *
+     * @param cursor the cursor returned with the previous page, or "0" for the first page
+     * @param count  the number of bags to fetch; like the Redis COUNT option this is a hint, not an exact limit
+     * @return the page of bags and the cursor of the next page
+     */
+    CursorPageDto<Bag> findPage(String cursor, int count);
+
+
+    /**
+     * Removes a bag ID from the bag index without touching the bag itself.
+     * Used to clean up the index after a bag has expired.
+     *
+     * @param id the ID of the bag
+     */
+    void removeFromIndex(Long id);
 }
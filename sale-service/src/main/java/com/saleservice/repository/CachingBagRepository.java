@@ -0,0 +1,170 @@
+package com.saleservice.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.saleservice.dto.CursorPageDto;
+import com.saleservice.model.Bag;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link BagRepository} that keeps the bags this instance works on in memory and writes every change through to
+ * the store underneath it. The api-gateway routes all requests for a bag to the same instance, so repeated scans
+ * on a bag are served from memory and cost one Redis round trip for the save instead of two.
+ * <p>
+ * A cached bag is never trusted blindly: saves are still compare-and-set on the bag version, so a save from a stale
+ * copy fails, the copy is dropped and the update is retried on the bag read from Redis. When the gateway's set of
+ * instances changes, it sends a new route epoch with the requests and the whole cache is dropped, because bags
+ * owned by this instance may have been changed elsewhere in the meantime. The epoch only reflects the current set of
+ * instances, so an instance that leaves and rejoins the same set sees an epoch it already knows and keeps its
+ * cache; updates are therefore never rejected on a cached copy alone, but on the bag read with {@link #findLatestById}.
+ * Reads that are returned as they are, without a save, use {@link #findLatestById} and always go to Redis.
+ * Enabled with {@code bag.local-cache.enabled=true}.
+ * @author Emir Aktaş
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "bag.local-cache.enabled", havingValue = "true")
+public class CachingBagRepository implements BagRepository {
+
+    private final BagRepository delegate;
+    private final Cache<Long, Bag> cache;
+    private final AtomicReference<String> routeEpoch = new AtomicReference<>();
+
+    private final Counter invalidationCounter;
+
+
+    public CachingBagRepository(RedisBagRepository redisBagRepository,
+                                ObjectProvider<TieredBagRepository> tieredBagRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${bag.local-cache.maximum-size}") long maximumSize,
+                                @Value("${bag.local-cache.expire-after-access}") Duration expireAfterAccess) {
+        BagRepository tiered = tieredBagRepository.getIfAvailable();
+        this.delegate = tiered != null ? tiered : redisBagRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "bagCache");
+        this.invalidationCounter = Counter.builder("bag.local-cache.invalidations")
+                .description("Times the local bag cache was dropped because the gateway's route epoch changed")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    public Optional<Bag> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        Bag cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached.copy());
+        }
+
+        Optional<Bag> bag = delegate.findById(id);
+        bag.ifPresent(found -> cache.put(id, found.copy()));
+        return bag;
+    }
+
+
+    @Override
+    public Optional<Bag> findLatestById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        Optional<Bag> bag = delegate.findById(id);
+        bag.ifPresentOrElse(found -> cache.put(id, found.copy()), () -> cache.invalidate(id));
+        return bag;
+    }
+
+
+    @Override
+    public Long nextId() {
+        return delegate.nextId();
+    }
+
+
+    @Override
+    public Bag save(Bag bag) {
+        Bag saved;
+        try {
+            saved = delegate.save(bag);
+        } catch (RuntimeException e) {
+            if (bag.getId() != null) {
+                cache.invalidate(bag.getId());
+            }
+            throw e;
+        }
+        cache.put(saved.getId(), saved.copy());
+        return saved;
+    }
+
+
+    @Override
+    public void delete(Bag bag) {
+        cache.invalidate(bag.getId());
+        delegate.delete(bag);
+    }
+
+
+    @Override
+    public Optional<Bag> take(Long id) {
+        cache.invalidate(id);
+        return delegate.take(id);
+    }
+
+
+    @Override
+    public void restore(Bag bag) {
+        cache.invalidate(bag.getId());
+        delegate.restore(bag);
+    }
+
+
+    @Override
+    public CursorPageDto<Bag> findPage(String cursor, int count) {
+        return delegate.findPage(cursor, count);
+    }
+
+
+    @Override
+    public void removeFromIndex(Long id) {
+        cache.invalidate(id);
+        delegate.removeFromIndex(id);
+    }
+
+
+    /**
+     * Drops every cached bag if the route epoch sent by the api-gateway differs from the last one seen.
+     *
+     * @param epoch the route epoch of the current request, or null if the request did not come through the gateway
+     */
+    public void onRouteEpoch(String epoch) {
+        if (epoch == null) {
+            return;
+        }
+
+        String previous = routeEpoch.getAndSet(epoch);
+        if (!Objects.equals(previous, epoch)) {
+            cache.invalidateAll();
+            invalidationCounter.increment();
+            log.info("onRouteEpoch: Gateway routes changed, local bag cache dropped. Epoch: {} -> {}", previous, epoch);
+        }
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,4 +18,5 @@ public interface CampaignRepository extends JpaRepository<Campaign, Long> {
 
     Page<Campaign> findAll(Pageable pageable);
     Page<Campaign> findAllByDeletedFalse(Pageable pageable);
+    List<Campaign> findAllByDeletedFalseAndEndDateAfter(LocalDateTime dateTime);
 }
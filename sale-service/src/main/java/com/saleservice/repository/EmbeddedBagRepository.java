@@ -0,0 +1,387 @@
+package com.saleservice.repository;
+
+import com.saleservice.dto.CursorPageDto;
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagExpiredEvent;
+import com.saleservice.model.BagOperation;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded implementation of {@link BagRepository} for stores that run the whole stack on one machine, enabled
+ * with {@code bag.storage.mode=embedded} (the {@code embedded} profile). Bags are kept in a memory-mapped file
+ * outside the Java heap, in the form written by {@link BagCodec}, so a scan costs no network round trip and the
+ * bags survive a restart of the process.
+ * <p>
+ * The file is a header (magic number, format version, bag ID sequence) followed by a log of records. Each record
+ * holds its length, the bag ID, version, expiry time, a CRC32 and the encoded bag; a record without a bag marks a
+ * deletion. Only the offset of the latest record per bag is held on the heap. On start the log is read back up to
+ * the first incomplete record. When the file is full, the latest records are copied into a new file which then
+ * replaces the old one.
+ * <p>
+ * Saves are compare-and-set on the version like in the Redis modes. Expired bags are no longer returned and are
+ * removed by a periodic sweep, which publishes a {@link BagExpiredEvent} for each of them.
+ * @author Emir Aktaş
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "bag.storage.mode", havingValue = "embedded")
+public class EmbeddedBagRepository implements BagRepository {
+
+    private static final int MAGIC = 0x42414753;
+    private static final int FORMAT_VERSION = 1;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Record length (payload length plus one, zero marks the end of the log), ID, version, expiry time, CRC32.
+     */
+    private static final int RECORD_HEADER_SIZE = 4 + 8 + 8 + 8 + 4;
+    private static final int END_MARKER_SIZE = 4;
+
+    private final Path path;
+    private final int capacity;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Clock clock;
+
+    private final NavigableMap<Long, Entry> entries = new TreeMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+
+
+    @Autowired
+    public EmbeddedBagRepository(@Value("${bag.embedded.path}") Path path,
+                                 @Value("${bag.embedded.capacity}") DataSize capacity,
+                                 ApplicationEventPublisher eventPublisher) {
+        this(path, capacity, eventPublisher, Clock.systemUTC());
+    }
+
+
+    EmbeddedBagRepository(Path path, DataSize capacity, ApplicationEventPublisher eventPublisher, Clock clock) {
+        this.path = path;
+        this.capacity = Math.toIntExact(capacity.toBytes());
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+        open();
+    }
+
+
+    @Override
+    public synchronized Optional<Bag> findById(Long id) {
+        log.trace("findById method begins. BagId: {}", id);
+
+        if (id == null) {
+            return Optional.empty();
+        }
+        Optional<Bag> bag = liveEntry(id).map(entry -> toBag(id, entry));
+
+        log.trace("findById method ends. BagId: {}, Found: {}", id, bag.isPresent());
+        return bag;
+    }
+
+
+    @Override
+    public synchronized Long nextId() {
+        long id = buffer.getLong(SEQUENCE_OFFSET) + 1;
+        buffer.putLong(SEQUENCE_OFFSET, id);
+        return id;
+    }
+
+
+    @Override
+    public synchronized Bag save(Bag bag) {
+        log.trace("save method begins. BagId: {}", bag.getId());
+
+        if (bag.getId() == null) {
+            bag.setId(nextId());
+        }
+        Long id = bag.getId();
+        long currentVersion = liveEntry(id).map(Entry::version).orElse(0L);
+        if (bag.getVersion() != currentVersion) {
+            throw RedisBagRepository.concurrentModification(bag);
+        }
+
+        long ttl = RedisBagRepository.ttlOf(bag);
+        long expiresAt = ttl > 0 ? clock.millis() + ttl * 1000 : Long.MAX_VALUE;
+        append(id, currentVersion + 1, expiresAt, BagCodec.encode(bag));
+        bag.setVersion(currentVersion + 1);
+
+        log.trace("save method ends. BagId: {}", id);
+        return bag;
+    }
+
+
+    @Override
+    public synchronized void delete(Bag bag) {
+        log.trace("delete method begins. BagId: {}", bag.getId());
+
+        if (entries.containsKey(bag.getId())) {
+            append(bag.getId(), 0, 0, null);
+        }
+
+        log.trace("delete method ends. BagId: {}", bag.getId());
+    }
+
+
+    @Override
+    public synchronized Optional<Bag> take(Long id) {
+        log.trace("take method begins. BagId: {}", id);
+
+        Optional<Bag> bag = liveEntry(id).map(entry -> toBag(id, entry));
+        if (bag.isPresent() && !bag.get().getItems().isEmpty()) {
+            append(id, 0, 0, null);
+        }
+
+        log.trace("take method ends. BagId: {}, Found: {}", id, bag.isPresent());
+        return bag;
+    }
+
+
+    @Override
+    public synchronized void restore(Bag bag) {
+        log.trace("restore method begins. BagId: {}", bag.getId());
+
+        bag.setOperation(BagOperation.RESTORE);
+        bag.setVersion(0);
+        bag.setPersistedFields(new HashMap<>());
+        bag.setPersistedItems(new HashMap<>());
+        save(bag);
+
+        log.trace("restore method ends. BagId: {}", bag.getId());
+    }
+
+
+    /**
+     * The cursor is the ID of the first bag of the page, so pages stay stable while bags are added.
+     */
+    @Override
+    public synchronized CursorPageDto<Bag> findPage(String cursor, int count) {
+        log.trace("findPage method begins. Cursor: {}, Count: {}", cursor, count);
+
+        List<Bag> bags = new ArrayList<>();
+        Long nextId = null;
+        long now = clock.millis();
+        for (Map.Entry<Long, Entry> entry : entries.tailMap(Long.parseLong(cursor), true).entrySet()) {
+            if (bags.size() == count) {
+                nextId = entry.getKey();
+                break;
+            }
+            if (entry.getValue().expiresAt() > now) {
+                bags.add(toBag(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        log.trace("findPage method ends. Cursor: {}, Bag count: {}, Next cursor: {}", cursor, bags.size(), nextId);
+        return new CursorPageDto<>(bags, nextId == null ? null : nextId.toString(), nextId == null);
+    }
+
+
+    /**
+     * There is no separate index; expired bags are removed by {@link #evictExpiredBags}.
+     */
+    @Override
+    public void removeFromIndex(Long id) {
+    }
+
+
+    /**
+     * Removes expired bags from the file and publishes a {@link BagExpiredEvent} for each of them.
+     */
+    @Scheduled(fixedDelayString = "${bag.embedded.sweep-fixed-delay-ms}")
+    public void evictExpiredBags() {
+        List<Long> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = clock.millis();
+            entries.forEach((id, entry) -> {
+                if (entry.expiresAt() <= now) {
+                    expired.add(id);
+                }
+            });
+            expired.forEach(id -> append(id, 0, 0, null));
+        }
+
+        if (!expired.isEmpty()) {
+            log.debug("evictExpiredBags: Removed {} expired bags", expired.size());
+        }
+        expired.forEach(id -> eventPublisher.publishEvent(new BagExpiredEvent(id)));
+    }
+
+
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("close: Bag file could not be closed cleanly. Path: {}", path, e);
+        }
+    }
+
+
+
+    private Optional<Entry> liveEntry(Long id) {
+        Entry entry = entries.get(id);
+        return entry != null && entry.expiresAt() > clock.millis() ? Optional.of(entry) : Optional.empty();
+    }
+
+
+    private Bag toBag(Long id, Entry entry) {
+        byte[] data = new byte[entry.length()];
+        buffer.get(entry.offset() + RECORD_HEADER_SIZE, data);
+        Bag bag = BagCodec.decode(data);
+        bag.setId(id);
+        bag.setVersion(entry.version());
+        return bag;
+    }
+
+
+    /**
+     * Appends a record, or a deletion if {@code data} is null, compacting the file first if it does not fit.
+     */
+    private void append(long id, long version, long expiresAt, byte[] data) {
+        int length = data == null ? 0 : data.length;
+        if (writePosition + RECORD_HEADER_SIZE + length + END_MARKER_SIZE > capacity) {
+            compact();
+            if (writePosition + RECORD_HEADER_SIZE + length + END_MARKER_SIZE > capacity) {
+                throw new IllegalStateException("Embedded bag store is full. Increase bag.embedded.capacity");
+            }
+        }
+
+        int offset = writePosition;
+        buffer.putLong(offset + 4, id);
+        buffer.putLong(offset + 12, version);
+        buffer.putLong(offset + 20, expiresAt);
+        if (data != null) {
+            buffer.put(offset + RECORD_HEADER_SIZE, data);
+        }
+        buffer.putInt(offset + 28, checksum(offset, length));
+        buffer.putInt(offset, length + 1);
+        writePosition = offset + RECORD_HEADER_SIZE + length;
+
+        if (data == null) {
+            entries.remove(id);
+        } else {
+            entries.put(id, new Entry(offset, length, version, expiresAt));
+        }
+    }
+
+
+    private int checksum(int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + 4, 24));
+        crc.update(buffer.slice(offset + RECORD_HEADER_SIZE, length));
+        return (int) crc.getValue();
+    }
+
+
+    private void open() {
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Bag file could not be opened: " + path, e);
+        }
+
+        if (buffer.getInt(0) == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putLong(SEQUENCE_OFFSET, 0);
+            writePosition = HEADER_SIZE;
+            log.info("open: New bag file created. Path: {}, Capacity: {} bytes", path, capacity);
+            return;
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("Not a bag file of format version " + FORMAT_VERSION + ": " + path);
+        }
+
+        int offset = HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(offset) - 1;
+            if (length < 0 || offset + RECORD_HEADER_SIZE + length > capacity
+                    || buffer.getInt(offset + 28) != checksum(offset, length)) {
+                break;
+            }
+            long id = buffer.getLong(offset + 4);
+            if (length == 0) {
+                entries.remove(id);
+            } else {
+                entries.put(id, new Entry(offset, length, buffer.getLong(offset + 12), buffer.getLong(offset + 20)));
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        writePosition = offset;
+        buffer.putInt(writePosition, 0);
+
+        log.info("open: Bag file loaded. Path: {}, Bags: {}, Used: {} of {} bytes", path, entries.size(), writePosition, capacity);
+    }
+
+
+    /**
+     * Copies the latest record of every bag into a new file and replaces the current file with it.
+     * Expired bags are kept, so that the sweep still reports them.
+     */
+    private void compact() {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        NavigableMap<Long, Entry> moved = new TreeMap<>();
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer targetBuffer = target.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            targetBuffer.put(0, buffer, 0, HEADER_SIZE);
+
+            int offset = HEADER_SIZE;
+            for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+                Entry record = entry.getValue();
+                int size = RECORD_HEADER_SIZE + record.length();
+                targetBuffer.put(offset, buffer, record.offset(), size);
+                moved.put(entry.getKey(), new Entry(offset, record.length(), record.version(), record.expiresAt()));
+                offset += size;
+            }
+            targetBuffer.force();
+
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.close();
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+            log.info("compact: Bag file compacted. Bags: {}, Used: {} of {} bytes", moved.size(), offset, capacity);
+            entries.clear();
+            entries.putAll(moved);
+            writePosition = offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Bag file could not be compacted: " + path, e);
+        }
+    }
+
+
+    private record Entry(int offset, int length, long version, long expiresAt) {
+    }
+}
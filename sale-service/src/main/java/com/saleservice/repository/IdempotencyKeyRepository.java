@@ -0,0 +1,99 @@
+package com.saleservice.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saleservice.model.IdempotencyRecord;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores the state of idempotency keys as JSON strings under {@code idempotency:sale:{key}}.
+ * A key is claimed with {@code SET NX}, and is only completed or released by the request that claimed it:
+ * the Lua script replaces the value only if it is still exactly the one that request wrote.
+ * @author Emir Aktaş
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyRepository {
+
+    static final String KEY_PREFIX = "idempotency:sale:";
+
+    private static final RedisScript<Long> REPLACE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/replace-idempotency-key.lua"), Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+
+    /**
+     * Stores the record under the key unless the key already exists.
+     *
+     * @return true if the key was claimed
+     */
+    public boolean create(String key, IdempotencyRecord record, Duration timeToLive) {
+        log.trace("create method begins. Key: {}", key);
+
+        Boolean created = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + key, encode(record), timeToLive);
+
+        log.trace("create method ends. Key: {}, Created: {}", key, created);
+        return Boolean.TRUE.equals(created);
+    }
+
+
+    public Optional<IdempotencyRecord> findByKey(String key) {
+        log.trace("findByKey method begins. Key: {}", key);
+
+        String value = redisTemplate.opsForValue().get(KEY_PREFIX + key);
+        Optional<IdempotencyRecord> record = Optional.ofNullable(value).map(this::decode);
+
+        log.trace("findByKey method ends. Key: {}, Found: {}", key, record.isPresent());
+        return record;
+    }
+
+
+    /**
+     * Replaces the record stored under the key, or deletes the key when the replacement is null,
+     * provided the stored record is still the expected one.
+     *
+     * @return true if the stored record was the expected one
+     */
+    public boolean replace(String key, IdempotencyRecord expected, IdempotencyRecord replacement, Duration timeToLive) {
+        log.trace("replace method begins. Key: {}, Delete: {}", key, replacement == null);
+
+        Long replaced = redisTemplate.execute(REPLACE_SCRIPT, List.of(KEY_PREFIX + key),
+                encode(expected),
+                replacement == null ? "" : encode(replacement),
+                Long.toString(timeToLive.toMillis()));
+
+        log.trace("replace method ends. Key: {}, Replaced: {}", key, replaced);
+        return replaced != null && replaced == 1;
+    }
+
+
+
+    private String encode(IdempotencyRecord record) {
+        try {
+            return objectMapper.writeValueAsString(record);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Idempotency record could not be serialized.", e);
+        }
+    }
+
+
+    private IdempotencyRecord decode(String value) {
+        try {
+            return objectMapper.readValue(value, IdempotencyRecord.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Idempotency record could not be deserialized.", e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.saleservice.repository;
+
+import com.saleservice.model.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    /**
+     * Locks the oldest unsent messages. Rows locked by another relay are skipped,
+     * so several sale-service instances can drain the outbox without sending a message twice.
+     */
+    @Query(value = """
+          SELECT * FROM outbox_messages
+          WHERE sent = false
+          ORDER BY id
+          LIMIT :limit
+          FOR UPDATE SKIP LOCKED""", nativeQuery = true)
+    List<OutboxMessage> lockUnsentBatch(int limit);
+
+    @Modifying
+    @Query("UPDATE OutboxMessage o SET o.sent = true, o.sentDate = :sentDate WHERE o.id IN :ids")
+    int markSent(Collection<Long> ids, LocalDateTime sentDate);
+
+    /**
+     * Deletes up to {@code limit} messages that were sent before the given time, so that a large backlog
+     * is purged in short transactions.
+     */
+    @Modifying
+    @Query(value = """
+          DELETE FROM outbox_messages
+          WHERE id IN (SELECT id FROM outbox_messages
+                       WHERE sent = true AND sent_date < :sentBefore
+                       LIMIT :limit)""", nativeQuery = true)
+    int deleteSentBefore(LocalDateTime sentBefore, int limit);
+}
@@ -0,0 +1,26 @@
+package com.saleservice.repository;
+
+import com.saleservice.model.ParkedBag;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ParkedBagRepository extends JpaRepository<ParkedBag, Long> {
+
+    /**
+     * Deletes a parked bag, returning the number of rows deleted. The row lock makes concurrent callers wait,
+     * so only the first of several instances restoring the same bag sees a count of one.
+     */
+    @Modifying
+    @Query("DELETE FROM ParkedBag p WHERE p.id = :id")
+    int deleteParkedBag(Long id);
+
+    @Query("SELECT p.id FROM ParkedBag p WHERE p.expirationDate < :now ORDER BY p.expirationDate")
+    List<Long> findExpiredIds(LocalDateTime now, Pageable pageable);
+}
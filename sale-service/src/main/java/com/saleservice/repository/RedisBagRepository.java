@@ -0,0 +1,510 @@
+package com.saleservice.repository;
+
+import com.saleservice.dto.CursorPageDto;
+import com.saleservice.exception.BagConflictException;
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagItem;
+import com.saleservice.model.BagOperation;
+import com.saleservice.model.DiscountType;
+import com.saleservice.model.Money;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ValueScanCursor;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis implementation of {@link BagRepository}.
+ * A bag is stored as two hashes: {@code bag:{id}} holds the totals and campaign details,
+ * and {@code bag:{id}:items} holds one field per line item keyed by barcode.
+ * Saving compares the bag with the values it was loaded with and sends only the changed fields to a Lua script,
+ * which applies them and refreshes the expiry only if the bag version is still the one that was loaded.
+ * This is the default storage mode; {@link RedisStreamBagRepository} keeps an operation log instead,
+ * and {@link RedisBinaryBagRepository} stores each bag as one binary value.
+ * @author Emir Aktaş
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "bag.storage.mode", havingValue = "snapshot", matchIfMissing = true)
+public class RedisBagRepository implements BagRepository {
+
+    static final String KEY_PREFIX = "bag";
+    static final String SEQUENCE_KEY = KEY_PREFIX + ":sequence";
+    static final String FIRST_CURSOR = "0";
+    private static final long SCAN_TIMEOUT_SECONDS = 5;
+    private static final int EXPIRING_SCAN_COUNT = 500;
+    private static final String ITEMS_SUFFIX = ":items";
+    private static final String SEPARATOR = "|";
+    private static final String VERIFIED = "1";
+    private static final String UNVERIFIED = "0";
+
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_VERSION = "version";
+    private static final String FIELD_TOTAL_PRICE = "totalPrice";
+    private static final String FIELD_CAMPAIGN_ID = "campaignId";
+    private static final String FIELD_CAMPAIGN_NAME = "campaignName";
+    private static final String FIELD_DISCOUNT_TYPE = "discountType";
+    private static final String FIELD_DISCOUNT_VALUE = "discountValue";
+    private static final String FIELD_DISCOUNTED_PRICE = "discountedPrice";
+    private static final String FIELD_AUTO_CAMPAIGN = "autoCampaign";
+
+    private static final RedisScript<Long> SAVE_BAG_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/save-bag.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> TAKE_BAG_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/take-bag.lua"), List.class);
+
+    protected final StringRedisTemplate redisTemplate;
+
+
+    @Override
+    public Optional<Bag> findById(Long id) {
+        log.trace("findById method begins. BagId: {}", id);
+
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        Optional<Bag> bag = loadBags(List.of(id)).get(0);
+
+        log.trace("findById method ends. BagId: {}, Found: {}", id, bag.isPresent());
+        return bag;
+    }
+
+
+    @Override
+    public Long nextId() {
+        return redisTemplate.opsForValue().increment(SEQUENCE_KEY);
+    }
+
+
+    @Override
+    public Bag save(Bag bag) {
+        log.trace("save method begins. BagId: {}", bag.getId());
+
+        if (bag.getId() == null) {
+            bag.setId(nextId());
+        }
+        Long id = bag.getId();
+
+        Map<String, String> fields = encodeFields(bag);
+        Map<String, String> items = encodeItems(bag);
+
+        Map<String, String> changedFields = changedEntries(bag.getPersistedFields(), fields);
+        Set<String> removedFields = removedKeys(bag.getPersistedFields(), fields);
+        Map<String, String> changedItems = changedEntries(bag.getPersistedItems(), items);
+        Set<String> removedItems = removedKeys(bag.getPersistedItems(), items);
+
+        List<String> changes = new ArrayList<>();
+        addPairs(changes, changedFields);
+        addKeys(changes, removedFields);
+        addPairs(changes, changedItems);
+        addKeys(changes, removedItems);
+
+        Long version = writeChanges(bag, changes);
+        if (version == null || version < 0) {
+            throw concurrentModification(bag);
+        }
+
+        bag.setVersion(version);
+        bag.setPersistedFields(fields);
+        bag.setPersistedItems(items);
+
+        log.debug("save: BagId: {}, changed fields: {}, removed fields: {}, changed items: {}, removed items: {}",
+                id, changedFields.size(), removedFields.size(), changedItems.size(), removedItems.size());
+        log.trace("save method ends. BagId: {}", id);
+        return bag;
+    }
+
+
+    @Override
+    public void delete(Bag bag) {
+        log.trace("delete method begins. BagId: {}", bag.getId());
+
+        Long id = bag.getId();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.del(bagKey(id), itemsKey(id));
+            redis.sRem(KEY_PREFIX, id.toString());
+            return null;
+        });
+
+        bag.setPersistedFields(new HashMap<>());
+        bag.setPersistedItems(new HashMap<>());
+
+        log.trace("delete method ends. BagId: {}", id);
+    }
+
+
+    /**
+     * Applies the encoded changes of a bag if its stored version is still the loaded one.
+     * The changes are four groups, each a count followed by its entries: changed fields (name, value pairs),
+     * removed fields, changed items (barcode, value pairs) and removed items.
+     *
+     * @return the new version, or a negative number if the bag was changed concurrently
+     */
+    protected Long writeChanges(Bag bag, List<String> changes) {
+        List<String> args = new ArrayList<>();
+        args.add(Long.toString(bag.getVersion()));
+        args.add(Long.toString(ttlOf(bag)));
+        args.add(bag.getId().toString());
+        args.addAll(changes);
+
+        return redisTemplate.execute(SAVE_BAG_SCRIPT,
+                List.of(bagKey(bag.getId()), itemsKey(bag.getId()), KEY_PREFIX), args.toArray());
+    }
+
+
+    @Override
+    public Optional<Bag> take(Long id) {
+        return take(id, BagOperation.CHECKOUT);
+    }
+
+
+    /**
+     * Like {@link #take(Long)}, for callers that remove the bag for a reason other than checkout.
+     * The reason is recorded by storage modes that keep an operation log.
+     */
+    public Optional<Bag> take(Long id, BagOperation reason) {
+        log.trace("take method begins. BagId: {}, Reason: {}", id, reason);
+
+        List<?> result = redisTemplate.execute(TAKE_BAG_SCRIPT,
+                List.of(bagKey(id), itemsKey(id), KEY_PREFIX), id.toString());
+        Optional<Bag> bag = result == null || result.isEmpty()
+                ? Optional.empty()
+                : toBag(id, toMap((List<?>) result.get(0)), toMap((List<?>) result.get(1)));
+
+        log.trace("take method ends. BagId: {}, Found: {}", id, bag.isPresent());
+        return bag;
+    }
+
+
+    @Override
+    public void restore(Bag bag) {
+        log.trace("restore method begins. BagId: {}", bag.getId());
+
+        bag.setOperation(BagOperation.RESTORE);
+        bag.setVersion(0);
+        bag.setPersistedFields(new HashMap<>());
+        bag.setPersistedItems(new HashMap<>());
+        save(bag);
+
+        log.trace("restore method ends. BagId: {}", bag.getId());
+    }
+
+
+    @Override
+    public CursorPageDto<Bag> findPage(String cursor, int count) {
+        log.trace("findPage method begins. Cursor: {}, Count: {}", cursor, count);
+
+        List<Bag> bags = new ArrayList<>();
+        String nextCursor = cursor;
+        do {
+            ValueScanCursor<byte[]> scan = scanIndex(nextCursor, count - bags.size());
+            nextCursor = scan.getCursor();
+
+            List<Long> bagIds = scan.getValues().stream()
+                    .map(id -> Long.valueOf(new String(id, StandardCharsets.UTF_8)))
+                    .toList();
+            List<Optional<Bag>> loaded = loadBags(bagIds);
+            List<Long> expiredIds = new ArrayList<>();
+            for (int i = 0; i < bagIds.size(); i++) {
+                if (loaded.get(i).isPresent()) {
+                    bags.add(loaded.get(i).get());
+                } else {
+                    expiredIds.add(bagIds.get(i));
+                }
+            }
+            if (!expiredIds.isEmpty()) {
+                log.debug("findPage: Removing {} expired bag ids from the index", expiredIds.size());
+                redisTemplate.opsForSet().remove(KEY_PREFIX, expiredIds.stream().map(String::valueOf).toArray());
+            }
+        } while (bags.size() < count && !FIRST_CURSOR.equals(nextCursor));
+
+        boolean last = FIRST_CURSOR.equals(nextCursor);
+
+        log.trace("findPage method ends. Cursor: {}, Bag count: {}, Next cursor: {}", cursor, bags.size(), nextCursor);
+        return new CursorPageDto<>(bags, last ? null : nextCursor, last);
+    }
+
+
+    /**
+     * Finds bags that have not been saved for a while. Every save resets a bag's time to live, so a bag whose
+     * remaining time to live is short has been idle for its expiration minus that time.
+     *
+     * @param maxRemainingTtlSeconds the longest remaining time to live of the bags to be returned
+     * @param limit                  the maximum number of bags to be returned
+     * @return the remaining time to live in seconds, keyed by bag ID
+     */
+    public Map<Long, Long> findExpiringIds(long maxRemainingTtlSeconds, int limit) {
+        log.trace("findExpiringIds method begins. MaxRemainingTtlSeconds: {}, Limit: {}", maxRemainingTtlSeconds, limit);
+
+        Map<Long, Long> expiring = new LinkedHashMap<>();
+        String cursor = FIRST_CURSOR;
+        do {
+            ValueScanCursor<byte[]> scan = scanIndex(cursor, EXPIRING_SCAN_COUNT);
+            cursor = scan.getCursor();
+
+            List<Long> bagIds = scan.getValues().stream()
+                    .map(id -> Long.valueOf(new String(id, StandardCharsets.UTF_8)))
+                    .toList();
+            List<Object> ttls = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                bagIds.forEach(id -> redis.ttl(bagKey(id)));
+                return null;
+            });
+            for (int i = 0; i < bagIds.size() && expiring.size() < limit; i++) {
+                Long ttl = (Long) ttls.get(i);
+                if (ttl != null && ttl > 0 && ttl <= maxRemainingTtlSeconds) {
+                    expiring.put(bagIds.get(i), ttl);
+                }
+            }
+        } while (expiring.size() < limit && !FIRST_CURSOR.equals(cursor));
+
+        log.trace("findExpiringIds method ends. Found: {}", expiring.size());
+        return expiring;
+    }
+
+
+    @Override
+    public void removeFromIndex(Long id) {
+        log.trace("removeFromIndex method begins. BagId: {}", id);
+
+        redisTemplate.opsForSet().remove(KEY_PREFIX, id.toString());
+
+        log.trace("removeFromIndex method ends. BagId: {}", id);
+    }
+
+
+
+    /**
+     * Loads the given bags with one pipelined round trip. The result has one entry per ID, in the same order,
+     * which is empty for bags that do not exist or have expired.
+     */
+    protected List<Optional<Bag>> loadBags(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (Long id : ids) {
+                redis.hGetAll(bagKey(id));
+                redis.hGetAll(itemsKey(id));
+            }
+            return null;
+        });
+
+        List<Optional<Bag>> bags = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            bags.add(toBag(ids.get(i), castToMap(results.get(2 * i)), castToMap(results.get(2 * i + 1))));
+        }
+        return bags;
+    }
+
+
+    /**
+     * Runs a single SSCAN step on the bag index. The Spring Data scan API always starts from the first cursor,
+     * so the native Lettuce command is used to resume from the cursor handed out with the previous page.
+     */
+    @SuppressWarnings("unchecked")
+    private ValueScanCursor<byte[]> scanIndex(String cursor, int count) {
+        return redisTemplate.execute((RedisCallback<ValueScanCursor<byte[]>>) connection -> {
+            RedisClusterAsyncCommands<byte[], byte[]> commands =
+                    (RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+            return LettuceFutures.awaitOrCancel(
+                    commands.sscan(KEY_PREFIX.getBytes(StandardCharsets.UTF_8), ScanCursor.of(cursor), ScanArgs.Builder.limit(count)),
+                    SCAN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        });
+    }
+
+
+    protected static BagConflictException concurrentModification(Bag bag) {
+        log.warn("save: Bag with id {} was modified concurrently. Expected version: {}", bag.getId(), bag.getVersion());
+        return new BagConflictException("Bag with id " + bag.getId() + " was modified by another request. "
+                + "Reload the bag and try again.");
+    }
+
+
+    static String bagKey(Long id) {
+        return KEY_PREFIX + ":" + id;
+    }
+
+
+    static String itemsKey(Long id) {
+        return bagKey(id) + ITEMS_SUFFIX;
+    }
+
+
+    static long ttlOf(Bag bag) {
+        return bag.getExpiration() == null ? 0 : bag.getExpiration();
+    }
+
+
+    private static void addPairs(List<String> args, Map<String, String> entries) {
+        args.add(Integer.toString(entries.size()));
+        entries.forEach((key, value) -> {
+            args.add(key);
+            args.add(value);
+        });
+    }
+
+
+    private static void addKeys(List<String> args, Set<String> keys) {
+        args.add(Integer.toString(keys.size()));
+        args.addAll(keys);
+    }
+
+
+    protected Optional<Bag> toBag(Long id, Map<String, String> fields, Map<String, String> items) {
+        if (fields == null || fields.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<String, String> persistedFields = new HashMap<>(fields);
+        String version = persistedFields.remove(FIELD_VERSION);
+
+        Bag bag = new Bag();
+        bag.setId(id);
+        bag.setVersion(version == null ? 0 : Long.parseLong(version));
+        bag.setCampaignId(fields.containsKey(FIELD_CAMPAIGN_ID) ? Long.valueOf(fields.get(FIELD_CAMPAIGN_ID)) : null);
+        bag.setCampaignName(fields.get(FIELD_CAMPAIGN_NAME));
+        bag.setDiscountType(fields.containsKey(FIELD_DISCOUNT_TYPE)
+                ? DiscountType.valueOf(fields.get(FIELD_DISCOUNT_TYPE)) : null);
+        bag.setDiscountValue(fields.containsKey(FIELD_DISCOUNT_VALUE)
+                ? Double.parseDouble(fields.get(FIELD_DISCOUNT_VALUE)) : 0);
+        bag.setDiscountedPrice(moneyOrNull(fields.get(FIELD_DISCOUNTED_PRICE)));
+        bag.setAutoCampaign(Boolean.parseBoolean(fields.get(FIELD_AUTO_CAMPAIGN)));
+
+        Map<String, String> persistedItems = items == null ? new HashMap<>() : new HashMap<>(items);
+        persistedItems.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> sequenceOf(entry.getValue())))
+                .forEach(entry -> bag.addItem(decodeItem(entry.getKey(), entry.getValue())));
+
+        if (fields.containsKey(FIELD_TOTAL_PRICE)) {
+            bag.setTotalPrice(Money.parse(fields.get(FIELD_TOTAL_PRICE)));
+        } else {
+            bag.setTotalPrice(bag.getItems().stream()
+                    .map(item -> item.getPrice().times(item.getQuantity()))
+                    .reduce(Money.ZERO, Money::plus));
+        }
+
+        bag.setPersistedFields(persistedFields);
+        bag.setPersistedItems(persistedItems);
+        return Optional.of(bag);
+    }
+
+
+    private Map<String, String> encodeFields(Bag bag) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_ID, bag.getId().toString());
+        putIfNotNull(fields, FIELD_TOTAL_PRICE, bag.getTotalPrice());
+        putIfNotNull(fields, FIELD_CAMPAIGN_ID, bag.getCampaignId());
+        putIfNotNull(fields, FIELD_CAMPAIGN_NAME, bag.getCampaignName());
+        putIfNotNull(fields, FIELD_DISCOUNT_TYPE, bag.getDiscountType());
+        if (bag.getDiscountValue() != 0) {
+            fields.put(FIELD_DISCOUNT_VALUE, Double.toString(bag.getDiscountValue()));
+        }
+        putIfNotNull(fields, FIELD_DISCOUNTED_PRICE, bag.getDiscountedPrice());
+        if (bag.isAutoCampaign()) {
+            fields.put(FIELD_AUTO_CAMPAIGN, Boolean.TRUE.toString());
+        }
+        return fields;
+    }
+
+
+    /**
+     * Encodes line items as {@code sequence|quantity|price|verified|name}. The sequence keeps the order in which
+     * items were first added, so items already in the store keep their sequence and new items are appended.
+     * The verified flag is {@code 0} for items added without a product lookup while the product-service was down.
+     */
+    private Map<String, String> encodeItems(Bag bag) {
+        Map<String, String> persisted = bag.getPersistedItems();
+        long nextSequence = persisted.values().stream()
+                .mapToLong(RedisBagRepository::sequenceOf)
+                .max()
+                .orElse(-1) + 1;
+
+        Map<String, String> items = new HashMap<>();
+        for (BagItem item : bag.getItems()) {
+            String previous = persisted.get(item.getBarcode());
+            long sequence = previous != null ? sequenceOf(previous) : nextSequence++;
+            items.put(item.getBarcode(), sequence + SEPARATOR + item.getQuantity() + SEPARATOR
+                    + item.getPrice() + SEPARATOR + (item.isVerified() ? VERIFIED : UNVERIFIED) + SEPARATOR
+                    + Objects.toString(item.getName(), ""));
+        }
+        return items;
+    }
+
+
+    private static BagItem decodeItem(String barcode, String value) {
+        String[] parts = value.split("\\" + SEPARATOR, 5);
+        BagItem item = new BagItem(barcode, Integer.parseInt(parts[1]), Money.parse(parts[2]), parts[4]);
+        item.setVerified(VERIFIED.equals(parts[3]));
+        return item;
+    }
+
+
+    private static long sequenceOf(String value) {
+        return Long.parseLong(value.substring(0, value.indexOf(SEPARATOR)));
+    }
+
+
+    private static Map<String, String> changedEntries(Map<String, String> persisted, Map<String, String> current) {
+        Map<String, String> changed = new HashMap<>();
+        current.forEach((key, value) -> {
+            if (!value.equals(persisted.get(key))) {
+                changed.put(key, value);
+            }
+        });
+        return changed;
+    }
+
+
+    private static Set<String> removedKeys(Map<String, String> persisted, Map<String, String> current) {
+        Set<String> removed = new HashSet<>(persisted.keySet());
+        removed.removeAll(current.keySet());
+        return removed;
+    }
+
+
+    private static void putIfNotNull(Map<String, String> fields, String field, Object value) {
+        if (value != null) {
+            fields.put(field, value.toString());
+        }
+    }
+
+
+    private static Money moneyOrNull(String value) {
+        return value == null ? null : Money.parse(value);
+    }
+
+
+    protected static Map<String, String> toMap(List<?> pairs) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i + 1 < pairs.size(); i += 2) {
+            map.put((String) pairs.get(i), (String) pairs.get(i + 1));
+        }
+        return map;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> castToMap(Object result) {
+        return (Map<String, String>) result;
+    }
+}
@@ -0,0 +1,131 @@
+package com.saleservice.repository;
+
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Binary implementation of {@link BagRepository}, enabled with {@code bag.storage.mode=binary}.
+ * Each bag is one hash {@code bag:{id}} with three fields: its version, its item count and the whole bag encoded
+ * by {@link BagCodec}. Every save rewrites the encoded value, which is far smaller than one hash field per item
+ * and decodes without any string parsing. Saves are compare-and-set on the version like in the other modes.
+ * @author Emir Aktaş
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "bag.storage.mode", havingValue = "binary")
+public class RedisBinaryBagRepository extends RedisBagRepository {
+
+    private static final byte[] FIELD_VERSION = "version".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FIELD_DATA = "data".getBytes(StandardCharsets.UTF_8);
+
+    private static final RedisScript<Long> SAVE_BINARY_BAG_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/save-binary-bag.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE_BINARY_BAG_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/take-binary-bag.lua"), List.class);
+
+    private final RedisTemplate<String, byte[]> binaryTemplate;
+
+
+    public RedisBinaryBagRepository(StringRedisTemplate redisTemplate) {
+        super(redisTemplate);
+        this.binaryTemplate = new RedisTemplate<>();
+        this.binaryTemplate.setConnectionFactory(redisTemplate.getConnectionFactory());
+        this.binaryTemplate.setKeySerializer(RedisSerializer.string());
+        this.binaryTemplate.setValueSerializer(RedisSerializer.byteArray());
+        this.binaryTemplate.setHashKeySerializer(RedisSerializer.string());
+        this.binaryTemplate.setHashValueSerializer(RedisSerializer.byteArray());
+        this.binaryTemplate.afterPropertiesSet();
+    }
+
+
+    @Override
+    public Bag save(Bag bag) {
+        log.trace("save method begins. BagId: {}", bag.getId());
+
+        if (bag.getId() == null) {
+            bag.setId(nextId());
+        }
+        Long id = bag.getId();
+        byte[] data = BagCodec.encode(bag);
+
+        Long version = binaryTemplate.execute(SAVE_BINARY_BAG_SCRIPT, List.of(bagKey(id), KEY_PREFIX),
+                bytes(bag.getVersion()), bytes(ttlOf(bag)), bytes(id), bytes(bag.getItems().size()), data);
+        if (version == null || version < 0) {
+            throw concurrentModification(bag);
+        }
+        bag.setVersion(version);
+
+        log.debug("save: BagId: {}, encoded size: {} bytes", id, data.length);
+        log.trace("save method ends. BagId: {}", id);
+        return bag;
+    }
+
+
+    @Override
+    public Optional<Bag> take(Long id, BagOperation reason) {
+        log.trace("take method begins. BagId: {}, Reason: {}", id, reason);
+
+        List<?> result = binaryTemplate.execute(TAKE_BINARY_BAG_SCRIPT, List.of(bagKey(id), KEY_PREFIX), bytes(id));
+        Optional<Bag> bag = result == null || result.isEmpty()
+                ? Optional.empty()
+                : Optional.of(toBag(id, (byte[]) result.get(0), (byte[]) result.get(1)));
+
+        log.trace("take method ends. BagId: {}, Found: {}", id, bag.isPresent());
+        return bag;
+    }
+
+
+    @Override
+    protected List<Optional<Bag>> loadBags(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Object> results = binaryTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long id : ids) {
+                connection.hashCommands().hMGet(bagKey(id).getBytes(StandardCharsets.UTF_8), FIELD_VERSION, FIELD_DATA);
+            }
+            return null;
+        });
+
+        List<Optional<Bag>> bags = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            List<?> values = (List<?>) results.get(i);
+            byte[] data = values == null ? null : (byte[]) values.get(1);
+            bags.add(data == null ? Optional.empty() : Optional.of(toBag(ids.get(i), (byte[]) values.get(0), data)));
+        }
+        return bags;
+    }
+
+
+
+    private static Bag toBag(Long id, byte[] version, byte[] data) {
+        Bag bag = BagCodec.decode(data);
+        bag.setId(id);
+        bag.setVersion(version == null ? 0 : Long.parseLong(new String(version, StandardCharsets.UTF_8)));
+        bag.setPersistedFields(new HashMap<>());
+        bag.setPersistedItems(new HashMap<>());
+        return bag;
+    }
+
+
+    private static byte[] bytes(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,172 @@
+package com.saleservice.repository;
+
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Event log implementation of {@link BagRepository}, enabled with {@code bag.storage.mode=event-log}.
+ * Instead of rewriting the bag hashes, every save appends its changes to the Redis Stream {@code bag:{id}:events},
+ * labelled with the {@link BagOperation} that caused them. The bag hashes become a snapshot that is folded forward
+ * once {@code bag.event-log.compaction-threshold} entries have piled up, and a bag is read as the snapshot plus the
+ * log entries after it. Checkout and deletion are logged as well, and the log outlives the bag for
+ * {@code bag.event-log.retention}, so reporting can read scan rates and abandoned items from it without touching
+ * the sale path. Requires Redis 6.2 or later for exclusive stream ranges.
+ * @author Emir Aktaş
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "bag.storage.mode", havingValue = "event-log")
+public class RedisStreamBagRepository extends RedisBagRepository {
+
+    static final String EVENTS_SUFFIX = ":events";
+    static final String FIELD_OPERATION = "op";
+    private static final String FIELD_SNAPSHOT_EVENT_ID = "snapshotEventId";
+    private static final String FIELD_PENDING_EVENTS = "pendingEvents";
+    private static final String CHANGED_FIELD = "f:";
+    private static final String REMOVED_FIELD = "F:";
+    private static final String CHANGED_ITEM = "i:";
+    private static final String REMOVED_ITEM = "I:";
+
+    private static final RedisScript<Long> APPEND_BAG_EVENT_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/append-bag-event.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> LOAD_BAGS_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/load-bags.lua"), List.class);
+
+    private final int compactionThreshold;
+    private final long logRetentionSeconds;
+
+
+    public RedisStreamBagRepository(StringRedisTemplate redisTemplate,
+                                    @Value("${bag.event-log.compaction-threshold}") int compactionThreshold,
+                                    @Value("${bag.event-log.retention}") Duration logRetention) {
+        super(redisTemplate);
+        this.compactionThreshold = compactionThreshold;
+        this.logRetentionSeconds = logRetention.toSeconds();
+    }
+
+
+    @Override
+    protected Long writeChanges(Bag bag, List<String> changes) {
+        List<String> args = new ArrayList<>();
+        args.add(Long.toString(bag.getVersion()));
+        args.add(Long.toString(ttlOf(bag)));
+        args.add(bag.getId().toString());
+        args.add(Objects.requireNonNullElse(bag.getOperation(), BagOperation.UPDATE).name());
+        args.add(Integer.toString(compactionThreshold));
+        args.add(Long.toString(logRetentionSeconds));
+        args.addAll(changes);
+
+        return redisTemplate.execute(APPEND_BAG_EVENT_SCRIPT,
+                List.of(bagKey(bag.getId()), itemsKey(bag.getId()), KEY_PREFIX, eventsKey(bag.getId())), args.toArray());
+    }
+
+
+    @Override
+    public void delete(Bag bag) {
+        super.delete(bag);
+
+        String key = eventsKey(bag.getId());
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.xAdd(StreamRecords.string(Map.of(FIELD_OPERATION, BagOperation.DELETE.name())).withStreamKey(key));
+            redis.expire(key, logRetentionSeconds);
+            return null;
+        });
+    }
+
+
+    @Override
+    public Optional<Bag> take(Long id, BagOperation reason) {
+        log.trace("take method begins. BagId: {}, Reason: {}", id, reason);
+
+        List<?> result = redisTemplate.execute(TAKE_BAG_SCRIPT, List.of(bagKey(id), itemsKey(id), KEY_PREFIX, eventsKey(id)),
+                id.toString(), Long.toString(logRetentionSeconds), reason.name());
+        Optional<Bag> bag = result == null || result.isEmpty() ? Optional.empty() : toBag(id, result);
+
+        log.trace("take method ends. BagId: {}, Found: {}", id, bag.isPresent());
+        return bag;
+    }
+
+
+    /**
+     * Loads the snapshots and log tails of all given bags with a single script call.
+     */
+    @Override
+    protected List<Optional<Bag>> loadBags(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<String> keys = new ArrayList<>(ids.size() * 3);
+        for (Long id : ids) {
+            keys.add(bagKey(id));
+            keys.add(itemsKey(id));
+            keys.add(eventsKey(id));
+        }
+        List<?> results = redisTemplate.execute(LOAD_BAGS_SCRIPT, keys);
+
+        List<Optional<Bag>> bags = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            bags.add(toBag(ids.get(i), (List<?>) results.get(i)));
+        }
+        return bags;
+    }
+
+
+    static String eventsKey(Long id) {
+        return bagKey(id) + EVENTS_SUFFIX;
+    }
+
+
+    /**
+     * Builds a bag from a {fields, items, tail} script result by applying the log tail to the snapshot.
+     */
+    private Optional<Bag> toBag(Long id, List<?> snapshotAndTail) {
+        Map<String, String> fields = toMap((List<?>) snapshotAndTail.get(0));
+        Map<String, String> items = toMap((List<?>) snapshotAndTail.get(1));
+        if (fields.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<?> tail = (List<?>) snapshotAndTail.get(2);
+        for (Object entry : tail) {
+            List<?> changes = (List<?>) ((List<?>) entry).get(1);
+            for (int i = 0; i + 1 < changes.size(); i += 2) {
+                String change = (String) changes.get(i);
+                String name = change.substring(Math.min(2, change.length()));
+                if (change.startsWith(CHANGED_FIELD)) {
+                    fields.put(name, (String) changes.get(i + 1));
+                } else if (change.startsWith(REMOVED_FIELD)) {
+                    fields.remove(name);
+                } else if (change.startsWith(CHANGED_ITEM)) {
+                    items.put(name, (String) changes.get(i + 1));
+                } else if (change.startsWith(REMOVED_ITEM)) {
+                    items.remove(name);
+                }
+            }
+        }
+        fields.remove(FIELD_SNAPSHOT_EVENT_ID);
+        fields.remove(FIELD_PENDING_EVENTS);
+
+        log.debug("toBag: BagId: {}, log entries applied to snapshot: {}", id, tail.size());
+        return toBag(id, fields, items);
+    }
+}
@@ -0,0 +1,289 @@
+package com.saleservice.repository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of completed sales, kept in a memory-mapped file on the machine the sale-service runs on.
+ * Enabled with {@code sale.journal.enabled=true}.
+ * <p>
+ * The file is a header (magic number, format version, offset up to which the journal has been drained) followed
+ * by a log of records, each holding its length, a CRC32 and the payload. {@link #append} returns once the record
+ * is on disk. Appenders that arrive while a flush is running wait for it and are then flushed together by one of
+ * them, so under load one fsync covers many sales. Records are read back by {@link #readPending} and released by
+ * {@link #markDrained}; on start the log is read from the drained offset up to the first incomplete record.
+ * <p>
+ * Positions handed out by this class are logical: they keep growing when the file is emptied or compacted, so a
+ * position read before a compaction can still be passed to {@link #markDrained} after it.
+ * @author Emir Aktaş
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "sale.journal.enabled", havingValue = "true")
+public class SaleJournal {
+
+    private static final int MAGIC = 0x534A524E;
+    private static final int FORMAT_VERSION = 1;
+    private static final int DRAINED_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Record length (payload length plus one, zero marks the end of the log), CRC32 of the payload.
+     */
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+    private static final int END_MARKER_SIZE = 4;
+
+    private final Path path;
+    private final int capacity;
+
+    private final Object flushLock = new Object();
+    private final AtomicLong durablePosition = new AtomicLong();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private int drainedPosition;
+    private long base;
+
+
+    public SaleJournal(@Value("${sale.journal.path}") Path path,
+                       @Value("${sale.journal.capacity}") DataSize capacity) {
+        this.path = path;
+        this.capacity = Math.toIntExact(capacity.toBytes());
+        open();
+    }
+
+
+    /**
+     * Appends a record and waits until it is on disk.
+     *
+     * @param data the record payload
+     * @return false if the journal is full even after compaction, in which case nothing was written
+     */
+    public boolean append(byte[] data) {
+        log.trace("append method begins. Size: {} bytes", data.length);
+
+        long position;
+        synchronized (this) {
+            int size = RECORD_HEADER_SIZE + data.length;
+            if (writePosition + size + END_MARKER_SIZE > capacity) {
+                compact();
+                if (writePosition + size + END_MARKER_SIZE > capacity) {
+                    log.warn("append: Sale journal is full. Pending: {} bytes, Capacity: {} bytes", pendingBytes(), capacity);
+                    return false;
+                }
+            }
+
+            int offset = writePosition;
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            buffer.put(offset + RECORD_HEADER_SIZE, data);
+            buffer.putInt(offset + 4, (int) crc.getValue());
+            buffer.putInt(offset + size, 0);
+            buffer.putInt(offset, data.length + 1);
+            writePosition = offset + size;
+            position = base + writePosition;
+        }
+        flush(position);
+
+        log.trace("append method ends. Position: {}", position);
+        return true;
+    }
+
+
+    /**
+     * Reads the oldest records that are on disk and have not been drained yet.
+     *
+     * @param limit the maximum number of records to be read
+     * @return the records in the order they were appended
+     */
+    public synchronized List<Entry> readPending(int limit) {
+        int end = (int) Math.max(drainedPosition, Math.min(writePosition, durablePosition.get() - base));
+        List<Entry> entries = new ArrayList<>();
+        int offset = drainedPosition;
+        while (entries.size() < limit && offset < end) {
+            byte[] data = new byte[buffer.getInt(offset) - 1];
+            buffer.get(offset + RECORD_HEADER_SIZE, data);
+            offset += RECORD_HEADER_SIZE + data.length;
+            entries.add(new Entry(base + offset, data));
+        }
+        return entries;
+    }
+
+
+    /**
+     * Releases every record up to the given position. Once the whole journal is drained, it starts again at the
+     * beginning of the file.
+     *
+     * @param position the {@link Entry#position()} of the last record that has been stored elsewhere
+     */
+    public synchronized void markDrained(long position) {
+        int offset = (int) (position - base);
+        if (offset <= drainedPosition) {
+            return;
+        }
+
+        drainedPosition = offset;
+        if (drainedPosition == writePosition) {
+            buffer.putInt(HEADER_SIZE, 0);
+            base += writePosition - HEADER_SIZE;
+            writePosition = HEADER_SIZE;
+            drainedPosition = HEADER_SIZE;
+        }
+        buffer.putInt(DRAINED_OFFSET, drainedPosition);
+    }
+
+
+    /**
+     * @return the number of bytes written to the journal and not drained yet
+     */
+    public synchronized int pendingBytes() {
+        return writePosition - drainedPosition;
+    }
+
+
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("close: Sale journal could not be closed cleanly. Path: {}", path, e);
+        }
+    }
+
+
+
+    /**
+     * Forces the file to disk unless a flush that started after the given position was written has already done so.
+     * Only one thread flushes at a time; the others wait and usually find their record covered by its flush.
+     */
+    private void flush(long position) {
+        synchronized (flushLock) {
+            if (durablePosition.get() >= position) {
+                return;
+            }
+
+            MappedByteBuffer target;
+            long end;
+            synchronized (this) {
+                target = buffer;
+                end = base + writePosition;
+            }
+            target.force();
+            durablePosition.accumulateAndGet(end, Math::max);
+        }
+    }
+
+
+    private void open() {
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Sale journal could not be opened: " + path, e);
+        }
+
+        if (buffer.getInt(0) == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putInt(DRAINED_OFFSET, HEADER_SIZE);
+            buffer.putInt(HEADER_SIZE, 0);
+            buffer.force();
+            writePosition = HEADER_SIZE;
+            drainedPosition = HEADER_SIZE;
+            durablePosition.set(writePosition);
+            log.info("open: New sale journal created. Path: {}, Capacity: {} bytes", path, capacity);
+            return;
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("Not a sale journal of format version " + FORMAT_VERSION + ": " + path);
+        }
+
+        drainedPosition = buffer.getInt(DRAINED_OFFSET);
+        int offset = drainedPosition;
+        int records = 0;
+        while (offset + RECORD_HEADER_SIZE + END_MARKER_SIZE <= capacity) {
+            int length = buffer.getInt(offset) - 1;
+            if (length < 0 || offset + RECORD_HEADER_SIZE + length + END_MARKER_SIZE > capacity) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(offset + RECORD_HEADER_SIZE, length));
+            if (buffer.getInt(offset + 4) != (int) crc.getValue()) {
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+            records++;
+        }
+        writePosition = offset;
+        buffer.putInt(writePosition, 0);
+        durablePosition.set(writePosition);
+
+        log.info("open: Sale journal loaded. Path: {}, Sales to replay: {}, Used: {} of {} bytes",
+                path, records, writePosition, capacity);
+    }
+
+
+    /**
+     * Copies the records that have not been drained yet to the beginning of a new file, which then replaces the
+     * current file.
+     */
+    private void compact() {
+        int shift = drainedPosition - HEADER_SIZE;
+        if (shift == 0) {
+            return;
+        }
+
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        int pending = writePosition - drainedPosition;
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer targetBuffer = target.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            targetBuffer.put(0, buffer, 0, HEADER_SIZE);
+            targetBuffer.putInt(DRAINED_OFFSET, HEADER_SIZE);
+            targetBuffer.put(HEADER_SIZE, buffer, drainedPosition, pending);
+            targetBuffer.force();
+
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.close();
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Sale journal could not be compacted: " + path, e);
+        }
+
+        base += shift;
+        writePosition -= shift;
+        drainedPosition = HEADER_SIZE;
+        durablePosition.accumulateAndGet(base + writePosition, Math::max);
+        log.info("compact: Sale journal compacted. Pending: {} of {} bytes", pending, capacity);
+    }
+
+
+    /**
+     * A journal record and the position right after it, to be passed to {@link #markDrained}.
+     */
+    public record Entry(long position, byte[] data) {
+    }
+}
@@ -2,8 +2,29 @@ package com.saleservice.repository;
 
 import com.saleservice.model.Sale;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface SaleRepository extends JpaRepository<Sale, Long> {
+
+    /**
+     * Reserves blocks of sale IDs from the sequence Hibernate uses, in the same way Hibernate does: each value
+     * returned is the highest ID of a block of {@link Sale#ID_ALLOCATION_SIZE} IDs.
+     */
+    @Query(value = "SELECT nextval('sales_seq') FROM generate_series(1, :count)", nativeQuery = true)
+    List<Long> reserveSaleIdBlocks(int count);
+
+    /**
+     * Reserves blocks of sale item IDs; each value returned is the highest ID of a block of
+     * {@link com.saleservice.model.SaleItem#ID_ALLOCATION_SIZE} IDs.
+     */
+    @Query(value = "SELECT nextval('sale_items_seq') FROM generate_series(1, :count)", nativeQuery = true)
+    List<Long> reserveSaleItemIdBlocks(int count);
+
+    @Query("SELECT s.id FROM Sale s WHERE s.id IN :ids")
+    List<Long> findExistingIds(Collection<Long> ids);
 }
@@ -0,0 +1,186 @@
+package com.saleservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores stock reservations in Redis. {@code stock:reserved:{barcode}} counts the units of a product
+ * reserved by all open bags, and {@code stock:reservation:{bagId}} holds the units each bag has reserved, keyed by barcode,
+ * so that a bag can release exactly what it holds. {@code stock:held:{barcode}} records the units of checked-out bags
+ * that are still counted as reserved until the product-service has applied their sale.
+ * All of them are changed together by Lua scripts.
+ * @author Emir Aktaş
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class StockReservationRepository {
+
+    static final String RESERVED_PREFIX = "stock:reserved:";
+    static final String RESERVATION_PREFIX = "stock:reservation:";
+    static final String HELD_PREFIX = "stock:held:";
+
+    private static final RedisScript<Long> RESERVE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/reserve-stock.lua"), Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/release-stock.lua"), Long.class);
+    private static final RedisScript<Long> HOLD_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/hold-stock.lua"), Long.class);
+    private static final RedisScript<Long> RELEASE_HELD_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/release-held-stock.lua"), Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+
+    /**
+     * Reserves the given quantities for a bag if, for every product, the units reserved by all bags
+     * plus the new quantity do not exceed its stock. Either every quantity is reserved or none is.
+     *
+     * @param bagId      the ID of the bag
+     * @param quantities the quantities to reserve, keyed by barcode
+     * @param stocks     the stock of each product, keyed by barcode
+     * @param timeToLive how long the reservations are kept if they are not released
+     * @param holdTimeout how long the units of checked-out bags are held at most, see {@link #hold}
+     * @return the barcode of the first product without enough unreserved stock, or null if everything was reserved
+     */
+    public String reserve(Long bagId, Map<String, Integer> quantities, Map<String, Integer> stocks,
+                          Duration timeToLive, Duration holdTimeout) {
+        log.trace("reserve method begins. BagId: {}, Quantities: {}", bagId, quantities);
+
+        List<String> barcodes = new ArrayList<>(quantities.keySet());
+        List<String> keys = new ArrayList<>(barcodes.size() * 2 + 1);
+        List<String> args = new ArrayList<>(barcodes.size() * 3 + 2);
+        keys.add(RESERVATION_PREFIX + bagId);
+        args.add(Long.toString(timeToLive.toSeconds()));
+        args.add(Long.toString(holdTimeout.toSeconds()));
+        for (String barcode : barcodes) {
+            keys.add(RESERVED_PREFIX + barcode);
+            keys.add(HELD_PREFIX + barcode);
+            args.add(barcode);
+            args.add(quantities.get(barcode).toString());
+            args.add(stocks.get(barcode).toString());
+        }
+
+        Long result = redisTemplate.execute(RESERVE_SCRIPT, keys, args.toArray());
+        String unavailable = (result == null || result == 0) ? null : barcodes.get(result.intValue() - 1);
+
+        log.trace("reserve method ends. BagId: {}, Unavailable: {}", bagId, unavailable);
+        return unavailable;
+    }
+
+
+    /**
+     * Releases the given quantities reserved by a bag. A bag never releases more than it holds.
+     *
+     * @return the number of units released
+     */
+    public long release(Long bagId, Map<String, Integer> quantities, Duration timeToLive) {
+        log.trace("release method begins. BagId: {}, Quantities: {}", bagId, quantities);
+
+        List<String> keys = new ArrayList<>(quantities.size() + 1);
+        List<String> args = new ArrayList<>(quantities.size() * 2 + 1);
+        keys.add(RESERVATION_PREFIX + bagId);
+        args.add(Long.toString(timeToLive.toSeconds()));
+        quantities.forEach((barcode, quantity) -> {
+            keys.add(RESERVED_PREFIX + barcode);
+            args.add(barcode);
+            args.add(quantity.toString());
+        });
+
+        Long released = redisTemplate.execute(RELEASE_SCRIPT, keys, args.toArray());
+
+        log.trace("release method ends. BagId: {}, Released: {}", bagId, released);
+        return released == null ? 0 : released;
+    }
+
+
+    /**
+     * Reads the units a bag has reserved.
+     *
+     * @return the reserved quantities, keyed by barcode
+     */
+    public Map<String, Integer> findReserved(Long bagId) {
+        log.trace("findReserved method begins. BagId: {}", bagId);
+
+        Map<String, Integer> reserved = new HashMap<>();
+        redisTemplate.<String, String>opsForHash().entries(RESERVATION_PREFIX + bagId)
+                .forEach((barcode, quantity) -> reserved.put(barcode, Integer.valueOf(quantity)));
+
+        log.trace("findReserved method ends. BagId: {}, Reserved: {}", bagId, reserved);
+        return reserved;
+    }
+
+
+    /**
+     * Restarts the time to live of a bag's reservations, if it has any.
+     *
+     * @return true if the bag has reservations
+     */
+    public boolean extend(Long bagId, Duration timeToLive) {
+        log.trace("extend method begins. BagId: {}", bagId);
+
+        boolean extended = Boolean.TRUE.equals(redisTemplate.expire(RESERVATION_PREFIX + bagId, timeToLive));
+
+        log.trace("extend method ends. BagId: {}, Extended: {}", bagId, extended);
+        return extended;
+    }
+
+
+    /**
+     * Keeps the units reserved by a checked-out bag counted as reserved until {@link #releaseHeld} is called
+     * for each product, or until the hold times out, and deletes the reservation of the bag.
+     *
+     * @param barcodes the barcodes of the bag's items
+     * @return the number of units held
+     */
+    public long hold(Long bagId, Collection<String> barcodes, Duration timeToLive) {
+        log.trace("hold method begins. BagId: {}, Barcodes: {}", bagId, barcodes);
+
+        List<String> keys = new ArrayList<>(barcodes.size() * 2 + 1);
+        List<String> args = new ArrayList<>(barcodes.size() + 2);
+        keys.add(RESERVATION_PREFIX + bagId);
+        args.add(Long.toString(timeToLive.toSeconds()));
+        args.add(bagId.toString());
+        for (String barcode : barcodes) {
+            keys.add(RESERVED_PREFIX + barcode);
+            keys.add(HELD_PREFIX + barcode);
+            args.add(barcode);
+        }
+
+        Long held = redisTemplate.execute(HOLD_SCRIPT, keys, args.toArray());
+
+        log.trace("hold method ends. BagId: {}, Held: {}", bagId, held);
+        return held == null ? 0 : held;
+    }
+
+
+    /**
+     * Releases the units of a product held for one checked-out bag. The hold is not removed at once but left to
+     * the next reservation of the product after the grace period, see {@code release-held-stock.lua}.
+     * Holds of other bags are not affected.
+     *
+     * @param holdTimeout the checkout hold timeout used by {@link #reserve}
+     * @param grace       how long the units stay held after this call
+     * @return the number of units of the bag's hold, or 0 if it holds nothing of the product
+     */
+    public long releaseHeld(Long bagId, String barcode, Duration holdTimeout, Duration grace) {
+        log.trace("releaseHeld method begins. BagId: {}, Barcode: {}", bagId, barcode);
+
+        Long released = redisTemplate.execute(RELEASE_HELD_SCRIPT, List.of(HELD_PREFIX + barcode),
+                bagId.toString(), Long.toString(holdTimeout.toSeconds()), Long.toString(grace.toSeconds()));
+
+        log.trace("releaseHeld method ends. BagId: {}, Barcode: {}, Released: {}", bagId, barcode, released);
+        return released == null ? 0 : released;
+    }
+}
@@ -0,0 +1,225 @@
+package com.saleservice.repository;
+
+import com.saleservice.dto.CursorPageDto;
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagOperation;
+import com.saleservice.model.ParkedBag;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@link BagRepository} with two tiers: bags live in Redis, and bags that have been idle for a while are parked in
+ * Postgres in the compact form written by {@link BagCodec}. Looking up or checking out a parked bag moves it back
+ * to Redis first, so callers never see the difference. Enabled with {@code bag.parking.enabled=true}, on top of
+ * whichever Redis storage mode is configured.
+ * Parked bags are not listed by {@link #findPage} until they are used again.
+ * @author Emir Aktaş
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "bag.parking.enabled", havingValue = "true")
+public class TieredBagRepository implements BagRepository {
+
+    private final RedisBagRepository hotTier;
+    private final ParkedBagRepository coldTier;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter hotHitCounter;
+    private final Counter coldHitCounter;
+    private final Counter missCounter;
+
+
+    public TieredBagRepository(RedisBagRepository hotTier,
+                               ParkedBagRepository coldTier,
+                               TransactionTemplate transactionTemplate,
+                               MeterRegistry meterRegistry) {
+        this.hotTier = hotTier;
+        this.coldTier = coldTier;
+        this.transactionTemplate = transactionTemplate;
+
+        this.hotHitCounter = Counter.builder("bag.tier.hits")
+                .tag("tier", "hot")
+                .description("Bag lookups served from Redis")
+                .register(meterRegistry);
+        this.coldHitCounter = Counter.builder("bag.tier.hits")
+                .tag("tier", "cold")
+                .description("Bag lookups served by moving a parked bag back to Redis")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("bag.tier.misses")
+                .description("Bag lookups that found the bag in neither tier")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    public Optional<Bag> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        Optional<Bag> bag = hotTier.findById(id);
+        if (bag.isPresent()) {
+            hotHitCounter.increment();
+            return bag;
+        }
+        return unpark(id);
+    }
+
+
+    @Override
+    public Long nextId() {
+        return hotTier.nextId();
+    }
+
+
+    @Override
+    public Bag save(Bag bag) {
+        return hotTier.save(bag);
+    }
+
+
+    @Override
+    public void delete(Bag bag) {
+        hotTier.delete(bag);
+    }
+
+
+    @Override
+    public Optional<Bag> take(Long id) {
+        Optional<Bag> bag = hotTier.take(id);
+        if (bag.isPresent()) {
+            hotHitCounter.increment();
+            return bag;
+        }
+        return unpark(id).flatMap(restored -> hotTier.take(id));
+    }
+
+
+    @Override
+    public void restore(Bag bag) {
+        hotTier.restore(bag);
+    }
+
+
+    @Override
+    public CursorPageDto<Bag> findPage(String cursor, int count) {
+        return hotTier.findPage(cursor, count);
+    }
+
+
+    @Override
+    public void removeFromIndex(Long id) {
+        hotTier.removeFromIndex(id);
+    }
+
+
+    /**
+     * Moves bags that have not been saved for the given time from Redis to Postgres.
+     * A bag that cannot be stored in Postgres is put back into Redis.
+     *
+     * @param idleFor the time since the last save after which a bag is parked
+     * @param limit   the maximum number of bags to be parked
+     * @return the IDs of the parked bags
+     */
+    public List<Long> parkIdleBags(Duration idleFor, int limit) {
+        log.trace("parkIdleBags method begins. IdleFor: {}, Limit: {}", idleFor, limit);
+
+        long maxRemainingTtl = Bag.DEFAULT_EXPIRATION_SECONDS - idleFor.toSeconds();
+        List<Long> parked = hotTier.findExpiringIds(maxRemainingTtl, limit).entrySet().stream()
+                .filter(entry -> park(entry.getKey(), entry.getValue()))
+                .map(Map.Entry::getKey)
+                .toList();
+
+        log.trace("parkIdleBags method ends. Parked: {}", parked.size());
+        return parked;
+    }
+
+
+    /**
+     * Deletes parked bags that have expired.
+     *
+     * @param limit the maximum number of bags to be deleted
+     * @return the IDs of the deleted bags
+     */
+    public List<Long> purgeExpiredBags(int limit) {
+        return transactionTemplate.execute(status -> {
+            List<Long> expired = coldTier.findExpiredIds(LocalDateTime.now(), PageRequest.ofSize(limit));
+            if (!expired.isEmpty()) {
+                coldTier.deleteAllByIdInBatch(expired);
+            }
+            return expired;
+        });
+    }
+
+
+
+    private boolean park(Long id, long remainingTtlSeconds) {
+        Optional<Bag> taken = hotTier.take(id, BagOperation.PARK);
+        if (taken.isEmpty() || taken.get().getItems().isEmpty()) {
+            return false;
+        }
+
+        Bag bag = taken.get();
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            transactionTemplate.execute(status -> coldTier.save(ParkedBag.builder()
+                    .id(id)
+                    .data(BagCodec.encode(bag))
+                    .parkedDate(now)
+                    .expirationDate(now.plusSeconds(remainingTtlSeconds))
+                    .build()));
+        } catch (RuntimeException e) {
+            log.warn("park: Bag could not be parked and is put back into Redis. BagId: {}", id, e);
+            bag.setExpiration(remainingTtlSeconds);
+            hotTier.restore(bag);
+            return false;
+        }
+
+        log.debug("park: Bag parked. BagId: {}, Items: {}", id, bag.getItems().size());
+        return true;
+    }
+
+
+    /**
+     * Moves a parked bag back to Redis with the time to live it had left. Deleting the row first makes
+     * instances that restore the same bag at the same time wait for each other; the ones that find the row
+     * already gone read the bag from Redis instead. If the bag cannot be written to Redis, the row is kept.
+     */
+    private Optional<Bag> unpark(Long id) {
+        Optional<Bag> bag = transactionTemplate.execute(status -> {
+            ParkedBag parked = coldTier.findById(id).orElse(null);
+            LocalDateTime now = LocalDateTime.now();
+            if (parked == null || !parked.getExpirationDate().isAfter(now)) {
+                return Optional.<Bag>empty();
+            }
+            if (coldTier.deleteParkedBag(id) == 0) {
+                return hotTier.findById(id);
+            }
+
+            Bag restored = BagCodec.decode(parked.getData());
+            restored.setId(id);
+            restored.setExpiration(Math.max(1, Duration.between(now, parked.getExpirationDate()).toSeconds()));
+            hotTier.restore(restored);
+            log.debug("unpark: Parked bag moved back to Redis. BagId: {}", id);
+            return Optional.of(restored);
+        });
+
+        if (bag != null && bag.isPresent()) {
+            coldHitCounter.increment();
+            return bag;
+        }
+        missCounter.increment();
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,18 @@
+package com.saleservice.service;
+
+/**
+ * Service interface for parking idle bags.
+ * Bags that have not been changed for a while, such as a suspended transaction while the customer fetches an item,
+ * are moved out of Redis into Postgres and moved back the next time they are used.
+ * @author Emir Aktaş
+ */
+public interface BagParkingService {
+
+    /**
+     * Parks bags that have been idle longer than the configured threshold, and deletes parked bags that have
+     * expired, releasing the stock they had reserved.
+     *
+     * @return the number of bags parked
+     */
+    int parkIdleBags();
+}
@@ -1,16 +1,26 @@
 package com.saleservice.service;
 
+import com.saleservice.dto.BagDeltaDto;
 import com.saleservice.dto.BagDto;
+import com.saleservice.dto.CursorPageDto;
+import com.saleservice.dto.ProductScanDto;
+import com.saleservice.exception.BagIsEmptyException;
 import com.saleservice.exception.BagNotFoundException;
 import com.saleservice.exception.CampaignNotFoundException;
 import com.saleservice.exception.InvalidCampaignException;
 import com.saleservice.exception.InvalidInputException;
+import com.saleservice.exception.ProductNotFoundException;
+import com.saleservice.model.Bag;
 import jakarta.transaction.Transactional;
-import org.springframework.data.domain.Page;
+
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Service interface for managing shopping bags.
  * Provides methods for adding, removing, and managing products in bags, as well as applying and removing campaigns.
+ * Bags are updated optimistically: if a bag is changed by another request at the same time, the update is retried
+ * on the latest bag a few times before a {@link com.saleservice.exception.BagConflictException} is thrown.
  * @author Emir Aktaş
  */
 public interface BagService {
@@ -28,6 +38,48 @@ public interface BagService {
     BagDto addProductToBag(Long bagId, String barcode, int quantity);
 
 
+    /**
+     * Adds a product to a bag like {@link #addProductToBag}, but returns only the changed line and the new totals.
+     *
+     * @param bagId    the ID of the bag
+     * @param barcode  the barcode of the product to be added
+     * @param quantity the quantity of the product to be added
+     * @return the changed line, the new totals and the new bag version
+     * @throws InvalidInputException if the barcode is empty or if the quantity exceeds the stock
+     */
+    @Transactional
+    BagDeltaDto addProductToBagDelta(Long bagId, String barcode, int quantity);
+
+
+    /**
+     * Adds several scanned products to a bag in a single operation.
+     * All products are resolved and validated before the bag is changed, so either every scan is added or none is.
+     * Scans of the same barcode are merged, and the bag is priced and saved once.
+     *
+     * @param bagId the ID of the bag, or null to create a new bag
+     * @param scans the scanned barcodes and their quantities
+     * @return the updated bag data transfer object
+     * @throws InvalidInputException if the scan list is empty, a barcode is empty or a quantity exceeds the stock
+     * @throws ProductNotFoundException if any of the products is not found
+     */
+    @Transactional
+    BagDto addProductsToBag(Long bagId, List<ProductScanDto> scans);
+
+
+    /**
+     * Adds several scanned products to a bag like {@link #addProductsToBag}, but returns only the changed lines
+     * and the new totals.
+     *
+     * @param bagId the ID of the bag, or null to create a new bag
+     * @param scans the scanned barcodes and their quantities
+     * @return the changed lines, the new totals and the new bag version
+     * @throws InvalidInputException if the scan list is empty, a barcode is empty or a quantity exceeds the stock
+     * @throws ProductNotFoundException if any of the products is not found
+     */
+    @Transactional
+    BagDeltaDto addProductsToBagDelta(Long bagId, List<ProductScanDto> scans);
+
+
     /**
      * Removes a product from a bag.
      *
@@ -42,6 +94,21 @@ public interface BagService {
     BagDto removeProductFromBag(Long bagId, String barcode, int quantity);
 
 
+    /**
+     * Removes a product from a bag like {@link #removeProductFromBag}, but returns only the changed line and the
+     * new totals. A line that is removed completely is listed in the removed barcodes.
+     *
+     * @param bagId    the ID of the bag
+     * @param barcode  the barcode of the product to be removed
+     * @param quantity the quantity of the product to be removed
+     * @return the changed line, the new totals and the new bag version
+     * @throws InvalidInputException if the bagId or barcode is empty, or if the quantity to remove exceeds the quantity in the bag
+     * @throws BagNotFoundException if the bag or product is not found
+     */
+    @Transactional
+    BagDeltaDto removeProductFromBagDelta(Long bagId, String barcode, int quantity);
+
+
     /**
      * Removes all products from a bag.
      *
@@ -65,6 +132,21 @@ public interface BagService {
     void deleteBagById(Long bagId);
 
 
+    /**
+     * Removes a bag for checkout and returns it, reading and deleting it in a single Redis round trip so that
+     * no scan can change the bag while the sale is being built.
+     * Inside a transaction, the bag is put back if the transaction rolls back and its stock reservations are
+     * released once it commits; outside a transaction the reservations are released immediately.
+     *
+     * @param bagId the ID of the bag to be checked out
+     * @return the removed bag
+     * @throws InvalidInputException if the bagId is empty
+     * @throws BagNotFoundException if the bag is not found
+     * @throws BagIsEmptyException if the bag has no items, in which case it is not removed
+     */
+    Bag checkoutBag(Long bagId);
+
+
     /**
      * Retrieves a bag by its ID.
      *
@@ -77,14 +159,28 @@ public interface BagService {
 
 
     /**
-     * Retrieves a paginated list of all bags.
+     * Retrieves a bag only if it has changed since the version a terminal holds.
      *
-     * @param pageNumber the number of the page to be retrieved
-     * @param pageSize   the size of the page to be retrieved
-     * @return a paginated list of bag data transfer objects
-     * @throws InvalidInputException if the page size or page number is less than 1
+     * @param bagId        the ID of the bag to be retrieved
+     * @param knownVersion the version of the bag the terminal holds
+     * @return the bag data transfer object, or empty if the bag is still at the known version
+     * @throws InvalidInputException if the bagId is empty
+     * @throws BagNotFoundException if the bag is not found
      */
-    Page<BagDto> getAllBags(int pageNumber, int pageSize);
+    Optional<BagDto> getBagIfChanged(Long bagId, long knownVersion);
+
+
+    /**
+     * Retrieves one page of open bags, starting from the given cursor.
+     * Pass "0" for the first page and the returned next cursor for the following pages.
+     * The page size is a hint, so a page may hold slightly fewer or more bags.
+     *
+     * @param cursor   the cursor returned with the previous page, or "0" for the first page
+     * @param pageSize the number of bags to retrieve
+     * @return a page of bag data transfer objects and the cursor of the next page
+     * @throws InvalidInputException if the page size is less than 1 or the cursor is not valid
+     */
+    CursorPageDto<BagDto> getAllBags(String cursor, int pageSize);
 
 
     /**
@@ -101,6 +197,19 @@ public interface BagService {
     BagDto applyCampaignToBag(Long bagId, Long campaignId);
 
 
+    /**
+     * Switches a bag to best-campaign mode and applies the active campaign that saves the most.
+     * The campaign is selected again on every later change to the bag, until a campaign is applied
+     * explicitly or removed.
+     *
+     * @param bagId the ID of the bag
+     * @return the updated bag data transfer object
+     * @throws BagNotFoundException if the bag is not found
+     */
+    @Transactional
+    BagDto applyBestCampaignToBag(Long bagId);
+
+
     /**
      * Removes a campaign from a bag.
      *
@@ -0,0 +1,38 @@
+package com.saleservice.service;
+
+import com.saleservice.dto.ProductEventMessage;
+
+/**
+ * Service interface for rejecting unknown barcodes without a product lookup.
+ * Keeps a Bloom filter of all barcodes in the offline catalog snapshot and of products created since, so that
+ * mis-scans and keypad typos are answered locally instead of by a 404 from the product-service.
+ * @author Emir Aktaş
+ */
+public interface BarcodeFilterService {
+
+    /**
+     * Checks whether a barcode certainly does not belong to any product. A false result does not mean that the
+     * product exists; it has to be looked up as before. Always false while there is no usable filter.
+     *
+     * @param barcode the scanned barcode
+     * @return true if no product has the barcode
+     */
+    boolean isUnknownBarcode(String barcode);
+
+
+    /**
+     * Adds the barcodes of newly created products to the filter. Deleted products stay in the filter until it is
+     * rebuilt from the next snapshot, since a Bloom filter cannot remove entries.
+     *
+     * @param message the product change event
+     */
+    void handleProductEvent(ProductEventMessage message);
+
+
+    /**
+     * Rebuilds the filter from the current catalog snapshot and the products created since the last rebuild.
+     *
+     * @return the number of barcodes in the new filter, or zero if there is no snapshot
+     */
+    int rebuildFilter();
+}
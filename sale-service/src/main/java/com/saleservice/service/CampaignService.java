@@ -9,9 +9,14 @@ import com.saleservice.exception.InvalidInputException;
 import jakarta.transaction.Transactional;
 import org.springframework.data.domain.Page;
 
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Service interface for managing campaigns.
  * Provides methods for adding, updating, deleting, and retrieving campaigns.
+ * Campaigns that are currently valid are also served from an in-memory index, which every instance
+ * reloads when a campaign is added, updated or deleted on any of them.
  * @author Emir Aktaş
  */
 public interface CampaignService {
@@ -78,4 +83,27 @@ public interface CampaignService {
     Page<CampaignResponseDto> getAllCampaigns(int pageNumber,
                                               int pageSize,
                                               boolean hideDeleted);
+
+
+    /**
+     * Retrieves the campaigns that are active now from the in-memory index, without database access.
+     *
+     * @return the active campaigns ordered by start date
+     */
+    List<CampaignResponseDto> getActiveCampaigns();
+
+
+    /**
+     * Looks up an active campaign in the in-memory index, without database access.
+     *
+     * @param id the ID of the campaign
+     * @return the campaign if it is not deleted and active now, otherwise an empty optional
+     */
+    Optional<CampaignResponseDto> findActiveCampaign(Long id);
+
+
+    /**
+     * Reloads the in-memory index with the campaigns that are not deleted and have not ended yet.
+     */
+    void refreshActiveCampaigns();
 }
@@ -0,0 +1,42 @@
+package com.saleservice.service;
+
+import com.saleservice.dto.ProductDto;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Service interface for the offline catalog snapshot.
+ * The snapshot is a memory-mapped copy of the barcodes, names and prices of all products, refreshed periodically
+ * from the product-service and kept on disk, so that lanes can keep scanning while the product-service is unavailable.
+ * @author Emir Aktaş
+ */
+public interface CatalogSnapshotService {
+
+    /**
+     * Looks up a product in the snapshot. The returned product has no stock information.
+     *
+     * @param barcode the barcode of the product
+     * @return the product, or an empty optional if it is not in the snapshot
+     */
+    Optional<ProductDto> findProduct(String barcode);
+
+
+    /**
+     * Downloads the catalog from the product-service and replaces the snapshot file and the mapped snapshot with it.
+     * If the download fails, the current snapshot is kept.
+     *
+     * @return true if the snapshot was replaced
+     */
+    boolean refreshSnapshot();
+
+
+    /**
+     * Passes the barcode of every product in the snapshot to the given action, in barcode order.
+     *
+     * @param action the action to be called for each barcode
+     * @return the time the snapshot was downloaded, or an empty optional if there is no snapshot
+     */
+    Optional<Instant> forEachBarcode(Consumer<String> action);
+}
@@ -0,0 +1,37 @@
+package com.saleservice.service;
+
+import com.saleservice.dto.ReceiptMessage;
+import com.saleservice.exception.*;
+import com.saleservice.model.PaymentMethod;
+import java.math.BigDecimal;
+
+/**
+ * Service interface for completing sales at most once per idempotency key.
+ * The key and the receipt of the sale it completed are kept in Redis, so a retried request
+ * is answered with the original receipt instead of completing the sale again.
+ * @author Emir Aktaş
+ */
+public interface IdempotencyService {
+
+    /**
+     * Completes a sale unless a sale was already completed with the given idempotency key,
+     * in which case the receipt of that sale is returned. If another request with the same key
+     * is still in progress, waits for it to finish first.
+     *
+     * @param idempotencyKey the idempotency key sent by the client
+     * @param bagId the ID of the bag
+     * @param amountReceived the amount of money received for the sale
+     * @param paymentMethod the method of payment used for the sale
+     * @param cashierName the name of the cashier processing the sale
+     * @return the receipt message of the sale completed with the key
+     * @throws InvalidInputException if the key is blank or too long, or was already used for another bag
+     * @throws IdempotencyKeyInProgressException if the request with the same key did not finish in time
+     * @throws BagNotFoundException if the bag with the given ID is not found
+     * @throws BagIsEmptyException if the bag is empty
+     */
+    ReceiptMessage completeSale(String idempotencyKey,
+                                Long bagId,
+                                BigDecimal amountReceived,
+                                PaymentMethod paymentMethod,
+                                String cashierName);
+}
@@ -0,0 +1,39 @@
+package com.saleservice.service;
+
+import com.saleservice.config.RabbitMqMessagePublisher.MessageType;
+import jakarta.transaction.Transactional;
+
+/**
+ * Service interface for the transactional outbox.
+ * Messages are stored in the transaction of the change they describe and published to RabbitMQ
+ * by a relay once that transaction has committed.
+ * @author Emir Aktaş
+ */
+public interface OutboxService {
+
+    /**
+     * Stores a message in the outbox, joining the caller's transaction.
+     *
+     * @param payload     the message payload to be published
+     * @param messageType the type of the message, determining the target exchange and routing key
+     */
+    @Transactional
+    void enqueue(Object payload, MessageType messageType);
+
+
+    /**
+     * Publishes unsent outbox messages in pipelined batches, waits for the broker to confirm each batch,
+     * and marks the batch sent in one statement. Runs until the outbox is drained or a batch fails.
+     *
+     * @return the number of messages published
+     */
+    int relayPendingMessages();
+
+
+    /**
+     * Deletes the messages that were sent longer ago than the retention period.
+     *
+     * @return the number of deleted messages
+     */
+    int purgeSentMessages();
+}
@@ -0,0 +1,47 @@
+package com.saleservice.service;
+
+import com.saleservice.dto.ProductDto;
+import com.saleservice.dto.ProductEventMessage;
+import com.saleservice.exception.ProductNotFoundException;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Service interface for the in-process product near-cache.
+ * Keeps product lookups used on every scan off the network, while price, stock and delete events
+ * published by the product-service keep the cached entries correct.
+ * @author Emir Aktaş
+ */
+public interface ProductCacheService {
+
+    /**
+     * Retrieves a product by its barcode for stock validation.
+     * Cached entries whose stock is older than the configured staleness bound are reloaded from the product-service.
+     *
+     * @param barcode the barcode of the product to be retrieved
+     * @return the product data transfer object with a stock value no older than the staleness bound
+     * @throws ProductNotFoundException if the product with the given barcode is not found
+     */
+    ProductDto getProductWithFreshStock(String barcode);
+
+
+    /**
+     * Retrieves several products by their barcodes for stock validation in one call.
+     * Fresh cached entries are returned directly, the remaining products are loaded from the product-service concurrently.
+     *
+     * @param barcodes the barcodes of the products to be retrieved
+     * @return the products keyed by barcode, in the iteration order of the given barcodes
+     * @throws ProductNotFoundException if any of the products is not found
+     */
+    Map<String, ProductDto> getProductsWithFreshStock(Collection<String> barcodes);
+
+
+    /**
+     * Applies a product change event to the cache.
+     * Updates are written into already cached entries, deleted and newly created products are evicted.
+     *
+     * @param message the product change event
+     */
+    void handleProductEvent(ProductEventMessage message);
+}
@@ -0,0 +1,41 @@
+package com.saleservice.service;
+
+import com.saleservice.dto.ReceiptMessage;
+
+/**
+ * Service interface for the local sale journal.
+ * In journal mode a completed sale is acknowledged as soon as it is written to a journal file on the local disk;
+ * a background writer stores it in Postgres afterwards, together with its outbox messages.
+ * @author Emir Aktaş
+ */
+public interface SaleJournalService {
+
+    /**
+     * Takes the next sale ID from the blocks reserved in advance, so that a journaled sale has its number before
+     * it reaches Postgres. Reserves a new block only if all reserved IDs have been used.
+     *
+     * @return the ID for a new sale
+     */
+    long nextSaleId();
+
+
+    /**
+     * Writes a completed sale to the journal and waits until it is on disk.
+     *
+     * @param bagId   the ID of the bag the sale was checked out from
+     * @param receipt the receipt of the sale, carrying the sale with its ID already assigned
+     * @return false if the journal is full and the sale has to be saved directly
+     */
+    boolean append(Long bagId, ReceiptMessage receipt);
+
+
+    /**
+     * Stores journaled sales in Postgres in batches, each batch in one transaction with the stock adjustment,
+     * receipt and event messages of its sales, and tops up the reserved sale IDs. Sales that are already in
+     * Postgres, because the journal was replayed after a crash, are skipped. Runs until the journal is drained
+     * or a batch fails.
+     *
+     * @return the number of sales stored
+     */
+    int drainJournal();
+}
@@ -0,0 +1,75 @@
+package com.saleservice.service;
+
+import com.saleservice.exception.InvalidInputException;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Service interface for short-lived stock reservations held by open bags.
+ * Units are reserved when they are scanned into a bag, so that two lanes cannot both sell the last units of a product,
+ * and released when they are removed or when the bag is cleared, deleted or expires. Units of a checked-out bag
+ * stay reserved until the product-service reports the stock change of the sale, since the cached stock
+ * does not reflect the sale before that.
+ * Reservations live slightly longer than the bag itself, so they are still there to release when the bag expires.
+ * @author Emir Aktaş
+ */
+public interface StockReservationService {
+
+    /**
+     * Reserves stock for a bag. Either every quantity is reserved or none is.
+     *
+     * @param bagId      the ID of the bag
+     * @param quantities the quantities to reserve, keyed by barcode
+     * @param stocks     the current stock of each product, keyed by barcode
+     * @throws InvalidInputException if the stock of a product is not enough for the units already reserved and the new quantity
+     */
+    void reserve(Long bagId, Map<String, Integer> quantities, Map<String, Integer> stocks);
+
+
+    /**
+     * Releases part of the stock reserved by a bag.
+     *
+     * @param bagId    the ID of the bag
+     * @param barcode  the barcode of the product
+     * @param quantity the number of units to release
+     */
+    void release(Long bagId, String barcode, int quantity);
+
+
+    /**
+     * Releases all stock reserved by a bag. Releasing a bag that holds nothing has no effect.
+     *
+     * @param bagId the ID of the bag
+     */
+    void releaseAll(Long bagId);
+
+
+    /**
+     * Restarts the time to live of the stock reserved by a bag, after the bag was saved without reserving
+     * or releasing anything, so that the reservations keep outliving the bag. A bag without reservations is left as it is.
+     *
+     * @param bagId the ID of the bag
+     */
+    void extend(Long bagId);
+
+
+    /**
+     * Keeps the stock reserved by a checked-out bag reserved until the stock change of its sale is received for each product,
+     * or until the checkout hold times out if the stock change is lost.
+     *
+     * @param bagId    the ID of the bag
+     * @param barcodes the barcodes of the bag's items
+     */
+    void holdUntilStockChanged(Long bagId, Collection<String> barcodes);
+
+
+    /**
+     * Releases the stock of a product held for a checked-out bag, after the product-service reported the stock change
+     * of the bag's sale. The stock held for other bags stays reserved.
+     *
+     * @param bagId   the ID of the checked-out bag
+     * @param barcode the barcode of the product
+     */
+    void releaseHeld(Long bagId, String barcode);
+}
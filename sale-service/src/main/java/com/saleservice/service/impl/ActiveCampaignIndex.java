@@ -0,0 +1,86 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.dto.CampaignResponseDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable snapshot of the campaigns that are not deleted and have not ended yet, ordered by start date.
+ * A new snapshot replaces the old one whenever a campaign changes, so lookups never lock or touch the database.
+ */
+final class ActiveCampaignIndex {
+
+    static final ActiveCampaignIndex EMPTY = new ActiveCampaignIndex(List.of());
+
+    private final CampaignResponseDto[] byStartDate;
+    private final Map<Long, CampaignResponseDto> byId;
+
+
+    ActiveCampaignIndex(List<CampaignResponseDto> campaigns) {
+        this.byStartDate = campaigns.toArray(new CampaignResponseDto[0]);
+        Arrays.sort(byStartDate, Comparator.comparing(CampaignResponseDto::getStartDate));
+
+        this.byId = new HashMap<>(campaigns.size() * 2);
+        for (CampaignResponseDto campaign : byStartDate) {
+            byId.put(campaign.getId(), campaign);
+        }
+    }
+
+
+    /**
+     * Returns the campaigns whose validity interval contains the given time, ordered by start date.
+     */
+    List<CampaignResponseDto> activeAt(LocalDateTime time) {
+        int started = startedBefore(time);
+
+        List<CampaignResponseDto> active = new ArrayList<>(started);
+        for (int i = 0; i < started; i++) {
+            if (!time.isAfter(byStartDate[i].getEndDate())) {
+                active.add(byStartDate[i]);
+            }
+        }
+        return active;
+    }
+
+
+    /**
+     * Returns the campaign with the given ID if its validity interval contains the given time.
+     */
+    Optional<CampaignResponseDto> findActive(Long id, LocalDateTime time) {
+        CampaignResponseDto campaign = byId.get(id);
+        if (campaign == null || time.isBefore(campaign.getStartDate()) || time.isAfter(campaign.getEndDate())) {
+            return Optional.empty();
+        }
+        return Optional.of(campaign);
+    }
+
+
+    int size() {
+        return byStartDate.length;
+    }
+
+
+    /**
+     * Returns the number of campaigns that start at or before the given time.
+     */
+    private int startedBefore(LocalDateTime time) {
+        int low = 0;
+        int high = byStartDate.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (byStartDate[mid].getStartDate().isAfter(time)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,74 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.repository.TieredBagRepository;
+import com.saleservice.service.BagParkingService;
+import com.saleservice.service.StockReservationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "bag.parking.enabled", havingValue = "true")
+public class BagParkingServiceImpl implements BagParkingService {
+
+    private final TieredBagRepository tieredBagRepository;
+    private final StockReservationService stockReservationService;
+    private final Duration idleThreshold;
+    private final int batchSize;
+
+    private final Counter parkedCounter;
+    private final Counter expiredCounter;
+
+
+    public BagParkingServiceImpl(TieredBagRepository tieredBagRepository,
+                                 StockReservationService stockReservationService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${bag.parking.idle-threshold}") Duration idleThreshold,
+                                 @Value("${bag.parking.batch-size}") int batchSize) {
+        this.tieredBagRepository = tieredBagRepository;
+        this.stockReservationService = stockReservationService;
+        this.idleThreshold = idleThreshold;
+        this.batchSize = batchSize;
+
+        this.parkedCounter = Counter.builder("bag.tier.parked")
+                .description("Idle bags moved from Redis to Postgres")
+                .register(meterRegistry);
+        this.expiredCounter = Counter.builder("bag.tier.expired")
+                .description("Parked bags that expired before they were used again")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    @Scheduled(fixedDelayString = "${bag.parking.fixed-delay-ms}", initialDelayString = "${bag.parking.fixed-delay-ms}")
+    public int parkIdleBags() {
+        log.trace("parkIdleBags method begins. IdleThreshold: {}", idleThreshold);
+
+        int parked = 0;
+        try {
+            parked = tieredBagRepository.parkIdleBags(idleThreshold, batchSize).size();
+            parkedCounter.increment(parked);
+
+            List<Long> expired = tieredBagRepository.purgeExpiredBags(batchSize);
+            expired.forEach(stockReservationService::releaseAll);
+            expiredCounter.increment(expired.size());
+
+            if (parked > 0 || !expired.isEmpty()) {
+                log.info("parkIdleBags: Parked {} idle bags, deleted {} expired parked bags", parked, expired.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("parkIdleBags: Parking idle bags failed, it will be retried: {}", e.getMessage(), e);
+        }
+
+        log.trace("parkIdleBags method ends. Parked: {}", parked);
+        return parked;
+    }
+}
@@ -1,34 +1,48 @@
 package com.saleservice.service.impl;
 
-import com.saleservice.client.ProductServiceClient;
+import com.saleservice.dto.BagDeltaDto;
 import com.saleservice.dto.BagDto;
+import com.saleservice.dto.BagItemDto;
 import com.saleservice.dto.CampaignResponseDto;
+import com.saleservice.dto.CursorPageDto;
 import com.saleservice.dto.ProductDto;
+import com.saleservice.dto.ProductScanDto;
+import com.saleservice.exception.BagConflictException;
+import com.saleservice.exception.BagIsEmptyException;
 import com.saleservice.exception.BagNotFoundException;
 import com.saleservice.exception.CampaignNotFoundException;
 import com.saleservice.exception.InvalidCampaignException;
 import com.saleservice.exception.InvalidInputException;
+import com.saleservice.exception.ProductNotFoundException;
 import com.saleservice.model.Bag;
 import com.saleservice.model.BagItem;
+import com.saleservice.model.BagOperation;
 import com.saleservice.model.DiscountType;
+import com.saleservice.model.Money;
 import com.saleservice.repository.BagRepository;
 import com.saleservice.service.BagService;
+import com.saleservice.service.BarcodeFilterService;
 import com.saleservice.service.CampaignService;
+import com.saleservice.service.CatalogSnapshotService;
+import com.saleservice.service.ProductCacheService;
+import com.saleservice.service.StockReservationService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 
@@ -38,55 +52,140 @@ import java.util.stream.Collectors;
 public class BagServiceImpl implements BagService {
 
     private final BagRepository bagRepository;
-    private final ProductServiceClient productService;
+    private final ProductCacheService productCacheService;
     private final CampaignService campaignService;
     private final ModelMapper modelMapper;
+    private final StockReservationService stockReservationService;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final BarcodeFilterService barcodeFilterService;
 
 
     @Override
     @Transactional
+    @Retryable(retryFor = BagConflictException.class,
+               maxAttemptsExpression = "${bag.update.max-attempts}",
+               backoff = @Backoff(delay = 10, maxDelay = 100, random = true))
     public BagDto addProductToBag(Long bagId, String barcode, int quantity) {
+        return modelMapper.map(addProduct(bagId, barcode, quantity), BagDto.class);
+    }
+
+
+    @Override
+    @Transactional
+    @Retryable(retryFor = BagConflictException.class,
+               maxAttemptsExpression = "${bag.update.max-attempts}",
+               backoff = @Backoff(delay = 10, maxDelay = 100, random = true))
+    public BagDeltaDto addProductToBagDelta(Long bagId, String barcode, int quantity) {
+        return toDelta(addProduct(bagId, barcode, quantity), List.of(barcode));
+    }
+
+
+    private Bag addProduct(Long bagId, String barcode, int quantity) {
         log.trace("addProductToBag method begins. BagId: {}, Barcode: {}, Quantity: {}", bagId, barcode, quantity);
 
         if (barcode == null || barcode.trim().isEmpty()) {
             log.warn("addProductToBag: barcode is empty");
             throw new InvalidInputException("barcode is empty");
         }
-
-        ProductDto productDto = productService.getProduct(barcode).getBody();
+        rejectUnknownBarcode(barcode);
+
+        ProductDto productDto;
+        try {
+            productDto = productCacheService.getProductWithFreshStock(barcode);
+        } catch (ProductNotFoundException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            productDto = findProductInSnapshot(barcode, e);
+        }
 
         Bag bag = (bagId == null) ? new Bag()
                                   : bagRepository.findById(bagId).orElse(new Bag());
+        if (bag.getId() == null) {
+            bag.setId(bagRepository.nextId());
+        }
 
-        BagItem existingItem = bag.getItems().stream()
-                .filter(item -> item.getBarcode().equals(barcode))
-                .findFirst()
-                .orElse(null);
+        int reservationChange = addItemToBag(bag, productDto, barcode, quantity);
 
-        int thresholdValue = productDto.getStock();
-        if (existingItem != null) {
-            if ((existingItem.getQuantity() + quantity) > thresholdValue) {
-                log.warn("addProductToBag: Quantity exceeds stock for product with barcode {}", barcode);
-                throw new InvalidInputException("The quantity of products in the bag cannot be more than stock");}
+        updatePrice(bag);
+        bag.setOperation(BagOperation.SCAN);
+        bag.setExpiration(1800L);
+        reserveAndSave(bag, Map.of(barcode, reservationChange), Map.of(barcode, productDto));
 
-            existingItem.setQuantity(existingItem.getQuantity() + quantity);
+        log.info("addProductToBag: Product added to bag successfully. BagId: {}, Barcode: {}", bagId, barcode);
+        log.trace("addProductToBag method ends. BagId: {}, Barcode: {}, Quantity: {}", bagId, barcode, quantity);
+        return bag;
+    }
+
+
+    @Override
+    @Transactional
+    @Retryable(retryFor = BagConflictException.class,
+               maxAttemptsExpression = "${bag.update.max-attempts}",
+               backoff = @Backoff(delay = 10, maxDelay = 100, random = true))
+    public BagDto addProductsToBag(Long bagId, List<ProductScanDto> scans) {
+        return modelMapper.map(addProducts(bagId, scans), BagDto.class);
+    }
+
+
+    @Override
+    @Transactional
+    @Retryable(retryFor = BagConflictException.class,
+               maxAttemptsExpression = "${bag.update.max-attempts}",
+               backoff = @Backoff(delay = 10, maxDelay = 100, random = true))
+    public BagDeltaDto addProductsToBagDelta(Long bagId, List<ProductScanDto> scans) {
+        return toDelta(addProducts(bagId, scans), scans.stream().map(ProductScanDto::getBarcode).distinct().toList());
+    }
+
+
+    private Bag addProducts(Long bagId, List<ProductScanDto> scans) {
+        log.trace("addProductsToBag method begins. BagId: {}, Scans: {}", bagId, scans);
+
+        if (scans == null || scans.isEmpty()) {
+            log.warn("addProductsToBag: scan list is empty");
+            throw new InvalidInputException("scan list is empty");
         }
-        else {
-            if (quantity > thresholdValue) {
-                log.warn("addProductToBag: Quantity exceeds stock for product with barcode {}", barcode);
-                throw new InvalidInputException("The quantity of products in the bag cannot be more than stock");}
 
-            BagItem newBagItem = new BagItem(barcode, quantity, productDto.getPrice(), productDto.getName());
-            bag.getItems().add(newBagItem);
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (ProductScanDto scan : scans) {
+            if (scan.getBarcode() == null || scan.getBarcode().trim().isEmpty()) {
+                log.warn("addProductsToBag: barcode is empty");
+                throw new InvalidInputException("barcode is empty");
+            }
+            quantities.merge(scan.getBarcode(), scan.getQuantity(), Integer::sum);
+        }
+        quantities.keySet().forEach(this::rejectUnknownBarcode);
+
+        Map<String, ProductDto> products;
+        try {
+            products = productCacheService.getProductsWithFreshStock(quantities.keySet());
+        } catch (ProductNotFoundException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            products = new LinkedHashMap<>();
+            for (String barcode : quantities.keySet()) {
+                products.put(barcode, findProductInSnapshot(barcode, e));
+            }
+        }
+        Map<String, ProductDto> resolvedProducts = products;
+
+        Bag bag = (bagId == null) ? new Bag()
+                                  : bagRepository.findById(bagId).orElse(new Bag());
+        if (bag.getId() == null) {
+            bag.setId(bagRepository.nextId());
         }
 
+        Map<String, Integer> reservationChanges = new LinkedHashMap<>();
+        quantities.forEach((barcode, quantity) ->
+                reservationChanges.put(barcode, addItemToBag(bag, resolvedProducts.get(barcode), barcode, quantity)));
+
         updatePrice(bag);
+        bag.setOperation(BagOperation.SCAN);
         bag.setExpiration(1800L);
-        bagRepository.save(bag);
+        reserveAndSave(bag, reservationChanges, resolvedProducts);
 
-        log.info("addProductToBag: Product added to bag successfully. BagId: {}, Barcode: {}", bagId, barcode);
-        log.trace("addProductToBag method ends. BagId: {}, Barcode: {}, Quantity: {}", bagId, barcode, quantity);
-        return modelMapper.map(bag, BagDto.class);
+        log.info("addProductsToBag: {} products added to bag successfully. BagId: {}", quantities.size(), bag.getId());
+        log.trace("addProductsToBag method ends. BagId: {}, Scans: {}", bagId, scans);
+        return bag;
     }
 
 
@@ -106,6 +205,7 @@ public class BagServiceImpl implements BagService {
                     return new BagNotFoundException("Bag not found with id: " + bagId); });
 
         bagRepository.delete(bag);
+        stockReservationService.releaseAll(bagId);
 
         log.info("deleteBagById: Bag deleted successfully. BagId: {}", bagId);
         log.trace("deleteBagById method ends. BagId: {}", bagId);
@@ -114,7 +214,25 @@ public class BagServiceImpl implements BagService {
 
     @Override
     @Transactional
+    @Retryable(retryFor = BagConflictException.class,
+               maxAttemptsExpression = "${bag.update.max-attempts}",
+               backoff = @Backoff(delay = 10, maxDelay = 100, random = true))
     public BagDto removeProductFromBag(Long bagId, String barcode, int quantity) {
+        return modelMapper.map(removeProduct(bagId, barcode, quantity), BagDto.class);
+    }
+
+
+    @Override
+    @Transactional
+    @Retryable(retryFor = BagConflictException.class,
+               maxAttemptsExpression = "${bag.update.max-attempts}",
+               backoff = @Backoff(delay = 10, maxDelay = 100, random = true))
+    public BagDeltaDto removeProductFromBagDelta(Long bagId, String barcode, int quantity) {
+        return toDelta(removeProduct(bagId, barcode, quantity), List.of(barcode));
+    }
+
+
+    private Bag removeProduct(Long bagId, String barcode, int quantity) {
 
         log.trace("removeProductFromBag method begins. BagId: {}, Barcode: {}, Quantity: {}", bagId, barcode, quantity);
 
@@ -132,12 +250,15 @@ public class BagServiceImpl implements BagService {
                     log.warn("removeProductFromBag: Bag not found with id {}", bagId);
                     return new BagNotFoundException("Bag not found with id: " + bagId); });
 
-        BagItem existingItem = bag.getItems().stream()
-                .filter(item -> item.getBarcode().equals(barcode))
-                .findFirst()
-                .orElseThrow(() -> {
-                    log.warn("removeProductFromBag: Item not found in bag with barcode {}", barcode);
-                    return new BagNotFoundException("Item not found in bag with barcode: " + barcode); });
+        BagItem existingItem = bag.getItem(barcode);
+        if (existingItem == null || existingItem.getQuantity() < quantity) {
+            bag = findLatestBag(bagId);
+            existingItem = bag.getItem(barcode);
+        }
+        if (existingItem == null) {
+            log.warn("removeProductFromBag: Item not found in bag with barcode {}", barcode);
+            throw new BagNotFoundException("Item not found in bag with barcode: " + barcode);
+        }
 
         if (existingItem.getQuantity() < quantity) {
             log.warn("removeProductFromBag: Quantity to remove exceeds the quantity in the bag. Barcode: {}", barcode);
@@ -145,23 +266,29 @@ public class BagServiceImpl implements BagService {
         }
 
         if (existingItem.getQuantity() == quantity) {
-            bag.getItems().remove(existingItem);
+            bag.removeItem(barcode);
         } else {
             existingItem.setQuantity(existingItem.getQuantity() - quantity);
         }
+        bag.setTotalPrice(bag.getTotalPrice().minus(existingItem.getPrice().times(quantity)));
 
         updatePrice(bag);
+        bag.setOperation(BagOperation.REMOVE);
         bag.setExpiration(1800L);
         bagRepository.save(bag);
+        stockReservationService.release(bagId, barcode, quantity);
 
         log.info("removeProductFromBag: Product removed from bag successfully. BagId: {}, Barcode: {}", bagId, barcode);
         log.trace("removeProductFromBag method ends. BagId: {}, Barcode: {}, Quantity: {}", bagId, barcode, quantity);
-        return modelMapper.map(bag, BagDto.class);
+        return bag;
     }
 
 
     @Override
     @Transactional
+    @Retryable(retryFor = BagConflictException.class,
+               maxAttemptsExpression = "${bag.update.max-attempts}",
+               backoff = @Backoff(delay = 10, maxDelay = 100, random = true))
     public BagDto removeAllProductsFromBag(Long bagId) {
         log.trace("removeAllProductsFromBag method begins. BagId: {}", bagId);
 
@@ -175,13 +302,16 @@ public class BagServiceImpl implements BagService {
                     log.warn("removeAllProductsFromBag: Bag not found with id {}", bagId);
                     return new BagNotFoundException("Bag not found with id: " + bagId); });
 
-        bag.getItems().clear();
+        bag.clearItems();
+        bag.setTotalPrice(Money.ZERO);
 
         resetCampaignDetails(bag);
 
         updatePrice(bag);
+        bag.setOperation(BagOperation.CLEAR);
         bag.setExpiration(1800L);
         bagRepository.save(bag);
+        stockReservationService.releaseAll(bagId);
 
         log.info("removeAllProductsFromBag: All products removed from bag successfully. BagId: {}", bagId);
         log.trace("removeAllProductsFromBag method ends. BagId: {}", bagId);
@@ -189,6 +319,41 @@ public class BagServiceImpl implements BagService {
     }
 
 
+    @Override
+    public Bag checkoutBag(Long bagId) {
+        log.trace("checkoutBag method begins. BagId: {}", bagId);
+
+        if (bagId == null) {
+            log.warn("checkoutBag: bagId is empty");
+            throw new InvalidInputException("bagId is empty");
+        }
+
+        Bag bag = bagRepository.take(bagId)
+                .orElseThrow(() -> {
+                    log.warn("checkoutBag: Bag not found with id {}", bagId);
+                    return new BagNotFoundException("Bag not found with id: " + bagId); });
+        if (bag.getItems().isEmpty()) {
+            log.warn("checkoutBag: No items in the bag to process the sale. BagId: {}", bagId);
+            throw new BagIsEmptyException("No items in the bag to process the sale.");
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    completeCheckout(bag, status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            holdUntilStockChanged(bag);
+        }
+
+        log.info("checkoutBag: Bag removed for checkout. BagId: {}", bagId);
+        log.trace("checkoutBag method ends. BagId: {}", bagId);
+        return bag;
+    }
+
+
     @Override
     public BagDto getBagById(Long bagId) {
         log.trace("getBagById method begins. BagId: {}", bagId);
@@ -198,7 +363,7 @@ public class BagServiceImpl implements BagService {
             throw new InvalidInputException("bagId is empty");
         }
 
-        Bag bag = bagRepository.findById(bagId)
+        Bag bag = bagRepository.findLatestById(bagId)
                 .orElseThrow(() -> {
                     log.warn("getBagById: Bag not found with id {}", bagId);
                     return new BagNotFoundException("Bag not found with id: " + bagId); });
@@ -210,39 +375,56 @@ public class BagServiceImpl implements BagService {
 
 
     @Override
-    public Page<BagDto> getAllBags(int pageNumber, int pageSize) {
-        log.trace("getAllBags method begins. PageNumber: {}, PageSize: {}", pageNumber, pageSize);
+    public Optional<BagDto> getBagIfChanged(Long bagId, long knownVersion) {
+        log.trace("getBagIfChanged method begins. BagId: {}, KnownVersion: {}", bagId, knownVersion);
+
+        if (bagId == null) {
+            log.warn("getBagIfChanged: bagId is empty");
+            throw new InvalidInputException("bagId is empty");
+        }
+
+        Bag bag = bagRepository.findLatestById(bagId)
+                .orElseThrow(() -> {
+                    log.warn("getBagIfChanged: Bag not found with id {}", bagId);
+                    return new BagNotFoundException("Bag not found with id: " + bagId); });
+
+        Optional<BagDto> bagDto = bag.getVersion() == knownVersion
+                ? Optional.empty()
+                : Optional.of(modelMapper.map(bag, BagDto.class));
+
+        log.trace("getBagIfChanged method ends. BagId: {}, Version: {}", bagId, bag.getVersion());
+        return bagDto;
+    }
+
+
+    @Override
+    public CursorPageDto<BagDto> getAllBags(String cursor, int pageSize) {
+        log.trace("getAllBags method begins. Cursor: {}, PageSize: {}", cursor, pageSize);
 
         if (pageSize < 1) {
             log.warn("getAllBags: Minimum page size is 1");
             throw new InvalidInputException("Minimum page size is 1"); }
-        if (pageNumber < 1) {
-            log.warn("getAllBags: Page number must be at least 1");
-            throw new InvalidInputException("Page number must be at least 1"); }
+        if (cursor == null || !cursor.matches("\\d{1,20}")) {
+            log.warn("getAllBags: Invalid cursor {}", cursor);
+            throw new InvalidInputException("Invalid cursor: " + cursor); }
 
-        List<Bag> bags = new ArrayList<>();
-        bagRepository.findAll().forEach(bags::add);
-        bags.removeIf(Objects::isNull);
+        CursorPageDto<Bag> bagPage = bagRepository.findPage(cursor, pageSize);
 
-        List<BagDto> bagDtos = bags.stream()
+        List<BagDto> bagDtos = bagPage.getContent().stream()
                 .map(bag -> modelMapper.map(bag, BagDto.class))
                 .collect(Collectors.toList());
 
-
-        Pageable pageable = PageRequest.of(pageNumber-1, pageSize);
-
-        int start = Math.min((int) pageable.getOffset(), bagDtos.size());
-        int end = Math.min((start + pageable.getPageSize()), bagDtos.size());
-        List<BagDto> pageContent = bagDtos.subList(start, end);
-
-        log.info("getAllBags: Retrieved all bags successfully. PageNumber: {}, PageSize: {}", pageNumber, pageSize);
-        log.trace("getAllBags method ends. PageNumber: {}, PageSize: {}", pageNumber, pageSize);
-        return new PageImpl<>(pageContent, pageable, bagDtos.size());
+        log.info("getAllBags: Retrieved bags successfully. Cursor: {}, Count: {}", cursor, bagDtos.size());
+        log.trace("getAllBags method ends. Cursor: {}, PageSize: {}", cursor, pageSize);
+        return new CursorPageDto<>(bagDtos, bagPage.getNextCursor(), bagPage.isLast());
     }
 
 
     @Override
     @Transactional
+    @Retryable(retryFor = BagConflictException.class,
+               maxAttemptsExpression = "${bag.update.max-attempts}",
+               backoff = @Backoff(delay = 10, maxDelay = 100, random = true))
     public BagDto applyCampaignToBag(Long bagId, Long campaignId) {
         log.trace("applyCampaignToBag method begins. BagId: {}, CampaignId: {}", bagId, campaignId);
 
@@ -251,7 +433,8 @@ public class BagServiceImpl implements BagService {
                     log.warn("applyCampaignToBag: Bag not found with id {}", bagId);
                     return new BagNotFoundException("Bag not found with id: " + bagId); });
 
-        CampaignResponseDto campaign = campaignService.getCampaignById(campaignId);
+        CampaignResponseDto campaign = campaignService.findActiveCampaign(campaignId)
+                .orElseGet(() -> findCampaignMissingFromIndex(campaignId));
         if (campaign == null) {
             log.warn("applyCampaignToBag: Campaign not found with id {}", campaignId);
             throw new CampaignNotFoundException("Campaign not found with id: " + campaignId);
@@ -261,13 +444,13 @@ public class BagServiceImpl implements BagService {
             throw new InvalidCampaignException("Campaign is not active or has been deleted.");
         }
 
-        BigDecimal totalPrice = calculateTotalPrice(bag);
-        applyDiscount(bag, totalPrice, campaign.getDiscountValue(), campaign.getDiscountType());
+        applyDiscount(bag, bag.getTotalPrice(), campaign.getDiscountValue(), campaign.getDiscountType());
 
-        bag.setTotalPrice(totalPrice);
+        bag.setAutoCampaign(false);
+        bag.setOperation(BagOperation.CAMPAIGN);
         bag.setCampaignId(campaignId);
         bag.setCampaignName(campaign.getName());
-        bagRepository.save(bag);
+        saveAndExtendReservation(bag);
 
         log.info("applyCampaignToBag: Campaign applied to bag successfully. BagId: {}, CampaignId: {}", bagId, campaignId);
         log.trace("applyCampaignToBag method ends. BagId: {}, CampaignId: {}", bagId, campaignId);
@@ -277,6 +460,33 @@ public class BagServiceImpl implements BagService {
 
     @Override
     @Transactional
+    @Retryable(retryFor = BagConflictException.class,
+               maxAttemptsExpression = "${bag.update.max-attempts}",
+               backoff = @Backoff(delay = 10, maxDelay = 100, random = true))
+    public BagDto applyBestCampaignToBag(Long bagId) {
+        log.trace("applyBestCampaignToBag method begins. BagId: {}", bagId);
+
+        Bag bag = bagRepository.findById(bagId)
+                .orElseThrow(() -> {
+                    log.warn("applyBestCampaignToBag: Bag not found with id {}", bagId);
+                    return new BagNotFoundException("Bag not found with id: " + bagId); });
+
+        bag.setAutoCampaign(true);
+        bag.setOperation(BagOperation.CAMPAIGN);
+        applyBestCampaign(bag);
+        saveAndExtendReservation(bag);
+
+        log.info("applyBestCampaignToBag: Best campaign applied to bag. BagId: {}, CampaignId: {}", bagId, bag.getCampaignId());
+        log.trace("applyBestCampaignToBag method ends. BagId: {}", bagId);
+        return modelMapper.map(bag, BagDto.class);
+    }
+
+
+    @Override
+    @Transactional
+    @Retryable(retryFor = BagConflictException.class,
+               maxAttemptsExpression = "${bag.update.max-attempts}",
+               backoff = @Backoff(delay = 10, maxDelay = 100, random = true))
     public BagDto removeCampaignFromBag(Long bagId) {
         log.trace("removeCampaignFromBag method begins. BagId: {}", bagId);
 
@@ -285,14 +495,19 @@ public class BagServiceImpl implements BagService {
                     log.warn("removeCampaignFromBag: Bag not found with id {}", bagId);
                     return new BagNotFoundException("Bag not found with id: " + bagId); });
 
-        if (bag.getCampaignId() == null) {
+        if (bag.getCampaignId() == null && !bag.isAutoCampaign()) {
+            bag = findLatestBag(bagId);
+        }
+        if (bag.getCampaignId() == null && !bag.isAutoCampaign()) {
             log.warn("removeCampaignFromBag: Campaign not found in the bag with id {}", bagId);
             throw new CampaignNotFoundException("Campaign not found in the bag with id: " + bagId);
         }
 
         resetCampaignDetails(bag);
+        bag.setAutoCampaign(false);
+        bag.setOperation(BagOperation.CAMPAIGN);
 
-        bagRepository.save(bag);
+        saveAndExtendReservation(bag);
 
         log.info("removeCampaignFromBag: Campaign removed from bag successfully. BagId: {}", bagId);
         log.trace("removeCampaignFromBag method ends. BagId: {}", bagId);
@@ -301,36 +516,228 @@ public class BagServiceImpl implements BagService {
 
 
 
-    private BigDecimal calculateTotalPrice(Bag bag) {
-        log.trace("calculateTotalPrice method begins. BagId: {}", bag.getId());
+    /**
+     * Builds the delta response for the given barcodes: their current lines, or their removal if they left the bag.
+     */
+    private BagDeltaDto toDelta(Bag bag, Collection<String> barcodes) {
+        List<BagItemDto> changedItems = new ArrayList<>();
+        List<String> removedBarcodes = new ArrayList<>();
+        for (String barcode : barcodes) {
+            BagItem item = bag.getItem(barcode);
+            if (item == null) {
+                removedBarcodes.add(barcode);
+            } else {
+                changedItems.add(new BagItemDto(item.getBarcode(), item.getQuantity(), item.getPrice().toBigDecimal(),
+                        item.getName(), item.isVerified()));
+            }
+        }
+
+        return new BagDeltaDto(bag.getId(), bag.getVersion(),
+                bag.getTotalPrice().toBigDecimal(), bag.getCampaignId(), bag.getCampaignName(),
+                bag.getDiscountType(), bag.getDiscountValue(),
+                bag.getDiscountedPrice() == null ? null : bag.getDiscountedPrice().toBigDecimal(),
+                bag.isAutoCampaign(), bag.getItems().size(), changedItems, removedBarcodes);
+    }
+
+
+    /**
+     * Falls back to the database when the campaign is not in the active-campaign index.
+     * This is only reached for campaigns that are unknown, inactive or deleted, or created on another
+     * instance whose broadcast has not been received yet, so the common path stays free of database access.
+     */
+    private CampaignResponseDto findCampaignMissingFromIndex(Long campaignId) {
+        log.debug("findCampaignMissingFromIndex: Campaign {} is not in the active campaign index", campaignId);
+        return campaignService.getCampaignById(campaignId);
+    }
+
 
-        BigDecimal totalPrice = bag.getItems().stream()
-                .map(item -> item.getPrice().multiply(new BigDecimal(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Reads a bag again from Redis before an update is rejected because of its state. The bag read with
+     * {@code findById} may be a copy from the local bag cache that misses changes made through another instance,
+     * for example while this instance was out of the gateway's routes.
+     */
+    private Bag findLatestBag(Long bagId) {
+        return bagRepository.findLatestById(bagId)
+                .orElseThrow(() -> {
+                    log.warn("findLatestBag: Bag not found with id {}", bagId);
+                    return new BagNotFoundException("Bag not found with id: " + bagId); });
+    }
 
-        log.trace("calculateTotalPrice method ends. BagId: {}, TotalPrice: {}", bag.getId(), totalPrice);
-        return totalPrice;
+
+    /**
+     * Reserves the units that lines now have to hold before the bag is saved, and releases the units of lines
+     * that became unverified once it is saved. If the save fails, for example because it lost to a concurrent update
+     * or the bag store is unavailable, the reservation is given back so that the units are not held by a bag
+     * that does not have them, and a retried update does not reserve the same units twice. If nothing is reserved
+     * or released, the time to live of the bag's reservations is restarted like that of the bag.
+     */
+    private void reserveAndSave(Bag bag, Map<String, Integer> reservationChanges, Map<String, ProductDto> products) {
+        log.trace("reserveAndSave method begins. BagId: {}, ReservationChanges: {}", bag.getId(), reservationChanges);
+
+        Map<String, Integer> reservations = new HashMap<>();
+        Map<String, Integer> stocks = new HashMap<>();
+        Map<String, Integer> releases = new HashMap<>();
+        reservationChanges.forEach((barcode, change) -> {
+            if (change > 0) {
+                reservations.put(barcode, change);
+                stocks.put(barcode, products.get(barcode).getStock());
+            } else if (change < 0) {
+                releases.put(barcode, -change);
+            }
+        });
+
+        if (!reservations.isEmpty()) {
+            stockReservationService.reserve(bag.getId(), reservations, stocks);
+        }
+        try {
+            bagRepository.save(bag);
+        } catch (RuntimeException e) {
+            try {
+                reservations.forEach((barcode, quantity) -> stockReservationService.release(bag.getId(), barcode, quantity));
+            } catch (RuntimeException releaseFailure) {
+                e.addSuppressed(releaseFailure);
+            }
+            throw e;
+        }
+        releases.forEach((barcode, quantity) -> stockReservationService.release(bag.getId(), barcode, quantity));
+        if (reservations.isEmpty() && releases.isEmpty()) {
+            stockReservationService.extend(bag.getId());
+        }
+
+        log.trace("reserveAndSave method ends. BagId: {}", bag.getId());
+    }
+
+
+    /**
+     * Saves a bag whose reservations do not change, restarting their time to live together with that of the bag,
+     * so that a bag kept open by campaign changes does not outlive the stock it has reserved.
+     */
+    private void saveAndExtendReservation(Bag bag) {
+        bagRepository.save(bag);
+        stockReservationService.extend(bag.getId());
     }
 
 
+    /**
+     * Runs after the transaction a bag was checked out in has finished. A committed sale keeps the stock
+     * reserved by the bag until the product-service has applied it; otherwise the bag is written back
+     * so the cashier can try again.
+     */
+    private void completeCheckout(Bag bag, boolean committed) {
+        log.trace("completeCheckout method begins. BagId: {}, Committed: {}", bag.getId(), committed);
+
+        try {
+            if (committed) {
+                holdUntilStockChanged(bag);
+            } else {
+                bagRepository.restore(bag);
+                log.info("completeCheckout: Checkout rolled back, bag restored. BagId: {}", bag.getId());
+            }
+        } catch (RuntimeException e) {
+            log.error("completeCheckout: Could not finish checkout of bag {}. Committed: {}", bag.getId(), committed, e);
+        }
+
+        log.trace("completeCheckout method ends. BagId: {}, Committed: {}", bag.getId(), committed);
+    }
+
+
+    private void holdUntilStockChanged(Bag bag) {
+        stockReservationService.holdUntilStockChanged(bag.getId(),
+                bag.getItems().stream().map(BagItem::getBarcode).toList());
+    }
+
+
+    /**
+     * Looks a product up in the offline catalog snapshot after the product-service failed or exceeded its
+     * latency budget. Products found there have no stock, so their bag lines are added as unverified,
+     * without a stock check or reservation. If the snapshot does not have the product either, the original error is thrown.
+     */
+    private ProductDto findProductInSnapshot(String barcode, RuntimeException cause) {
+        log.warn("findProductInSnapshot: Product-service lookup failed, using the catalog snapshot. Barcode: {}, Cause: {}",
+                barcode, cause.toString());
+        return catalogSnapshotService.findProduct(barcode).orElseThrow(() -> cause);
+    }
+
+
+    /**
+     * Rejects a barcode that the barcode filter knows belongs to no product, without asking the product-service.
+     */
+    private void rejectUnknownBarcode(String barcode) {
+        if (barcodeFilterService.isUnknownBarcode(barcode)) {
+            log.warn("rejectUnknownBarcode: Barcode is not in the catalog. Barcode: {}", barcode);
+            throw new ProductNotFoundException("Product not found with barcode: " + barcode);
+        }
+    }
+
+
+    private static boolean isVerified(ProductDto productDto) {
+        return productDto.getStock() != null;
+    }
+
+
+    /**
+     * Adds the scanned units to the bag. A verified line holds a reservation for all of its units and an
+     * unverified line for none, so a line that changes between the two gains or loses the reservation of its earlier units.
+     *
+     * @return the change in the number of units the line holds in reservations
+     */
+    private int addItemToBag(Bag bag, ProductDto productDto, String barcode, int quantity) {
+        log.trace("addItemToBag method begins. BagId: {}, Barcode: {}, Quantity: {}", bag.getId(), barcode, quantity);
+
+        BagItem existingItem = bag.getItem(barcode);
+        boolean verified = isVerified(productDto);
+        int reservationChange = verified ? quantity : 0;
+
+        if (existingItem != null) {
+            if (verified && (existingItem.getQuantity() + quantity) > productDto.getStock()) {
+                log.warn("addItemToBag: Quantity exceeds stock for product with barcode {}", barcode);
+                throw new InvalidInputException("The quantity of products in the bag cannot be more than stock");}
+
+            if (verified && !existingItem.isVerified()) {
+                log.debug("addItemToBag: Unverified item confirmed by the product-service. Barcode: {}", barcode);
+                bag.setTotalPrice(bag.getTotalPrice().minus(existingItem.getPrice().times(existingItem.getQuantity())));
+                existingItem.setPrice(Money.of(productDto.getPrice()));
+                existingItem.setName(productDto.getName());
+                existingItem.setVerified(true);
+                bag.setTotalPrice(bag.getTotalPrice().plus(existingItem.getPrice().times(existingItem.getQuantity())));
+                reservationChange += existingItem.getQuantity();
+            } else if (!verified) {
+                if (existingItem.isVerified()) {
+                    reservationChange -= existingItem.getQuantity();
+                }
+                existingItem.setVerified(false);
+            }
+
+            existingItem.setQuantity(existingItem.getQuantity() + quantity);
+            bag.setTotalPrice(bag.getTotalPrice().plus(existingItem.getPrice().times(quantity)));
+        }
+        else {
+            if (verified && quantity > productDto.getStock()) {
+                log.warn("addItemToBag: Quantity exceeds stock for product with barcode {}", barcode);
+                throw new InvalidInputException("The quantity of products in the bag cannot be more than stock");}
+
+            BagItem newBagItem = new BagItem(barcode, quantity, Money.of(productDto.getPrice()), productDto.getName());
+            newBagItem.setVerified(verified);
+            bag.addItem(newBagItem);
+            bag.setTotalPrice(bag.getTotalPrice().plus(newBagItem.getPrice().times(quantity)));
+        }
+
+        log.trace("addItemToBag method ends. BagId: {}, Barcode: {}, Quantity: {}", bag.getId(), barcode, quantity);
+        return reservationChange;
+    }
+
+
+    /**
+     * Applies the campaign discount to the bag total, see {@link DiscountCalculator#discountedPrice}.
+     */
     private void applyDiscount(Bag bag,
-                               BigDecimal totalPrice,
+                               Money totalPrice,
                                double discountValue,
                                DiscountType discountType) {
         log.trace("applyDiscount method begins. BagId: {}, TotalPrice: {}, DiscountValue: {}, DiscountType: {}",
                 bag.getId(), totalPrice, discountValue, discountType);
 
-        BigDecimal discountAmount = BigDecimal.ZERO;
-
-        if (discountType == DiscountType.PERCENTAGE) {
-            BigDecimal discountFactor = BigDecimal.valueOf(discountValue)
-                    .divide(new BigDecimal("100"), 5, RoundingMode.HALF_DOWN);
-            discountAmount = totalPrice.multiply(discountFactor);
-            discountAmount = discountAmount.setScale(2, RoundingMode.DOWN);
-        } else if (discountType == DiscountType.FIXED_AMOUNT) {
-            discountAmount = BigDecimal.valueOf(discountValue).min(totalPrice);
-        }
-        BigDecimal discountedPrice = totalPrice.subtract(discountAmount).max(BigDecimal.ZERO);
+        Money discountedPrice = DiscountCalculator.discountedPrice(totalPrice, discountValue, discountType);
 
         bag.setDiscountedPrice(discountedPrice);
         bag.setDiscountValue(discountValue);
@@ -340,16 +747,40 @@ public class BagServiceImpl implements BagService {
     }
 
 
+    /**
+     * Applies the active campaign that saves the most on the current total, or clears the campaign if none saves anything.
+     * Active campaigns are read from the in-memory index, so this is cheap enough to run on every bag change.
+     */
+    private void applyBestCampaign(Bag bag) {
+        log.trace("applyBestCampaign method begins. BagId: {}, TotalPrice: {}", bag.getId(), bag.getTotalPrice());
+
+        CampaignResponseDto campaign = DiscountCalculator.findBestCampaign(bag.getTotalPrice(), campaignService.getActiveCampaigns());
+        if (campaign == null) {
+            resetCampaignDetails(bag);
+        } else {
+            applyDiscount(bag, bag.getTotalPrice(), campaign.getDiscountValue(), campaign.getDiscountType());
+            bag.setCampaignId(campaign.getId());
+            bag.setCampaignName(campaign.getName());
+        }
+
+        log.trace("applyBestCampaign method ends. BagId: {}, CampaignId: {}", bag.getId(), bag.getCampaignId());
+    }
+
+
+    /**
+     * Re-applies the campaign discount after the running total has been adjusted.
+     * Bags in best-campaign mode select their campaign again instead.
+     */
     private void updatePrice(Bag bag) {
         log.trace("updatePrice method begins. BagId: {}", bag.getId());
 
-        BigDecimal totalPrice = calculateTotalPrice(bag);
-        bag.setTotalPrice(totalPrice);
-        if (bag.getCampaignId() != null) {
-                applyDiscount(bag, totalPrice, bag.getDiscountValue(), bag.getDiscountType());
+        if (bag.isAutoCampaign()) {
+            applyBestCampaign(bag);
+        } else if (bag.getCampaignId() != null) {
+                applyDiscount(bag, bag.getTotalPrice(), bag.getDiscountValue(), bag.getDiscountType());
         }
 
-        log.trace("updatePrice method ends. BagId: {}, TotalPrice: {}", bag.getId(), totalPrice);
+        log.trace("updatePrice method ends. BagId: {}, TotalPrice: {}", bag.getId(), bag.getTotalPrice());
     }
 
 
@@ -0,0 +1,117 @@
+package com.saleservice.service.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of barcodes. {@link #mightContain} never returns false for a barcode that was added, and returns
+ * true for a barcode that was not added with roughly the false positive rate the filter was sized for.
+ * <p>
+ * Each barcode is hashed once into two 64-bit values, which are combined into the bit positions
+ * {@code h1 + i * h2} (Kirsch and Mitzenmacher), so a lookup costs one pass over the barcode's characters
+ * and a handful of array reads. Barcodes can be added while other threads look them up.
+ */
+final class BarcodeBloomFilter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong setBits = new AtomicLong();
+
+
+    private BarcodeBloomFilter(long bitCount, int hashCount) {
+        this.words = new AtomicLongArray(Math.toIntExact((bitCount + 63) / 64));
+        this.bitCount = (long) words.length() * 64;
+        this.hashCount = hashCount;
+    }
+
+
+    /**
+     * Creates an empty filter with the optimal number of bits and hash functions for the given capacity.
+     *
+     * @param expectedBarcodes  the number of barcodes the filter is sized for
+     * @param falsePositiveRate the rate at which barcodes that were not added are reported as present, once the
+     *                          expected number of barcodes has been added
+     */
+    static BarcodeBloomFilter create(long expectedBarcodes, double falsePositiveRate) {
+        long barcodes = Math.max(1, expectedBarcodes);
+        long bits = (long) Math.ceil(-barcodes * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int hashes = Math.max(1, (int) Math.round((double) bits / barcodes * Math.log(2)));
+        return new BarcodeBloomFilter(Math.max(64, bits), hashes);
+    }
+
+
+    void add(CharSequence barcode) {
+        long hash1 = hash(barcode);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0) {
+                long witness = words.compareAndExchange(index, word, word | mask);
+                if (witness == word) {
+                    setBits.incrementAndGet();
+                    break;
+                }
+                word = witness;
+            }
+        }
+    }
+
+
+    boolean mightContain(CharSequence barcode) {
+        long hash1 = hash(barcode);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Estimates the current false positive rate from the share of bits that are set.
+     */
+    double falsePositiveRate() {
+        return Math.pow((double) setBits.get() / bitCount, hashCount);
+    }
+
+
+    long memoryBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+
+    int hashCount() {
+        return hashCount;
+    }
+
+
+
+    private static long hash(CharSequence value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+
+    /**
+     * Spreads the bits of a value over the whole range, so that barcodes differing in one digit hash far apart.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
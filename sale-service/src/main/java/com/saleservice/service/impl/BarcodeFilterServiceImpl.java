@@ -0,0 +1,178 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.dto.ProductEventMessage;
+import com.saleservice.model.CatalogSnapshotRefreshedEvent;
+import com.saleservice.service.BarcodeFilterService;
+import com.saleservice.service.CatalogSnapshotService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+@Slf4j
+@Service
+public class BarcodeFilterServiceImpl implements BarcodeFilterService {
+
+    /**
+     * Room for products created until the next snapshot, so that the false positive rate stays near its target.
+     */
+    private static final double GROWTH_HEADROOM = 0.2;
+    private static final int MINIMUM_CAPACITY = 1000;
+
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final boolean enabled;
+    private final double falsePositiveRate;
+    private final Duration maxSnapshotAge;
+    private final Clock clock;
+
+    private final Set<String> createdSinceRebuild = new HashSet<>();
+    private volatile BarcodeBloomFilter filter;
+    private volatile Instant snapshotCreatedAt;
+
+    private final Counter rejectionCounter;
+
+
+    @Autowired
+    public BarcodeFilterServiceImpl(CatalogSnapshotService catalogSnapshotService,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${catalog.barcode-filter.enabled}") boolean enabled,
+                                    @Value("${catalog.barcode-filter.false-positive-rate}") double falsePositiveRate,
+                                    @Value("${catalog.barcode-filter.max-snapshot-age}") Duration maxSnapshotAge) {
+        this(catalogSnapshotService, meterRegistry, enabled, falsePositiveRate, maxSnapshotAge, Clock.systemUTC());
+    }
+
+
+    BarcodeFilterServiceImpl(CatalogSnapshotService catalogSnapshotService,
+                             MeterRegistry meterRegistry,
+                             boolean enabled,
+                             double falsePositiveRate,
+                             Duration maxSnapshotAge,
+                             Clock clock) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.enabled = enabled;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxSnapshotAge = maxSnapshotAge;
+        this.clock = clock;
+
+        this.rejectionCounter = Counter.builder("catalog.barcode-filter.rejections")
+                .description("Scans rejected as unknown barcodes without a product lookup")
+                .register(meterRegistry);
+        Gauge.builder("catalog.barcode-filter.memory", this, service -> service.filter == null ? 0 : service.filter.memoryBytes())
+                .description("Memory used by the bits of the barcode Bloom filter")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("catalog.barcode-filter.false-positive-rate", this,
+                        service -> service.filter == null ? 0 : service.filter.falsePositiveRate())
+                .description("Estimated share of unknown barcodes the filter lets through to a product lookup")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Builds the filter from the snapshot left on disk by the previous run.
+     */
+    @PostConstruct
+    public void loadFilter() {
+        rebuildFilter();
+    }
+
+
+    @EventListener
+    public void onCatalogSnapshotRefreshed(CatalogSnapshotRefreshedEvent event) {
+        log.debug("onCatalogSnapshotRefreshed: Rebuilding the barcode filter for {} products", event.size());
+        rebuildFilter();
+    }
+
+
+    @Override
+    public boolean isUnknownBarcode(String barcode) {
+        BarcodeBloomFilter current = filter;
+        if (current == null || isOutdated(snapshotCreatedAt) || current.mightContain(barcode)) {
+            return false;
+        }
+
+        rejectionCounter.increment();
+        log.debug("isUnknownBarcode: Barcode rejected by the barcode filter. Barcode: {}", barcode);
+        return true;
+    }
+
+
+    @Override
+    public void handleProductEvent(ProductEventMessage message) {
+        if (message.getEventType() != ProductEventMessage.EventType.CREATED) {
+            return;
+        }
+
+        synchronized (createdSinceRebuild) {
+            createdSinceRebuild.add(message.getBarcode());
+            BarcodeBloomFilter current = filter;
+            if (current != null) {
+                current.add(message.getBarcode());
+            }
+        }
+        log.debug("handleProductEvent: Barcode added to the barcode filter. Barcode: {}", message.getBarcode());
+    }
+
+
+    /**
+     * Products created while the snapshot was being downloaded may be missing from it, so the barcodes created
+     * since the previous rebuild are added to the new filter as well.
+     */
+    @Override
+    public int rebuildFilter() {
+        log.trace("rebuildFilter method begins.");
+
+        if (!enabled) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        List<String> barcodes = new ArrayList<>();
+        Optional<Instant> createdAt = catalogSnapshotService.forEachBarcode(barcodes::add);
+        if (createdAt.isEmpty()) {
+            log.info("rebuildFilter: No catalog snapshot, unknown barcodes are not filtered");
+            return 0;
+        }
+
+        long capacity = Math.max(MINIMUM_CAPACITY, (long) (barcodes.size() * (1 + GROWTH_HEADROOM)));
+        BarcodeBloomFilter rebuilt = BarcodeBloomFilter.create(capacity, falsePositiveRate);
+        barcodes.forEach(rebuilt::add);
+        synchronized (createdSinceRebuild) {
+            createdSinceRebuild.forEach(rebuilt::add);
+            createdSinceRebuild.clear();
+            snapshotCreatedAt = createdAt.get();
+            filter = rebuilt;
+        }
+
+        log.info("rebuildFilter: Barcode filter built with {} barcodes in {} ms. Memory: {} bytes, Hash functions: {}, "
+                        + "Estimated false positive rate: {}",
+                barcodes.size(), Duration.ofNanos(System.nanoTime() - start).toMillis(), rebuilt.memoryBytes(),
+                rebuilt.hashCount(), String.format("%.4f", rebuilt.falsePositiveRate()));
+        log.trace("rebuildFilter method ends. Barcodes: {}", barcodes.size());
+        return barcodes.size();
+    }
+
+
+
+    /**
+     * A filter built from an old snapshot is not trusted, since product creations it missed are only made up for
+     * by the next snapshot.
+     */
+    private boolean isOutdated(Instant createdAt) {
+        return createdAt == null || createdAt.plus(maxSnapshotAge).isBefore(clock.instant());
+    }
+}
@@ -1,6 +1,7 @@
 package com.saleservice.service.impl;
 
 import com.saleservice.dto.CampaignDto;
+import com.saleservice.dto.CampaignEventMessage;
 import com.saleservice.dto.CampaignResponseDto;
 import com.saleservice.exception.CampaignAlreadyDeletedException;
 import com.saleservice.exception.CampaignAlreadyExistException;
@@ -14,13 +15,19 @@ import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -29,6 +36,9 @@ public class CampaignServiceImpl implements CampaignService {
 
     private final CampaignRepository campaignRepository;
     private final ModelMapper modelMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile ActiveCampaignIndex activeCampaignIndex = ActiveCampaignIndex.EMPTY;
 
 
     @Transactional
@@ -63,6 +73,7 @@ public class CampaignServiceImpl implements CampaignService {
                 campaignDto.getDiscountValue());
 
         campaignRepository.save(campaign);
+        eventPublisher.publishEvent(new CampaignEventMessage(campaign.getId()));
 
         log.info("addCampaign: Campaign added successfully. CampaignDto: {}", campaignDto);
         log.trace("addCampaign method ends. CampaignDto: {}", campaignDto);
@@ -99,6 +110,7 @@ public class CampaignServiceImpl implements CampaignService {
             throw new InvalidInputException("End date cannot be before the start date."); }
 
         campaignRepository.save(campaign);
+        eventPublisher.publishEvent(new CampaignEventMessage(id));
 
         log.info("updateCampaignDates: Campaign dates updated successfully. ID: {}", id);
         log.trace("updateCampaignDates method ends. ID: {}, StartDate: {}, EndDate: {}", id, startDate, endDate);
@@ -123,6 +135,7 @@ public class CampaignServiceImpl implements CampaignService {
 
         campaign.setDeleted(true);
         campaignRepository.save(campaign);
+        eventPublisher.publishEvent(new CampaignEventMessage(id));
 
         log.info("deleteCampaignById: Campaign deleted successfully. ID: {}", id);
         log.trace("deleteCampaignById method ends. ID: {}", id);
@@ -169,6 +182,50 @@ public class CampaignServiceImpl implements CampaignService {
     }
 
 
+    @Override
+    public List<CampaignResponseDto> getActiveCampaigns() {
+        log.trace("getActiveCampaigns method begins.");
+
+        List<CampaignResponseDto> activeCampaigns = activeCampaignIndex.activeAt(LocalDateTime.now());
+
+        log.trace("getActiveCampaigns method ends. ActiveCampaigns: {}", activeCampaigns.size());
+        return activeCampaigns;
+    }
+
+
+    @Override
+    public Optional<CampaignResponseDto> findActiveCampaign(Long id) {
+        log.trace("findActiveCampaign method begins. ID: {}", id);
+
+        Optional<CampaignResponseDto> campaign = activeCampaignIndex.findActive(id, LocalDateTime.now());
+
+        log.trace("findActiveCampaign method ends. ID: {}, Found: {}", id, campaign.isPresent());
+        return campaign;
+    }
+
+
+    /**
+     * Change events are broadcast without delivery guarantees, so the index is also reloaded periodically to
+     * drop campaigns whose events were lost.
+     */
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${campaign.index.refresh-fixed-delay-ms}",
+               initialDelayString = "${campaign.index.refresh-fixed-delay-ms}")
+    public synchronized void refreshActiveCampaigns() {
+        log.trace("refreshActiveCampaigns method begins.");
+
+        List<CampaignResponseDto> campaigns = campaignRepository.findAllByDeletedFalseAndEndDateAfter(LocalDateTime.now())
+                .stream()
+                .map(campaign -> modelMapper.map(campaign, CampaignResponseDto.class))
+                .toList();
+        activeCampaignIndex = new ActiveCampaignIndex(campaigns);
+
+        log.info("refreshActiveCampaigns: Active campaign index reloaded. Campaigns: {}", campaigns.size());
+        log.trace("refreshActiveCampaigns method ends.");
+    }
+
+
 
     private LocalDateTime parseDate(String dateStr) {
         log.trace("parseDate method begins. DateStr: {}", dateStr);
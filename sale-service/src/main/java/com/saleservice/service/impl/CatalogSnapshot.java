@@ -0,0 +1,202 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.model.Money;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Read-only catalog of barcode, name and price, stored in a file that is memory-mapped when opened.
+ * Opening a snapshot only maps the file, and lookups binary search the mapped bytes, so even catalogs with
+ * hundreds of thousands of products load in milliseconds and live outside the heap.
+ * <p>
+ * File layout, big-endian: a 16 byte header ({@code int} magic, {@code int} entry count, {@code long} creation time
+ * in epoch milliseconds), then one {@code int} file offset per entry in barcode order, then the entries, each
+ * {@code short} barcode length, barcode bytes, {@code long} price in kuruş, {@code short} name length, name bytes.
+ * Barcodes and names are UTF-8 and barcodes are ordered by unsigned byte comparison.
+ */
+final class CatalogSnapshot {
+
+    private static final int MAGIC = 0x43415431;
+    private static final int HEADER_SIZE = 16;
+    private static final int OFFSET_SIZE = Integer.BYTES;
+    private static final char FIELD_SEPARATOR = '\t';
+
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(ByteBuffer.allocate(HEADER_SIZE).putInt(0, MAGIC));
+
+    private final ByteBuffer buffer;
+    private final int size;
+
+
+    private CatalogSnapshot(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Not a catalog snapshot file.");
+        }
+        this.buffer = buffer;
+        this.size = buffer.getInt(4);
+        if ((long) HEADER_SIZE + (long) size * OFFSET_SIZE > buffer.capacity()) {
+            throw new IllegalStateException("Catalog snapshot file is truncated.");
+        }
+    }
+
+
+    static CatalogSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CatalogSnapshot(buffer);
+        }
+    }
+
+
+    /**
+     * Writes a snapshot from {@code barcode<TAB>name<TAB>price} lines, which must be ordered by barcode.
+     * Entries are streamed to a temporary file first, so only their offsets are held in memory.
+     *
+     * @return the number of entries written
+     * @throws IllegalStateException if a line is malformed or the barcodes are not in order
+     */
+    static int write(BufferedReader lines, Path target) throws IOException {
+        Path entriesFile = Files.createTempFile(target.toAbsolutePath().getParent(), "catalog", ".entries");
+        try {
+            int[] offsets = new int[1024];
+            int count = 0;
+            byte[] previousBarcode = null;
+
+            try (DataOutputStream entries = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(entriesFile), 64 * 1024))) {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    int first = line.indexOf(FIELD_SEPARATOR);
+                    int last = line.lastIndexOf(FIELD_SEPARATOR);
+                    if (first <= 0 || first == last) {
+                        throw new IllegalStateException("Malformed catalog line " + (count + 1));
+                    }
+                    byte[] barcode = line.substring(0, first).getBytes(StandardCharsets.UTF_8);
+                    byte[] name = line.substring(first + 1, last).getBytes(StandardCharsets.UTF_8);
+                    long price = Money.parse(line.substring(last + 1)).getMinorUnits();
+                    if (previousBarcode != null && Arrays.compareUnsigned(previousBarcode, barcode) >= 0) {
+                        throw new IllegalStateException("Catalog barcodes are not in ascending order at line " + (count + 1));
+                    }
+
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++] = entries.size();
+                    entries.writeShort(barcode.length);
+                    entries.write(barcode);
+                    entries.writeLong(price);
+                    entries.writeShort(Math.min(name.length, Short.MAX_VALUE));
+                    entries.write(name, 0, Math.min(name.length, Short.MAX_VALUE));
+                    previousBarcode = barcode;
+                }
+            }
+
+            int entriesStart = HEADER_SIZE + count * OFFSET_SIZE;
+            try (OutputStream out = Files.newOutputStream(target);
+                 DataOutputStream header = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024))) {
+                header.writeInt(MAGIC);
+                header.writeInt(count);
+                header.writeLong(Instant.now().toEpochMilli());
+                for (int i = 0; i < count; i++) {
+                    header.writeInt(Math.addExact(entriesStart, offsets[i]));
+                }
+                header.flush();
+                Files.copy(entriesFile, out);
+            }
+            return count;
+        } finally {
+            Files.deleteIfExists(entriesFile);
+        }
+    }
+
+
+    int size() {
+        return size;
+    }
+
+
+    Instant createdAt() {
+        return Instant.ofEpochMilli(buffer.getLong(8));
+    }
+
+
+    /**
+     * Passes every barcode in the snapshot to the given action, in barcode order.
+     */
+    void forEachBarcode(Consumer<String> action) {
+        for (int i = 0; i < size; i++) {
+            int offset = buffer.getInt(HEADER_SIZE + i * OFFSET_SIZE);
+            byte[] barcode = new byte[buffer.getShort(offset)];
+            buffer.get(offset + 2, barcode);
+            action.accept(new String(barcode, StandardCharsets.UTF_8));
+        }
+    }
+
+
+    /**
+     * Looks up a product by barcode. Only the name of a found entry is decoded, so lookups allocate almost nothing.
+     */
+    Optional<Entry> find(String barcode) {
+        byte[] key = barcode.getBytes(StandardCharsets.UTF_8);
+
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = buffer.getInt(HEADER_SIZE + middle * OFFSET_SIZE);
+            int comparison = compareBarcode(offset, key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return Optional.of(readEntry(offset));
+            }
+        }
+        return Optional.empty();
+    }
+
+
+
+    private int compareBarcode(int offset, byte[] key) {
+        int length = buffer.getShort(offset);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(buffer.get(offset + 2 + i), key[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+
+    private Entry readEntry(int offset) {
+        int position = offset + 2 + buffer.getShort(offset);
+        long price = buffer.getLong(position);
+        position += Long.BYTES;
+        byte[] name = new byte[buffer.getShort(position)];
+        buffer.get(position + 2, name);
+        return new Entry(new String(name, StandardCharsets.UTF_8), Money.ofMinor(price));
+    }
+
+
+    record Entry(String name, Money price) {
+    }
+}
@@ -0,0 +1,172 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.client.ProductCatalogClient;
+import com.saleservice.dto.ProductDto;
+import com.saleservice.model.CatalogSnapshotRefreshedEvent;
+import com.saleservice.service.CatalogSnapshotService;
+import feign.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Slf4j
+@Service
+public class CatalogSnapshotServiceImpl implements CatalogSnapshotService {
+
+    private final ProductCatalogClient productCatalogClient;
+    private final Path snapshotPath;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Counter lookupCounter;
+    private final Counter missCounter;
+    private final Counter failedRefreshCounter;
+
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+
+
+    public CatalogSnapshotServiceImpl(ProductCatalogClient productCatalogClient,
+                                      MeterRegistry meterRegistry,
+                                      ApplicationEventPublisher eventPublisher,
+                                      @Value("${catalog.snapshot.path}") String snapshotPath) {
+        this.productCatalogClient = productCatalogClient;
+        this.snapshotPath = Path.of(snapshotPath);
+        this.eventPublisher = eventPublisher;
+
+        this.lookupCounter = Counter.builder("catalog.snapshot.lookups")
+                .description("Products looked up in the offline catalog snapshot because the product-service could not answer in time")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("catalog.snapshot.misses")
+                .description("Offline catalog lookups for barcodes that are not in the snapshot")
+                .register(meterRegistry);
+        this.failedRefreshCounter = Counter.builder("catalog.snapshot.failed.refreshes")
+                .description("Catalog snapshot refreshes that failed and kept the previous snapshot")
+                .register(meterRegistry);
+        Gauge.builder("catalog.snapshot.size", this, service -> service.snapshot.size())
+                .description("Products in the offline catalog snapshot")
+                .register(meterRegistry);
+        Gauge.builder("catalog.snapshot.age", this, service -> service.snapshotAgeSeconds())
+                .description("Seconds since the offline catalog snapshot was downloaded")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Maps the snapshot left on disk by the previous run, so that lookups work before the first refresh.
+     */
+    @PostConstruct
+    public void loadSnapshot() {
+        log.trace("loadSnapshot method begins. Path: {}", snapshotPath);
+
+        if (!Files.exists(snapshotPath)) {
+            log.info("loadSnapshot: No catalog snapshot found at {}", snapshotPath);
+            return;
+        }
+        try {
+            snapshot = CatalogSnapshot.open(snapshotPath);
+            log.info("loadSnapshot: Catalog snapshot with {} products loaded, created at {}", snapshot.size(), snapshot.createdAt());
+        } catch (IOException | RuntimeException e) {
+            log.warn("loadSnapshot: Catalog snapshot at {} could not be loaded: {}", snapshotPath, e.getMessage());
+        }
+
+        log.trace("loadSnapshot method ends. Path: {}", snapshotPath);
+    }
+
+
+    @Override
+    public Optional<ProductDto> findProduct(String barcode) {
+        log.trace("findProduct method begins. Barcode: {}", barcode);
+
+        lookupCounter.increment();
+        Optional<ProductDto> product = snapshot.find(barcode)
+                .map(entry -> new ProductDto(entry.name(), barcode, entry.price().toBigDecimal(), null, false));
+        if (product.isEmpty()) {
+            missCounter.increment();
+        }
+
+        log.trace("findProduct method ends. Barcode: {}, Found: {}", barcode, product.isPresent());
+        return product;
+    }
+
+
+    @Override
+    @Scheduled(fixedDelayString = "${catalog.snapshot.refresh-fixed-delay-ms}",
+               initialDelayString = "${catalog.snapshot.refresh-initial-delay-ms}")
+    public boolean refreshSnapshot() {
+        log.trace("refreshSnapshot method begins. Path: {}", snapshotPath);
+
+        long start = System.nanoTime();
+        Path downloadPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".download");
+        try (Response response = productCatalogClient.exportCatalog()) {
+            if (response.status() != 200 || response.body() == null) {
+                throw new IOException("Catalog export returned status " + response.status());
+            }
+
+            Files.createDirectories(snapshotPath.toAbsolutePath().getParent());
+            int count;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.body().asInputStream(), StandardCharsets.UTF_8), 64 * 1024)) {
+                count = CatalogSnapshot.write(reader, downloadPath);
+            }
+            Files.move(downloadPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshot = CatalogSnapshot.open(snapshotPath);
+            eventPublisher.publishEvent(new CatalogSnapshotRefreshedEvent(snapshot.createdAt(), snapshot.size()));
+
+            log.info("refreshSnapshot: Catalog snapshot refreshed with {} products in {} ms",
+                    count, Duration.ofNanos(System.nanoTime() - start).toMillis());
+            log.trace("refreshSnapshot method ends. Path: {}", snapshotPath);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            failedRefreshCounter.increment();
+            log.warn("refreshSnapshot: Catalog snapshot refresh failed, keeping the snapshot from {}: {}",
+                    snapshot.createdAt(), e.getMessage());
+            deleteQuietly(downloadPath);
+            return false;
+        }
+    }
+
+
+    @Override
+    public Optional<Instant> forEachBarcode(Consumer<String> action) {
+        CatalogSnapshot current = snapshot;
+        if (current.size() == 0) {
+            return Optional.empty();
+        }
+        current.forEachBarcode(action);
+        return Optional.of(current.createdAt());
+    }
+
+
+
+    private double snapshotAgeSeconds() {
+        CatalogSnapshot current = snapshot;
+        return current.size() == 0 ? 0 : Duration.between(current.createdAt(), Instant.now()).toSeconds();
+    }
+
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("deleteQuietly: {} could not be deleted: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.dto.CampaignResponseDto;
+import com.saleservice.model.DiscountType;
+import com.saleservice.model.Money;
+
+import java.util.List;
+
+/**
+ * Campaign discount arithmetic shared by explicit campaign application and best-campaign selection.
+ * Percentage discounts are taken in basis points and rounded down to whole kuruş;
+ * fixed-amount discounts never exceed the total.
+ * @author Emir Aktaş
+ */
+public final class DiscountCalculator {
+
+    private DiscountCalculator() {
+    }
+
+
+    /**
+     * Returns the total after the given discount, never below zero.
+     */
+    public static Money discountedPrice(Money totalPrice, double discountValue, DiscountType discountType) {
+        Money discountAmount = Money.ZERO;
+
+        if (discountType == DiscountType.PERCENTAGE) {
+            discountAmount = totalPrice.percentage(Math.round(discountValue * 100));
+        } else if (discountType == DiscountType.FIXED_AMOUNT) {
+            discountAmount = Money.of(discountValue).min(totalPrice);
+        }
+        return totalPrice.minus(discountAmount).max(Money.ZERO);
+    }
+
+
+    /**
+     * Evaluates every campaign against the total in one pass and returns the one with the lowest discounted price.
+     * On a tie the earlier campaign in the list wins.
+     *
+     * @return the best campaign, or null if no campaign lowers the total
+     */
+    public static CampaignResponseDto findBestCampaign(Money totalPrice, List<CampaignResponseDto> campaigns) {
+        CampaignResponseDto bestCampaign = null;
+        Money bestPrice = totalPrice;
+
+        for (CampaignResponseDto campaign : campaigns) {
+            Money price = discountedPrice(totalPrice, campaign.getDiscountValue(), campaign.getDiscountType());
+            if (price.compareTo(bestPrice) < 0) {
+                bestCampaign = campaign;
+                bestPrice = price;
+            }
+        }
+        return bestCampaign;
+    }
+}
@@ -0,0 +1,218 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.dto.ReceiptMessage;
+import com.saleservice.exception.IdempotencyKeyInProgressException;
+import com.saleservice.exception.InvalidInputException;
+import com.saleservice.model.IdempotencyRecord;
+import com.saleservice.model.PaymentMethod;
+import com.saleservice.repository.IdempotencyKeyRepository;
+import com.saleservice.service.IdempotencyService;
+import com.saleservice.service.SaleService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final SaleService saleService;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private final Duration timeToLive;
+    private final Duration pendingTimeToLive;
+    private final Duration waitTimeout;
+    private final Duration pollInterval;
+
+    private final Counter replayCounter;
+    private final Counter waitCounter;
+
+    /**
+     * Requests with a key that are being processed by this instance. Duplicates arriving here
+     * wait on the future instead of polling Redis; it completes when the first attempt ends either way.
+     */
+    private final ConcurrentMap<String, CompletableFuture<Void>> localAttempts = new ConcurrentHashMap<>();
+
+
+    public IdempotencyServiceImpl(SaleService saleService,
+                                  IdempotencyKeyRepository idempotencyKeyRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${sale.idempotency.ttl}") Duration timeToLive,
+                                  @Value("${sale.idempotency.pending-ttl}") Duration pendingTimeToLive,
+                                  @Value("${sale.idempotency.wait-timeout}") Duration waitTimeout,
+                                  @Value("${sale.idempotency.poll-interval}") Duration pollInterval) {
+        this.saleService = saleService;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.timeToLive = timeToLive;
+        this.pendingTimeToLive = pendingTimeToLive;
+        this.waitTimeout = waitTimeout;
+        this.pollInterval = pollInterval;
+
+        this.replayCounter = Counter.builder("sale.idempotency.replays")
+                .description("Checkout requests answered with the receipt of an earlier request with the same key")
+                .register(meterRegistry);
+        this.waitCounter = Counter.builder("sale.idempotency.waits")
+                .description("Checkout requests that waited for a concurrent request with the same key")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    public ReceiptMessage completeSale(String idempotencyKey,
+                                       Long bagId,
+                                       BigDecimal amountReceived,
+                                       PaymentMethod paymentMethod,
+                                       String cashierName) {
+        log.trace("completeSale method begins. IdempotencyKey: {}, BagId: {}", idempotencyKey, bagId);
+
+        validateKey(idempotencyKey);
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+
+        CompletableFuture<Void> attempt = new CompletableFuture<>();
+        CompletableFuture<Void> runningAttempt = localAttempts.putIfAbsent(idempotencyKey, attempt);
+        if (runningAttempt != null) {
+            log.debug("completeSale: Waiting for the request in progress on this instance. IdempotencyKey: {}", idempotencyKey);
+            waitCounter.increment();
+            awaitLocalAttempt(idempotencyKey, runningAttempt, deadline);
+            return completeOrReplay(idempotencyKey, bagId, amountReceived, paymentMethod, cashierName, deadline);
+        }
+
+        try {
+            ReceiptMessage receipt = completeOrReplay(idempotencyKey, bagId, amountReceived, paymentMethod, cashierName, deadline);
+            log.trace("completeSale method ends. IdempotencyKey: {}, BagId: {}", idempotencyKey, bagId);
+            return receipt;
+        } finally {
+            localAttempts.remove(idempotencyKey, attempt);
+            attempt.complete(null);
+        }
+    }
+
+
+
+    /**
+     * Claims the key and completes the sale, or returns the stored receipt if the key is already completed.
+     * While another instance holds the key, polls until it completes, is released after a failure, or the deadline passes.
+     */
+    private ReceiptMessage completeOrReplay(String idempotencyKey,
+                                            Long bagId,
+                                            BigDecimal amountReceived,
+                                            PaymentMethod paymentMethod,
+                                            String cashierName,
+                                            long deadline) {
+        log.trace("completeOrReplay method begins. IdempotencyKey: {}, BagId: {}", idempotencyKey, bagId);
+
+        boolean waited = false;
+        while (true) {
+            IdempotencyRecord pending = new IdempotencyRecord(UUID.randomUUID().toString(), bagId, null);
+            if (idempotencyKeyRepository.create(idempotencyKey, pending, pendingTimeToLive)) {
+                return completeClaimedSale(idempotencyKey, pending, amountReceived, paymentMethod, cashierName);
+            }
+
+            Optional<IdempotencyRecord> existing = idempotencyKeyRepository.findByKey(idempotencyKey);
+            if (existing.isPresent()) {
+                IdempotencyRecord record = existing.get();
+                if (!bagId.equals(record.getBagId())) {
+                    log.warn("completeOrReplay: Idempotency key was used for another bag. IdempotencyKey: {}, BagId: {}, StoredBagId: {}",
+                            idempotencyKey, bagId, record.getBagId());
+                    throw new InvalidInputException("Idempotency key was already used for another bag.");
+                }
+                if (record.isCompleted()) {
+                    replayCounter.increment();
+                    log.info("completeOrReplay: Returning the stored receipt. IdempotencyKey: {}, SaleId: {}",
+                            idempotencyKey, record.getReceipt().getSaleDto().getId());
+                    log.trace("completeOrReplay method ends. IdempotencyKey: {}, BagId: {}", idempotencyKey, bagId);
+                    return record.getReceipt();
+                }
+            }
+
+            if (System.nanoTime() - deadline >= 0) {
+                log.warn("completeOrReplay: Request with the same idempotency key did not finish in time. IdempotencyKey: {}", idempotencyKey);
+                throw new IdempotencyKeyInProgressException("A request with this idempotency key is still in progress.");
+            }
+            if (!waited) {
+                waitCounter.increment();
+                waited = true;
+            }
+            sleep(pollInterval);
+        }
+    }
+
+
+    /**
+     * Completes the sale for a key this request has claimed. The receipt is stored only after the sale transaction
+     * has committed; if the sale fails, the key is released so that a retry can complete it.
+     */
+    private ReceiptMessage completeClaimedSale(String idempotencyKey,
+                                               IdempotencyRecord pending,
+                                               BigDecimal amountReceived,
+                                               PaymentMethod paymentMethod,
+                                               String cashierName) {
+        log.trace("completeClaimedSale method begins. IdempotencyKey: {}, BagId: {}", idempotencyKey, pending.getBagId());
+
+        ReceiptMessage receipt;
+        try {
+            receipt = saleService.completeSale(pending.getBagId(), amountReceived, paymentMethod, cashierName);
+        } catch (RuntimeException e) {
+            idempotencyKeyRepository.replace(idempotencyKey, pending, null, pendingTimeToLive);
+            log.debug("completeClaimedSale: Sale failed, idempotency key released. IdempotencyKey: {}", idempotencyKey);
+            throw e;
+        }
+
+        IdempotencyRecord completed = new IdempotencyRecord(pending.getOwner(), pending.getBagId(), receipt);
+        try {
+            if (!idempotencyKeyRepository.replace(idempotencyKey, pending, completed, timeToLive)) {
+                log.warn("completeClaimedSale: Idempotency key expired before the sale completed. IdempotencyKey: {}, SaleId: {}",
+                        idempotencyKey, receipt.getSaleDto().getId());
+            }
+        } catch (RuntimeException e) {
+            log.error("completeClaimedSale: Receipt could not be stored for idempotency key. IdempotencyKey: {}, SaleId: {}",
+                    idempotencyKey, receipt.getSaleDto().getId(), e);
+        }
+
+        log.trace("completeClaimedSale method ends. IdempotencyKey: {}, SaleId: {}", idempotencyKey, receipt.getSaleDto().getId());
+        return receipt;
+    }
+
+
+    private void awaitLocalAttempt(String idempotencyKey, CompletableFuture<Void> attempt, long deadline) {
+        try {
+            attempt.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("awaitLocalAttempt: Request with the same idempotency key did not finish in time. IdempotencyKey: {}", idempotencyKey);
+            throw new IdempotencyKeyInProgressException("A request with this idempotency key is still in progress.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException("Interrupted while waiting for a request with this idempotency key.");
+        } catch (ExecutionException e) {
+            // never completed exceptionally
+        }
+    }
+
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException("Interrupted while waiting for a request with this idempotency key.");
+        }
+    }
+
+
+    private static void validateKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            log.warn("validateKey: Invalid idempotency key. Length: {}", idempotencyKey.length());
+            throw new InvalidInputException("Idempotency key must be between 1 and " + MAX_KEY_LENGTH + " characters.");
+        }
+    }
+}
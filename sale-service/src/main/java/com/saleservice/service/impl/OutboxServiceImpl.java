@@ -0,0 +1,202 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.config.RabbitMqMessagePublisher;
+import com.saleservice.config.RabbitMqMessagePublisher.MessageType;
+import com.saleservice.config.RabbitMqMessagePublisher.OutgoingMessage;
+import com.saleservice.model.OutboxMessage;
+import com.saleservice.repository.OutboxMessageRepository;
+import com.saleservice.service.OutboxService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Slf4j
+@Service
+public class OutboxServiceImpl implements OutboxService {
+
+    private static final String MESSAGE_ID_PREFIX = "outbox-";
+
+    @Value("${outbox.relay.batch-size}")
+    private int batchSize;
+    @Value("${outbox.relay.confirm-timeout-ms}")
+    private long confirmTimeoutMs;
+    @Value("${outbox.retention}")
+    private Duration retention;
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final RabbitMqMessagePublisher rabbitMqMessagePublisher;
+    private final MessageConverter messageConverter;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter publishedCounter;
+    private final Counter failedBatchCounter;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer batchTimer;
+
+
+    public OutboxServiceImpl(OutboxMessageRepository outboxMessageRepository,
+                             RabbitMqMessagePublisher rabbitMqMessagePublisher,
+                             MessageConverter messageConverter,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.rabbitMqMessagePublisher = rabbitMqMessagePublisher;
+        this.messageConverter = messageConverter;
+        this.transactionTemplate = transactionTemplate;
+
+        this.publishedCounter = Counter.builder("outbox.relay.published")
+                .description("Outbox messages published and confirmed by the broker")
+                .register(meterRegistry);
+        this.failedBatchCounter = Counter.builder("outbox.relay.failed.batches")
+                .description("Outbox batches that were not confirmed and will be retried")
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("outbox.relay.batch.size")
+                .description("Messages per relayed outbox batch")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("outbox.relay.batch.duration")
+                .description("Time to publish, confirm and mark one outbox batch")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    @Transactional
+    public void enqueue(Object payload, MessageType messageType) {
+        log.trace("enqueue method begins. MessageType: {}", messageType);
+
+        Message message = messageConverter.toMessage(payload, new MessageProperties());
+
+        OutboxMessage outboxMessage = OutboxMessage.builder()
+                .messageType(messageType)
+                .payloadType(message.getMessageProperties().getHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME))
+                .payload(new String(message.getBody(), StandardCharsets.UTF_8))
+                .createdDate(LocalDateTime.now())
+                .sent(false)
+                .build();
+        outboxMessageRepository.save(outboxMessage);
+
+        log.debug("enqueue: Message stored in outbox. MessageType: {}", messageType);
+        log.trace("enqueue method ends. MessageType: {}", messageType);
+    }
+
+
+    @Override
+    @Scheduled(fixedDelayString = "${outbox.relay.fixed-delay-ms}")
+    public int relayPendingMessages() {
+        log.trace("relayPendingMessages method begins.");
+
+        int published = 0;
+        int batchCount;
+        do {
+            try {
+                batchCount = batchTimer.record(() -> transactionTemplate.execute(status -> relayBatch()));
+            } catch (Exception e) {
+                failedBatchCounter.increment();
+                log.warn("relayPendingMessages: Outbox batch could not be relayed, it will be retried: {}", e.getMessage(), e);
+                break;
+            }
+            published += batchCount;
+        } while (batchCount == batchSize);
+
+        if (published > 0) {
+            log.info("relayPendingMessages: Relayed {} outbox messages", published);
+        }
+        log.trace("relayPendingMessages method ends. Published: {}", published);
+        return published;
+    }
+
+
+    /**
+     * Deletes in batches of the relay batch size, each in its own transaction.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${outbox.purge.fixed-delay-ms}")
+    public int purgeSentMessages() {
+        log.trace("purgeSentMessages method begins.");
+
+        LocalDateTime sentBefore = LocalDateTime.now().minus(retention);
+        int deleted = 0;
+        int batchCount;
+        do {
+            batchCount = transactionTemplate.execute(status -> outboxMessageRepository.deleteSentBefore(sentBefore, batchSize));
+            deleted += batchCount;
+        } while (batchCount == batchSize);
+
+        if (deleted > 0) {
+            log.info("purgeSentMessages: Deleted {} sent outbox messages", deleted);
+        }
+        log.trace("purgeSentMessages method ends. Deleted: {}", deleted);
+        return deleted;
+    }
+
+
+
+    /**
+     * Publishes one locked batch on a single channel without waiting between messages, then waits
+     * for the broker to confirm all of it. Nacked messages are published again by the publisher.
+     * If the batch is still not confirmed, the exception rolls the transaction back and the rows stay unsent.
+     */
+    private int relayBatch() {
+        List<OutboxMessage> batch = outboxMessageRepository.lockUnsentBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<Void>> confirms = rabbitMqMessagePublisher.publishAllAsync(batch.stream()
+                .map(outboxMessage -> new OutgoingMessage(toAmqpMessage(outboxMessage), outboxMessage.getMessageType()))
+                .toList());
+        awaitConfirms(confirms);
+
+        outboxMessageRepository.markSent(batch.stream().map(OutboxMessage::getId).toList(), LocalDateTime.now());
+
+        publishedCounter.increment(batch.size());
+        batchSizeSummary.record(batch.size());
+        log.debug("relayBatch: Outbox batch published and confirmed. Size: {}", batch.size());
+        return batch.size();
+    }
+
+
+    private void awaitConfirms(List<CompletableFuture<Void>> confirms) {
+        try {
+            CompletableFuture.allOf(confirms.toArray(CompletableFuture<?>[]::new)).get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted while waiting for outbox publish confirms", e);
+        } catch (ExecutionException e) {
+            throw new AmqpException("Outbox batch was not confirmed by the broker", e.getCause());
+        } catch (TimeoutException e) {
+            throw new AmqpException("Timed out waiting for outbox publish confirms", e);
+        }
+    }
+
+
+    private Message toAmqpMessage(OutboxMessage outboxMessage) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setContentEncoding(StandardCharsets.UTF_8.name());
+        properties.setHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, outboxMessage.getPayloadType());
+        properties.setMessageId(MESSAGE_ID_PREFIX + outboxMessage.getId());
+        return new Message(outboxMessage.getPayload().getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,148 @@
+package com.saleservice.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.saleservice.client.ProductServiceClient;
+import com.saleservice.dto.ProductDto;
+import com.saleservice.dto.ProductEventMessage;
+import com.saleservice.exception.ProductNotFoundException;
+import com.saleservice.service.ProductCacheService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+
+@Slf4j
+@Service
+public class ProductCacheServiceImpl implements ProductCacheService {
+
+    private final ProductServiceClient productServiceClient;
+    private final Executor executor;
+    private final Cache<String, CachedProduct> cache;
+    private final long stockMaxStalenessNanos;
+    private final Counter stockReloadCounter;
+
+
+    public ProductCacheServiceImpl(ProductServiceClient productServiceClient,
+                                   MeterRegistry meterRegistry,
+                                   @Qualifier("applicationTaskExecutor") Executor executor,
+                                   @Value("${product.cache.maximum-size}") long maximumSize,
+                                   @Value("${product.cache.expire-after-write}") Duration expireAfterWrite,
+                                   @Value("${product.cache.stock-max-staleness}") Duration stockMaxStaleness) {
+        this.productServiceClient = productServiceClient;
+        this.executor = executor;
+        this.stockMaxStalenessNanos = stockMaxStaleness.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "productCache");
+        this.stockReloadCounter = Counter.builder("product.cache.stock.reloads")
+                .description("Cached products reloaded because their stock was older than the staleness bound")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    public ProductDto getProductWithFreshStock(String barcode) {
+        log.trace("getProductWithFreshStock method begins. Barcode: {}", barcode);
+
+        CachedProduct cachedProduct = cache.get(barcode, this::loadProduct);
+
+        if (isStockStale(cachedProduct)) {
+            log.debug("getProductWithFreshStock: Cached stock is stale, reloading. Barcode: {}", barcode);
+            stockReloadCounter.increment();
+            cachedProduct = loadProduct(barcode);
+            cache.put(barcode, cachedProduct);
+        }
+
+        log.trace("getProductWithFreshStock method ends. Barcode: {}", barcode);
+        return cachedProduct.product();
+    }
+
+
+    @Override
+    public Map<String, ProductDto> getProductsWithFreshStock(Collection<String> barcodes) {
+        log.trace("getProductsWithFreshStock method begins. Barcodes: {}", barcodes);
+
+        Map<String, CompletableFuture<ProductDto>> futures = new LinkedHashMap<>();
+        for (String barcode : barcodes) {
+            CachedProduct cachedProduct = cache.policy().getIfPresentQuietly(barcode);
+            futures.put(barcode, (cachedProduct != null && !isStockStale(cachedProduct))
+                    ? CompletableFuture.completedFuture(cachedProduct.product())
+                    : CompletableFuture.supplyAsync(() -> getProductWithFreshStock(barcode), executor));
+        }
+
+        Map<String, ProductDto> products = new LinkedHashMap<>();
+        try {
+            futures.forEach((barcode, future) -> products.put(barcode, future.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        log.trace("getProductsWithFreshStock method ends. Barcodes: {}", barcodes);
+        return products;
+    }
+
+
+    @Override
+    public void handleProductEvent(ProductEventMessage message) {
+        log.trace("handleProductEvent method begins. Barcode: {}, EventType: {}", message.getBarcode(), message.getEventType());
+
+        switch (message.getEventType()) {
+            case UPDATED, STOCK_CHANGED -> cache.asMap().computeIfPresent(message.getBarcode(),
+                    (barcode, cachedProduct) -> new CachedProduct(toProductDto(message), System.nanoTime()));
+            case CREATED, DELETED -> cache.invalidate(message.getBarcode());
+        }
+
+        log.debug("handleProductEvent: Product event applied to cache. Barcode: {}, EventType: {}",
+                message.getBarcode(), message.getEventType());
+        log.trace("handleProductEvent method ends. Barcode: {}, EventType: {}", message.getBarcode(), message.getEventType());
+    }
+
+
+
+    private CachedProduct loadProduct(String barcode) {
+        log.trace("loadProduct method begins. Barcode: {}", barcode);
+
+        ProductDto productDto = productServiceClient.getProduct(barcode).getBody();
+        if (productDto == null) {
+            log.warn("loadProduct: Product-service returned no body for barcode {}", barcode);
+            throw new ProductNotFoundException("Product not found with barcode: " + barcode);
+        }
+
+        log.trace("loadProduct method ends. Barcode: {}", barcode);
+        return new CachedProduct(productDto, System.nanoTime());
+    }
+
+
+    private boolean isStockStale(CachedProduct cachedProduct) {
+        return System.nanoTime() - cachedProduct.stockLoadedAt() > stockMaxStalenessNanos;
+    }
+
+
+    private ProductDto toProductDto(ProductEventMessage message) {
+        return new ProductDto(message.getName(), message.getBarcode(), message.getPrice(), message.getStock(), false);
+    }
+
+
+    private record CachedProduct(ProductDto product, long stockLoadedAt) {
+    }
+}
@@ -0,0 +1,316 @@
+package com.saleservice.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saleservice.config.RabbitMqMessagePublisher.MessageType;
+import com.saleservice.dto.JournaledSale;
+import com.saleservice.dto.ReceiptMessage;
+import com.saleservice.dto.SaleDto;
+import com.saleservice.dto.SaleItemDto;
+import com.saleservice.dto.StockAdjustmentMessage;
+import com.saleservice.model.Sale;
+import com.saleservice.model.SaleItem;
+import com.saleservice.repository.SaleJournal;
+import com.saleservice.repository.SaleRepository;
+import com.saleservice.service.OutboxService;
+import com.saleservice.service.SaleJournalService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "sale.journal.enabled", havingValue = "true")
+public class SaleJournalServiceImpl implements SaleJournalService {
+
+    private static final String INSERT_SALE = """
+            INSERT INTO sales (id, cashier_name, total_price, discounted_price, campaign_name, campaign_id,
+                               discount_type, discount_value, amount_received, change, payment_method,
+                               sale_date, is_cancelled)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""";
+    private static final String INSERT_SALE_ITEM = """
+            INSERT INTO sale_items (id, barcode, name, quantity, sale_price, sale_id)
+            VALUES (?, ?, ?, ?, ?, ?)""";
+
+    @Value("${sale.journal.id-blocks}")
+    private int idBlocks;
+    @Value("${sale.journal.drain-batch-size}")
+    private int batchSize;
+
+    private final SaleJournal saleJournal;
+    private final SaleRepository saleRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final Deque<IdBlock> saleIdBlocks = new ArrayDeque<>();
+
+    private final Counter fullCounter;
+    private final Counter drainedCounter;
+    private final Counter failedBatchCounter;
+    private final Timer appendTimer;
+
+
+    public SaleJournalServiceImpl(SaleJournal saleJournal,
+                                  SaleRepository saleRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  OutboxService outboxService,
+                                  TransactionTemplate transactionTemplate,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry) {
+        this.saleJournal = saleJournal;
+        this.saleRepository = saleRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.outboxService = outboxService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+
+        this.fullCounter = Counter.builder("sale.journal.full")
+                .description("Sales saved directly to Postgres because the sale journal was full")
+                .register(meterRegistry);
+        this.drainedCounter = Counter.builder("sale.journal.drained")
+                .description("Journaled sales stored in Postgres")
+                .register(meterRegistry);
+        this.failedBatchCounter = Counter.builder("sale.journal.failed.batches")
+                .description("Journal batches that could not be stored in Postgres and will be retried")
+                .register(meterRegistry);
+        this.appendTimer = Timer.builder("sale.journal.append.duration")
+                .description("Time to write a sale to the journal and force it to disk")
+                .register(meterRegistry);
+        Gauge.builder("sale.journal.pending", saleJournal, SaleJournal::pendingBytes)
+                .description("Bytes of journaled sales not stored in Postgres yet")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    public long nextSaleId() {
+        while (true) {
+            synchronized (saleIdBlocks) {
+                while (!saleIdBlocks.isEmpty()) {
+                    IdBlock block = saleIdBlocks.peekFirst();
+                    if (block.hasNext()) {
+                        return block.next();
+                    }
+                    saleIdBlocks.pollFirst();
+                }
+            }
+            log.warn("nextSaleId: No reserved sale IDs left, reserving a block while the sale waits");
+            reserveSaleIdBlocks(1);
+        }
+    }
+
+
+    @Override
+    public boolean append(Long bagId, ReceiptMessage receipt) {
+        log.trace("append method begins. SaleId: {}, BagId: {}", receipt.getSaleDto().getId(), bagId);
+
+        byte[] data;
+        try {
+            data = objectMapper.writeValueAsBytes(new JournaledSale(bagId, receipt));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Receipt could not be written to the sale journal", e);
+        }
+
+        boolean appended = appendTimer.record(() -> saleJournal.append(data));
+        if (!appended) {
+            fullCounter.increment();
+        }
+
+        log.trace("append method ends. SaleId: {}, Appended: {}", receipt.getSaleDto().getId(), appended);
+        return appended;
+    }
+
+
+    @Override
+    @Scheduled(fixedDelayString = "${sale.journal.drain-fixed-delay-ms}")
+    public int drainJournal() {
+        log.trace("drainJournal method begins.");
+
+        int drained = 0;
+        List<SaleJournal.Entry> batch;
+        do {
+            batch = saleJournal.readPending(batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            List<SaleJournal.Entry> entries = batch;
+            try {
+                Integer stored = transactionTemplate.execute(status -> storeBatch(entries));
+                drainedCounter.increment(stored == null ? 0 : stored);
+            } catch (RuntimeException e) {
+                failedBatchCounter.increment();
+                log.warn("drainJournal: Journal batch could not be stored, it will be retried: {}", e.getMessage(), e);
+                break;
+            }
+            saleJournal.markDrained(batch.get(batch.size() - 1).position());
+            drained += batch.size();
+        } while (batch.size() == batchSize);
+
+        try {
+            topUpSaleIds();
+        } catch (RuntimeException e) {
+            log.warn("drainJournal: Sale IDs could not be reserved: {}", e.getMessage());
+        }
+
+        if (drained > 0) {
+            log.info("drainJournal: Stored {} journaled sales", drained);
+        }
+        log.trace("drainJournal method ends. Drained: {}", drained);
+        return drained;
+    }
+
+
+
+    private int storeBatch(List<SaleJournal.Entry> entries) {
+        List<JournaledSale> journaled = new ArrayList<>(entries.size());
+        for (SaleJournal.Entry entry : entries) {
+            journaled.add(readSale(entry.data()));
+        }
+
+        Set<Long> existing = new HashSet<>(saleRepository.findExistingIds(
+                journaled.stream().map(entry -> entry.getReceipt().getSaleDto().getId()).toList()));
+        List<JournaledSale> pending = journaled.stream()
+                .filter(entry -> !existing.contains(entry.getReceipt().getSaleDto().getId()))
+                .toList();
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        List<Object[]> sales = new ArrayList<>(pending.size());
+        List<Object[]> items = new ArrayList<>();
+        for (JournaledSale entry : pending) {
+            SaleDto sale = entry.getReceipt().getSaleDto();
+            sales.add(new Object[]{sale.getId(), sale.getCashierName(), sale.getTotalPrice(), sale.getDiscountedPrice(),
+                    sale.getCampaignName(), sale.getCampaignId(),
+                    sale.getDiscountType() == null ? null : sale.getDiscountType().ordinal(), sale.getDiscountValue(),
+                    sale.getAmountReceived(), sale.getChange(), sale.getPaymentMethod().name(),
+                    sale.getSaleDate(), sale.isCancelled()});
+            for (SaleItemDto item : sale.getSaleItems()) {
+                items.add(new Object[]{null, item.getBarcode(), item.getName(), item.getQuantity(),
+                        item.getSalePrice(), sale.getId()});
+            }
+        }
+
+        List<Long> itemIds = reserveSaleItemIds(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            items.get(i)[0] = itemIds.get(i);
+        }
+        jdbcTemplate.batchUpdate(INSERT_SALE, sales);
+        jdbcTemplate.batchUpdate(INSERT_SALE_ITEM, items);
+
+        for (JournaledSale entry : pending) {
+            ReceiptMessage receipt = entry.getReceipt();
+            SaleDto sale = receipt.getSaleDto();
+            List<StockAdjustmentMessage.Item> stockAdjustments = sale.getSaleItems().stream()
+                    .map(item -> new StockAdjustmentMessage.Item(item.getBarcode(), -item.getQuantity()))
+                    .toList();
+            if (!stockAdjustments.isEmpty()) {
+                outboxService.enqueue(new StockAdjustmentMessage(sale.getId(), entry.getBagId(), stockAdjustments), MessageType.STOCK_ADJUSTMENT);
+            }
+            outboxService.enqueue(receipt, MessageType.RECEIPT);
+            outboxService.enqueue(sale.getId() + "." + receipt.getRequestId(), MessageType.EVENT);
+        }
+
+        log.debug("storeBatch: Journaled sales stored. Sales: {}, Items: {}, Already stored: {}",
+                pending.size(), items.size(), journaled.size() - pending.size());
+        return pending.size();
+    }
+
+
+    private JournaledSale readSale(byte[] data) {
+        try {
+            return objectMapper.readValue(data, JournaledSale.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journaled sale could not be read", e);
+        }
+    }
+
+
+    private void topUpSaleIds() {
+        int missing;
+        synchronized (saleIdBlocks) {
+            saleIdBlocks.removeIf(block -> !block.hasNext());
+            missing = idBlocks - saleIdBlocks.size();
+        }
+        if (missing > 0) {
+            reserveSaleIdBlocks(missing);
+        }
+    }
+
+
+    private void reserveSaleIdBlocks(int count) {
+        List<Long> highestIds = saleRepository.reserveSaleIdBlocks(count);
+        synchronized (saleIdBlocks) {
+            highestIds.forEach(highestId -> saleIdBlocks.addLast(IdBlock.endingAt(highestId, Sale.ID_ALLOCATION_SIZE)));
+        }
+        log.debug("reserveSaleIdBlocks: Reserved {} blocks of sale IDs", highestIds.size());
+    }
+
+
+    private List<Long> reserveSaleItemIds(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            int blocks = (count - ids.size() + SaleItem.ID_ALLOCATION_SIZE - 1) / SaleItem.ID_ALLOCATION_SIZE;
+            for (Long highestId : saleRepository.reserveSaleItemIdBlocks(blocks)) {
+                IdBlock block = IdBlock.endingAt(highestId, SaleItem.ID_ALLOCATION_SIZE);
+                while (block.hasNext()) {
+                    ids.add(block.next());
+                }
+            }
+        }
+        return ids;
+    }
+
+
+    /**
+     * IDs taken from a sequence value the way Hibernate's pooled optimizer does: the value is the highest ID of the
+     * block. The very first value of a sequence is 1 and yields a block of one ID only.
+     */
+    private static final class IdBlock {
+
+        private long next;
+        private final long last;
+
+
+        private IdBlock(long next, long last) {
+            this.next = next;
+            this.last = last;
+        }
+
+
+        static IdBlock endingAt(long highestId, int size) {
+            return new IdBlock(Math.max(1, highestId - size + 1), highestId);
+        }
+
+
+        boolean hasNext() {
+            return next <= last;
+        }
+
+
+        long next() {
+            return next++;
+        }
+    }
+}
@@ -3,20 +3,25 @@ package com.saleservice.service.impl;
 import com.saleservice.config.RabbitMqMessagePublisher;
 import com.saleservice.dto.*;
 import com.saleservice.exception.*;
+import com.saleservice.model.Bag;
 import com.saleservice.model.PaymentMethod;
 import com.saleservice.model.Sale;
 import com.saleservice.model.SaleItem;
 import com.saleservice.repository.SaleRepository;
 import com.saleservice.service.BagService;
+import com.saleservice.service.OutboxService;
+import com.saleservice.service.SaleJournalService;
 import com.saleservice.service.SaleService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 @Slf4j
@@ -27,7 +32,8 @@ public class SaleServiceImpl implements SaleService {
     private final SaleRepository saleRepository;
     private final BagService bagService;
     private final ModelMapper modelMapper;
-    private final RabbitMqMessagePublisher rabbitMqMessagePublisher;
+    private final OutboxService outboxService;
+    private final ObjectProvider<SaleJournalService> saleJournalService;
 
 
     @Override
@@ -39,11 +45,13 @@ public class SaleServiceImpl implements SaleService {
         log.trace("completeSale method begins. BagId: {}, AmountReceived: {}, PaymentMethod: {}, CashierName: {}",
                 bagId, amountReceived, paymentMethod, cashierName);
 
-        BagDto bagDto = getBagDtoFromRepository(bagId);
+        Bag bag = checkoutBag(bagId);
 
-        BigDecimal priceToPay = (bagDto.getCampaignId() != null)
-                ? bagDto.getDiscountedPrice()
-                : bagDto.getTotalPrice();
+        BigDecimal totalPrice = bag.getTotalPrice().toBigDecimal();
+        BigDecimal discountedPrice = bag.getDiscountedPrice() == null ? null : bag.getDiscountedPrice().toBigDecimal();
+        BigDecimal priceToPay = (bag.getCampaignId() != null)
+                ? discountedPrice
+                : totalPrice;
 
         amountReceived = validatePayment(amountReceived, paymentMethod, priceToPay);
         BigDecimal change = calculateChange(amountReceived, priceToPay, paymentMethod);
@@ -51,12 +59,12 @@ public class SaleServiceImpl implements SaleService {
         Sale sale = Sale.builder()
                 .cashierName(parseName(cashierName))
                 .saleDate(LocalDateTime.now())
-                .totalPrice(bagDto.getTotalPrice())
-                .discountedPrice(bagDto.getDiscountedPrice())
-                .campaignName(bagDto.getCampaignName())
-                .campaignId(bagDto.getCampaignId())
-                .discountType(bagDto.getDiscountType())
-                .discountValue(bagDto.getDiscountValue())
+                .totalPrice(totalPrice)
+                .discountedPrice(discountedPrice)
+                .campaignName(bag.getCampaignName())
+                .campaignId(bag.getCampaignId())
+                .discountType(bag.getDiscountType())
+                .discountValue(bag.getDiscountValue())
                 .amountReceived(amountReceived)
                 .change(change)
                 .paymentMethod(paymentMethod)
@@ -65,27 +73,32 @@ public class SaleServiceImpl implements SaleService {
                 .build();
         log.debug("completeSale: Sale object created: {}", sale);
 
-        bagDto.getItems()
-                .forEach(bagItemDto -> {
-            if (bagItemDto != null){
-                SaleItem saleItem = SaleItem.builder()
-                        .barcode(bagItemDto.getBarcode())
-                        .name(bagItemDto.getName())
-                        .quantity(bagItemDto.getQuantity())
-                        .salePrice(bagItemDto.getPrice())
-                        .sale(sale)
-                        .build();
-                sale.getSaleItems().add(saleItem);
-
-                StockUpdateMessage message = new StockUpdateMessage(bagItemDto.getBarcode(), -bagItemDto.getQuantity(), 0);
-                rabbitMqMessagePublisher.publishMessage(message, RabbitMqMessagePublisher.MessageType.STOCK);
-                log.debug("completeSale: Stock update message published for barcode: {}", bagItemDto.getBarcode());
-            }
+        List<StockAdjustmentMessage.Item> stockAdjustments = new ArrayList<>(bag.getItems().size());
+        bag.getItems()
+                .forEach(bagItem -> {
+            SaleItem saleItem = SaleItem.builder()
+                    .barcode(bagItem.getBarcode())
+                    .name(bagItem.getName())
+                    .quantity(bagItem.getQuantity())
+                    .salePrice(bagItem.getPrice().toBigDecimal())
+                    .sale(sale)
+                    .build();
+            sale.getSaleItems().add(saleItem);
+
+            stockAdjustments.add(new StockAdjustmentMessage.Item(bagItem.getBarcode(), -bagItem.getQuantity()));
         });
-        
+
+        ReceiptMessage journaled = journalSale(bagId, sale);
+        if (journaled != null) {
+            log.info("completeSale: Sale completed and written to the journal. SaleId: {}", sale.getId());
+            log.trace("completeSale method ends. BagId: {}, AmountReceived: {}, PaymentMethod: {}, CashierName: {}",
+                    bagId, amountReceived, paymentMethod, cashierName);
+            return journaled;
+        }
+
         saleRepository.save(sale);
+        publishStockAdjustment(sale.getId(), bagId, stockAdjustments);
         log.info("completeSale: Sale saved successfully. SaleId: {}", sale.getId());
-        bagService.deleteBagById(bagId);
 
         log.info("completeSale: Sale completed successfully. SaleId: {}", sale.getId());
         log.trace("completeSale method ends. BagId: {}, AmountReceived: {}, PaymentMethod: {}, CashierName: {}",
@@ -107,12 +120,10 @@ public class SaleServiceImpl implements SaleService {
             log.warn("cancelSale: Sale is already cancelled. SaleId: {}", saleId);
             throw new SaleAlreadyCancelledException("Sale is already cancelled."); }
 
-        sale.getSaleItems().forEach(saleItem -> {
-
-            StockUpdateMessage message = new StockUpdateMessage(saleItem.getBarcode(), saleItem.getQuantity(), 0);
-            rabbitMqMessagePublisher.publishMessage(message, RabbitMqMessagePublisher.MessageType.STOCK);
-            log.debug("cancelSale: Stock update message published for barcode: {}, message : {}", saleItem.getBarcode(), message);
-        });
+        List<StockAdjustmentMessage.Item> stockAdjustments = sale.getSaleItems().stream()
+                .map(saleItem -> new StockAdjustmentMessage.Item(saleItem.getBarcode(), saleItem.getQuantity()))
+                .toList();
+        publishStockAdjustment(saleId, null, stockAdjustments);
 
         sale.setCancelled(true);
         saleRepository.save(sale);
@@ -123,6 +134,23 @@ public class SaleServiceImpl implements SaleService {
 
 
 
+    /**
+     * Stores the stock changes of every line item of a sale as one outbox message,
+     * which the product-service applies in a single transaction. The bag ID is given for completed sales only.
+     */
+    private void publishStockAdjustment(Long saleId, Long bagId, List<StockAdjustmentMessage.Item> stockAdjustments) {
+        log.trace("publishStockAdjustment method begins. SaleId: {}, Items: {}", saleId, stockAdjustments.size());
+
+        if (!stockAdjustments.isEmpty()) {
+            StockAdjustmentMessage message = new StockAdjustmentMessage(saleId, bagId, stockAdjustments);
+            outboxService.enqueue(message, RabbitMqMessagePublisher.MessageType.STOCK_ADJUSTMENT);
+            log.debug("publishStockAdjustment: Stock adjustment message stored in outbox. SaleId: {}, Items: {}", saleId, stockAdjustments.size());
+        }
+
+        log.trace("publishStockAdjustment method ends. SaleId: {}", saleId);
+    }
+
+
     private BigDecimal calculateChange(BigDecimal amountReceived, BigDecimal priceToPay, PaymentMethod paymentMethod) {
         log.trace("calculateChange method begins. AmountReceived: {}, PriceToPay: {}, PaymentMethod: {}", amountReceived, priceToPay, paymentMethod);
 
@@ -159,38 +187,75 @@ public class SaleServiceImpl implements SaleService {
     }
 
 
+    /**
+     * In journal mode, gives the sale an ID from the reserved blocks and writes it with its receipt to the local
+     * journal, from which it is stored in Postgres later. Returns null if journal mode is off or the journal is full,
+     * in which case the sale is saved directly.
+     */
+    private ReceiptMessage journalSale(Long bagId, Sale sale) {
+        SaleJournalService journal = saleJournalService.getIfAvailable();
+        if (journal == null) {
+            return null;
+        }
+        log.trace("journalSale method begins.");
+
+        sale.setId(journal.nextSaleId());
+        ReceiptMessage message = toReceiptMessage(sale);
+        if (!journal.append(bagId, message)) {
+            log.warn("journalSale: Sale journal is full, the sale is saved directly. Reserved SaleId: {}", sale.getId());
+            sale.setId(null);
+            return null;
+        }
+
+        log.trace("journalSale method ends. SaleId: {}", sale.getId());
+        return message;
+    }
+
+
     private ReceiptMessage publishReceiptMessageToQueues(Sale sale) {
         log.trace("publishReceiptMessagesToQueues method begins. SaleId: {}", sale.getId());
 
-        SaleDto saleDto = modelMapper.map(sale, SaleDto.class);
-
-        String receiptId = UUID.randomUUID().toString();
-        ReceiptMessage message = new ReceiptMessage(receiptId, saleDto);
+        ReceiptMessage message = toReceiptMessage(sale);
+        SaleDto saleDto = message.getSaleDto();
+        String receiptId = message.getRequestId();
 
-        rabbitMqMessagePublisher.publishMessage(message, RabbitMqMessagePublisher.MessageType.RECEIPT);
-        log.debug("publishReceiptMessagesToQueues: Receipt message published. ReceiptId: {}", receiptId);
-        rabbitMqMessagePublisher.publishEvent(saleDto.getId(), receiptId);
-        log.debug("publishReceiptMessagesToQueues: Event published for SaleId: {} with ReceiptId: {}", saleDto.getId(), receiptId);
+        outboxService.enqueue(message, RabbitMqMessagePublisher.MessageType.RECEIPT);
+        log.debug("publishReceiptMessagesToQueues: Receipt message stored in outbox. ReceiptId: {}", receiptId);
+        outboxService.enqueue(saleDto.getId() + "." + receiptId, RabbitMqMessagePublisher.MessageType.EVENT);
+        log.debug("publishReceiptMessagesToQueues: Event stored in outbox for SaleId: {} with ReceiptId: {}", saleDto.getId(), receiptId);
 
         log.trace("publishReceiptMessagesToQueues method ends. SaleId: {}, ReceiptId: {}", sale.getId(), receiptId);
         return message;
     }
 
 
-    private BagDto getBagDtoFromRepository(Long bagId) {
-        log.trace("getBagDto method begins. BagId: {}", bagId);
+    private ReceiptMessage toReceiptMessage(Sale sale) {
+        SaleDto saleDto = modelMapper.map(sale, SaleDto.class);
+        return new ReceiptMessage(UUID.randomUUID().toString(), saleDto);
+    }
+
+
+    /**
+     * Takes the bag out of Redis for the sale. If the sale transaction rolls back, the bag service puts it back.
+     */
+    private Bag checkoutBag(Long bagId) {
+        log.trace("checkoutBag method begins. BagId: {}", bagId);
+
+        if (bagId == null) {
+            log.warn("checkoutBag: Bag not found with id: {}", bagId);
+            throw new BagNotFoundException("Bag not found with id: " + bagId);}
 
-        BagDto bagDto = bagService.getBagById(bagId);
+        Bag bag = bagService.checkoutBag(bagId);
 
-        if (bagDto == null) {
-            log.warn("getBagDto: Bag not found with id: {}", bagId);
+        if (bag == null) {
+            log.warn("checkoutBag: Bag not found with id: {}", bagId);
             throw new BagNotFoundException("Bag not found with id: " + bagId);}
-        if (bagDto.getItems() == null || bagDto.getItems().isEmpty()) {
-            log.warn("getBagDto: No items in the bag to process the sale. BagId: {}", bagId);
+        if (bag.getItems().isEmpty()) {
+            log.warn("checkoutBag: No items in the bag to process the sale. BagId: {}", bagId);
             throw new BagIsEmptyException("No items in the bag to process the sale.");}
 
-        log.trace("getBagDto method ends. BagId: {}", bagId);
-        return bagDto;
+        log.trace("checkoutBag method ends. BagId: {}", bagId);
+        return bag;
     }
 
 
@@ -0,0 +1,111 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.exception.InvalidInputException;
+import com.saleservice.repository.StockReservationRepository;
+import com.saleservice.service.StockReservationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+@Slf4j
+@Service
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private final StockReservationRepository stockReservationRepository;
+    private final Duration timeToLive;
+    private final Duration holdTimeout;
+    private final Duration releaseGrace;
+    private final Counter rejectedCounter;
+
+
+    public StockReservationServiceImpl(StockReservationRepository stockReservationRepository,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${stock.reservation.ttl}") Duration timeToLive,
+                                       @Value("${stock.reservation.checkout-hold-timeout}") Duration holdTimeout,
+                                       @Value("${product.cache.stock-max-staleness}") Duration stockMaxStaleness) {
+        this.stockReservationRepository = stockReservationRepository;
+        this.timeToLive = timeToLive;
+        this.holdTimeout = holdTimeout;
+        // Held units are released only after every instance has applied the stock change to its cache
+        this.releaseGrace = stockMaxStaleness.plusSeconds(1);
+        this.rejectedCounter = Counter.builder("stock.reservation.rejected")
+                .description("Scans rejected because the remaining stock was reserved by other bags")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    public void reserve(Long bagId, Map<String, Integer> quantities, Map<String, Integer> stocks) {
+        log.trace("reserve method begins. BagId: {}, Quantities: {}", bagId, quantities);
+
+        String unavailable = stockReservationRepository.reserve(bagId, quantities, stocks, timeToLive, holdTimeout);
+        if (unavailable != null) {
+            rejectedCounter.increment();
+            log.warn("reserve: Not enough unreserved stock for product with barcode {}. BagId: {}", unavailable, bagId);
+            throw new InvalidInputException("The quantity of products in the bag cannot be more than stock");
+        }
+
+        log.trace("reserve method ends. BagId: {}, Quantities: {}", bagId, quantities);
+    }
+
+
+    @Override
+    public void release(Long bagId, String barcode, int quantity) {
+        log.trace("release method begins. BagId: {}, Barcode: {}, Quantity: {}", bagId, barcode, quantity);
+
+        long released = stockReservationRepository.release(bagId, Map.of(barcode, quantity), timeToLive);
+
+        log.debug("release: {} units released. BagId: {}, Barcode: {}", released, bagId, barcode);
+        log.trace("release method ends. BagId: {}, Barcode: {}, Quantity: {}", bagId, barcode, quantity);
+    }
+
+
+    @Override
+    public void releaseAll(Long bagId) {
+        log.trace("releaseAll method begins. BagId: {}", bagId);
+
+        Map<String, Integer> reserved = stockReservationRepository.findReserved(bagId);
+        long released = reserved.isEmpty() ? 0 : stockReservationRepository.release(bagId, reserved, timeToLive);
+
+        log.debug("releaseAll: {} units released. BagId: {}", released, bagId);
+        log.trace("releaseAll method ends. BagId: {}", bagId);
+    }
+
+
+    @Override
+    public void extend(Long bagId) {
+        log.trace("extend method begins. BagId: {}", bagId);
+
+        boolean extended = stockReservationRepository.extend(bagId, timeToLive);
+
+        log.trace("extend method ends. BagId: {}, Extended: {}", bagId, extended);
+    }
+
+
+    @Override
+    public void holdUntilStockChanged(Long bagId, Collection<String> barcodes) {
+        log.trace("holdUntilStockChanged method begins. BagId: {}, Barcodes: {}", bagId, barcodes);
+
+        long held = stockReservationRepository.hold(bagId, barcodes, timeToLive);
+
+        log.debug("holdUntilStockChanged: {} units held until the sale is applied. BagId: {}", held, bagId);
+        log.trace("holdUntilStockChanged method ends. BagId: {}", bagId);
+    }
+
+
+    @Override
+    public void releaseHeld(Long bagId, String barcode) {
+        log.trace("releaseHeld method begins. BagId: {}, Barcode: {}", bagId, barcode);
+
+        long released = stockReservationRepository.releaseHeld(bagId, barcode, holdTimeout, releaseGrace);
+
+        log.debug("releaseHeld: {} units held for the checked-out bag released. BagId: {}, Barcode: {}", released, bagId, barcode);
+        log.trace("releaseHeld method ends. BagId: {}, Barcode: {}", bagId, barcode);
+    }
+}
@@ -0,0 +1,80 @@
+-- Compare-and-set save of a bag written by RedisStreamBagRepository, which appends the changes to the bag's
+-- operation log instead of writing them into the bag hashes.
+-- KEYS[1] bag hash, KEYS[2] bag items hash, KEYS[3] bag index set, KEYS[4] bag event stream
+-- ARGV[1] expected version, ARGV[2] time to live in seconds, ARGV[3] bag id, ARGV[4] operation,
+-- ARGV[5] compaction threshold, ARGV[6] log retention in seconds,
+-- then the same four groups as save-bag.lua.
+-- Each log entry holds 'op' and 'version', then 'f:' changed fields, 'F:' removed fields,
+-- 'i:' changed items and 'I:' removed items.
+-- The bag hashes are a snapshot as of the entry in their 'snapshotEventId' field. A new bag is written to them
+-- directly, and once 'pendingEvents' reaches the threshold the log tail is folded into them.
+-- Returns the new version, or -1 if the stored version is not the expected one.
+
+local current = tonumber(redis.call('HGET', KEYS[1], 'version') or '0')
+if current ~= tonumber(ARGV[1]) then
+    return -1
+end
+local version = current + 1
+
+local entry = { 'op', ARGV[4], 'version', tostring(version) }
+local index = 7
+
+local function addChanges(prefix, withValues)
+    local count = tonumber(ARGV[index])
+    local step = withValues and 2 or 1
+    for i = index + 1, index + step * count, step do
+        entry[#entry + 1] = prefix .. ARGV[i]
+        entry[#entry + 1] = withValues and ARGV[i + 1] or ''
+    end
+    index = index + 1 + step * count
+end
+
+addChanges('f:', true)
+addChanges('F:', false)
+addChanges('i:', true)
+addChanges('I:', false)
+
+local id = redis.call('XADD', KEYS[4], '*', unpack(entry))
+
+local function apply(fields)
+    for i = 1, #fields, 2 do
+        local kind = string.sub(fields[i], 1, 2)
+        local name = string.sub(fields[i], 3)
+        if kind == 'f:' then
+            redis.call('HSET', KEYS[1], name, fields[i + 1])
+        elseif kind == 'F:' then
+            redis.call('HDEL', KEYS[1], name)
+        elseif kind == 'i:' then
+            redis.call('HSET', KEYS[2], name, fields[i + 1])
+        elseif kind == 'I:' then
+            redis.call('HDEL', KEYS[2], name)
+        end
+    end
+end
+
+local pending = redis.call('HINCRBY', KEYS[1], 'pendingEvents', 1)
+if current == 0 then
+    apply(entry)
+    redis.call('HSET', KEYS[1], 'snapshotEventId', id, 'pendingEvents', 0)
+elseif pending >= tonumber(ARGV[5]) then
+    local snapshot = redis.call('HGET', KEYS[1], 'snapshotEventId')
+    local tail = redis.call('XRANGE', KEYS[4], snapshot and ('(' .. snapshot) or '-', id)
+    for _, logged in ipairs(tail) do
+        apply(logged[2])
+    end
+    redis.call('HSET', KEYS[1], 'snapshotEventId', id, 'pendingEvents', 0)
+end
+
+redis.call('HSET', KEYS[1], 'version', version)
+redis.call('SADD', KEYS[3], ARGV[3])
+
+local ttl = tonumber(ARGV[2])
+if ttl > 0 then
+    redis.call('EXPIRE', KEYS[1], ttl)
+    if redis.call('EXISTS', KEYS[2]) == 1 then
+        redis.call('EXPIRE', KEYS[2], ttl)
+    end
+end
+redis.call('EXPIRE', KEYS[4], math.max(ttl, tonumber(ARGV[6])))
+
+return version
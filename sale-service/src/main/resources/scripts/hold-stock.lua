@@ -0,0 +1,24 @@
+-- Keeps the stock reserved by a checked-out bag until the product-service has applied the sale,
+-- written by StockReservationRepository.
+-- KEYS[1] reservation hash of the bag, then one (reserved counter, checkout hold set) pair per product of the bag
+-- ARGV[1] time to live in seconds, ARGV[2] bag id, then the barcode of each pair, in the same order.
+-- The units stay in the reserved counters and are recorded in the hold set of each product as (bag id:units),
+-- scored by the time of the checkout. The reservation hash of the bag is deleted.
+-- Returns the number of units held.
+
+local ttl = tonumber(ARGV[1])
+local now = tonumber(redis.call('TIME')[1])
+local held = 0
+
+for i = 1, (#KEYS - 1) / 2 do
+    local quantity = tonumber(redis.call('HGET', KEYS[1], ARGV[2 + i]) or '0')
+    if quantity > 0 then
+        redis.call('ZADD', KEYS[2 * i + 1], now, ARGV[2] .. ':' .. quantity)
+        redis.call('EXPIRE', KEYS[2 * i + 1], ttl)
+        redis.call('EXPIRE', KEYS[2 * i], ttl)
+        held = held + quantity
+    end
+end
+redis.call('DEL', KEYS[1])
+
+return held
@@ -0,0 +1,18 @@
+-- Loads bags written by RedisStreamBagRepository in one round trip.
+-- KEYS one (bag hash, bag items hash, bag event stream) triple per bag.
+-- Returns one {fields, items, tail} list per bag, where tail holds the log entries after the bag's snapshot.
+-- All three are empty if the bag does not exist.
+
+local bags = {}
+for i = 1, #KEYS, 3 do
+    local fields = redis.call('HGETALL', KEYS[i])
+    local items = {}
+    local tail = {}
+    if #fields > 0 then
+        items = redis.call('HGETALL', KEYS[i + 1])
+        local snapshot = redis.call('HGET', KEYS[i], 'snapshotEventId')
+        tail = redis.call('XRANGE', KEYS[i + 2], snapshot and ('(' .. snapshot) or '-', '+')
+    end
+    bags[#bags + 1] = { fields, items, tail }
+end
+return bags
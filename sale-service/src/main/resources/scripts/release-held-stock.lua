@@ -0,0 +1,23 @@
+-- Releases the stock held for one checked-out bag after the stock change of its sale was received,
+-- written by StockReservationRepository.
+-- KEYS[1] checkout hold set of the product
+-- ARGV[1] bag id, ARGV[2] checkout hold timeout in seconds, ARGV[3] grace period in seconds
+-- The hold of the bag is not removed at once: its score is moved so that the next reservation of the product
+-- releases it once the grace period has passed, which gives the other instances time to apply the same stock change
+-- to their cache. Holds of other bags are left as they are.
+-- Every instance receives the stock change, so releasing a hold that was already released is harmless.
+-- Returns the number of units of the bag's hold.
+
+local prefix = ARGV[1] .. ':'
+local releaseAt = tonumber(redis.call('TIME')[1]) - tonumber(ARGV[2]) + tonumber(ARGV[3])
+
+for _, hold in ipairs(redis.call('ZRANGE', KEYS[1], 0, -1)) do
+    if string.sub(hold, 1, #prefix) == prefix then
+        if tonumber(redis.call('ZSCORE', KEYS[1], hold)) > releaseAt then
+            redis.call('ZADD', KEYS[1], releaseAt, hold)
+        end
+        return tonumber(string.sub(hold, #prefix + 1))
+    end
+end
+
+return 0
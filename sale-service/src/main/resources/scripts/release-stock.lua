@@ -0,0 +1,30 @@
+-- Releases stock reserved by a bag, written by StockReservationRepository.
+-- KEYS[1] reservation hash of the bag, KEYS[2..n] reserved counter of each product
+-- ARGV[1] time to live in seconds, then one (barcode, quantity) pair per counter, in the same order.
+-- A bag never releases more than it holds, so releasing twice is harmless.
+-- Returns the number of units released.
+
+local released = 0
+
+for i = 2, #KEYS do
+    local arg = 2 + (i - 2) * 2
+    local held = tonumber(redis.call('HGET', KEYS[1], ARGV[arg]) or '0')
+    local amount = math.min(held, tonumber(ARGV[arg + 1]))
+    if amount > 0 then
+        if amount == held then
+            redis.call('HDEL', KEYS[1], ARGV[arg])
+        else
+            redis.call('HINCRBY', KEYS[1], ARGV[arg], -amount)
+        end
+        if redis.call('DECRBY', KEYS[i], amount) <= 0 then
+            redis.call('DEL', KEYS[i])
+        end
+        released = released + amount
+    end
+end
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    redis.call('EXPIRE', KEYS[1], ARGV[1])
+end
+
+return released
@@ -0,0 +1,15 @@
+-- Compare-and-set of an idempotency key written by IdempotencyKeyRepository.
+-- KEYS[1] idempotency key
+-- ARGV[1] expected value, ARGV[2] new value or an empty string to delete the key, ARGV[3] time to live in milliseconds
+-- Returns 1 if the stored value was the expected one and has been replaced, otherwise 0.
+
+if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+    return 0
+end
+
+if ARGV[2] == '' then
+    redis.call('DEL', KEYS[1])
+else
+    redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+end
+return 1
@@ -0,0 +1,43 @@
+-- Reserves stock for a bag, written by StockReservationRepository.
+-- KEYS[1] reservation hash of the bag, then one (reserved counter, checkout hold set) pair per product
+-- ARGV[1] time to live in seconds, ARGV[2] checkout hold timeout in seconds,
+-- then one (barcode, quantity, stock) triple per product, in the same order.
+-- Checkout holds older than the timeout are released first, in case the stock change of their sale was never received.
+-- Returns 0 if every quantity was reserved, or the position of the first product whose stock is not enough
+-- to cover the units already reserved by all bags plus the new quantity, in which case nothing is reserved.
+
+local ttl = tonumber(ARGV[1])
+local timedOut = tonumber(redis.call('TIME')[1]) - tonumber(ARGV[2])
+local products = (#KEYS - 1) / 2
+
+for i = 1, products do
+    local counter, holds = KEYS[2 * i], KEYS[2 * i + 1]
+    local released = 0
+    for _, hold in ipairs(redis.call('ZRANGEBYSCORE', holds, '-inf', timedOut)) do
+        released = released + tonumber(string.match(hold, ':(%d+)$'))
+    end
+    if released > 0 then
+        redis.call('ZREMRANGEBYSCORE', holds, '-inf', timedOut)
+        if redis.call('DECRBY', counter, released) <= 0 then
+            redis.call('DEL', counter)
+        end
+    end
+end
+
+for i = 1, products do
+    local arg = 3 + (i - 1) * 3
+    local reserved = tonumber(redis.call('GET', KEYS[2 * i]) or '0')
+    if reserved + tonumber(ARGV[arg + 1]) > tonumber(ARGV[arg + 2]) then
+        return i
+    end
+end
+
+for i = 1, products do
+    local arg = 3 + (i - 1) * 3
+    redis.call('INCRBY', KEYS[2 * i], ARGV[arg + 1])
+    redis.call('EXPIRE', KEYS[2 * i], ttl)
+    redis.call('HINCRBY', KEYS[1], ARGV[arg], ARGV[arg + 1])
+end
+redis.call('EXPIRE', KEYS[1], ttl)
+
+return 0
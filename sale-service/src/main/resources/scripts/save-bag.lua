@@ -0,0 +1,48 @@
+-- Compare-and-set save of a bag written by RedisBagRepository.
+-- KEYS[1] bag hash, KEYS[2] bag items hash, KEYS[3] bag index set
+-- ARGV[1] expected version, ARGV[2] time to live in seconds, ARGV[3] bag id,
+-- then four groups, each a count followed by its entries:
+-- changed fields (name, value pairs), removed fields, changed items (barcode, value pairs), removed items.
+-- Returns the new version, or -1 if the stored version is not the expected one.
+
+local current = tonumber(redis.call('HGET', KEYS[1], 'version') or '0')
+if current ~= tonumber(ARGV[1]) then
+    return -1
+end
+
+local index = 4
+
+local function setPairs(key)
+    local count = tonumber(ARGV[index])
+    for i = index + 1, index + 2 * count, 2 do
+        redis.call('HSET', key, ARGV[i], ARGV[i + 1])
+    end
+    index = index + 1 + 2 * count
+end
+
+local function deleteFields(key)
+    local count = tonumber(ARGV[index])
+    for i = index + 1, index + count do
+        redis.call('HDEL', key, ARGV[i])
+    end
+    index = index + 1 + count
+end
+
+setPairs(KEYS[1])
+deleteFields(KEYS[1])
+setPairs(KEYS[2])
+deleteFields(KEYS[2])
+
+local version = current + 1
+redis.call('HSET', KEYS[1], 'version', version)
+redis.call('SADD', KEYS[3], ARGV[3])
+
+local ttl = tonumber(ARGV[2])
+if ttl > 0 then
+    redis.call('EXPIRE', KEYS[1], ttl)
+    if redis.call('EXISTS', KEYS[2]) == 1 then
+        redis.call('EXPIRE', KEYS[2], ttl)
+    end
+end
+
+return version
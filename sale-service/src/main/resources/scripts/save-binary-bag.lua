@@ -0,0 +1,21 @@
+-- Compare-and-set save of a bag written by RedisBinaryBagRepository.
+-- KEYS[1] bag hash, KEYS[2] bag index set
+-- ARGV[1] expected version, ARGV[2] time to live in seconds, ARGV[3] bag id, ARGV[4] item count, ARGV[5] encoded bag
+-- The item count is kept next to the encoded bag so that scripts can tell empty bags apart without decoding it.
+-- Returns the new version, or -1 if the stored version is not the expected one.
+
+local current = tonumber(redis.call('HGET', KEYS[1], 'version') or '0')
+if current ~= tonumber(ARGV[1]) then
+    return -1
+end
+
+local version = current + 1
+redis.call('HSET', KEYS[1], 'version', version, 'items', ARGV[4], 'data', ARGV[5])
+redis.call('SADD', KEYS[2], ARGV[3])
+
+local ttl = tonumber(ARGV[2])
+if ttl > 0 then
+    redis.call('EXPIRE', KEYS[1], ttl)
+end
+
+return version
@@ -0,0 +1,53 @@
+-- Reads and deletes a bag written by RedisBagRepository in one step, for checkout.
+-- KEYS[1] bag hash, KEYS[2] bag items hash, KEYS[3] bag index set, optionally KEYS[4] bag event stream
+-- ARGV[1] bag id, with an event stream ARGV[2] log retention in seconds and ARGV[3] the operation to log
+-- Returns the bag fields and the bag items as two flat (name, value) lists, or an empty list if the bag does not exist.
+-- With an event stream, the log entries after the bag's snapshot are returned as a third list
+-- and an entry for the operation, CHECKOUT or PARK, is appended to the log.
+-- A bag without items is returned but left in place, since it cannot be checked out.
+
+local fields = redis.call('HGETALL', KEYS[1])
+if #fields == 0 then
+    return {}
+end
+
+local items = redis.call('HGETALL', KEYS[2])
+local tail = {}
+if KEYS[4] then
+    local snapshot = redis.call('HGET', KEYS[1], 'snapshotEventId')
+    tail = redis.call('XRANGE', KEYS[4], snapshot and ('(' .. snapshot) or '-', '+')
+end
+
+-- the bag can be checked out if items remain once the log tail is applied to the snapshot
+local present = {}
+local count = 0
+for i = 1, #items, 2 do
+    present[items[i]] = true
+    count = count + 1
+end
+for _, logged in ipairs(tail) do
+    local changes = logged[2]
+    for i = 1, #changes, 2 do
+        local kind = string.sub(changes[i], 1, 2)
+        local barcode = string.sub(changes[i], 3)
+        if kind == 'i:' and not present[barcode] then
+            present[barcode] = true
+            count = count + 1
+        elseif kind == 'I:' and present[barcode] then
+            present[barcode] = nil
+            count = count - 1
+        end
+    end
+end
+local hasItems = count > 0
+
+if hasItems then
+    redis.call('DEL', KEYS[1], KEYS[2])
+    redis.call('SREM', KEYS[3], ARGV[1])
+    if KEYS[4] then
+        redis.call('XADD', KEYS[4], '*', 'op', ARGV[3])
+        redis.call('EXPIRE', KEYS[4], ARGV[2])
+    end
+end
+
+return { fields, items, tail }
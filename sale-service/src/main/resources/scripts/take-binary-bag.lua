@@ -0,0 +1,17 @@
+-- Reads and deletes a bag written by RedisBinaryBagRepository in one step, for checkout.
+-- KEYS[1] bag hash, KEYS[2] bag index set
+-- ARGV[1] bag id
+-- Returns the version and the encoded bag, or an empty list if the bag does not exist.
+-- A bag without items is returned but left in place, since it cannot be checked out.
+
+local values = redis.call('HMGET', KEYS[1], 'version', 'items', 'data')
+if not values[3] then
+    return {}
+end
+
+if tonumber(values[2] or '0') > 0 then
+    redis.call('DEL', KEYS[1])
+    redis.call('SREM', KEYS[2], ARGV[1])
+end
+
+return { values[1], values[3] }
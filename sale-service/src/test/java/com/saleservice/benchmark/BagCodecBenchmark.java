@@ -0,0 +1,112 @@
+package com.saleservice.benchmark;
+
+import com.saleservice.benchmark.BagRepositoryBenchmark.LegacyBag;
+import com.saleservice.benchmark.BagRepositoryBenchmark.LegacyBagItem;
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagItem;
+import com.saleservice.model.Money;
+import com.saleservice.repository.BagCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.core.convert.MappingRedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BagCodec} with the Spring Data {@code @RedisHash} mapping that bags were previously stored with,
+ * encoding a bag to the value written to Redis and decoding it back. No Redis is needed.
+ * The payload size of both representations is printed once per trial: for the mapping, the sum of all hash field
+ * names and values, before Redis adds its own per-field overhead.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=<this class>}.
+ * @author Emir Aktaş
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class BagCodecBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int itemCount;
+
+    private Bag bag;
+    private byte[] encodedBag;
+
+    private MappingRedisConverter converter;
+    private LegacyBag legacyBag;
+    private RedisData legacyData;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bag = new Bag();
+        legacyBag = new LegacyBag();
+        legacyBag.setId(1_000_000L);
+        for (int i = 0; i < itemCount; i++) {
+            String barcode = String.format("869%010d", i);
+            bag.addItem(new BagItem(barcode, i % 5 + 1, Money.parse("12.50"), "Product " + i));
+            legacyBag.getItems().add(new LegacyBagItem(barcode, i % 5 + 1, new BigDecimal("12.50"), "Product " + i));
+        }
+        bag.setId(1_000_000L);
+        bag.setTotalPrice(Money.parse("12.50").times(itemCount));
+        legacyBag.setTotalPrice(new BigDecimal("12.50").multiply(BigDecimal.valueOf(itemCount)));
+
+        converter = new MappingRedisConverter(new RedisMappingContext());
+        converter.afterPropertiesSet();
+
+        encodedBag = BagCodec.encode(bag);
+        legacyData = writeLegacy();
+
+        long mappingBytes = legacyData.getBucket().rawMap().entrySet().stream()
+                .mapToLong(entry -> entry.getKey().length + entry.getValue().length)
+                .sum();
+        System.out.printf("%n%d items: binary %d bytes, @RedisHash mapping %d bytes in %d hash fields%n",
+                itemCount, encodedBag.length, mappingBytes, legacyData.getBucket().size());
+    }
+
+
+    @Benchmark
+    public byte[] encodeWithBagCodec() {
+        return BagCodec.encode(bag);
+    }
+
+
+    @Benchmark
+    public Bag decodeWithBagCodec() {
+        return BagCodec.decode(encodedBag);
+    }
+
+
+    @Benchmark
+    public RedisData writeWithRedisHashMapping() {
+        return writeLegacy();
+    }
+
+
+    @Benchmark
+    public LegacyBag readWithRedisHashMapping() {
+        return converter.read(LegacyBag.class, legacyData);
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BagCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+
+
+    private RedisData writeLegacy() {
+        RedisData data = new RedisData();
+        converter.write(legacyBag, data);
+        return data;
+    }
+}
@@ -0,0 +1,103 @@
+package com.saleservice.benchmark;
+
+import com.saleservice.model.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the pricing work done for one scan on a bag with a 12.5% campaign applied.
+ * {@code bigDecimalRecompute} is the previous BagServiceImpl pricing: the total is recomputed from every
+ * line with BigDecimal arithmetic and the discount is derived through a BigDecimal factor.
+ * {@code moneyRunningTotal} is the current pricing: the running total is adjusted by the scanned line only
+ * and the discount is taken in basis points on long kuruş.
+ * Run the main method to get ns/op together with the GC profiler's allocated bytes per operation
+ * ({@code gc.alloc.rate.norm}).
+ * @author Emir Aktaş
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BagPricingBenchmark {
+
+    private static final double DISCOUNT_PERCENTAGE = 12.5;
+
+    @Param({"10", "100", "500"})
+    private int itemCount;
+
+    private List<BigDecimal> legacyPrices;
+    private int[] legacyQuantities;
+
+    private List<Money> prices;
+    private int[] quantities;
+    private Money totalPrice;
+
+    private int next;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        legacyPrices = new ArrayList<>(itemCount);
+        legacyQuantities = new int[itemCount];
+        prices = new ArrayList<>(itemCount);
+        quantities = new int[itemCount];
+        totalPrice = Money.ZERO;
+
+        for (int i = 0; i < itemCount; i++) {
+            BigDecimal price = BigDecimal.valueOf(1000 + i * 37L, 2);
+            legacyPrices.add(price);
+            legacyQuantities[i] = 1;
+            prices.add(Money.of(price));
+            quantities[i] = 1;
+            totalPrice = totalPrice.plus(Money.of(price));
+        }
+    }
+
+
+    @Benchmark
+    public BigDecimal bigDecimalRecompute() {
+        int index = next++ % itemCount;
+        legacyQuantities[index]++;
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < itemCount; i++) {
+            total = total.add(legacyPrices.get(i).multiply(new BigDecimal(legacyQuantities[i])));
+        }
+
+        BigDecimal discountFactor = BigDecimal.valueOf(DISCOUNT_PERCENTAGE)
+                .divide(new BigDecimal("100"), 5, RoundingMode.HALF_DOWN);
+        BigDecimal discountAmount = total.multiply(discountFactor).setScale(2, RoundingMode.DOWN);
+        return total.subtract(discountAmount).max(BigDecimal.ZERO);
+    }
+
+
+    @Benchmark
+    public Money moneyRunningTotal() {
+        int index = next++ % itemCount;
+        quantities[index]++;
+
+        totalPrice = totalPrice.plus(prices.get(index).times(1));
+
+        Money discountAmount = totalPrice.percentage(Math.round(DISCOUNT_PERCENTAGE * 100));
+        return totalPrice.minus(discountAmount).max(Money.ZERO);
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BagPricingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
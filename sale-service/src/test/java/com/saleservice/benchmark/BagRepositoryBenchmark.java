@@ -0,0 +1,212 @@
+package com.saleservice.benchmark;
+
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagItem;
+import com.saleservice.model.DiscountType;
+import com.saleservice.model.Money;
+import com.saleservice.repository.RedisBagRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisHash;
+import org.springframework.data.redis.core.RedisKeyValueAdapter;
+import org.springframework.data.redis.core.RedisKeyValueTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.TimeToLive;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+import org.springframework.data.redis.repository.support.RedisRepositoryFactory;
+import org.springframework.data.repository.CrudRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the field-level {@link RedisBagRepository} with the Spring Data {@code @RedisHash} repository
+ * that bags were previously stored with. Each operation changes the quantity of one line item and the
+ * totals of a bag that is already stored, then saves it.
+ * Besides the throughput reported by JMH, the bytes sent to Redis per save are printed after every iteration.
+ * Needs a running Redis, configured with {@code -Dredis.host} and {@code -Dredis.port} (default localhost:6379).
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=<this class>}.
+ * @author Emir Aktaş
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class BagRepositoryBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int itemCount;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+
+    private RedisBagRepository redisBagRepository;
+    private Bag bag;
+    private String[] barcodes;
+
+    private LegacyBagRepository legacyBagRepository;
+    private LegacyBag legacyBag;
+
+    private long operations;
+    private long bytesBeforeIteration;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("redis.host", "localhost"),
+                Integer.parseInt(System.getProperty("redis.port", "6379")));
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        redisBagRepository = new RedisBagRepository(stringRedisTemplate);
+
+        RedisTemplate<byte[], byte[]> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        RedisKeyValueAdapter adapter = new RedisKeyValueAdapter(redisTemplate);
+        adapter.afterPropertiesSet();
+        legacyBagRepository = new RedisRepositoryFactory(new RedisKeyValueTemplate(adapter, new RedisMappingContext()))
+                .getRepository(LegacyBagRepository.class);
+
+        barcodes = new String[itemCount];
+        bag = new Bag();
+        legacyBag = new LegacyBag();
+        legacyBag.setId(Long.MAX_VALUE - itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            String barcode = String.format("869%010d", i);
+            barcodes[i] = barcode;
+            bag.addItem(new BagItem(barcode, 1, Money.parse("12.50"), "Product " + i));
+            legacyBag.getItems().add(new LegacyBagItem(barcode, 1, new BigDecimal("12.50"), "Product " + i));
+        }
+        bag.setTotalPrice(Money.parse("12.50").times(itemCount));
+        updateLegacyTotal();
+
+        redisBagRepository.save(bag);
+        legacyBagRepository.save(legacyBag);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        redisBagRepository.delete(bag);
+        legacyBagRepository.delete(legacyBag);
+        connectionFactory.destroy();
+    }
+
+
+    @Setup(Level.Iteration)
+    public void beforeIteration() {
+        operations = 0;
+        bytesBeforeIteration = totalNetInputBytes();
+    }
+
+
+    @TearDown(Level.Iteration)
+    public void afterIteration() {
+        if (operations > 0) {
+            System.out.printf("%n%d items: %d bytes written per save%n",
+                    itemCount, (totalNetInputBytes() - bytesBeforeIteration) / operations);
+        }
+    }
+
+
+    @Benchmark
+    public Bag saveWithRedisBagRepository() {
+        BagItem item = bag.getItem(barcodes[(int) (operations++ % itemCount)]);
+        int quantity = item.getQuantity() % 5 + 1;
+        bag.setTotalPrice(bag.getTotalPrice().plus(item.getPrice().times(quantity - item.getQuantity())));
+        item.setQuantity(quantity);
+        return redisBagRepository.save(bag);
+    }
+
+
+    @Benchmark
+    public LegacyBag saveWithSpringDataRepository() {
+        LegacyBagItem item = legacyBag.getItems().get((int) (operations++ % itemCount));
+        item.setQuantity(item.getQuantity() % 5 + 1);
+        updateLegacyTotal();
+        return legacyBagRepository.save(legacyBag);
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BagRepositoryBenchmark.class.getSimpleName())
+                .jvmArgsAppend("-Dredis.host=" + System.getProperty("redis.host", "localhost"),
+                        "-Dredis.port=" + System.getProperty("redis.port", "6379"))
+                .build()).run();
+    }
+
+
+
+    private long totalNetInputBytes() {
+        Properties stats = stringRedisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("stats"));
+        return Long.parseLong(stats.getProperty("total_net_input_bytes"));
+    }
+
+
+    private void updateLegacyTotal() {
+        legacyBag.setTotalPrice(legacyBag.getItems().stream()
+                .map(item -> item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add));
+    }
+
+
+    /**
+     * Copy of the bag mapping as it was stored before {@link RedisBagRepository}.
+     */
+    @Getter
+    @Setter
+    @RedisHash("legacy_bag")
+    public static class LegacyBag {
+        @Id
+        private Long id;
+        private BigDecimal totalPrice;
+
+        private Long campaignId;
+        private String campaignName;
+        private DiscountType discountType;
+        private double discountValue;
+        private BigDecimal discountedPrice;
+
+        private List<LegacyBagItem> items = new ArrayList<>();
+
+        @TimeToLive
+        private Long expiration = 1800L;
+    }
+
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class LegacyBagItem {
+        private String barcode;
+        private int quantity;
+        private BigDecimal price;
+        private String name;
+    }
+
+
+    public interface LegacyBagRepository extends CrudRepository<LegacyBag, Long> {
+    }
+}
@@ -0,0 +1,112 @@
+package com.saleservice.benchmark;
+
+import com.saleservice.dto.ProductDto;
+import com.saleservice.service.CatalogSnapshotService;
+import com.saleservice.service.impl.BarcodeFilterServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Measures how long {@link BarcodeFilterServiceImpl} takes to answer a scan of a known and of an unknown barcode,
+ * for catalogs of different sizes. Before the measurements, each trial prints the memory used by the filter and
+ * the false positive rate measured on one million barcodes that are not in the catalog.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=<this class>}.
+ * @author Emir Aktaş
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class BarcodeFilterBenchmark {
+
+    private static final int UNKNOWN_SAMPLE = 1_000_000;
+
+    @Param({"10000", "100000", "500000"})
+    private int catalogSize;
+
+    private BarcodeFilterServiceImpl barcodeFilterService;
+    private String[] knownBarcodes;
+    private String[] unknownBarcodes;
+    private int next;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        knownBarcodes = new String[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            knownBarcodes[i] = String.format("869%010d", i * 7L);
+        }
+        unknownBarcodes = new String[1024];
+        for (int i = 0; i < unknownBarcodes.length; i++) {
+            unknownBarcodes[i] = String.format("869%010d", i * 7L + 3);
+        }
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        barcodeFilterService = new BarcodeFilterServiceImpl(new CatalogStub(knownBarcodes), meterRegistry,
+                true, 0.01, Duration.ofHours(1));
+        barcodeFilterService.rebuildFilter();
+
+        int falsePositives = 0;
+        for (int i = 0; i < UNKNOWN_SAMPLE; i++) {
+            if (!barcodeFilterService.isUnknownBarcode(String.format("869%010d", i * 7L + 1 + i % 6))) {
+                falsePositives++;
+            }
+        }
+        System.out.printf("%nCatalog: %d barcodes, filter memory: %.1f KiB, measured false positive rate: %.4f, estimated: %.4f%n",
+                catalogSize, meterRegistry.get("catalog.barcode-filter.memory").gauge().value() / 1024,
+                (double) falsePositives / UNKNOWN_SAMPLE,
+                meterRegistry.get("catalog.barcode-filter.false-positive-rate").gauge().value());
+    }
+
+
+    @Benchmark
+    public boolean knownBarcode() {
+        return barcodeFilterService.isUnknownBarcode(knownBarcodes[next++ % knownBarcodes.length]);
+    }
+
+
+    @Benchmark
+    public boolean unknownBarcode() {
+        return barcodeFilterService.isUnknownBarcode(unknownBarcodes[next++ & (unknownBarcodes.length - 1)]);
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BarcodeFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+
+    private record CatalogStub(String[] barcodes) implements CatalogSnapshotService {
+
+        @Override
+        public Optional<ProductDto> findProduct(String barcode) {
+            return Optional.empty();
+        }
+
+        @Override
+        public boolean refreshSnapshot() {
+            return false;
+        }
+
+        @Override
+        public Optional<Instant> forEachBarcode(Consumer<String> action) {
+            for (String barcode : barcodes) {
+                action.accept(barcode);
+            }
+            return Optional.of(Instant.now());
+        }
+    }
+}
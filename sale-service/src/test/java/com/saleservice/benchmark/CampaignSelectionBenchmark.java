@@ -0,0 +1,76 @@
+package com.saleservice.benchmark;
+
+import com.saleservice.dto.CampaignResponseDto;
+import com.saleservice.model.DiscountType;
+import com.saleservice.model.Money;
+import com.saleservice.service.impl.DiscountCalculator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the best-campaign selection that runs on every change to a bag in best-campaign mode.
+ * Campaigns alternate between percentage and fixed-amount discounts, and the bag total changes on
+ * every operation so that the winning campaign keeps moving.
+ * Run the main method to get ns/op together with the GC profiler's allocated bytes per operation
+ * ({@code gc.alloc.rate.norm}).
+ * @author Emir Aktaş
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CampaignSelectionBenchmark {
+
+    private static final int TOTAL_COUNT = 1024;
+
+    @Param({"10", "50", "200"})
+    private int campaignCount;
+
+    private List<CampaignResponseDto> campaigns;
+    private Money[] totals;
+
+    private int next;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        campaigns = new ArrayList<>(campaignCount);
+        for (int i = 0; i < campaignCount; i++) {
+            boolean percentage = i % 2 == 0;
+            campaigns.add(new CampaignResponseDto((long) i, "Campaign " + i, now.minusDays(1), now.plusDays(1),
+                    percentage ? DiscountType.PERCENTAGE : DiscountType.FIXED_AMOUNT,
+                    percentage ? 1 + (i * 7) % 40 : 5 + (i * 13) % 150,
+                    false));
+        }
+
+        totals = new Money[TOTAL_COUNT];
+        for (int i = 0; i < TOTAL_COUNT; i++) {
+            totals[i] = Money.ofMinor(500 + i * 9_973L);
+        }
+    }
+
+
+    @Benchmark
+    public CampaignResponseDto findBestCampaign() {
+        return DiscountCalculator.findBestCampaign(totals[next++ & (TOTAL_COUNT - 1)], campaigns);
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CampaignSelectionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,113 @@
+package com.saleservice.benchmark;
+
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagItem;
+import com.saleservice.model.Money;
+import com.saleservice.repository.BagRepository;
+import com.saleservice.repository.EmbeddedBagRepository;
+import com.saleservice.repository.RedisBagRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency of a scan against the {@link EmbeddedBagRepository} and the default
+ * {@link RedisBagRepository}: the bag is loaded, the quantity of one line item and the totals are changed, and the
+ * bag is saved, as {@code BagServiceImpl} does for every scan.
+ * The Redis store needs a running Redis, configured with {@code -Dredis.host} and {@code -Dredis.port}
+ * (default localhost:6379); pass {@code -Dstores=embedded} to measure only the embedded store.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=<this class>}.
+ * @author Emir Aktaş
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class EmbeddedBagRepositoryBenchmark {
+
+    @Param({"embedded", "redis"})
+    private String store;
+
+    @Param({"10", "100"})
+    private int itemCount;
+
+    private Path directory;
+    private LettuceConnectionFactory connectionFactory;
+
+    private BagRepository bagRepository;
+    private Long bagId;
+    private String[] barcodes;
+    private long operations;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("redis".equals(store)) {
+            connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(
+                    System.getProperty("redis.host", "localhost"),
+                    Integer.parseInt(System.getProperty("redis.port", "6379"))));
+            connectionFactory.afterPropertiesSet();
+            bagRepository = new RedisBagRepository(new StringRedisTemplate(connectionFactory));
+        } else {
+            directory = Files.createTempDirectory("bag-benchmark");
+            bagRepository = new EmbeddedBagRepository(directory.resolve("bags.dat"), DataSize.ofMegabytes(16),
+                    event -> { });
+        }
+
+        barcodes = new String[itemCount];
+        Bag bag = new Bag();
+        for (int i = 0; i < itemCount; i++) {
+            barcodes[i] = String.format("869%010d", i);
+            bag.addItem(new BagItem(barcodes[i], 1, Money.parse("12.50"), "Product " + i));
+        }
+        bag.setTotalPrice(Money.parse("12.50").times(itemCount));
+        bagId = bagRepository.save(bag).getId();
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        bagRepository.delete(bagRepository.findById(bagId).orElseThrow());
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (bagRepository instanceof EmbeddedBagRepository embedded) {
+            embedded.close();
+            Files.deleteIfExists(directory.resolve("bags.dat"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+
+    @Benchmark
+    public Bag scan() {
+        Bag bag = bagRepository.findById(bagId).orElseThrow();
+        BagItem item = bag.getItem(barcodes[(int) (operations++ % itemCount)]);
+        int quantity = item.getQuantity() % 5 + 1;
+        bag.setTotalPrice(bag.getTotalPrice().plus(item.getPrice().times(quantity - item.getQuantity())));
+        item.setQuantity(quantity);
+        return bagRepository.save(bag);
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EmbeddedBagRepositoryBenchmark.class.getSimpleName())
+                .param("store", System.getProperty("stores", "embedded,redis").split(","))
+                .jvmArgsAppend("-Dredis.host=" + System.getProperty("redis.host", "localhost"),
+                        "-Dredis.port=" + System.getProperty("redis.port", "6379"))
+                .build()).run();
+    }
+}
@@ -0,0 +1,220 @@
+package com.saleservice.benchmark;
+
+import com.saleservice.model.PaymentMethod;
+import com.saleservice.model.Sale;
+import com.saleservice.model.SaleItem;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares saving a sale with the pooled-sequence ids and JDBC batch inserts that {@link Sale} and
+ * {@link SaleItem} use now against a copy of the previous mapping with {@code IDENTITY} ids, which
+ * Hibernate cannot batch. Each operation persists one sale with its items in its own transaction.
+ * The main method reports sales/sec first, then the per-sale latency distribution.
+ * Needs a running PostgreSQL whose tables may be dropped, configured with {@code -Djdbc.url},
+ * {@code -Djdbc.username} and {@code -Djdbc.password} (default jdbc:postgresql://localhost:5432/benchmark_db).
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=<this class>}.
+ * @author Emir Aktaş
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class SalePersistenceBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    @Param({"1", "20", "100"})
+    private int itemCount;
+
+    private SessionFactory batchedSessionFactory;
+    private SessionFactory identitySessionFactory;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        batchedSessionFactory = configuration()
+                .addAnnotatedClass(Sale.class)
+                .addAnnotatedClass(SaleItem.class)
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(BATCH_SIZE))
+                .setProperty(AvailableSettings.ORDER_INSERTS, "true")
+                .buildSessionFactory();
+        identitySessionFactory = configuration()
+                .addAnnotatedClass(LegacySale.class)
+                .addAnnotatedClass(LegacySaleItem.class)
+                .buildSessionFactory();
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        batchedSessionFactory.close();
+        identitySessionFactory.close();
+    }
+
+
+    @Benchmark
+    public Long saveWithPooledSequenceAndBatching() {
+        Sale sale = Sale.builder()
+                .cashierName("Benchmark")
+                .saleDate(LocalDateTime.now())
+                .totalPrice(BigDecimal.valueOf(itemCount * 10L))
+                .amountReceived(BigDecimal.valueOf(itemCount * 10L))
+                .change(BigDecimal.ZERO)
+                .paymentMethod(PaymentMethod.CASH)
+                .saleItems(new ArrayList<>(itemCount))
+                .build();
+        for (int i = 0; i < itemCount; i++) {
+            sale.getSaleItems().add(SaleItem.builder()
+                    .barcode(String.format("869%010d", i))
+                    .name("Product " + i)
+                    .quantity(1)
+                    .salePrice(BigDecimal.TEN)
+                    .sale(sale)
+                    .build());
+        }
+
+        persist(batchedSessionFactory, sale);
+        return sale.getId();
+    }
+
+
+    @Benchmark
+    public Long saveWithIdentity() {
+        LegacySale sale = new LegacySale();
+        sale.setCashierName("Benchmark");
+        sale.setSaleDate(LocalDateTime.now());
+        sale.setTotalPrice(BigDecimal.valueOf(itemCount * 10L));
+        sale.setAmountReceived(BigDecimal.valueOf(itemCount * 10L));
+        sale.setChange(BigDecimal.ZERO);
+        sale.setPaymentMethod(PaymentMethod.CASH);
+        for (int i = 0; i < itemCount; i++) {
+            LegacySaleItem item = new LegacySaleItem();
+            item.setBarcode(String.format("869%010d", i));
+            item.setName("Product " + i);
+            item.setQuantity(1);
+            item.setSalePrice(BigDecimal.TEN);
+            item.setSale(sale);
+            sale.getSaleItems().add(item);
+        }
+
+        persist(identitySessionFactory, sale);
+        return sale.getId();
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        String[] jvmArgs = {
+                "-Djdbc.url=" + System.getProperty("jdbc.url", "jdbc:postgresql://localhost:5432/benchmark_db"),
+                "-Djdbc.username=" + System.getProperty("jdbc.username", "emir"),
+                "-Djdbc.password=" + System.getProperty("jdbc.password", "emir")};
+
+        new Runner(new OptionsBuilder()
+                .include(SalePersistenceBenchmark.class.getSimpleName())
+                .mode(Mode.Throughput)
+                .timeUnit(TimeUnit.SECONDS)
+                .jvmArgsAppend(jvmArgs)
+                .build()).run();
+        new Runner(new OptionsBuilder()
+                .include(SalePersistenceBenchmark.class.getSimpleName())
+                .mode(Mode.SampleTime)
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .jvmArgsAppend(jvmArgs)
+                .build()).run();
+    }
+
+
+
+    private static Configuration configuration() {
+        return new Configuration()
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, System.getProperty("jdbc.url", "jdbc:postgresql://localhost:5432/benchmark_db"))
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, System.getProperty("jdbc.username", "emir"))
+                .setProperty(AvailableSettings.JAKARTA_JDBC_PASSWORD, System.getProperty("jdbc.password", "emir"))
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop");
+    }
+
+
+    private static void persist(SessionFactory sessionFactory, Object sale) {
+        try (Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.persist(sale);
+            transaction.commit();
+        }
+    }
+
+
+    /**
+     * Copy of the sale mapping as it was before pooled sequence ids.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Entity(name = "LegacySale")
+    @Table(name = "legacy_sales")
+    public static class LegacySale {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Long id;
+        private String cashierName;
+
+        @Column(nullable = false)
+        private BigDecimal totalPrice;
+        private BigDecimal amountReceived;
+        private BigDecimal change;
+
+        @Enumerated(EnumType.STRING)
+        @Column(nullable = false)
+        private PaymentMethod paymentMethod;
+
+        @Column(nullable = false)
+        private LocalDateTime saleDate;
+
+        @OneToMany(mappedBy = "sale", cascade = CascadeType.ALL)
+        private List<LegacySaleItem> saleItems = new ArrayList<>();
+    }
+
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Entity(name = "LegacySaleItem")
+    @Table(name = "legacy_sale_items")
+    public static class LegacySaleItem {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Long id;
+
+        @Column(nullable = false)
+        private String barcode;
+
+        @Column(nullable = false)
+        private String name;
+
+        @Column(nullable = false)
+        private int quantity;
+
+        @Column(nullable = false)
+        private BigDecimal salePrice;
+
+        @ManyToOne
+        @JoinColumn(name = "sale_id", nullable = false)
+        private LegacySale sale;
+    }
+}
@@ -0,0 +1,153 @@
+package com.saleservice.config;
+
+import com.saleservice.config.RabbitMqMessagePublisher.MessageType;
+import com.saleservice.config.RabbitMqMessagePublisher.OutgoingMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RabbitMqMessagePublisherTest {
+
+    private static final int MAX_IN_FLIGHT = 2;
+    private static final int MAX_ATTEMPTS = 2;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RabbitMqMessagePublisher publisher;
+
+    private final List<CorrelationData> pendingConfirms = new ArrayList<>();
+
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        publisher = new RabbitMqMessagePublisher(rabbitTemplate, Runnable::run, meterRegistry, MAX_IN_FLIGHT, MAX_ATTEMPTS, 10);
+        ReflectionTestUtils.setField(publisher, "receiptExchange", "receipt_exchange");
+        ReflectionTestUtils.setField(publisher, "receiptRoutingKey", "receipt_route");
+        lenient().when(rabbitTemplate.invoke(any())).thenAnswer(invocation ->
+                ((RabbitOperations.OperationsCallback<Object>) invocation.getArgument(0)).doInRabbit(rabbitTemplate));
+    }
+
+
+    @Test
+    void whenPublishMessageAsyncAndBrokerAcks_thenFutureShouldComplete() {
+        stubSend();
+        when(rabbitTemplate.getMessageConverter()).thenReturn(new Jackson2JsonMessageConverter());
+
+        CompletableFuture<Void> confirmed = publisher.publishMessageAsync("receipt", MessageType.RECEIPT);
+        assertFalse(confirmed.isDone());
+        assertEquals(1, inFlight());
+
+        confirm(0, true);
+
+        assertTrue(confirmed.isDone());
+        assertFalse(confirmed.isCompletedExceptionally());
+        assertEquals(0, inFlight());
+        assertEquals(1, meterRegistry.timer("rabbitmq.publisher.confirm.latency").count());
+    }
+
+    @Test
+    void whenMessageIsNackedOnce_thenItShouldBePublishedAgain() {
+        stubSend();
+
+        CompletableFuture<Void> confirmed = publishOne();
+        confirm(0, false);
+        confirm(1, true);
+
+        assertFalse(confirmed.isCompletedExceptionally());
+        assertTrue(confirmed.isDone());
+        verify(rabbitTemplate, times(2)).send(eq("receipt_exchange"), eq("receipt_route"), any(Message.class), any(CorrelationData.class));
+        assertEquals(1, meterRegistry.counter("rabbitmq.publisher.nacks").count());
+    }
+
+    @Test
+    void whenMessageIsNackedOnEveryAttempt_thenFutureShouldFail() {
+        stubSend();
+
+        CompletableFuture<Void> confirmed = publishOne();
+        confirm(0, false);
+        confirm(1, false);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, confirmed::get);
+        assertEquals("Message was not confirmed by the broker: nacked", exception.getCause().getMessage());
+        assertEquals(2, meterRegistry.counter("rabbitmq.publisher.nacks").count());
+        assertEquals(1, meterRegistry.counter("rabbitmq.publisher.failed").count());
+        assertEquals(0, inFlight());
+    }
+
+    @Test
+    void whenTooManyMessagesAreInFlight_thenFurtherPublishShouldFail() {
+        stubSend();
+
+        publishOne();
+        publishOne();
+        CompletableFuture<Void> rejected = publishOne();
+
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals(MAX_IN_FLIGHT, inFlight());
+        verify(rabbitTemplate, times(MAX_IN_FLIGHT)).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+    }
+
+    @Test
+    void whenPublishAllAsync_thenMessagesShouldBeSentOnOneChannel() {
+        stubSend();
+
+        List<CompletableFuture<Void>> confirms = publisher.publishAllAsync(List.of(outgoingMessage(), outgoingMessage()));
+        confirm(0, true);
+        confirm(1, true);
+
+        assertEquals(2, confirms.size());
+        assertTrue(confirms.stream().allMatch(confirmed -> confirmed.isDone() && !confirmed.isCompletedExceptionally()));
+        verify(rabbitTemplate, times(1)).invoke(any());
+    }
+
+
+
+    private void stubSend() {
+        doAnswer(invocation -> pendingConfirms.add(invocation.getArgument(3)))
+                .when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+    }
+
+
+    private CompletableFuture<Void> publishOne() {
+        return publisher.publishAllAsync(List.of(outgoingMessage())).get(0);
+    }
+
+
+    private OutgoingMessage outgoingMessage() {
+        return new OutgoingMessage(new Message("{}".getBytes(), new MessageProperties()), MessageType.RECEIPT);
+    }
+
+
+    private void confirm(int index, boolean ack) {
+        pendingConfirms.get(index).getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "nacked"));
+    }
+
+
+    private double inFlight() {
+        return meterRegistry.get("rabbitmq.publisher.in.flight").gauge().value();
+    }
+}
@@ -0,0 +1,82 @@
+package com.saleservice.repository;
+
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagItem;
+import com.saleservice.model.DiscountType;
+import com.saleservice.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BagCodecTest {
+
+    @Test
+    void whenBagIsEncodedAndDecoded_thenAllFieldsAndItemOrderShouldBeKept() {
+        Bag bag = new Bag();
+        bag.addItem(new BagItem("869000000002", 3, Money.parse("12.50"), "Çay 500g"));
+        bag.addItem(new BagItem("869000000001", 1, Money.parse("0.99"), null));
+        BagItem unverified = new BagItem("869000000003", 200, Money.parse("1250.00"), "Kahve");
+        unverified.setVerified(false);
+        bag.addItem(unverified);
+        bag.setTotalPrice(Money.parse("250037.49"));
+        bag.setCampaignId(42L);
+        bag.setCampaignName("Yaz İndirimi");
+        bag.setDiscountType(DiscountType.PERCENTAGE);
+        bag.setDiscountValue(12.5);
+        bag.setDiscountedPrice(Money.parse("218782.80"));
+        bag.setAutoCampaign(true);
+
+        Bag decoded = BagCodec.decode(BagCodec.encode(bag));
+
+        assertEquals(List.of("869000000002", "869000000001", "869000000003"),
+                decoded.getItems().stream().map(BagItem::getBarcode).toList());
+        assertEquals(3, decoded.getItem("869000000002").getQuantity());
+        assertEquals(Money.parse("12.50"), decoded.getItem("869000000002").getPrice());
+        assertEquals("Çay 500g", decoded.getItem("869000000002").getName());
+        assertNull(decoded.getItem("869000000001").getName());
+        assertFalse(decoded.getItem("869000000003").isVerified());
+        assertTrue(decoded.getItem("869000000002").isVerified());
+        assertEquals(Money.parse("250037.49"), decoded.getTotalPrice());
+        assertEquals(42L, decoded.getCampaignId());
+        assertEquals("Yaz İndirimi", decoded.getCampaignName());
+        assertEquals(DiscountType.PERCENTAGE, decoded.getDiscountType());
+        assertEquals(12.5, decoded.getDiscountValue());
+        assertEquals(Money.parse("218782.80"), decoded.getDiscountedPrice());
+        assertTrue(decoded.isAutoCampaign());
+    }
+
+    @Test
+    void whenBagWithoutCampaignIsDecoded_thenCampaignFieldsShouldBeEmpty() {
+        Bag bag = new Bag();
+        bag.setTotalPrice(Money.parse("-5.00"));
+
+        Bag decoded = BagCodec.decode(BagCodec.encode(bag));
+
+        assertTrue(decoded.getItems().isEmpty());
+        assertEquals(Money.parse("-5.00"), decoded.getTotalPrice());
+        assertNull(decoded.getCampaignId());
+        assertNull(decoded.getDiscountType());
+        assertNull(decoded.getDiscountedPrice());
+        assertFalse(decoded.isAutoCampaign());
+    }
+
+    @Test
+    void whenSameProductNameIsDecodedTwice_thenNameShouldBeShared() {
+        Bag bag = new Bag();
+        bag.addItem(new BagItem("869000000001", 1, Money.parse("1.00"), "Ekmek"));
+        byte[] data = BagCodec.encode(bag);
+
+        assertSame(BagCodec.decode(data).getItem("869000000001").getName(),
+                BagCodec.decode(data).getItem("869000000001").getName());
+    }
+
+    @Test
+    void whenValueHasUnknownFormatVersion_thenThrowIllegalStateException() {
+        byte[] data = BagCodec.encode(new Bag());
+        data[0] = 99;
+
+        assertThrows(IllegalStateException.class, () -> BagCodec.decode(data));
+    }
+}
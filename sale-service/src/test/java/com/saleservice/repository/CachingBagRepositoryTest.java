@@ -0,0 +1,151 @@
+package com.saleservice.repository;
+
+import com.saleservice.exception.BagConflictException;
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagItem;
+import com.saleservice.model.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CachingBagRepositoryTest {
+
+    @Mock
+    private RedisBagRepository redisBagRepository;
+
+    @Mock
+    private ObjectProvider<TieredBagRepository> tieredBagRepository;
+
+    private CachingBagRepository bagRepository;
+
+
+    @BeforeEach
+    void setUp() {
+        bagRepository = new CachingBagRepository(redisBagRepository, tieredBagRepository, new SimpleMeterRegistry(),
+                100, Duration.ofMinutes(10));
+    }
+
+
+    @Test
+    void whenFindByIdTwice_thenSecondReadShouldBeServedFromMemory() {
+        when(redisBagRepository.findById(1L)).thenReturn(Optional.of(createBag(1L, 3)));
+
+        bagRepository.findById(1L);
+        Bag bag = bagRepository.findById(1L).orElseThrow();
+
+        assertEquals(3, bag.getVersion());
+        verify(redisBagRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void whenCachedBagIsChangedWithoutSaving_thenCacheShouldNotChange() {
+        when(redisBagRepository.findById(1L)).thenReturn(Optional.of(createBag(1L, 3)));
+
+        bagRepository.findById(1L).orElseThrow().getItem("111").setQuantity(9);
+
+        assertEquals(2, bagRepository.findById(1L).orElseThrow().getItem("111").getQuantity());
+    }
+
+    @Test
+    void whenSave_thenSavedBagShouldBeCached() {
+        Bag bag = createBag(1L, 3);
+        when(redisBagRepository.save(bag)).thenAnswer(invocation -> {
+            bag.setVersion(4);
+            return bag;
+        });
+
+        bagRepository.save(bag);
+
+        assertEquals(4, bagRepository.findById(1L).orElseThrow().getVersion());
+        verify(redisBagRepository, never()).findById(any());
+    }
+
+    @Test
+    void whenSaveOfStaleCopyConflicts_thenCopyShouldBeDropped() {
+        when(redisBagRepository.findById(1L))
+                .thenReturn(Optional.of(createBag(1L, 3)))
+                .thenReturn(Optional.of(createBag(1L, 5)));
+        Bag stale = bagRepository.findById(1L).orElseThrow();
+        when(redisBagRepository.save(stale)).thenThrow(new BagConflictException("Bag was changed concurrently"));
+
+        assertThrows(BagConflictException.class, () -> bagRepository.save(stale));
+
+        assertEquals(5, bagRepository.findById(1L).orElseThrow().getVersion());
+    }
+
+    @Test
+    void whenRouteEpochChanges_thenCacheShouldBeDropped() {
+        when(redisBagRepository.findById(1L)).thenReturn(Optional.of(createBag(1L, 3)));
+        bagRepository.onRouteEpoch("a");
+        bagRepository.findById(1L);
+
+        bagRepository.onRouteEpoch("a");
+        bagRepository.findById(1L);
+        verify(redisBagRepository, times(1)).findById(1L);
+
+        bagRepository.onRouteEpoch("b");
+        bagRepository.findById(1L);
+        verify(redisBagRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void whenInstanceLeavesAndRejoinsTheSameRoutes_thenFindLatestByIdShouldReplaceTheStaleCopy() {
+        when(redisBagRepository.findById(1L))
+                .thenReturn(Optional.of(createBag(1L, 3)))
+                .thenReturn(Optional.of(createBag(1L, 5)));
+        bagRepository.onRouteEpoch("a");
+        bagRepository.findById(1L);
+
+        bagRepository.onRouteEpoch("a");
+        assertEquals(3, bagRepository.findById(1L).orElseThrow().getVersion());
+
+        assertEquals(5, bagRepository.findLatestById(1L).orElseThrow().getVersion());
+        assertEquals(5, bagRepository.findById(1L).orElseThrow().getVersion());
+    }
+
+    @Test
+    void whenFindLatestById_thenStoreShouldBeRead() {
+        when(redisBagRepository.findById(1L))
+                .thenReturn(Optional.of(createBag(1L, 3)))
+                .thenReturn(Optional.of(createBag(1L, 5)));
+        bagRepository.findById(1L);
+
+        assertEquals(5, bagRepository.findLatestById(1L).orElseThrow().getVersion());
+        assertEquals(5, bagRepository.findById(1L).orElseThrow().getVersion());
+    }
+
+    @Test
+    void whenTake_thenCachedCopyShouldBeDropped() {
+        when(redisBagRepository.findById(1L))
+                .thenReturn(Optional.of(createBag(1L, 3)))
+                .thenReturn(Optional.empty());
+        bagRepository.findById(1L);
+
+        bagRepository.take(1L);
+
+        assertTrue(bagRepository.findById(1L).isEmpty());
+        verify(redisBagRepository).take(1L);
+    }
+
+
+
+    private static Bag createBag(Long id, long version) {
+        Bag bag = new Bag();
+        bag.setId(id);
+        bag.setVersion(version);
+        bag.addItem(new BagItem("111", 2, Money.parse("5.00"), "First"));
+        bag.setTotalPrice(Money.parse("10.00"));
+        return bag;
+    }
+}
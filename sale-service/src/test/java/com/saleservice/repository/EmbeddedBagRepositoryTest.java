@@ -0,0 +1,186 @@
+package com.saleservice.repository;
+
+import com.saleservice.dto.CursorPageDto;
+import com.saleservice.exception.BagConflictException;
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagExpiredEvent;
+import com.saleservice.model.BagItem;
+import com.saleservice.model.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EmbeddedBagRepositoryTest {
+
+    @TempDir
+    private Path directory;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private Clock clock = Clock.fixed(Instant.parse("2024-06-01T10:00:00Z"), ZoneOffset.UTC);
+    private EmbeddedBagRepository bagRepository;
+
+
+    @BeforeEach
+    void setUp() {
+        bagRepository = open(DataSize.ofKilobytes(64));
+    }
+
+    @AfterEach
+    void tearDown() {
+        bagRepository.close();
+    }
+
+
+    @Test
+    void whenSaveAndFindById_thenBagShouldBeReturnedWithNewVersion() {
+        Bag bag = bagRepository.save(createBag(null, 3));
+
+        Bag found = bagRepository.findById(bag.getId()).orElseThrow();
+
+        assertEquals(1L, found.getVersion());
+        assertEquals(List.of("000", "001", "002"), found.getItems().stream().map(BagItem::getBarcode).toList());
+        assertEquals(Money.parse("15.00"), found.getTotalPrice());
+    }
+
+    @Test
+    void whenSaveWithStaleVersion_thenThrowBagConflictException() {
+        Bag bag = bagRepository.save(createBag(null, 1));
+        Bag stale = bagRepository.findById(bag.getId()).orElseThrow();
+        bagRepository.save(bag);
+
+        assertThrows(BagConflictException.class, () -> bagRepository.save(stale));
+    }
+
+    @Test
+    void whenRepositoryIsReopened_thenBagsAndSequenceShouldSurvive() {
+        Bag bag = bagRepository.save(createBag(null, 2));
+        bag.getItem("000").setQuantity(5);
+        bagRepository.save(bag);
+        Bag deleted = bagRepository.save(createBag(null, 1));
+        bagRepository.delete(deleted);
+        bagRepository.close();
+
+        bagRepository = open(DataSize.ofKilobytes(64));
+
+        Bag found = bagRepository.findById(bag.getId()).orElseThrow();
+        assertEquals(2L, found.getVersion());
+        assertEquals(5, found.getItem("000").getQuantity());
+        assertTrue(bagRepository.findById(deleted.getId()).isEmpty());
+        assertEquals(deleted.getId() + 1, bagRepository.nextId());
+    }
+
+    @Test
+    void whenBagExpires_thenItShouldNotBeFoundAndSweepShouldPublishEvent() {
+        Bag bag = createBag(null, 1);
+        bag.setExpiration(60L);
+        bagRepository.save(bag);
+
+        clock = Clock.offset(clock, Duration.ofSeconds(61));
+        bagRepository.close();
+        bagRepository = open(DataSize.ofKilobytes(64));
+
+        assertTrue(bagRepository.findById(bag.getId()).isEmpty());
+        bagRepository.evictExpiredBags();
+        verify(eventPublisher).publishEvent(new BagExpiredEvent(bag.getId()));
+        bagRepository.evictExpiredBags();
+        verifyNoMoreInteractions(eventPublisher);
+    }
+
+    @Test
+    void whenFileIsFull_thenItShouldBeCompactedKeepingLatestBags() {
+        bagRepository.close();
+        bagRepository = open(DataSize.ofKilobytes(4));
+        Bag first = bagRepository.save(createBag(null, 2));
+        Bag second = bagRepository.save(createBag(null, 2));
+
+        for (int i = 0; i < 200; i++) {
+            first.getItem("000").setQuantity(i + 1);
+            bagRepository.save(first);
+        }
+
+        assertEquals(200, bagRepository.findById(first.getId()).orElseThrow().getItem("000").getQuantity());
+        assertEquals(1L, bagRepository.findById(second.getId()).orElseThrow().getVersion());
+
+        bagRepository.close();
+        bagRepository = open(DataSize.ofKilobytes(4));
+        assertEquals(201L, bagRepository.findById(first.getId()).orElseThrow().getVersion());
+    }
+
+    @Test
+    void whenFileIsFilledWithLiveBags_thenItShouldStillOpen() {
+        bagRepository.close();
+        bagRepository = open(DataSize.ofKilobytes(4));
+        List<Long> saved = new ArrayList<>();
+        assertThrows(IllegalStateException.class, () -> {
+            while (true) {
+                saved.add(bagRepository.save(createBag(null, 1)).getId());
+            }
+        });
+
+        bagRepository.close();
+        bagRepository = open(DataSize.ofKilobytes(4));
+
+        saved.forEach(id -> assertTrue(bagRepository.findById(id).isPresent()));
+    }
+
+    @Test
+    void whenTakeBag_thenItShouldBeRemoved() {
+        Bag bag = bagRepository.save(createBag(null, 1));
+
+        assertTrue(bagRepository.take(bag.getId()).isPresent());
+
+        assertTrue(bagRepository.findById(bag.getId()).isEmpty());
+        assertTrue(bagRepository.take(bag.getId()).isEmpty());
+    }
+
+    @Test
+    void whenFindPage_thenBagsShouldBePagedByIdCursor() {
+        for (int i = 0; i < 5; i++) {
+            bagRepository.save(createBag(null, 1));
+        }
+
+        CursorPageDto<Bag> first = bagRepository.findPage("0", 3);
+        CursorPageDto<Bag> second = bagRepository.findPage(first.getNextCursor(), 3);
+
+        assertEquals(3, first.getContent().size());
+        assertFalse(first.isLast());
+        assertEquals(2, second.getContent().size());
+        assertTrue(second.isLast());
+    }
+
+
+
+    private EmbeddedBagRepository open(DataSize capacity) {
+        return new EmbeddedBagRepository(directory.resolve("bags.dat"), capacity, eventPublisher, clock);
+    }
+
+    private static Bag createBag(Long id, int itemCount) {
+        Bag bag = new Bag();
+        bag.setId(id);
+        for (int i = 0; i < itemCount; i++) {
+            bag.addItem(new BagItem(String.format("%03d", i), 1, Money.parse("5.00"), "Product " + i));
+        }
+        bag.setTotalPrice(Money.parse("5.00").times(itemCount));
+        return bag;
+    }
+}
@@ -0,0 +1,216 @@
+package com.saleservice.repository;
+
+import com.saleservice.exception.BagConflictException;
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagItem;
+import com.saleservice.model.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RedisBagRepositoryTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private StringRedisConnection connection;
+
+    @InjectMocks
+    private RedisBagRepository bagRepository;
+
+    private List<Object> pipelineResults;
+
+
+    @BeforeEach
+    void setUp() {
+        pipelineResults = new ArrayList<>();
+        lenient().when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            RedisCallback<?> callback = invocation.getArgument(0);
+            callback.doInRedis(connection);
+            return pipelineResults;
+        });
+    }
+
+
+    @Test
+    void whenSaveNewBag_thenAssignIdAndWriteAllFieldsAndItems() {
+        @SuppressWarnings("unchecked")
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.increment("bag:sequence")).thenReturn(7L);
+        List<String> args = stubSaveScript(1L);
+
+        Bag bag = new Bag();
+        bag.addItem(new BagItem("111", 2, Money.parse("5.00"), "First"));
+        bag.setTotalPrice(Money.parse("10.00"));
+
+        bagRepository.save(bag);
+
+        assertEquals(7L, bag.getId());
+        assertEquals(1L, bag.getVersion());
+        assertEquals(List.of("0", "1800", "7"), args.subList(0, 3));
+        assertEquals(Map.of("id", "7", "totalPrice", "10.00"), pairs(args, 0));
+        assertEquals(Map.of("111", "0|2|5.00|1|First"), pairs(args, 2));
+    }
+
+    @Test
+    void whenSaveLoadedBagWithOneChangedItem_thenWriteOnlyThatItemAndTotals() {
+        Bag bag = loadBag();
+        List<String> args = stubSaveScript(5L);
+
+        bag.getItem("222").setQuantity(2);
+        bag.setTotalPrice(Money.parse("19.00"));
+        bagRepository.save(bag);
+
+        assertEquals("4", args.get(0));
+        assertEquals(Map.of("totalPrice", "19.00"), pairs(args, 0));
+        assertEquals(List.of(), keys(args, 1));
+        assertEquals(Map.of("222", "1|2|7.00|1|Second"), pairs(args, 2));
+        assertEquals(List.of(), keys(args, 3));
+        assertEquals(5L, bag.getVersion());
+    }
+
+    @Test
+    void whenSaveLoadedBagWithRemovedItem_thenDeleteOnlyThatField() {
+        Bag bag = loadBag();
+        List<String> args = stubSaveScript(5L);
+
+        bag.removeItem("111");
+        bag.setTotalPrice(Money.parse("7.00"));
+        bagRepository.save(bag);
+
+        assertEquals(Map.of(), pairs(args, 2));
+        assertEquals(List.of("111"), keys(args, 3));
+    }
+
+    @Test
+    void whenSaveBagChangedByAnotherRequest_thenThrowBagConflictException() {
+        Bag bag = loadBag();
+        stubSaveScript(-1L);
+
+        bag.setTotalPrice(Money.parse("7.00"));
+
+        BagConflictException exception = assertThrows(BagConflictException.class, () -> bagRepository.save(bag));
+
+        assertEquals("Bag with id 3 was modified by another request. Reload the bag and try again.",
+                exception.getMessage());
+        assertEquals(4L, bag.getVersion());
+    }
+
+    @Test
+    void whenFindByIdWithItems_thenItemsShouldBeOrderedBySequence() {
+        pipelineResults.add(new HashMap<>(Map.of("id", "3", "totalPrice", "12.00")));
+        pipelineResults.add(new HashMap<>(Map.of(
+                "222", "1|1|7.00|1|Second|Pack",
+                "111", "0|1|5.00|1|First")));
+
+        Bag bag = bagRepository.findById(3L).orElseThrow();
+
+        assertEquals(List.of("111", "222"), bag.getItems().stream().map(BagItem::getBarcode).toList());
+        assertEquals("Second|Pack", bag.getItems().get(1).getName());
+        assertEquals(Money.parse("12.00"), bag.getTotalPrice());
+    }
+
+    @Test
+    void whenSaveLoadedBagWithVerifiedItem_thenWriteOnlyThatItemWithItsFlag() {
+        pipelineResults.add(new HashMap<>(Map.of("id", "3", "totalPrice", "12.00", "version", "4")));
+        pipelineResults.add(new HashMap<>(Map.of(
+                "111", "0|1|5.00|1|First",
+                "222", "1|1|7.00|0|")));
+        Bag bag = bagRepository.findById(3L).orElseThrow();
+        pipelineResults.clear();
+        List<String> args = stubSaveScript(5L);
+
+        assertTrue(bag.getItem("111").isVerified());
+        assertFalse(bag.getItem("222").isVerified());
+
+        bag.getItem("222").setVerified(true);
+        bag.getItem("222").setName("Second");
+        bagRepository.save(bag);
+
+        assertEquals(Map.of(), pairs(args, 0));
+        assertEquals(Map.of("222", "1|1|7.00|1|Second"), pairs(args, 2));
+    }
+
+    @Test
+    void whenFindByIdOfExpiredBag_thenReturnEmpty() {
+        pipelineResults.add(Collections.emptyMap());
+        pipelineResults.add(Collections.emptyMap());
+
+        assertTrue(bagRepository.findById(3L).isEmpty());
+    }
+
+
+
+    private Bag loadBag() {
+        pipelineResults.add(new HashMap<>(Map.of("id", "3", "totalPrice", "12.00", "version", "4")));
+        pipelineResults.add(new HashMap<>(Map.of(
+                "111", "0|1|5.00|1|First",
+                "222", "1|1|7.00|1|Second")));
+        Bag bag = bagRepository.findById(3L).orElseThrow();
+        pipelineResults.clear();
+        return bag;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private List<String> stubSaveScript(Long result) {
+        List<String> args = new ArrayList<>();
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            Object[] rawArguments = invocation.getRawArguments();
+            for (Object arg : (Object[]) rawArguments[2]) {
+                args.add((String) arg);
+            }
+            return result;
+        });
+        return args;
+    }
+
+
+    /**
+     * Returns the given group of the save script arguments as name/value pairs.
+     * Groups are: 0 changed fields, 1 removed fields, 2 changed items, 3 removed items.
+     */
+    private static Map<String, String> pairs(List<String> args, int group) {
+        int index = groupStart(args, group);
+        int count = Integer.parseInt(args.get(index));
+        Map<String, String> pairs = new HashMap<>();
+        for (int i = index + 1; i < index + 1 + 2 * count; i += 2) {
+            pairs.put(args.get(i), args.get(i + 1));
+        }
+        return pairs;
+    }
+
+
+    private static List<String> keys(List<String> args, int group) {
+        int index = groupStart(args, group);
+        int count = Integer.parseInt(args.get(index));
+        return args.subList(index + 1, index + 1 + count);
+    }
+
+
+    private static int groupStart(List<String> args, int group) {
+        int index = 3;
+        for (int g = 0; g < group; g++) {
+            int width = g % 2 == 0 ? 2 : 1;
+            index += 1 + width * Integer.parseInt(args.get(index));
+        }
+        return index;
+    }
+}
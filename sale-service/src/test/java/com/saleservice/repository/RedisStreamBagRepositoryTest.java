@@ -0,0 +1,115 @@
+package com.saleservice.repository;
+
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagItem;
+import com.saleservice.model.BagOperation;
+import com.saleservice.model.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RedisStreamBagRepositoryTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private RedisStreamBagRepository bagRepository;
+
+
+    @BeforeEach
+    void setUp() {
+        bagRepository = new RedisStreamBagRepository(redisTemplate, 50, Duration.ofHours(24));
+    }
+
+
+    @Test
+    void whenFindById_thenLogTailShouldBeAppliedToSnapshot() {
+        List<Object> snapshot = List.of(
+                List.of("id", "3", "totalPrice", "12.00", "version", "6", "snapshotEventId", "1-0", "pendingEvents", "2"),
+                List.of("111", "0|1|5.00|1|First", "222", "1|1|7.00|1|Second"),
+                List.of(
+                        List.of("2-0", List.of("op", "SCAN", "version", "5", "i:333", "2|1|3.00|1|Third", "f:totalPrice", "15.00")),
+                        List.of("3-0", List.of("op", "REMOVE", "version", "6", "I:111", "", "f:totalPrice", "10.00"))));
+        stubLoadScript(List.of(snapshot));
+
+        Bag bag = bagRepository.findById(3L).orElseThrow();
+
+        assertEquals(List.of("222", "333"), bag.getItems().stream().map(BagItem::getBarcode).toList());
+        assertEquals(Money.parse("10.00"), bag.getTotalPrice());
+        assertEquals(6L, bag.getVersion());
+        assertFalse(bag.getPersistedFields().containsKey("snapshotEventId"));
+        assertFalse(bag.getPersistedFields().containsKey("pendingEvents"));
+    }
+
+    @Test
+    void whenFindByIdOfExpiredBag_thenReturnEmpty() {
+        stubLoadScript(List.of(List.of(List.of(), List.of(), List.of())));
+
+        assertTrue(bagRepository.findById(3L).isEmpty());
+    }
+
+    @Test
+    void whenSave_thenOperationShouldBeAppendedToEventStream() {
+        List<Object> keys = new ArrayList<>();
+        List<String> args = stubAppendScript(keys, 1L);
+
+        Bag bag = new Bag();
+        bag.setId(7L);
+        bag.addItem(new BagItem("111", 2, Money.parse("5.00"), "First"));
+        bag.setTotalPrice(Money.parse("10.00"));
+        bag.setOperation(BagOperation.SCAN);
+
+        bagRepository.save(bag);
+
+        assertEquals(List.of("bag:7", "bag:7:items", "bag", "bag:7:events"), keys);
+        assertEquals(List.of("0", "1800", "7", "SCAN", "50", "86400"), args.subList(0, 6));
+        assertEquals(1L, bag.getVersion());
+    }
+
+    @Test
+    void whenSaveWithoutOperation_thenUpdateShouldBeLogged() {
+        List<String> args = stubAppendScript(new ArrayList<>(), 1L);
+
+        Bag bag = new Bag();
+        bag.setId(7L);
+
+        bagRepository.save(bag);
+
+        assertEquals("UPDATE", args.get(3));
+    }
+
+
+
+    @SuppressWarnings("unchecked")
+    private void stubLoadScript(List<Object> result) {
+        when(redisTemplate.execute(any(RedisScript.class), anyList())).thenReturn(result);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private List<String> stubAppendScript(List<Object> keys, Long result) {
+        List<String> args = new ArrayList<>();
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            Object[] rawArguments = invocation.getRawArguments();
+            keys.addAll((List<?>) rawArguments[1]);
+            for (Object arg : (Object[]) rawArguments[2]) {
+                args.add((String) arg);
+            }
+            return result;
+        });
+        return args;
+    }
+}
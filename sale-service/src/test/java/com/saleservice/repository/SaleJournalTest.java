@@ -0,0 +1,136 @@
+package com.saleservice.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SaleJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    private SaleJournal saleJournal;
+
+
+    @BeforeEach
+    void setUp() {
+        saleJournal = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        saleJournal.close();
+    }
+
+
+    @Test
+    void whenAppend_thenRecordsShouldBeReadBackInOrder() {
+        assertTrue(saleJournal.append(bytes("sale-1")));
+        assertTrue(saleJournal.append(bytes("sale-2")));
+
+        List<SaleJournal.Entry> pending = saleJournal.readPending(10);
+
+        assertEquals(List.of("sale-1", "sale-2"), texts(pending));
+        assertTrue(pending.get(0).position() < pending.get(1).position());
+    }
+
+    @Test
+    void whenMarkDrained_thenOnlyLaterRecordsShouldBePending() {
+        saleJournal.append(bytes("sale-1"));
+        saleJournal.append(bytes("sale-2"));
+        saleJournal.append(bytes("sale-3"));
+
+        saleJournal.markDrained(saleJournal.readPending(2).get(1).position());
+
+        assertEquals(List.of("sale-3"), texts(saleJournal.readPending(10)));
+    }
+
+    @Test
+    void whenReopened_thenUndrainedRecordsShouldBeReplayed() {
+        saleJournal.append(bytes("sale-1"));
+        saleJournal.append(bytes("sale-2"));
+        saleJournal.markDrained(saleJournal.readPending(1).get(0).position());
+        saleJournal.close();
+
+        saleJournal = open();
+
+        assertEquals(List.of("sale-2"), texts(saleJournal.readPending(10)));
+        assertTrue(saleJournal.append(bytes("sale-3")));
+        assertEquals(List.of("sale-2", "sale-3"), texts(saleJournal.readPending(10)));
+    }
+
+    @Test
+    void whenFullyDrained_thenJournalShouldStartOverWithoutReplayingOldRecords() {
+        saleJournal.append(bytes("sale-1"));
+        saleJournal.append(bytes("sale-2"));
+        saleJournal.markDrained(saleJournal.readPending(10).get(1).position());
+        saleJournal.append(bytes("sale-3"));
+        saleJournal.close();
+
+        saleJournal = open();
+
+        assertEquals(List.of("sale-3"), texts(saleJournal.readPending(10)));
+        assertEquals(8 + "sale-3".length(), saleJournal.pendingBytes());
+    }
+
+    @Test
+    void whenFileIsFull_thenDrainedRecordsShouldBeCompactedAway() {
+        byte[] record = new byte[1000];
+        int appended = 0;
+        while (saleJournal.append(record)) {
+            appended++;
+        }
+        assertTrue(appended > 0);
+
+        List<SaleJournal.Entry> pending = saleJournal.readPending(appended);
+        saleJournal.markDrained(pending.get(appended / 2).position());
+        int remaining = appended - appended / 2 - 1;
+
+        assertTrue(saleJournal.append(bytes("after-compaction")));
+        assertTrue(saleJournal.append(record));
+        List<SaleJournal.Entry> afterCompaction = saleJournal.readPending(appended);
+        assertEquals(remaining + 2, afterCompaction.size());
+        assertEquals("after-compaction", new String(afterCompaction.get(remaining).data(), StandardCharsets.UTF_8));
+
+        saleJournal.markDrained(afterCompaction.get(remaining + 1).position());
+        assertEquals(0, saleJournal.pendingBytes());
+    }
+
+    @Test
+    void whenNothingIsDrained_thenAppendToFullJournalShouldFail() {
+        byte[] record = new byte[1000];
+        int appended = 0;
+        while (saleJournal.append(record)) {
+            appended++;
+        }
+        assertEquals(appended, saleJournal.readPending(appended + 1).size());
+        int pendingBytes = saleJournal.pendingBytes();
+
+        assertFalse(saleJournal.append(record));
+        assertEquals(pendingBytes, saleJournal.pendingBytes());
+    }
+
+
+
+    private SaleJournal open() {
+        return new SaleJournal(directory.resolve("sales.journal"), DataSize.ofKilobytes(16));
+    }
+
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private static List<String> texts(List<SaleJournal.Entry> entries) {
+        return entries.stream().map(entry -> new String(entry.data(), StandardCharsets.UTF_8)).toList();
+    }
+}
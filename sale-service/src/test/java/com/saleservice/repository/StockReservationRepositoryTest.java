@@ -0,0 +1,106 @@
+package com.saleservice.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the reservation scripts against a Redis server on localhost:6379 and is skipped if none is running.
+ */
+public class StockReservationRepositoryTest {
+
+    private static final Duration TIME_TO_LIVE = Duration.ofMinutes(35);
+    private static final Duration HOLD_TIMEOUT = Duration.ofMinutes(2);
+    private static final String BARCODE = "stock-reservation-test";
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate redisTemplate;
+
+    private StockReservationRepository stockReservationRepository;
+
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", 6379));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        try {
+            redisTemplate.getRequiredConnectionFactory().getConnection().close();
+        } catch (RuntimeException e) {
+            connectionFactory.destroy();
+            assumeTrue(false, "Redis is not running on localhost:6379");
+        }
+        deleteKeys();
+        stockReservationRepository = new StockReservationRepository(redisTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (redisTemplate != null && connectionFactory.isRunning()) {
+            deleteKeys();
+            connectionFactory.destroy();
+        }
+    }
+
+
+    @Test
+    void whenReleaseHeldForOneBag_thenHoldsOfOtherCheckedOutBagsShouldStayReserved() {
+        reserve(1L, 2);
+        reserve(2L, 3);
+        assertEquals(2, stockReservationRepository.hold(1L, List.of(BARCODE), TIME_TO_LIVE));
+        assertEquals(3, stockReservationRepository.hold(2L, List.of(BARCODE), TIME_TO_LIVE));
+
+        assertEquals(2, stockReservationRepository.releaseHeld(1L, BARCODE, HOLD_TIMEOUT, Duration.ZERO));
+
+        assertNull(reserve(3L, 5));
+        assertEquals("8", redisTemplate.opsForValue().get(StockReservationRepository.RESERVED_PREFIX + BARCODE));
+        assertEquals(Set.of("2:3"), redisTemplate.opsForZSet().range(StockReservationRepository.HELD_PREFIX + BARCODE, 0, -1));
+        assertEquals(BARCODE, reserve(4L, 3));
+    }
+
+    @Test
+    void whenReleaseHeldWithinGracePeriod_thenHoldShouldStayReserved() {
+        reserve(1L, 2);
+        stockReservationRepository.hold(1L, List.of(BARCODE), TIME_TO_LIVE);
+
+        assertEquals(2, stockReservationRepository.releaseHeld(1L, BARCODE, HOLD_TIMEOUT, Duration.ofMinutes(1)));
+
+        assertEquals(BARCODE, reserve(2L, 9));
+        assertEquals(Set.of("1:2"), redisTemplate.opsForZSet().range(StockReservationRepository.HELD_PREFIX + BARCODE, 0, -1));
+    }
+
+    @Test
+    void whenReleaseHeldForBagWithoutHold_thenNothingShouldBeReleased() {
+        reserve(2L, 3);
+        stockReservationRepository.hold(2L, List.of(BARCODE), TIME_TO_LIVE);
+
+        assertEquals(0, stockReservationRepository.releaseHeld(1L, BARCODE, HOLD_TIMEOUT, Duration.ZERO));
+
+        assertEquals(BARCODE, reserve(3L, 8));
+    }
+
+
+    private String reserve(Long bagId, int quantity) {
+        return stockReservationRepository.reserve(bagId, Map.of(BARCODE, quantity), Map.of(BARCODE, 10),
+                TIME_TO_LIVE, HOLD_TIMEOUT);
+    }
+
+    private void deleteKeys() {
+        redisTemplate.delete(List.of(StockReservationRepository.RESERVED_PREFIX + BARCODE,
+                StockReservationRepository.HELD_PREFIX + BARCODE,
+                StockReservationRepository.RESERVATION_PREFIX + 1, StockReservationRepository.RESERVATION_PREFIX + 2,
+                StockReservationRepository.RESERVATION_PREFIX + 3, StockReservationRepository.RESERVATION_PREFIX + 4));
+    }
+}
@@ -0,0 +1,170 @@
+package com.saleservice.repository;
+
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagItem;
+import com.saleservice.model.BagOperation;
+import com.saleservice.model.Money;
+import com.saleservice.model.ParkedBag;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TieredBagRepositoryTest {
+
+    @Mock
+    private RedisBagRepository hotTier;
+
+    @Mock
+    private ParkedBagRepository coldTier;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TieredBagRepository bagRepository;
+
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bagRepository = new TieredBagRepository(hotTier, coldTier, transactionTemplate, meterRegistry);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+
+    @Test
+    void whenFindByIdOfBagInRedis_thenColdTierShouldNotBeRead() {
+        Bag bag = createBag(1L);
+        when(hotTier.findById(1L)).thenReturn(Optional.of(bag));
+
+        assertSame(bag, bagRepository.findById(1L).orElseThrow());
+        verifyNoInteractions(coldTier);
+        assertEquals(1.0, hits("hot"));
+    }
+
+    @Test
+    void whenFindByIdOfParkedBag_thenBagShouldBeMovedBackToRedis() {
+        Bag bag = createBag(1L);
+        when(hotTier.findById(1L)).thenReturn(Optional.empty());
+        when(coldTier.findById(1L)).thenReturn(Optional.of(parked(1L, bag, LocalDateTime.now().plusMinutes(5))));
+        when(coldTier.deleteParkedBag(1L)).thenReturn(1);
+
+        Bag restored = bagRepository.findById(1L).orElseThrow();
+
+        assertEquals(1L, restored.getId());
+        assertEquals(List.of("111"), restored.getItems().stream().map(BagItem::getBarcode).toList());
+        assertTrue(restored.getExpiration() > 0 && restored.getExpiration() <= 300);
+        verify(hotTier).restore(restored);
+        assertEquals(1.0, hits("cold"));
+    }
+
+    @Test
+    void whenFindByIdOfBagAlreadyMovedBack_thenBagShouldBeReadFromRedis() {
+        Bag bag = createBag(1L);
+        when(hotTier.findById(1L))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(bag));
+        when(coldTier.findById(1L)).thenReturn(Optional.of(parked(1L, bag, LocalDateTime.now().plusMinutes(5))));
+        when(coldTier.deleteParkedBag(1L)).thenReturn(0);
+
+        assertSame(bag, bagRepository.findById(1L).orElseThrow());
+        verify(hotTier, never()).restore(any());
+    }
+
+    @Test
+    void whenFindByIdOfExpiredParkedBag_thenReturnEmpty() {
+        Bag bag = createBag(1L);
+        when(hotTier.findById(1L)).thenReturn(Optional.empty());
+        when(coldTier.findById(1L)).thenReturn(Optional.of(parked(1L, bag, LocalDateTime.now().minusMinutes(1))));
+
+        assertTrue(bagRepository.findById(1L).isEmpty());
+        verify(coldTier, never()).deleteParkedBag(any());
+        verify(hotTier, never()).restore(any());
+        assertEquals(1.0, meterRegistry.counter("bag.tier.misses").count());
+    }
+
+    @Test
+    void whenTakeParkedBag_thenBagShouldBeTakenAfterMovingBack() {
+        Bag bag = createBag(1L);
+        when(hotTier.take(1L))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(bag));
+        when(coldTier.findById(1L)).thenReturn(Optional.of(parked(1L, bag, LocalDateTime.now().plusMinutes(5))));
+        when(coldTier.deleteParkedBag(1L)).thenReturn(1);
+
+        assertSame(bag, bagRepository.take(1L).orElseThrow());
+        verify(hotTier).restore(any(Bag.class));
+        verify(hotTier, times(2)).take(1L);
+    }
+
+    @Test
+    void whenParkIdleBags_thenBagsShouldBeStoredInColdTier() {
+        when(hotTier.findExpiringIds(1200L, 10)).thenReturn(Map.of(1L, 900L));
+        when(hotTier.take(1L, BagOperation.PARK)).thenReturn(Optional.of(createBag(1L)));
+
+        List<Long> parked = bagRepository.parkIdleBags(Duration.ofMinutes(10), 10);
+
+        assertEquals(List.of(1L), parked);
+        ArgumentCaptor<ParkedBag> captor = ArgumentCaptor.forClass(ParkedBag.class);
+        verify(coldTier).save(captor.capture());
+        assertEquals(1L, captor.getValue().getId());
+        assertEquals("111", BagCodec.decode(captor.getValue().getData()).getItems().get(0).getBarcode());
+        assertEquals(900L, Duration.between(captor.getValue().getParkedDate(), captor.getValue().getExpirationDate()).toSeconds());
+        verify(hotTier, never()).restore(any());
+    }
+
+    @Test
+    void whenParkingFails_thenBagShouldBePutBackIntoRedis() {
+        Bag bag = createBag(1L);
+        when(hotTier.findExpiringIds(1200L, 10)).thenReturn(Map.of(1L, 900L));
+        when(hotTier.take(1L, BagOperation.PARK)).thenReturn(Optional.of(bag));
+        when(coldTier.save(any())).thenThrow(new IllegalStateException("Database is down"));
+
+        List<Long> parked = bagRepository.parkIdleBags(Duration.ofMinutes(10), 10);
+
+        assertTrue(parked.isEmpty());
+        verify(hotTier).restore(bag);
+        assertEquals(900L, bag.getExpiration());
+    }
+
+
+
+    private double hits(String tier) {
+        return meterRegistry.counter("bag.tier.hits", "tier", tier).count();
+    }
+
+    private static ParkedBag parked(Long id, Bag bag, LocalDateTime expirationDate) {
+        return ParkedBag.builder()
+                .id(id)
+                .data(BagCodec.encode(bag))
+                .parkedDate(LocalDateTime.now().minusMinutes(10))
+                .expirationDate(expirationDate)
+                .build();
+    }
+
+    private static Bag createBag(Long id) {
+        Bag bag = new Bag();
+        bag.setId(id);
+        bag.addItem(new BagItem("111", 2, Money.parse("5.00"), "First"));
+        bag.setTotalPrice(Money.parse("10.00"));
+        return bag;
+    }
+}
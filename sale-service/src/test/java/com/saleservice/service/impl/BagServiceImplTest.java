@@ -1,32 +1,44 @@
 package com.saleservice.service.impl;
 
-import com.saleservice.client.ProductServiceClient;
+import com.saleservice.dto.BagDeltaDto;
 import com.saleservice.dto.BagDto;
 import com.saleservice.dto.CampaignResponseDto;
+import com.saleservice.dto.CursorPageDto;
 import com.saleservice.dto.ProductDto;
+import com.saleservice.dto.ProductScanDto;
+import com.saleservice.exception.BagConflictException;
+import com.saleservice.exception.BagIsEmptyException;
 import com.saleservice.exception.BagNotFoundException;
 import com.saleservice.exception.CampaignNotFoundException;
 import com.saleservice.exception.InvalidCampaignException;
 import com.saleservice.exception.InvalidInputException;
+import com.saleservice.exception.ProductNotFoundException;
 import com.saleservice.model.Bag;
 import com.saleservice.model.BagItem;
 import com.saleservice.model.DiscountType;
+import com.saleservice.model.Money;
 import com.saleservice.repository.BagRepository;
 import com.saleservice.service.CampaignService;
+import com.saleservice.service.BarcodeFilterService;
+import com.saleservice.service.CatalogSnapshotService;
+import com.saleservice.service.ProductCacheService;
+import com.saleservice.service.StockReservationService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.modelmapper.ModelMapper;
-import org.springframework.data.domain.Page;
-import org.springframework.http.ResponseEntity;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -39,7 +51,7 @@ public class BagServiceImplTest {
     private BagRepository bagRepository;
 
     @Mock
-    private ProductServiceClient productService;
+    private ProductCacheService productCacheService;
 
     @Mock
     private CampaignService campaignService;
@@ -47,6 +59,15 @@ public class BagServiceImplTest {
     @Mock
     private ModelMapper modelMapper;
 
+    @Mock
+    private StockReservationService stockReservationService;
+
+    @Mock
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Mock
+    private BarcodeFilterService barcodeFilterService;
+
     @InjectMocks
     private BagServiceImpl bagService;
 
@@ -73,6 +94,27 @@ public class BagServiceImplTest {
         assertEquals("barcode is empty", exception.getMessage());
     }
 
+    @Test
+    void whenAddProductToBagWithUnknownBarcode_thenThrowWithoutProductLookup() {
+        when(barcodeFilterService.isUnknownBarcode("0000")).thenReturn(true);
+
+        ProductNotFoundException exception = assertThrows(ProductNotFoundException.class,
+                () -> bagService.addProductToBag(1L, "0000", 1));
+
+        assertEquals("Product not found with barcode: 0000", exception.getMessage());
+        verifyNoInteractions(productCacheService, bagRepository);
+    }
+
+    @Test
+    void whenAddProductsToBagWithUnknownBarcode_thenThrowWithoutProductLookup() {
+        List<ProductScanDto> scans = List.of(new ProductScanDto("123", 1), new ProductScanDto("0000", 2));
+        when(barcodeFilterService.isUnknownBarcode(anyString())).thenAnswer(invocation -> "0000".equals(invocation.getArgument(0)));
+
+        assertThrows(ProductNotFoundException.class, () -> bagService.addProductsToBag(1L, scans));
+
+        verifyNoInteractions(productCacheService, bagRepository);
+    }
+
     @Test
     void whenAddProductToBagWithExistingItemExceedingStock_thenThrowInvalidInputException() {
         Long bagId = 1L;
@@ -81,11 +123,11 @@ public class BagServiceImplTest {
 
         ProductDto productDto = new ProductDto();
         productDto.setStock(5);
-        when(productService.getProduct(barcode)).thenReturn(ResponseEntity.ok(productDto));
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
 
         Bag bag = new Bag();
-        BagItem existingItem = new BagItem(barcode, 4, BigDecimal.TEN, "Product Name");
-        bag.getItems().add(existingItem);
+        BagItem existingItem = new BagItem(barcode, 4, Money.of(BigDecimal.TEN), "Product Name");
+        bag.addItem(existingItem);
 
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
 
@@ -103,7 +145,7 @@ public class BagServiceImplTest {
 
         ProductDto productDto = new ProductDto();
         productDto.setStock(5);
-        when(productService.getProduct(barcode)).thenReturn(ResponseEntity.ok(productDto));
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
 
         Bag bag = new Bag();
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
@@ -124,7 +166,7 @@ public class BagServiceImplTest {
         productDto.setStock(10);
         productDto.setPrice(BigDecimal.TEN);
         productDto.setName("Product Name");
-        when(productService.getProduct(barcode)).thenReturn(ResponseEntity.ok(productDto));
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
 
         Bag bag = new Bag();
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
@@ -138,6 +180,78 @@ public class BagServiceImplTest {
         verify(bagRepository, times(1)).save(bag);
     }
 
+    @Test
+    void whenAddProductToBagWithExistingItem_thenLineOrderShouldBeKept() {
+        Long bagId = 1L;
+        ProductDto productDto = new ProductDto("First", "111", BigDecimal.TEN, 10, false);
+        when(productCacheService.getProductWithFreshStock("111")).thenReturn(productDto);
+
+        Bag bag = new Bag();
+        bag.addItem(new BagItem("111", 1, Money.of(BigDecimal.TEN), "First"));
+        bag.addItem(new BagItem("222", 1, Money.of(BigDecimal.ONE), "Second"));
+        bag.setTotalPrice(Money.parse("11"));
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(modelMapper.map(bag, BagDto.class)).thenReturn(new BagDto());
+
+        bagService.addProductToBag(bagId, "111", 2);
+
+        assertEquals(List.of("111", "222"), bag.getItems().stream().map(BagItem::getBarcode).toList());
+        assertEquals(3, bag.getItem("111").getQuantity());
+        assertEquals(Money.parse("31"), bag.getTotalPrice());
+    }
+
+    @Test
+    void whenAddProductsToBagWithEmptyList_thenThrowInvalidInputException() {
+        InvalidInputException exception = assertThrows(InvalidInputException.class,
+                () -> bagService.addProductsToBag(1L, Collections.emptyList()));
+
+        assertEquals("scan list is empty", exception.getMessage());
+        verifyNoInteractions(productCacheService, bagRepository);
+    }
+
+    @Test
+    void whenAddProductsToBagWithValidScans_thenBagShouldBeSavedOnce() {
+        Long bagId = 1L;
+        ProductDto first = new ProductDto("First", "111", BigDecimal.TEN, 10, false);
+        ProductDto second = new ProductDto("Second", "222", BigDecimal.ONE, 10, false);
+        List<ProductScanDto> scans = List.of(
+                new ProductScanDto("111", 2),
+                new ProductScanDto("222", 1),
+                new ProductScanDto("111", 3));
+
+        when(productCacheService.getProductsWithFreshStock(anyCollection()))
+                .thenReturn(Map.of("111", first, "222", second));
+
+        Bag bag = new Bag();
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(modelMapper.map(bag, BagDto.class)).thenReturn(new BagDto());
+
+        BagDto result = bagService.addProductsToBag(bagId, scans);
+
+        assertNotNull(result);
+        assertEquals(2, bag.getItems().size());
+        assertEquals(5, bag.getItems().get(0).getQuantity());
+        assertEquals(Money.parse("51"), bag.getTotalPrice());
+        verify(productCacheService, times(1)).getProductsWithFreshStock(anyCollection());
+        verify(bagRepository, times(1)).save(bag);
+    }
+
+    @Test
+    void whenAddProductsToBagWithMergedQuantityExceedingStock_thenThrowInvalidInputException() {
+        Long bagId = 1L;
+        ProductDto productDto = new ProductDto("Product Name", "111", BigDecimal.TEN, 4, false);
+        List<ProductScanDto> scans = List.of(new ProductScanDto("111", 3), new ProductScanDto("111", 2));
+
+        when(productCacheService.getProductsWithFreshStock(anyCollection())).thenReturn(Map.of("111", productDto));
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(new Bag()));
+
+        InvalidInputException exception = assertThrows(InvalidInputException.class,
+                () -> bagService.addProductsToBag(bagId, scans));
+
+        assertEquals("The quantity of products in the bag cannot be more than stock", exception.getMessage());
+        verify(bagRepository, never()).save(any());
+    }
+
     @Test
     void whenAddProductToBagWithValidNewItem_thenProductShouldBeAddedSuccessfully() {
         Long bagId = 1L;
@@ -148,13 +262,13 @@ public class BagServiceImplTest {
         productDto.setStock(5);
         productDto.setPrice(BigDecimal.TEN);
         productDto.setName("Product Name");
-        when(productService.getProduct(barcode)).thenReturn(ResponseEntity.ok(productDto));
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
 
         Bag bag = new Bag();
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
 
-        BagItem newItem = new BagItem(barcode, quantity, BigDecimal.TEN, "Product Name");
-        bag.getItems().add(newItem);
+        BagItem newItem = new BagItem(barcode, quantity, Money.of(BigDecimal.TEN), "Product Name");
+        bag.addItem(newItem);
 
         BagDto bagDto = new BagDto();
         when(modelMapper.map(bag, BagDto.class)).thenReturn(bagDto);
@@ -175,11 +289,11 @@ public class BagServiceImplTest {
         productDto.setStock(5);
         productDto.setPrice(BigDecimal.TEN);
         productDto.setName("Product Name");
-        when(productService.getProduct(barcode)).thenReturn(ResponseEntity.ok(productDto));
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
 
         Bag bag = new Bag();
-        BagItem existingItem = new BagItem(barcode, 1, BigDecimal.TEN, "Product Name");
-        bag.getItems().add(existingItem);
+        BagItem existingItem = new BagItem(barcode, 1, Money.of(BigDecimal.TEN), "Product Name");
+        bag.addItem(existingItem);
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
 
         BagDto bagDto = new BagDto();
@@ -201,11 +315,11 @@ public class BagServiceImplTest {
         productDto.setStock(5);
         productDto.setPrice(BigDecimal.TEN);
         productDto.setName("Product Name");
-        when(productService.getProduct(barcode)).thenReturn(ResponseEntity.ok(productDto));
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
 
         Bag bag = new Bag();
-        BagItem newBagItem = new BagItem(barcode, quantity, productDto.getPrice(), productDto.getName());
-        bag.getItems().add(newBagItem);
+        BagItem newBagItem = new BagItem(barcode, quantity, Money.of(productDto.getPrice()), productDto.getName());
+        bag.addItem(newBagItem);
 
         BagDto bagDto = new BagDto();
         when(modelMapper.map(any(Bag.class), eq(BagDto.class))).thenReturn(bagDto);
@@ -218,6 +332,260 @@ public class BagServiceImplTest {
         assertEquals(newBagItem, bag.getItems().get(0));
     }
 
+    @Test
+    void whenAddProductToNewBag_thenStockShouldBeReservedUnderAllocatedBagId() {
+        String barcode = "123456";
+        ProductDto productDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false);
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
+        when(bagRepository.nextId()).thenReturn(7L);
+
+        bagService.addProductToBag(null, barcode, 2);
+
+        verify(stockReservationService, times(1)).reserve(7L, Map.of(barcode, 2), Map.of(barcode, 5));
+        verify(bagRepository, times(1)).save(argThat(saved -> saved.getId() == 7L));
+    }
+
+    @Test
+    void whenAddProductToBagWithStockReservedByOtherBags_thenBagShouldNotBeSaved() {
+        Long bagId = 1L;
+        String barcode = "123456";
+        ProductDto productDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false);
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        doThrow(new InvalidInputException("The quantity of products in the bag cannot be more than stock"))
+                .when(stockReservationService).reserve(bagId, Map.of(barcode, 2), Map.of(barcode, 5));
+
+        assertThrows(InvalidInputException.class, () -> bagService.addProductToBag(bagId, barcode, 2));
+
+        verify(bagRepository, never()).save(any(Bag.class));
+    }
+
+    @Test
+    void whenAddProductToBagLosesConcurrentUpdate_thenReservationShouldBeReleased() {
+        Long bagId = 1L;
+        String barcode = "123456";
+        ProductDto productDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false);
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(bagRepository.save(bag)).thenThrow(new BagConflictException("Bag was modified"));
+
+        assertThrows(BagConflictException.class, () -> bagService.addProductToBag(bagId, barcode, 2));
+
+        verify(stockReservationService, times(1)).reserve(bagId, Map.of(barcode, 2), Map.of(barcode, 5));
+        verify(stockReservationService, times(1)).release(bagId, barcode, 2);
+    }
+
+    @Test
+    void whenAddProductToBagCannotBeSaved_thenReservationShouldBeReleased() {
+        Long bagId = 1L;
+        String barcode = "123456";
+        ProductDto productDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false);
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(bagRepository.save(bag)).thenThrow(new IllegalStateException("Embedded bag store is full"));
+
+        assertThrows(IllegalStateException.class, () -> bagService.addProductToBag(bagId, barcode, 2));
+
+        verify(stockReservationService, times(1)).release(bagId, barcode, 2);
+    }
+
+    @Test
+    void whenReleaseAfterFailedSaveAlsoFails_thenSaveFailureShouldBeThrown() {
+        Long bagId = 1L;
+        String barcode = "123456";
+        ProductDto productDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false);
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(bagRepository.save(bag)).thenThrow(new RedisConnectionFailureException("Connection refused"));
+        doThrow(new RedisConnectionFailureException("Connection refused"))
+                .when(stockReservationService).release(bagId, barcode, 2);
+
+        RedisConnectionFailureException exception = assertThrows(RedisConnectionFailureException.class,
+                () -> bagService.addProductToBag(bagId, barcode, 2));
+
+        assertEquals(1, exception.getSuppressed().length);
+    }
+
+
+    @Test
+    void whenProductServiceIsUnavailable_thenProductShouldBeAddedFromSnapshotAsUnverified() {
+        Long bagId = 1L;
+        String barcode = "123456";
+        when(productCacheService.getProductWithFreshStock(barcode)).thenThrow(new RuntimeException("Read timed out"));
+        when(catalogSnapshotService.findProduct(barcode))
+                .thenReturn(Optional.of(new ProductDto("Product Name", barcode, BigDecimal.TEN, null, false)));
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+
+        bagService.addProductToBag(bagId, barcode, 2);
+
+        assertFalse(bag.getItem(barcode).isVerified());
+        assertEquals(Money.of(BigDecimal.valueOf(20)), bag.getTotalPrice());
+        verify(stockReservationService, never()).reserve(anyLong(), anyMap(), anyMap());
+        verify(bagRepository, times(1)).save(bag);
+        verify(stockReservationService, times(1)).extend(bagId);
+    }
+
+    @Test
+    void whenProductServiceIsUnavailableAndSnapshotMissesProduct_thenOriginalErrorShouldBeThrown() {
+        String barcode = "123456";
+        RuntimeException failure = new RuntimeException("Read timed out");
+        when(productCacheService.getProductWithFreshStock(barcode)).thenThrow(failure);
+        when(catalogSnapshotService.findProduct(barcode)).thenReturn(Optional.empty());
+
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> bagService.addProductToBag(1L, barcode, 2));
+
+        assertSame(failure, thrown);
+        verify(bagRepository, never()).save(any(Bag.class));
+    }
+
+    @Test
+    void whenProductIsNotFound_thenSnapshotShouldNotBeUsed() {
+        String barcode = "123456";
+        when(productCacheService.getProductWithFreshStock(barcode)).thenThrow(new ProductNotFoundException("Product not found"));
+
+        assertThrows(ProductNotFoundException.class, () -> bagService.addProductToBag(1L, barcode, 2));
+
+        verifyNoInteractions(catalogSnapshotService);
+    }
+
+    @Test
+    void whenUnverifiedItemIsScannedAgainWithLiveProduct_thenItemShouldBeRepricedAndVerified() {
+        Long bagId = 1L;
+        String barcode = "123456";
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        BagItem unverifiedItem = new BagItem(barcode, 2, Money.of(BigDecimal.ONE), "Old Name");
+        unverifiedItem.setVerified(false);
+        bag.addItem(unverifiedItem);
+        bag.setTotalPrice(Money.of(BigDecimal.valueOf(2)));
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(productCacheService.getProductWithFreshStock(barcode))
+                .thenReturn(new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false));
+
+        bagService.addProductToBag(bagId, barcode, 1);
+
+        assertTrue(unverifiedItem.isVerified());
+        assertEquals(3, unverifiedItem.getQuantity());
+        assertEquals("Product Name", unverifiedItem.getName());
+        assertEquals(Money.of(BigDecimal.valueOf(30)), bag.getTotalPrice());
+        verify(stockReservationService, times(1)).reserve(bagId, Map.of(barcode, 3), Map.of(barcode, 5));
+    }
+
+    @Test
+    void whenVerifiedItemIsScannedAgainFromSnapshot_thenItsReservationShouldBeReleased() {
+        Long bagId = 1L;
+        String barcode = "123456";
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.addItem(new BagItem(barcode, 2, Money.of(BigDecimal.TEN), "Product Name"));
+        bag.setTotalPrice(Money.of(BigDecimal.valueOf(20)));
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(productCacheService.getProductWithFreshStock(barcode)).thenThrow(new RuntimeException("Read timed out"));
+        when(catalogSnapshotService.findProduct(barcode))
+                .thenReturn(Optional.of(new ProductDto("Product Name", barcode, BigDecimal.TEN, null, false)));
+
+        bagService.addProductToBag(bagId, barcode, 1);
+
+        assertFalse(bag.getItem(barcode).isVerified());
+        assertEquals(3, bag.getItem(barcode).getQuantity());
+        verify(stockReservationService, never()).reserve(anyLong(), anyMap(), anyMap());
+        verify(stockReservationService, times(1)).release(bagId, barcode, 2);
+    }
+
+    @Test
+    void whenCheckoutBagWithNonExistentBag_thenThrowBagNotFoundException() {
+        Long bagId = 1L;
+        when(bagRepository.take(bagId)).thenReturn(Optional.empty());
+
+        BagNotFoundException exception = assertThrows(BagNotFoundException.class, () -> bagService.checkoutBag(bagId));
+
+        assertEquals("Bag not found with id: 1", exception.getMessage());
+        verifyNoInteractions(stockReservationService);
+    }
+
+    @Test
+    void whenCheckoutBagWithEmptyBag_thenThrowBagIsEmptyException() {
+        Long bagId = 1L;
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        when(bagRepository.take(bagId)).thenReturn(Optional.of(bag));
+
+        assertThrows(BagIsEmptyException.class, () -> bagService.checkoutBag(bagId));
+
+        verifyNoInteractions(stockReservationService);
+    }
+
+    @Test
+    void whenCheckoutBagOutsideTransaction_thenReservationsShouldBeHeldImmediately() {
+        Long bagId = 1L;
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.addItem(new BagItem("123456", 2, Money.of(BigDecimal.TEN), "Product Name"));
+        when(bagRepository.take(bagId)).thenReturn(Optional.of(bag));
+
+        Bag result = bagService.checkoutBag(bagId);
+
+        assertSame(bag, result);
+        verify(stockReservationService, times(1)).holdUntilStockChanged(bagId, List.of("123456"));
+        verify(stockReservationService, never()).releaseAll(anyLong());
+        verify(bagRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void whenCheckoutTransactionRollsBack_thenBagShouldBeRestored() {
+        Long bagId = 1L;
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.addItem(new BagItem("123456", 2, Money.of(BigDecimal.TEN), "Product Name"));
+        when(bagRepository.take(bagId)).thenReturn(Optional.of(bag));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            bagService.checkoutBag(bagId);
+            verify(stockReservationService, never()).holdUntilStockChanged(anyLong(), anyCollection());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(bagRepository, times(1)).restore(bag);
+        verify(stockReservationService, never()).holdUntilStockChanged(anyLong(), anyCollection());
+    }
+
+    @Test
+    void whenCheckoutTransactionCommits_thenReservationsShouldBeHeldUntilStockChanges() {
+        Long bagId = 1L;
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.addItem(new BagItem("123456", 2, Money.of(BigDecimal.TEN), "Product Name"));
+        when(bagRepository.take(bagId)).thenReturn(Optional.of(bag));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            bagService.checkoutBag(bagId);
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(stockReservationService, times(1)).holdUntilStockChanged(bagId, List.of("123456"));
+        verify(stockReservationService, never()).releaseAll(anyLong());
+        verify(bagRepository, never()).restore(any(Bag.class));
+    }
 
     @Test
     void whenDeleteBagByIdWithNullBagId_thenThrowInvalidInputException() {
@@ -251,6 +619,7 @@ public class BagServiceImplTest {
         bagService.deleteBagById(bagId);
 
         verify(bagRepository, times(1)).delete(bag);
+        verify(stockReservationService, times(1)).releaseAll(bagId);
     }
 
 
@@ -310,6 +679,7 @@ public class BagServiceImplTest {
 
         Bag bag = new Bag();
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(bagRepository.findLatestById(bagId)).thenReturn(Optional.of(bag));
 
         BagNotFoundException exception = assertThrows(BagNotFoundException.class,
                 () -> bagService.removeProductFromBag(bagId, barcode, quantity));
@@ -317,6 +687,29 @@ public class BagServiceImplTest {
         assertEquals("Item not found in bag with barcode: " + barcode, exception.getMessage());
     }
 
+    @Test
+    void whenRemoveProductFromStaleCachedBag_thenLatestBagShouldBeUpdated() {
+        Long bagId = 1L;
+        String barcode = "123456";
+
+        Bag stale = new Bag();
+        stale.setId(bagId);
+        Bag latest = new Bag();
+        latest.setId(bagId);
+        latest.addItem(new BagItem(barcode, 3, Money.of(BigDecimal.TEN), "Product Name"));
+        latest.setTotalPrice(Money.parse("30"));
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(stale));
+        when(bagRepository.findLatestById(bagId)).thenReturn(Optional.of(latest));
+        when(modelMapper.map(latest, BagDto.class)).thenReturn(new BagDto());
+
+        bagService.removeProductFromBag(bagId, barcode, 2);
+
+        assertEquals(1, latest.getItem(barcode).getQuantity());
+        assertEquals(Money.parse("10"), latest.getTotalPrice());
+        verify(bagRepository, times(1)).save(latest);
+        verify(stockReservationService, times(1)).release(bagId, barcode, 2);
+    }
+
     @Test
     void whenRemoveProductFromBagWithQuantityExceedingItemQuantity_thenThrowInvalidInputException() {
         Long bagId = 1L;
@@ -324,9 +717,10 @@ public class BagServiceImplTest {
         int quantity = 5;
 
         Bag bag = new Bag();
-        BagItem item = new BagItem(barcode, 2, BigDecimal.TEN, "Product Name");
+        BagItem item = new BagItem(barcode, 2, Money.of(BigDecimal.TEN), "Product Name");
         bag.setItems(Collections.singletonList(item));
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(bagRepository.findLatestById(bagId)).thenReturn(Optional.of(bag));
 
         InvalidInputException exception = assertThrows(InvalidInputException.class,
                 () -> bagService.removeProductFromBag(bagId, barcode, quantity));
@@ -346,8 +740,9 @@ public class BagServiceImplTest {
         bag.setDiscountValue(10);
         bag.setDiscountType(DiscountType.PERCENTAGE);
 
-        BagItem item = new BagItem(barcode, 2, BigDecimal.TEN, "Product Name");
+        BagItem item = new BagItem(barcode, 2, Money.of(BigDecimal.TEN), "Product Name");
         bag.setItems(new ArrayList<>(Collections.singletonList(item)));
+        bag.setTotalPrice(Money.parse("20"));
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
 
         BagDto bagDto = new BagDto();
@@ -358,9 +753,10 @@ public class BagServiceImplTest {
         assertNotNull(result);
         assertTrue(bag.getItems().isEmpty());
         verify(bagRepository, times(1)).save(bag);
+        verify(stockReservationService, times(1)).release(bagId, barcode, quantity);
 
-        BigDecimal expectedDiscountedPrice = BigDecimal.ZERO;
-        assertEquals(0, bag.getDiscountedPrice().compareTo(expectedDiscountedPrice));    }
+        assertEquals(Money.ZERO, bag.getTotalPrice());
+        assertEquals(Money.ZERO, bag.getDiscountedPrice());    }
 
     @Test
     void whenRemoveProductFromBagWithQuantityLessThanItemQuantity_thenItemQuantityShouldBeUpdated() {
@@ -369,8 +765,9 @@ public class BagServiceImplTest {
         int quantity = 1;
 
         Bag bag = new Bag();
-        BagItem item = new BagItem(barcode, 2, BigDecimal.TEN, "Product Name");
+        BagItem item = new BagItem(barcode, 2, Money.of(BigDecimal.TEN), "Product Name");
         bag.setItems(Collections.singletonList(item));
+        bag.setTotalPrice(Money.parse("20"));
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
 
         BagDto bagDto = new BagDto();
@@ -380,7 +777,82 @@ public class BagServiceImplTest {
 
         assertNotNull(result);
         assertEquals(1, item.getQuantity());
+        assertEquals(Money.parse("10"), bag.getTotalPrice());
         verify(bagRepository, times(1)).save(bag);
+        verify(stockReservationService, times(1)).release(bagId, barcode, quantity);
+    }
+
+
+    @Test
+    void whenAddProductToBagDelta_thenOnlyChangedLineAndTotalsShouldBeReturned() {
+        Long bagId = 1L;
+        String barcode = "123456";
+        ProductDto productDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false);
+        when(productCacheService.getProductWithFreshStock(barcode)).thenReturn(productDto);
+
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.setVersion(4);
+        bag.addItem(new BagItem("999", 1, Money.parse("3.00"), "Other Product"));
+        bag.setTotalPrice(Money.parse("3.00"));
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(bagRepository.save(bag)).thenAnswer(invocation -> {
+            bag.setVersion(5);
+            return bag;
+        });
+
+        BagDeltaDto result = bagService.addProductToBagDelta(bagId, barcode, 2);
+
+        assertEquals(bagId, result.getId());
+        assertEquals(5, result.getVersion());
+        assertEquals(2, result.getItemCount());
+        assertEquals(1, result.getChangedItems().size());
+        assertEquals(barcode, result.getChangedItems().get(0).getBarcode());
+        assertEquals(2, result.getChangedItems().get(0).getQuantity());
+        assertTrue(result.getRemovedBarcodes().isEmpty());
+        assertEquals(0, new BigDecimal("23.00").compareTo(result.getTotalPrice()));
+        verify(modelMapper, never()).map(any(), any());
+    }
+
+    @Test
+    void whenRemoveProductFromBagDeltaRemovesLine_thenBarcodeShouldBeListedAsRemoved() {
+        Long bagId = 1L;
+        String barcode = "123456";
+
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.addItem(new BagItem(barcode, 2, Money.of(BigDecimal.TEN), "Product Name"));
+        bag.setTotalPrice(Money.parse("20"));
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+
+        BagDeltaDto result = bagService.removeProductFromBagDelta(bagId, barcode, 2);
+
+        assertTrue(result.getChangedItems().isEmpty());
+        assertEquals(List.of(barcode), result.getRemovedBarcodes());
+        assertEquals(0, result.getItemCount());
+        assertEquals(0, BigDecimal.ZERO.compareTo(result.getTotalPrice()));
+        verify(stockReservationService, times(1)).release(bagId, barcode, 2);
+    }
+
+    @Test
+    void whenGetBagIfChangedWithCurrentVersion_thenReturnEmpty() {
+        Bag bag = new Bag();
+        bag.setVersion(3);
+        when(bagRepository.findLatestById(1L)).thenReturn(Optional.of(bag));
+
+        assertTrue(bagService.getBagIfChanged(1L, 3).isEmpty());
+        verify(modelMapper, never()).map(any(), any());
+    }
+
+    @Test
+    void whenGetBagIfChangedWithStaleVersion_thenFullBagShouldBeReturned() {
+        Bag bag = new Bag();
+        bag.setVersion(5);
+        when(bagRepository.findLatestById(1L)).thenReturn(Optional.of(bag));
+        BagDto bagDto = new BagDto();
+        when(modelMapper.map(bag, BagDto.class)).thenReturn(bagDto);
+
+        assertSame(bagDto, bagService.getBagIfChanged(1L, 3).orElseThrow());
     }
 
 
@@ -409,7 +881,7 @@ public class BagServiceImplTest {
         Long bagId = 1L;
 
         Bag bag = new Bag();
-        BagItem item = new BagItem("123456", 2, BigDecimal.TEN, "Product Name");
+        BagItem item = new BagItem("123456", 2, Money.of(BigDecimal.TEN), "Product Name");
         bag.setItems(new ArrayList<>(Collections.singletonList(item)));
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
 
@@ -421,6 +893,8 @@ public class BagServiceImplTest {
         assertNotNull(result);
         assertTrue(bag.getItems().isEmpty());
         verify(bagRepository, times(1)).save(bag);
+        verify(stockReservationService, times(1)).releaseAll(bagId);
+        verify(stockReservationService, times(1)).releaseAll(bagId);
     }
 
 
@@ -436,7 +910,7 @@ public class BagServiceImplTest {
     void whenGetBagByIdWithNonExistentBag_thenThrowBagNotFoundException() {
         Long bagId = 1L;
 
-        when(bagRepository.findById(bagId)).thenReturn(Optional.empty());
+        when(bagRepository.findLatestById(bagId)).thenReturn(Optional.empty());
 
         BagNotFoundException exception = assertThrows(BagNotFoundException.class,
                 () -> bagService.getBagById(bagId));
@@ -450,64 +924,62 @@ public class BagServiceImplTest {
 
         Bag bag = new Bag();
         BagDto bagDto = new BagDto();
-        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(bagRepository.findLatestById(bagId)).thenReturn(Optional.of(bag));
         when(modelMapper.map(bag, BagDto.class)).thenReturn(bagDto);
 
         BagDto result = bagService.getBagById(bagId);
 
         assertNotNull(result);
         assertEquals(bagDto, result);
-        verify(bagRepository, times(1)).findById(bagId);
+        verify(bagRepository, times(1)).findLatestById(bagId);
     }
 
 
     @Test
     void whenGetAllBagsWithPageSizeLessThanOne_thenThrowInvalidInputException() {
-        int pageNumber = 1;
+        String cursor = "0";
         int pageSize = 0;
 
         InvalidInputException exception = assertThrows(InvalidInputException.class,
-                () -> bagService.getAllBags(pageNumber, pageSize));
+                () -> bagService.getAllBags(cursor, pageSize));
 
         assertEquals("Minimum page size is 1", exception.getMessage());
     }
 
     @Test
-    void whenGetAllBagsWithPageNumberLessThanOne_thenThrowInvalidInputException() {
-        int pageNumber = 0;
+    void whenGetAllBagsWithInvalidCursor_thenThrowInvalidInputException() {
+        String cursor = "abc";
         int pageSize = 10;
 
         InvalidInputException exception = assertThrows(InvalidInputException.class,
-                () -> bagService.getAllBags(pageNumber, pageSize));
+                () -> bagService.getAllBags(cursor, pageSize));
 
-        assertEquals("Page number must be at least 1", exception.getMessage());
+        assertEquals("Invalid cursor: abc", exception.getMessage());
+        verifyNoInteractions(bagRepository);
     }
 
     @Test
-    void whenGetAllBagsWithValidPageNumberAndPageSize_thenReturnBagsPageSuccessfully() {
-        int pageNumber = 1;
+    void whenGetAllBagsWithValidCursorAndPageSize_thenReturnBagsPageSuccessfully() {
+        String cursor = "0";
         int pageSize = 10;
 
-        List<Bag> bags = new ArrayList<>();
         Bag bag1 = new Bag();
         Bag bag2 = new Bag();
-        bags.add(bag1);
-        bags.add(bag2);
 
         BagDto bagDto1 = new BagDto();
         BagDto bagDto2 = new BagDto();
 
-        when(bagRepository.findAll()).thenReturn(bags);
+        when(bagRepository.findPage(cursor, pageSize)).thenReturn(new CursorPageDto<>(List.of(bag1, bag2), "17", false));
         when(modelMapper.map(bag1, BagDto.class)).thenReturn(bagDto1);
         when(modelMapper.map(bag2, BagDto.class)).thenReturn(bagDto2);
 
-        Page<BagDto> result = bagService.getAllBags(pageNumber, pageSize);
+        CursorPageDto<BagDto> result = bagService.getAllBags(cursor, pageSize);
 
         assertNotNull(result);
-        assertEquals(2, result.getTotalElements());
-        assertEquals(1, result.getTotalPages());
-        assertEquals(2, result.getContent().size());
-        verify(bagRepository, times(1)).findAll();
+        assertEquals(List.of(bagDto1, bagDto2), result.getContent());
+        assertEquals("17", result.getNextCursor());
+        assertFalse(result.isLast());
+        verify(bagRepository, times(1)).findPage(cursor, pageSize);
     }
 
 
@@ -600,6 +1072,7 @@ public class BagServiceImplTest {
         Long campaignId = 1L;
 
         Bag bag = new Bag();
+        bag.setId(bagId);
         BagDto bagDto = new BagDto();
         CampaignResponseDto campaign = new CampaignResponseDto();
         campaign.setDeleted(false);
@@ -610,7 +1083,7 @@ public class BagServiceImplTest {
         campaign.setName("Test Campaign");
 
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
-        when(campaignService.getCampaignById(campaignId)).thenReturn(campaign);
+        when(campaignService.findActiveCampaign(campaignId)).thenReturn(Optional.of(campaign));
         when(modelMapper.map(bag, BagDto.class)).thenReturn(bagDto);
 
         BagDto result = bagService.applyCampaignToBag(bagId, campaignId);
@@ -619,6 +1092,33 @@ public class BagServiceImplTest {
         assertEquals(campaignId, bag.getCampaignId());
         assertEquals("Test Campaign", bag.getCampaignName());
         verify(bagRepository, times(1)).save(bag);
+        verify(stockReservationService, times(1)).extend(bagId);
+    }
+
+    @Test
+    void whenApplyCampaignToBagWithPercentageDiscount_thenDiscountShouldBeRoundedDownToKurus() {
+        Long bagId = 1L;
+        Long campaignId = 1L;
+
+        Bag bag = new Bag();
+        bag.addItem(new BagItem("123456", 1, Money.parse("99.99"), "Product Name"));
+        bag.setTotalPrice(Money.parse("99.99"));
+        CampaignResponseDto campaign = new CampaignResponseDto();
+        campaign.setDeleted(false);
+        campaign.setStartDate(LocalDateTime.now().minusDays(1));
+        campaign.setEndDate(LocalDateTime.now().plusDays(1));
+        campaign.setDiscountType(DiscountType.PERCENTAGE);
+        campaign.setDiscountValue(12.5);
+        campaign.setName("Test Campaign");
+
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(campaignService.getCampaignById(campaignId)).thenReturn(campaign);
+        when(modelMapper.map(bag, BagDto.class)).thenReturn(new BagDto());
+
+        bagService.applyCampaignToBag(bagId, campaignId);
+
+        assertEquals(Money.parse("99.99"), bag.getTotalPrice());
+        assertEquals(Money.parse("87.50"), bag.getDiscountedPrice());
     }
 
     @Test
@@ -637,7 +1137,7 @@ public class BagServiceImplTest {
         campaign.setName("Test Campaign");
 
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
-        when(campaignService.getCampaignById(campaignId)).thenReturn(campaign);
+        when(campaignService.findActiveCampaign(campaignId)).thenReturn(Optional.of(campaign));
         when(modelMapper.map(bag, BagDto.class)).thenReturn(bagDto);
 
         BagDto result = bagService.applyCampaignToBag(bagId, campaignId);
@@ -646,6 +1146,32 @@ public class BagServiceImplTest {
         assertEquals(campaignId, bag.getCampaignId());
         assertEquals("Test Campaign", bag.getCampaignName());
         verify(bagRepository, times(1)).save(bag);
+        verify(campaignService, never()).getCampaignById(anyLong());
+    }
+
+    @Test
+    void whenApplyCampaignToBagWithCampaignMissingFromIndex_thenFallBackToCampaignLookup() {
+        Long bagId = 1L;
+        Long campaignId = 1L;
+
+        Bag bag = new Bag();
+        CampaignResponseDto campaign = new CampaignResponseDto();
+        campaign.setDeleted(false);
+        campaign.setStartDate(LocalDateTime.now().minusDays(1));
+        campaign.setEndDate(LocalDateTime.now().plusDays(1));
+        campaign.setDiscountType(DiscountType.FIXED_AMOUNT);
+        campaign.setDiscountValue(10);
+        campaign.setName("Test Campaign");
+
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(campaignService.findActiveCampaign(campaignId)).thenReturn(Optional.empty());
+        when(campaignService.getCampaignById(campaignId)).thenReturn(campaign);
+        when(modelMapper.map(bag, BagDto.class)).thenReturn(new BagDto());
+
+        bagService.applyCampaignToBag(bagId, campaignId);
+
+        assertEquals(campaignId, bag.getCampaignId());
+        verify(bagRepository, times(1)).save(bag);
     }
 
 
@@ -667,6 +1193,7 @@ public class BagServiceImplTest {
 
         Bag bag = new Bag();
         when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(bagRepository.findLatestById(bagId)).thenReturn(Optional.of(bag));
 
         CampaignNotFoundException exception = assertThrows(CampaignNotFoundException.class,
                 () -> bagService.removeCampaignFromBag(bagId));
@@ -674,11 +1201,32 @@ public class BagServiceImplTest {
         assertEquals("Campaign not found in the bag with id: " + bagId, exception.getMessage());
     }
 
+    @Test
+    void whenRemoveCampaignFromStaleCachedBag_thenCampaignOfLatestBagShouldBeRemoved() {
+        Long bagId = 1L;
+
+        Bag stale = new Bag();
+        stale.setId(bagId);
+        Bag latest = new Bag();
+        latest.setId(bagId);
+        latest.setCampaignId(1L);
+        latest.setCampaignName("Test Campaign");
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(stale));
+        when(bagRepository.findLatestById(bagId)).thenReturn(Optional.of(latest));
+        when(modelMapper.map(latest, BagDto.class)).thenReturn(new BagDto());
+
+        bagService.removeCampaignFromBag(bagId);
+
+        assertNull(latest.getCampaignId());
+        verify(bagRepository, times(1)).save(latest);
+    }
+
     @Test
     void whenRemoveCampaignFromBagWithValidBagId_thenRemoveCampaignSuccessfully() {
         Long bagId = 1L;
 
         Bag bag = new Bag();
+        bag.setId(bagId);
         bag.setCampaignId(1L);
         bag.setCampaignName("Test Campaign");
         bag.setDiscountValue(10);
@@ -696,5 +1244,132 @@ public class BagServiceImplTest {
         assertEquals(0, bag.getDiscountValue());
         assertNull(bag.getDiscountType());
         verify(bagRepository, times(1)).save(bag);
+        verify(stockReservationService, times(1)).extend(bagId);
+    }
+
+    @Test
+    void whenApplyBestCampaignToBag_thenCampaignWithLargestSavingShouldBeApplied() {
+        Long bagId = 1L;
+
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.addItem(new BagItem("123456", 1, Money.parse("100"), "Product Name"));
+        bag.setTotalPrice(Money.parse("100"));
+
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(campaignService.getActiveCampaigns()).thenReturn(List.of(
+                activeCampaign(1L, DiscountType.PERCENTAGE, 10),
+                activeCampaign(2L, DiscountType.FIXED_AMOUNT, 15),
+                activeCampaign(3L, DiscountType.PERCENTAGE, 12)));
+        when(modelMapper.map(bag, BagDto.class)).thenReturn(new BagDto());
+
+        bagService.applyBestCampaignToBag(bagId);
+
+        assertTrue(bag.isAutoCampaign());
+        assertEquals(2L, bag.getCampaignId());
+        assertEquals("Campaign 2", bag.getCampaignName());
+        assertEquals(Money.parse("85.00"), bag.getDiscountedPrice());
+        verify(campaignService, never()).getCampaignById(anyLong());
+        verify(bagRepository, times(1)).save(bag);
+        verify(stockReservationService, times(1)).extend(bagId);
+    }
+
+    @Test
+    void whenApplyBestCampaignToBagWithNoActiveCampaigns_thenNoCampaignShouldBeApplied() {
+        Long bagId = 1L;
+
+        Bag bag = new Bag();
+        bag.addItem(new BagItem("123456", 1, Money.parse("100"), "Product Name"));
+        bag.setTotalPrice(Money.parse("100"));
+
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(campaignService.getActiveCampaigns()).thenReturn(List.of());
+        when(modelMapper.map(bag, BagDto.class)).thenReturn(new BagDto());
+
+        bagService.applyBestCampaignToBag(bagId);
+
+        assertTrue(bag.isAutoCampaign());
+        assertNull(bag.getCampaignId());
+        assertNull(bag.getDiscountedPrice());
+        verify(bagRepository, times(1)).save(bag);
+    }
+
+    @Test
+    void whenApplyBestCampaignToBagWithNonExistentBag_thenThrowBagNotFoundException() {
+        Long bagId = 1L;
+
+        when(bagRepository.findById(bagId)).thenReturn(Optional.empty());
+
+        assertThrows(BagNotFoundException.class, () -> bagService.applyBestCampaignToBag(bagId));
+        verify(bagRepository, never()).save(any(Bag.class));
+    }
+
+    @Test
+    void whenRemoveProductFromBagInBestCampaignMode_thenBestCampaignShouldBeSelectedAgain() {
+        Long bagId = 1L;
+        String barcode = "123456";
+
+        Bag bag = new Bag();
+        bag.addItem(new BagItem(barcode, 5, Money.parse("100"), "Product Name"));
+        bag.setTotalPrice(Money.parse("500"));
+        bag.setAutoCampaign(true);
+        bag.setCampaignId(2L);
+        bag.setCampaignName("Campaign 2");
+        bag.setDiscountType(DiscountType.FIXED_AMOUNT);
+        bag.setDiscountValue(30);
+
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(campaignService.getActiveCampaigns()).thenReturn(List.of(
+                activeCampaign(1L, DiscountType.PERCENTAGE, 10),
+                activeCampaign(2L, DiscountType.FIXED_AMOUNT, 30)));
+        when(modelMapper.map(bag, BagDto.class)).thenReturn(new BagDto());
+
+        bagService.removeProductFromBag(bagId, barcode, 1);
+
+        assertEquals(1L, bag.getCampaignId());
+        assertEquals(Money.parse("400"), bag.getTotalPrice());
+        assertEquals(Money.parse("360.00"), bag.getDiscountedPrice());
+    }
+
+    @Test
+    void whenApplyCampaignToBagInBestCampaignMode_thenBestCampaignModeShouldBeTurnedOff() {
+        Long bagId = 1L;
+        Long campaignId = 1L;
+
+        Bag bag = new Bag();
+        bag.setAutoCampaign(true);
+        CampaignResponseDto campaign = activeCampaign(campaignId, DiscountType.PERCENTAGE, 10);
+
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(campaignService.findActiveCampaign(campaignId)).thenReturn(Optional.of(campaign));
+        when(modelMapper.map(bag, BagDto.class)).thenReturn(new BagDto());
+
+        bagService.applyCampaignToBag(bagId, campaignId);
+
+        assertFalse(bag.isAutoCampaign());
+        assertEquals(campaignId, bag.getCampaignId());
+    }
+
+    @Test
+    void whenRemoveCampaignFromBagInBestCampaignModeWithoutCampaign_thenBestCampaignModeShouldBeTurnedOff() {
+        Long bagId = 1L;
+
+        Bag bag = new Bag();
+        bag.setAutoCampaign(true);
+
+        when(bagRepository.findById(bagId)).thenReturn(Optional.of(bag));
+        when(modelMapper.map(bag, BagDto.class)).thenReturn(new BagDto());
+
+        bagService.removeCampaignFromBag(bagId);
+
+        assertFalse(bag.isAutoCampaign());
+        verify(bagRepository, times(1)).save(bag);
+    }
+
+
+
+    private CampaignResponseDto activeCampaign(Long id, DiscountType discountType, double discountValue) {
+        return new CampaignResponseDto(id, "Campaign " + id, LocalDateTime.now().minusDays(1),
+                LocalDateTime.now().plusDays(1), discountType, discountValue, false);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package com.saleservice.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BarcodeBloomFilterTest {
+
+    @Test
+    void whenBarcodesAreAdded_thenAllOfThemShouldBeFound() {
+        BarcodeBloomFilter filter = BarcodeBloomFilter.create(10_000, 0.01);
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(barcode(i));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(barcode(i)), barcode(i));
+        }
+    }
+
+    @Test
+    void whenFilterIsFull_thenFalsePositiveRateShouldBeNearItsTarget() {
+        BarcodeBloomFilter filter = BarcodeBloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(barcode(i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 10_000; i < 110_000; i++) {
+            if (filter.mightContain(barcode(i))) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 1_500, "False positives: " + falsePositives);
+        assertEquals(0.01, filter.falsePositiveRate(), 0.003);
+        assertEquals(7, filter.hashCount());
+        assertTrue(filter.memoryBytes() < 12 * 1024, "Memory: " + filter.memoryBytes());
+    }
+
+    @Test
+    void whenFilterIsEmpty_thenNothingShouldBeFound() {
+        BarcodeBloomFilter filter = BarcodeBloomFilter.create(1_000, 0.01);
+
+        assertFalse(filter.mightContain("8690000000001"));
+        assertEquals(0, filter.falsePositiveRate());
+    }
+
+
+
+    private static String barcode(int i) {
+        return String.format("869%010d", i);
+    }
+}
@@ -0,0 +1,103 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.dto.ProductEventMessage;
+import com.saleservice.service.CatalogSnapshotService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BarcodeFilterServiceImplTest {
+
+    private static final Instant NOW = Instant.parse("2024-06-01T10:00:00Z");
+
+    @Mock
+    private CatalogSnapshotService catalogSnapshotService;
+
+
+    @Test
+    void whenBarcodeIsNotInSnapshot_thenItShouldBeUnknown() {
+        stubSnapshot(NOW.minusSeconds(60), "1001", "1002");
+        BarcodeFilterServiceImpl service = createService(true);
+
+        assertEquals(2, service.rebuildFilter());
+
+        assertFalse(service.isUnknownBarcode("1001"));
+        assertFalse(service.isUnknownBarcode("1002"));
+        assertTrue(service.isUnknownBarcode("9999"));
+    }
+
+    @Test
+    void whenProductIsCreated_thenItsBarcodeShouldBeKnownAndSurviveRebuild() {
+        stubSnapshot(NOW.minusSeconds(60), "1001");
+        BarcodeFilterServiceImpl service = createService(true);
+        service.rebuildFilter();
+
+        service.handleProductEvent(new ProductEventMessage(ProductEventMessage.EventType.CREATED, "2001",
+                "Bread", BigDecimal.ONE, 10));
+        assertFalse(service.isUnknownBarcode("2001"));
+
+        service.rebuildFilter();
+        assertFalse(service.isUnknownBarcode("2001"));
+    }
+
+    @Test
+    void whenThereIsNoSnapshot_thenNoBarcodeShouldBeRejected() {
+        when(catalogSnapshotService.forEachBarcode(any())).thenReturn(Optional.empty());
+        BarcodeFilterServiceImpl service = createService(true);
+
+        assertEquals(0, service.rebuildFilter());
+
+        assertFalse(service.isUnknownBarcode("9999"));
+    }
+
+    @Test
+    void whenSnapshotIsOutdated_thenNoBarcodeShouldBeRejected() {
+        stubSnapshot(NOW.minus(Duration.ofHours(2)), "1001");
+        BarcodeFilterServiceImpl service = createService(true);
+        service.rebuildFilter();
+
+        assertFalse(service.isUnknownBarcode("9999"));
+    }
+
+    @Test
+    void whenFilterIsDisabled_thenSnapshotShouldNotBeRead() {
+        BarcodeFilterServiceImpl service = createService(false);
+
+        assertEquals(0, service.rebuildFilter());
+
+        assertFalse(service.isUnknownBarcode("9999"));
+        verifyNoInteractions(catalogSnapshotService);
+    }
+
+
+
+    private BarcodeFilterServiceImpl createService(boolean enabled) {
+        return new BarcodeFilterServiceImpl(catalogSnapshotService, new SimpleMeterRegistry(), enabled, 0.01,
+                Duration.ofHours(1), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private void stubSnapshot(Instant createdAt, String... barcodes) {
+        when(catalogSnapshotService.forEachBarcode(any())).thenAnswer(invocation -> {
+            List.of(barcodes).forEach(invocation.<Consumer<String>>getArgument(0));
+            return Optional.of(createdAt);
+        });
+    }
+}
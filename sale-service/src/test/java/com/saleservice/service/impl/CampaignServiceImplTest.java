@@ -1,6 +1,7 @@
 package com.saleservice.service.impl;
 
 import com.saleservice.dto.CampaignDto;
+import com.saleservice.dto.CampaignEventMessage;
 import com.saleservice.dto.CampaignResponseDto;
 import com.saleservice.exception.CampaignAlreadyDeletedException;
 import com.saleservice.exception.CampaignAlreadyExistException;
@@ -15,11 +16,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -37,6 +40,9 @@ public class CampaignServiceImplTest {
     @Mock
     private ModelMapper modelMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private CampaignServiceImpl campaignService;
 
@@ -177,6 +183,7 @@ public class CampaignServiceImplTest {
         assertNotNull(result);
         assertEquals(campaignResponseDto, result);
         verify(campaignRepository, times(1)).save(campaign);
+        verify(eventPublisher, times(1)).publishEvent(new CampaignEventMessage(id));
     }
 
     @Test
@@ -370,6 +377,7 @@ public class CampaignServiceImplTest {
 
         assertTrue(campaign.isDeleted());
         verify(campaignRepository, times(1)).save(campaign);
+        verify(eventPublisher, times(1)).publishEvent(new CampaignEventMessage(id));
     }
 
 
@@ -475,4 +483,62 @@ public class CampaignServiceImplTest {
         assertEquals(1, result.getTotalElements());
         verify(campaignRepository, times(1)).findAll(pageable);
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenRefreshActiveCampaigns_thenOnlyCampaignsActiveNowShouldBeReturned() {
+        CampaignResponseDto running = campaignResponse(1L, LocalDateTime.now().minusDays(2), LocalDateTime.now().plusDays(2));
+        CampaignResponseDto upcoming = campaignResponse(2L, LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(3));
+        CampaignResponseDto endingSoon = campaignResponse(3L, LocalDateTime.now().minusDays(5), LocalDateTime.now().plusHours(1));
+        stubActiveCampaigns(running, upcoming, endingSoon);
+
+        campaignService.refreshActiveCampaigns();
+        List<CampaignResponseDto> result = campaignService.getActiveCampaigns();
+
+        assertEquals(List.of(endingSoon, running), result);
+    }
+
+    @Test
+    void whenFindActiveCampaignWithActiveId_thenReturnCampaignWithoutDatabaseAccess() {
+        CampaignResponseDto running = campaignResponse(1L, LocalDateTime.now().minusDays(2), LocalDateTime.now().plusDays(2));
+        stubActiveCampaigns(running);
+        campaignService.refreshActiveCampaigns();
+
+        Optional<CampaignResponseDto> result = campaignService.findActiveCampaign(1L);
+
+        assertEquals(Optional.of(running), result);
+        verify(campaignRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void whenFindActiveCampaignWithUpcomingOrUnknownId_thenReturnEmpty() {
+        CampaignResponseDto upcoming = campaignResponse(2L, LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(3));
+        stubActiveCampaigns(upcoming);
+        campaignService.refreshActiveCampaigns();
+
+        assertTrue(campaignService.findActiveCampaign(2L).isEmpty());
+        assertTrue(campaignService.findActiveCampaign(3L).isEmpty());
+    }
+
+    @Test
+    void whenActiveCampaignsNotLoaded_thenReturnEmptyList() {
+        assertTrue(campaignService.getActiveCampaigns().isEmpty());
+    }
+
+
+
+    private CampaignResponseDto campaignResponse(Long id, LocalDateTime startDate, LocalDateTime endDate) {
+        return new CampaignResponseDto(id, "Campaign " + id, startDate, endDate, DiscountType.PERCENTAGE, 10, false);
+    }
+
+
+    private void stubActiveCampaigns(CampaignResponseDto... responses) {
+        List<Campaign> campaigns = new ArrayList<>();
+        for (CampaignResponseDto response : responses) {
+            Campaign campaign = new Campaign(response.getName(), response.getStartDate(), response.getEndDate(),
+                    response.getDiscountType(), response.getDiscountValue());
+            campaigns.add(campaign);
+            when(modelMapper.map(campaign, CampaignResponseDto.class)).thenReturn(response);
+        }
+        when(campaignRepository.findAllByDeletedFalseAndEndDateAfter(any(LocalDateTime.class))).thenReturn(campaigns);
+    }
+}
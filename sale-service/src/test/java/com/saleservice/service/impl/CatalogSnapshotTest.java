@@ -0,0 +1,50 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.model.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void whenSnapshotIsWrittenAndOpened_thenProductsShouldBeFoundByBarcode() throws Exception {
+        Path file = directory.resolve("catalog.snapshot");
+        String catalog = "1001\tApple\t12.50\n1002\tÇay\t45.00\n2001\tBread\t7.25\n";
+
+        int written = CatalogSnapshot.write(new BufferedReader(new StringReader(catalog)), file);
+        CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+
+        assertEquals(3, written);
+        assertEquals(3, snapshot.size());
+        assertEquals(Optional.of(new CatalogSnapshot.Entry("Çay", Money.of(new BigDecimal("45.00")))), snapshot.find("1002"));
+        assertEquals(Optional.of(new CatalogSnapshot.Entry("Bread", Money.of(new BigDecimal("7.25")))), snapshot.find("2001"));
+        assertTrue(snapshot.find("1003").isEmpty());
+        assertTrue(snapshot.find("0").isEmpty());
+    }
+
+    @Test
+    void whenCatalogIsNotOrderedByBarcode_thenThrowIllegalStateException() {
+        Path file = directory.resolve("catalog.snapshot");
+        String catalog = "2001\tBread\t7.25\n1001\tApple\t12.50\n";
+
+        assertThrows(IllegalStateException.class,
+                () -> CatalogSnapshot.write(new BufferedReader(new StringReader(catalog)), file));
+    }
+
+    @Test
+    void whenSnapshotIsEmpty_thenNothingShouldBeFound() {
+        assertEquals(0, CatalogSnapshot.EMPTY.size());
+        assertTrue(CatalogSnapshot.EMPTY.find("1001").isEmpty());
+    }
+}
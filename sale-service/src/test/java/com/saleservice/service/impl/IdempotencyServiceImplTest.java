@@ -0,0 +1,179 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.dto.ReceiptMessage;
+import com.saleservice.dto.SaleDto;
+import com.saleservice.exception.BagNotFoundException;
+import com.saleservice.exception.IdempotencyKeyInProgressException;
+import com.saleservice.exception.InvalidInputException;
+import com.saleservice.model.IdempotencyRecord;
+import com.saleservice.model.PaymentMethod;
+import com.saleservice.repository.IdempotencyKeyRepository;
+import com.saleservice.service.SaleService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyServiceImplTest {
+
+    private static final String KEY = "lane-3-0001";
+    private static final BigDecimal AMOUNT = new BigDecimal("100.00");
+
+    @Mock
+    private SaleService saleService;
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private IdempotencyServiceImpl idempotencyService;
+
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        idempotencyService = new IdempotencyServiceImpl(saleService, idempotencyKeyRepository, meterRegistry,
+                Duration.ofHours(24), Duration.ofSeconds(30), Duration.ofMillis(200), Duration.ofMillis(10));
+    }
+
+
+    @Test
+    void whenCompleteSaleWithNewKey_thenSaleShouldBeCompletedAndReceiptStored() {
+        ReceiptMessage receipt = receipt(10L);
+        when(idempotencyKeyRepository.create(eq(KEY), any(IdempotencyRecord.class), eq(Duration.ofSeconds(30)))).thenReturn(true);
+        when(saleService.completeSale(1L, AMOUNT, PaymentMethod.CASH, "Emir")).thenReturn(receipt);
+        when(idempotencyKeyRepository.replace(eq(KEY), any(IdempotencyRecord.class), any(IdempotencyRecord.class), eq(Duration.ofHours(24))))
+                .thenReturn(true);
+
+        ReceiptMessage result = idempotencyService.completeSale(KEY, 1L, AMOUNT, PaymentMethod.CASH, "Emir");
+
+        assertSame(receipt, result);
+        ArgumentCaptor<IdempotencyRecord> pending = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        ArgumentCaptor<IdempotencyRecord> completed = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(idempotencyKeyRepository).replace(eq(KEY), pending.capture(), completed.capture(), eq(Duration.ofHours(24)));
+        assertFalse(pending.getValue().isCompleted());
+        assertEquals(pending.getValue().getOwner(), completed.getValue().getOwner());
+        assertSame(receipt, completed.getValue().getReceipt());
+    }
+
+    @Test
+    void whenCompleteSaleWithCompletedKey_thenStoredReceiptShouldBeReturnedWithoutCompletingSale() {
+        ReceiptMessage receipt = receipt(10L);
+        when(idempotencyKeyRepository.create(eq(KEY), any(IdempotencyRecord.class), any(Duration.class))).thenReturn(false);
+        when(idempotencyKeyRepository.findByKey(KEY)).thenReturn(Optional.of(new IdempotencyRecord("owner", 1L, receipt)));
+
+        ReceiptMessage result = idempotencyService.completeSale(KEY, 1L, AMOUNT, PaymentMethod.CASH, "Emir");
+
+        assertSame(receipt, result);
+        verifyNoInteractions(saleService);
+        assertEquals(1.0, meterRegistry.counter("sale.idempotency.replays").count());
+    }
+
+    @Test
+    void whenCompleteSaleWithKeyOfAnotherBag_thenThrowInvalidInputException() {
+        when(idempotencyKeyRepository.create(eq(KEY), any(IdempotencyRecord.class), any(Duration.class))).thenReturn(false);
+        when(idempotencyKeyRepository.findByKey(KEY)).thenReturn(Optional.of(new IdempotencyRecord("owner", 2L, receipt(10L))));
+
+        assertThrows(InvalidInputException.class,
+                () -> idempotencyService.completeSale(KEY, 1L, AMOUNT, PaymentMethod.CASH, "Emir"));
+        verifyNoInteractions(saleService);
+    }
+
+    @Test
+    void whenCompleteSaleWithBlankKey_thenThrowInvalidInputException() {
+        assertThrows(InvalidInputException.class,
+                () -> idempotencyService.completeSale(" ", 1L, AMOUNT, PaymentMethod.CASH, "Emir"));
+        verifyNoInteractions(saleService, idempotencyKeyRepository);
+    }
+
+    @Test
+    void whenSaleFails_thenKeyShouldBeReleasedAndExceptionRethrown() {
+        when(idempotencyKeyRepository.create(eq(KEY), any(IdempotencyRecord.class), any(Duration.class))).thenReturn(true);
+        when(saleService.completeSale(1L, AMOUNT, PaymentMethod.CASH, "Emir")).thenThrow(new BagNotFoundException("Bag not found"));
+
+        assertThrows(BagNotFoundException.class,
+                () -> idempotencyService.completeSale(KEY, 1L, AMOUNT, PaymentMethod.CASH, "Emir"));
+        verify(idempotencyKeyRepository).replace(eq(KEY), any(IdempotencyRecord.class), isNull(), any(Duration.class));
+    }
+
+    @Test
+    void whenKeyIsInProgressOnAnotherInstance_thenWaitForItsReceipt() {
+        ReceiptMessage receipt = receipt(10L);
+        when(idempotencyKeyRepository.create(eq(KEY), any(IdempotencyRecord.class), any(Duration.class))).thenReturn(false);
+        when(idempotencyKeyRepository.findByKey(KEY))
+                .thenReturn(Optional.of(new IdempotencyRecord("owner", 1L, null)))
+                .thenReturn(Optional.of(new IdempotencyRecord("owner", 1L, receipt)));
+
+        ReceiptMessage result = idempotencyService.completeSale(KEY, 1L, AMOUNT, PaymentMethod.CASH, "Emir");
+
+        assertSame(receipt, result);
+        verifyNoInteractions(saleService);
+        assertEquals(1.0, meterRegistry.counter("sale.idempotency.waits").count());
+    }
+
+    @Test
+    void whenKeyStaysInProgress_thenThrowIdempotencyKeyInProgressException() {
+        when(idempotencyKeyRepository.create(eq(KEY), any(IdempotencyRecord.class), any(Duration.class))).thenReturn(false);
+        when(idempotencyKeyRepository.findByKey(KEY)).thenReturn(Optional.of(new IdempotencyRecord("owner", 1L, null)));
+
+        assertThrows(IdempotencyKeyInProgressException.class,
+                () -> idempotencyService.completeSale(KEY, 1L, AMOUNT, PaymentMethod.CASH, "Emir"));
+        verifyNoInteractions(saleService);
+    }
+
+    @Test
+    void whenDuplicateArrivesOnSameInstance_thenItShouldWaitForFirstAttemptAndReplayReceipt() throws Exception {
+        ReceiptMessage receipt = receipt(10L);
+        CountDownLatch saleStarted = new CountDownLatch(1);
+        CountDownLatch releaseSale = new CountDownLatch(1);
+        when(idempotencyKeyRepository.create(eq(KEY), any(IdempotencyRecord.class), any(Duration.class))).thenReturn(true, false);
+        when(saleService.completeSale(1L, AMOUNT, PaymentMethod.CASH, "Emir")).thenAnswer(invocation -> {
+            saleStarted.countDown();
+            releaseSale.await(1, TimeUnit.SECONDS);
+            return receipt;
+        });
+        when(idempotencyKeyRepository.replace(eq(KEY), any(IdempotencyRecord.class), any(IdempotencyRecord.class), any(Duration.class)))
+                .thenReturn(true);
+        when(idempotencyKeyRepository.findByKey(KEY)).thenReturn(Optional.of(new IdempotencyRecord("owner", 1L, receipt)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ReceiptMessage> first = executor.submit(() ->
+                    idempotencyService.completeSale(KEY, 1L, AMOUNT, PaymentMethod.CASH, "Emir"));
+            assertTrue(saleStarted.await(1, TimeUnit.SECONDS));
+            Future<ReceiptMessage> duplicate = executor.submit(() ->
+                    idempotencyService.completeSale(KEY, 1L, AMOUNT, PaymentMethod.CASH, "Emir"));
+            releaseSale.countDown();
+
+            assertSame(receipt, first.get(1, TimeUnit.SECONDS));
+            assertSame(receipt, duplicate.get(1, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(saleService, times(1)).completeSale(1L, AMOUNT, PaymentMethod.CASH, "Emir");
+    }
+
+
+
+    private static ReceiptMessage receipt(Long saleId) {
+        SaleDto saleDto = new SaleDto();
+        saleDto.setId(saleId);
+        return new ReceiptMessage("receipt-" + saleId, saleDto);
+    }
+}
@@ -0,0 +1,152 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.config.RabbitMqMessagePublisher;
+import com.saleservice.config.RabbitMqMessagePublisher.MessageType;
+import com.saleservice.config.RabbitMqMessagePublisher.OutgoingMessage;
+import com.saleservice.dto.StockAdjustmentMessage;
+import com.saleservice.model.OutboxMessage;
+import com.saleservice.repository.OutboxMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OutboxServiceImplTest {
+
+    @Mock
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Mock
+    private RabbitMqMessagePublisher rabbitMqMessagePublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Captor
+    private ArgumentCaptor<List<OutgoingMessage>> outgoingCaptor;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private OutboxServiceImpl outboxService;
+
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        outboxService = new OutboxServiceImpl(outboxMessageRepository, rabbitMqMessagePublisher,
+                new Jackson2JsonMessageConverter(), transactionTemplate, meterRegistry);
+        ReflectionTestUtils.setField(outboxService, "batchSize", 2);
+        ReflectionTestUtils.setField(outboxService, "confirmTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(outboxService, "retention", Duration.ofDays(7));
+    }
+
+
+    @Test
+    void whenEnqueue_thenConvertedMessageShouldBeStoredUnsent() {
+        StockAdjustmentMessage payload = new StockAdjustmentMessage(1L, 7L, List.of(new StockAdjustmentMessage.Item("123", -2)));
+
+        outboxService.enqueue(payload, MessageType.STOCK_ADJUSTMENT);
+
+        ArgumentCaptor<OutboxMessage> captor = ArgumentCaptor.forClass(OutboxMessage.class);
+        verify(outboxMessageRepository, times(1)).save(captor.capture());
+        OutboxMessage stored = captor.getValue();
+        assertEquals(MessageType.STOCK_ADJUSTMENT, stored.getMessageType());
+        assertEquals(StockAdjustmentMessage.class.getName(), stored.getPayloadType());
+        assertEquals("{\"saleId\":1,\"bagId\":7,\"items\":[{\"barcode\":\"123\",\"delta\":-2}]}", stored.getPayload());
+        assertFalse(stored.isSent());
+        verifyNoInteractions(rabbitMqMessagePublisher);
+    }
+
+    @Test
+    void whenRelayPendingMessages_thenBatchesShouldBeConfirmedAndMarkedSent() {
+        stubTransactions();
+        when(outboxMessageRepository.lockUnsentBatch(2))
+                .thenReturn(List.of(outboxMessage(1L, MessageType.STOCK_ADJUSTMENT), outboxMessage(2L, MessageType.RECEIPT)))
+                .thenReturn(List.of(outboxMessage(3L, MessageType.EVENT)));
+        when(rabbitMqMessagePublisher.publishAllAsync(anyList())).thenAnswer(invocation ->
+                ((List<?>) invocation.getArgument(0)).stream().map(message -> CompletableFuture.<Void>completedFuture(null)).toList());
+
+        int published = outboxService.relayPendingMessages();
+
+        assertEquals(3, published);
+        verify(rabbitMqMessagePublisher, times(2)).publishAllAsync(outgoingCaptor.capture());
+        OutgoingMessage first = outgoingCaptor.getAllValues().get(0).get(0);
+        assertEquals(MessageType.STOCK_ADJUSTMENT, first.messageType());
+        assertEquals("outbox-1", first.message().getMessageProperties().getMessageId());
+        assertEquals("payload-1", new String(first.message().getBody(), StandardCharsets.UTF_8));
+        verify(outboxMessageRepository, times(1)).markSent(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+        verify(outboxMessageRepository, times(1)).markSent(eq(List.of(3L)), any(LocalDateTime.class));
+        assertEquals(3, meterRegistry.counter("outbox.relay.published").count());
+    }
+
+    @Test
+    void whenRelayPendingMessagesAndConfirmFails_thenBatchShouldNotBeMarkedSent() {
+        stubTransactions();
+        when(outboxMessageRepository.lockUnsentBatch(2)).thenReturn(List.of(outboxMessage(1L, MessageType.RECEIPT)));
+        when(rabbitMqMessagePublisher.publishAllAsync(anyList()))
+                .thenReturn(List.of(CompletableFuture.failedFuture(new AmqpException("nack"))));
+
+        int published = outboxService.relayPendingMessages();
+
+        assertEquals(0, published);
+        verify(outboxMessageRepository, never()).markSent(anyList(), any(LocalDateTime.class));
+        assertEquals(1, meterRegistry.counter("outbox.relay.failed.batches").count());
+    }
+
+    @Test
+    void whenRelayPendingMessagesWithEmptyOutbox_thenNothingShouldBePublished() {
+        stubTransactions();
+        when(outboxMessageRepository.lockUnsentBatch(2)).thenReturn(List.of());
+
+        int published = outboxService.relayPendingMessages();
+
+        assertEquals(0, published);
+        verifyNoInteractions(rabbitMqMessagePublisher);
+    }
+
+
+    @Test
+    void whenPurgeSentMessages_thenOldSentMessagesShouldBeDeletedInBatches() {
+        stubTransactions();
+        when(outboxMessageRepository.deleteSentBefore(any(LocalDateTime.class), eq(2))).thenReturn(2, 2, 1);
+
+        int deleted = outboxService.purgeSentMessages();
+
+        assertEquals(5, deleted);
+        ArgumentCaptor<LocalDateTime> captor = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(outboxMessageRepository, times(3)).deleteSentBefore(captor.capture(), eq(2));
+        assertTrue(captor.getValue().isBefore(LocalDateTime.now().minusDays(7).plusMinutes(1)));
+    }
+
+
+
+    @SuppressWarnings("unchecked")
+    private void stubTransactions() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Integer>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+
+    private OutboxMessage outboxMessage(Long id, MessageType messageType) {
+        return new OutboxMessage(id, messageType, "java.lang.String", "payload-" + id, LocalDateTime.now(), null, false);
+    }
+}
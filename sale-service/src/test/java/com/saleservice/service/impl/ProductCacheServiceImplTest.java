@@ -0,0 +1,137 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.client.ProductServiceClient;
+import com.saleservice.dto.ProductDto;
+import com.saleservice.dto.ProductEventMessage;
+import com.saleservice.exception.ProductNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductCacheServiceImplTest {
+
+    @Mock
+    private ProductServiceClient productServiceClient;
+
+
+    private ProductCacheServiceImpl createCache(Duration stockMaxStaleness) {
+        return new ProductCacheServiceImpl(productServiceClient, new SimpleMeterRegistry(), Runnable::run,
+                100, Duration.ofMinutes(30), stockMaxStaleness);
+    }
+
+
+    @Test
+    void whenGetProductWithFreshStockWithinStalenessBound_thenProductShouldBeServedFromCache() {
+        String barcode = "123456";
+        ProductDto productDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false);
+        when(productServiceClient.getProduct(barcode)).thenReturn(ResponseEntity.ok(productDto));
+
+        ProductCacheServiceImpl productCacheService = createCache(Duration.ofMinutes(1));
+
+        productCacheService.getProductWithFreshStock(barcode);
+        ProductDto result = productCacheService.getProductWithFreshStock(barcode);
+
+        assertEquals(5, result.getStock());
+        verify(productServiceClient, times(1)).getProduct(barcode);
+    }
+
+    @Test
+    void whenGetProductWithFreshStockAndStockIsStale_thenProductShouldBeReloaded() {
+        String barcode = "123456";
+        ProductDto productDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false);
+        ProductDto reloadedDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 2, false);
+        when(productServiceClient.getProduct(barcode))
+                .thenReturn(ResponseEntity.ok(productDto))
+                .thenReturn(ResponseEntity.ok(reloadedDto));
+
+        ProductCacheServiceImpl productCacheService = createCache(Duration.ZERO);
+
+        ProductDto result = productCacheService.getProductWithFreshStock(barcode);
+
+        assertEquals(2, result.getStock());
+        verify(productServiceClient, times(2)).getProduct(barcode);
+    }
+
+    @Test
+    void whenStockChangedEventReceived_thenCachedProductShouldBeUpdated() {
+        String barcode = "123456";
+        ProductDto productDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false);
+        when(productServiceClient.getProduct(barcode)).thenReturn(ResponseEntity.ok(productDto));
+
+        ProductCacheServiceImpl productCacheService = createCache(Duration.ofMinutes(1));
+        productCacheService.getProductWithFreshStock(barcode);
+
+        productCacheService.handleProductEvent(new ProductEventMessage(
+                ProductEventMessage.EventType.STOCK_CHANGED, barcode, "Product Name", BigDecimal.ONE, 3));
+        ProductDto result = productCacheService.getProductWithFreshStock(barcode);
+
+        assertEquals(3, result.getStock());
+        assertEquals(BigDecimal.ONE, result.getPrice());
+        verify(productServiceClient, times(1)).getProduct(barcode);
+    }
+
+    @Test
+    void whenUpdateEventReceivedForUncachedProduct_thenProductShouldNotBeCached() {
+        String barcode = "123456";
+        ProductDto productDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false);
+        when(productServiceClient.getProduct(barcode)).thenReturn(ResponseEntity.ok(productDto));
+
+        ProductCacheServiceImpl productCacheService = createCache(Duration.ofMinutes(1));
+
+        productCacheService.handleProductEvent(new ProductEventMessage(
+                ProductEventMessage.EventType.UPDATED, barcode, "Other Name", BigDecimal.ONE, 3));
+        ProductDto result = productCacheService.getProductWithFreshStock(barcode);
+
+        assertEquals(productDto, result);
+        verify(productServiceClient, times(1)).getProduct(barcode);
+    }
+
+    @Test
+    void whenDeletedEventReceived_thenProductShouldBeEvicted() {
+        String barcode = "123456";
+        ProductDto productDto = new ProductDto("Product Name", barcode, BigDecimal.TEN, 5, false);
+        when(productServiceClient.getProduct(barcode))
+                .thenReturn(ResponseEntity.ok(productDto))
+                .thenThrow(new ProductNotFoundException("Product with barcode 123456 not found"));
+
+        ProductCacheServiceImpl productCacheService = createCache(Duration.ofMinutes(1));
+        productCacheService.getProductWithFreshStock(barcode);
+
+        productCacheService.handleProductEvent(new ProductEventMessage(
+                ProductEventMessage.EventType.DELETED, barcode, "Product Name", BigDecimal.TEN, 5));
+
+        assertThrows(ProductNotFoundException.class, () -> productCacheService.getProductWithFreshStock(barcode));
+        verify(productServiceClient, times(2)).getProduct(barcode);
+    }
+
+    @Test
+    void whenGetProductsWithFreshStock_thenOnlyMissingProductsShouldBeLoaded() {
+        ProductDto first = new ProductDto("First", "111", BigDecimal.TEN, 5, false);
+        ProductDto second = new ProductDto("Second", "222", BigDecimal.ONE, 3, false);
+        when(productServiceClient.getProduct("111")).thenReturn(ResponseEntity.ok(first));
+        when(productServiceClient.getProduct("222")).thenReturn(ResponseEntity.ok(second));
+
+        ProductCacheServiceImpl productCacheService = createCache(Duration.ofMinutes(1));
+        productCacheService.getProductWithFreshStock("111");
+
+        Map<String, ProductDto> result = productCacheService.getProductsWithFreshStock(List.of("222", "111"));
+
+        assertEquals(List.of("222", "111"), List.copyOf(result.keySet()));
+        assertEquals(first, result.get("111"));
+        assertEquals(second, result.get("222"));
+        verify(productServiceClient, times(1)).getProduct("111");
+        verify(productServiceClient, times(1)).getProduct("222");
+    }
+}
@@ -0,0 +1,156 @@
+package com.saleservice.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saleservice.config.RabbitMqMessagePublisher.MessageType;
+import com.saleservice.dto.JournaledSale;
+import com.saleservice.dto.ReceiptMessage;
+import com.saleservice.dto.SaleDto;
+import com.saleservice.dto.SaleItemDto;
+import com.saleservice.dto.StockAdjustmentMessage;
+import com.saleservice.model.PaymentMethod;
+import com.saleservice.repository.SaleJournal;
+import com.saleservice.repository.SaleRepository;
+import com.saleservice.service.OutboxService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SaleJournalServiceImplTest {
+
+    @Mock
+    private SaleJournal saleJournal;
+
+    @Mock
+    private SaleRepository saleRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Captor
+    private ArgumentCaptor<List<Object[]>> batchCaptor;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private SaleJournalServiceImpl saleJournalService;
+
+
+    @BeforeEach
+    void setUp() {
+        saleJournalService = new SaleJournalServiceImpl(saleJournal, saleRepository, jdbcTemplate, outboxService,
+                transactionTemplate, objectMapper, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(saleJournalService, "idBlocks", 2);
+        ReflectionTestUtils.setField(saleJournalService, "batchSize", 10);
+    }
+
+
+    @Test
+    void whenNextSaleId_thenIdsShouldComeFromReservedBlock() {
+        when(saleRepository.reserveSaleIdBlocks(1)).thenReturn(List.of(100L));
+
+        assertEquals(51L, saleJournalService.nextSaleId());
+        assertEquals(52L, saleJournalService.nextSaleId());
+        verify(saleRepository, times(1)).reserveSaleIdBlocks(1);
+    }
+
+    @Test
+    void whenAppend_thenReceiptShouldBeWrittenToJournalWithItsBag() throws Exception {
+        ReceiptMessage receipt = receipt(51L);
+        when(saleJournal.append(any(byte[].class))).thenReturn(true);
+
+        assertTrue(saleJournalService.append(7L, receipt));
+
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(saleJournal).append(captor.capture());
+        assertEquals(new JournaledSale(7L, receipt), objectMapper.readValue(captor.getValue(), JournaledSale.class));
+    }
+
+    @Test
+    void whenDrainJournal_thenSalesShouldBeStoredWithTheirOutboxMessages() throws Exception {
+        stubTransactions();
+        ReceiptMessage receipt = receipt(51L);
+        when(saleJournal.readPending(10)).thenReturn(List.of(new SaleJournal.Entry(42L, objectMapper.writeValueAsBytes(new JournaledSale(7L, receipt)))));
+        when(saleRepository.findExistingIds(List.of(51L))).thenReturn(List.of());
+        when(saleRepository.reserveSaleItemIdBlocks(1)).thenReturn(List.of(100L));
+        when(saleRepository.reserveSaleIdBlocks(2)).thenReturn(List.of(150L, 200L));
+
+        int drained = saleJournalService.drainJournal();
+
+        assertEquals(1, drained);
+        verify(jdbcTemplate, times(1)).batchUpdate(contains("INSERT INTO sales"), anyList());
+        verify(jdbcTemplate, times(1)).batchUpdate(contains("INSERT INTO sale_items"), batchCaptor.capture());
+        assertEquals(51L, batchCaptor.getValue().get(0)[0]);
+        assertEquals(51L, batchCaptor.getValue().get(0)[5]);
+        verify(outboxService).enqueue(new StockAdjustmentMessage(51L, 7L, List.of(new StockAdjustmentMessage.Item("12345", -2))),
+                MessageType.STOCK_ADJUSTMENT);
+        verify(outboxService).enqueue(receipt, MessageType.RECEIPT);
+        verify(outboxService).enqueue("51." + receipt.getRequestId(), MessageType.EVENT);
+        verify(saleJournal).markDrained(42L);
+    }
+
+    @Test
+    void whenJournaledSaleIsAlreadyStored_thenItShouldBeSkipped() throws Exception {
+        stubTransactions();
+        when(saleJournal.readPending(10)).thenReturn(List.of(new SaleJournal.Entry(42L, objectMapper.writeValueAsBytes(new JournaledSale(7L, receipt(51L))))));
+        when(saleRepository.findExistingIds(List.of(51L))).thenReturn(List.of(51L));
+        when(saleRepository.reserveSaleIdBlocks(2)).thenReturn(List.of(150L, 200L));
+
+        assertEquals(1, saleJournalService.drainJournal());
+
+        verifyNoInteractions(jdbcTemplate, outboxService);
+        verify(saleJournal).markDrained(42L);
+    }
+
+    @Test
+    void whenBatchCannotBeStored_thenJournalShouldNotBeMarkedDrained() throws Exception {
+        stubTransactions();
+        when(saleJournal.readPending(10)).thenReturn(List.of(new SaleJournal.Entry(42L, objectMapper.writeValueAsBytes(new JournaledSale(7L, receipt(51L))))));
+        when(saleRepository.findExistingIds(List.of(51L))).thenThrow(new DataAccessResourceFailureException("down"));
+        when(saleRepository.reserveSaleIdBlocks(2)).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertEquals(0, saleJournalService.drainJournal());
+
+        verify(saleJournal, never()).markDrained(anyLong());
+        verifyNoInteractions(jdbcTemplate, outboxService);
+    }
+
+
+
+    private void stubTransactions() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+
+    private static ReceiptMessage receipt(Long saleId) {
+        List<SaleItemDto> items = new ArrayList<>(List.of(new SaleItemDto("12345", "Test Product", 2, BigDecimal.TEN)));
+        SaleDto sale = new SaleDto(saleId, "Cashier", BigDecimal.valueOf(20), null, null, null, null, 0,
+                BigDecimal.valueOf(20), BigDecimal.ZERO, PaymentMethod.CASH, LocalDateTime.of(2024, 6, 1, 10, 0),
+                false, items);
+        return new ReceiptMessage("receipt-1", sale);
+    }
+}
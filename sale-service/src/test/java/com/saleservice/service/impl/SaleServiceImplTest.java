@@ -3,24 +3,30 @@ package com.saleservice.service.impl;
 import com.saleservice.config.RabbitMqMessagePublisher;
 import com.saleservice.dto.*;
 import com.saleservice.exception.*;
+import com.saleservice.model.Bag;
+import com.saleservice.model.BagItem;
 import com.saleservice.model.DiscountType;
+import com.saleservice.model.Money;
 import com.saleservice.model.PaymentMethod;
 import com.saleservice.model.Sale;
 import com.saleservice.model.SaleItem;
 import com.saleservice.repository.SaleRepository;
 import com.saleservice.service.BagService;
+import com.saleservice.service.OutboxService;
+import com.saleservice.service.SaleJournalService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.ObjectProvider;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -40,7 +46,13 @@ public class SaleServiceImplTest {
     private ModelMapper modelMapper;
 
     @Mock
-    private RabbitMqMessagePublisher rabbitMqMessagePublisher;
+    private OutboxService outboxService;
+
+    @Mock
+    private ObjectProvider<SaleJournalService> saleJournalProvider;
+
+    @Mock
+    private SaleJournalService saleJournalService;
 
     @InjectMocks
     private SaleServiceImpl saleService;
@@ -56,23 +68,23 @@ public class SaleServiceImplTest {
                 () -> saleService.completeSale(null, amountReceived, paymentMethod, cashierName));
 
         assertEquals("Bag not found with id: null", exception.getMessage());
-        verify(bagService, never()).getBagById(anyLong());
+        verify(bagService, never()).checkoutBag(anyLong());
     }
 
     @Test
-    void whenCompleteSaleWithNullBagDto_thenThrowBagNotFoundException() {
+    void whenCompleteSaleWithMissingBag_thenThrowBagNotFoundException() {
         Long bagId = 1L;
         BigDecimal amountReceived = BigDecimal.TEN;
         PaymentMethod paymentMethod = PaymentMethod.CASH;
         String cashierName = "John Doe";
 
-        when(bagService.getBagById(bagId)).thenReturn(null);
+        when(bagService.checkoutBag(bagId)).thenReturn(null);
 
         BagNotFoundException exception = assertThrows(BagNotFoundException.class,
                 () -> saleService.completeSale(bagId, amountReceived, paymentMethod, cashierName));
 
         assertEquals("Bag not found with id: 1", exception.getMessage());
-        verify(bagService, times(1)).getBagById(bagId);
+        verify(bagService, times(1)).checkoutBag(bagId);
     }
 
     @Test
@@ -82,35 +94,32 @@ public class SaleServiceImplTest {
         PaymentMethod paymentMethod = PaymentMethod.CASH;
         String cashierName = "John Doe";
 
-        BagDto bagDto = new BagDto();
-        bagDto.setItems(Collections.emptyList());
+        Bag bag = new Bag();
+        bag.setId(bagId);
 
-        when(bagService.getBagById(bagId)).thenReturn(bagDto);
+        when(bagService.checkoutBag(bagId)).thenReturn(bag);
 
         BagIsEmptyException exception = assertThrows(BagIsEmptyException.class,
                 () -> saleService.completeSale(bagId, amountReceived, paymentMethod, cashierName));
 
         assertEquals("No items in the bag to process the sale.", exception.getMessage());
-        verify(bagService, times(1)).getBagById(bagId);
+        verify(bagService, times(1)).checkoutBag(bagId);
     }
 
     @Test
-    void whenCompleteSaleWithNullBagItems_thenThrowBagIsEmptyException() {
+    void whenBagServiceRejectsEmptyBag_thenThrowBagIsEmptyException() {
         Long bagId = 1L;
         BigDecimal amountReceived = BigDecimal.TEN;
         PaymentMethod paymentMethod = PaymentMethod.CASH;
         String cashierName = "John Doe";
 
-        BagDto bagDto = new BagDto();
-        bagDto.setItems(null);
-
-        when(bagService.getBagById(bagId)).thenReturn(bagDto);
+        when(bagService.checkoutBag(bagId)).thenThrow(new BagIsEmptyException("No items in the bag to process the sale."));
 
         BagIsEmptyException exception = assertThrows(BagIsEmptyException.class,
                 () -> saleService.completeSale(bagId, amountReceived, paymentMethod, cashierName));
 
         assertEquals("No items in the bag to process the sale.", exception.getMessage());
-        verify(bagService, times(1)).getBagById(bagId);
+        verify(saleRepository, never()).save(any(Sale.class));
     }
 
     @Test
@@ -120,10 +129,10 @@ public class SaleServiceImplTest {
         PaymentMethod paymentMethod = PaymentMethod.CREDIT_CARD;
         String cashierName = "Store-123";
 
-        BagItemDto bagItem = new BagItemDto("12345", 2, BigDecimal.TEN, "Test Product");
-        BagDto bagDto = new BagDto();
-        bagDto.setItems(Collections.singletonList(bagItem));
-        bagDto.setTotalPrice(BigDecimal.valueOf(20));
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.addItem(new BagItem("12345", 2, Money.of(BigDecimal.TEN), "Test Product"));
+        bag.setTotalPrice(Money.of(BigDecimal.valueOf(20)));
 
         Sale sale = Sale.builder()
                 .cashierName(cashierName)
@@ -136,7 +145,7 @@ public class SaleServiceImplTest {
                 .isCancelled(false)
                 .build();
 
-        when(bagService.getBagById(bagId)).thenReturn(bagDto);
+        when(bagService.checkoutBag(bagId)).thenReturn(bag);
         when(saleRepository.save(any(Sale.class))).thenReturn(sale);
 
         SaleDto saleDto = new SaleDto();
@@ -146,7 +155,7 @@ public class SaleServiceImplTest {
         saleService.completeSale(bagId, amountReceived, paymentMethod, cashierName);
 
         verify(saleRepository, times(1)).save(any(Sale.class));
-        verify(bagService, times(1)).deleteBagById(bagId);
+        verify(bagService, times(1)).checkoutBag(bagId);
     }
 
     @Test
@@ -156,12 +165,12 @@ public class SaleServiceImplTest {
         PaymentMethod paymentMethod = PaymentMethod.CASH;
         String cashierName = "John Doe";
 
-        BagItemDto bagItem = new BagItemDto("12345", 2, BigDecimal.TEN, "Test Product");
-        BagDto bagDto = new BagDto();
-        bagDto.setItems(Collections.singletonList(bagItem));
-        bagDto.setTotalPrice(BigDecimal.valueOf(20));
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.addItem(new BagItem("12345", 2, Money.of(BigDecimal.TEN), "Test Product"));
+        bag.setTotalPrice(Money.of(BigDecimal.valueOf(20)));
 
-        when(bagService.getBagById(bagId)).thenReturn(bagDto);
+        when(bagService.checkoutBag(bagId)).thenReturn(bag);
 
         InvalidInputException exception = assertThrows(InvalidInputException.class,
                 () -> saleService.completeSale(bagId, amountReceived, paymentMethod, cashierName));
@@ -172,22 +181,21 @@ public class SaleServiceImplTest {
     }
 
     @Test
-    void whenCompleteSaleWithNullAndValidBagItems_thenProcessSaleCorrectly() {
+    void whenCompleteSaleWithCampaign_thenProcessSaleCorrectly() {
         Long bagId = 1L;
         BigDecimal amountReceived = BigDecimal.valueOf(18);
         PaymentMethod paymentMethod = PaymentMethod.CASH;
         String cashierName = "Store-123";
 
-        BagItemDto bagItem1 = new BagItemDto("12345", 2, BigDecimal.TEN, "Test Product");
-        BagItemDto bagItem2 = null;
-        BagDto bagDto = new BagDto();
-        bagDto.setItems(Arrays.asList(bagItem1, bagItem2));
-        bagDto.setTotalPrice(BigDecimal.valueOf(20));
-        bagDto.setDiscountedPrice(BigDecimal.valueOf(18));
-        bagDto.setCampaignId(1L);
-        bagDto.setCampaignName("Summer Sale");
-        bagDto.setDiscountType(DiscountType.PERCENTAGE);
-        bagDto.setDiscountValue(10);
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.addItem(new BagItem("12345", 2, Money.of(BigDecimal.TEN), "Test Product"));
+        bag.setTotalPrice(Money.of(BigDecimal.valueOf(20)));
+        bag.setDiscountedPrice(Money.of(BigDecimal.valueOf(18)));
+        bag.setCampaignId(1L);
+        bag.setCampaignName("Summer Sale");
+        bag.setDiscountType(DiscountType.PERCENTAGE);
+        bag.setDiscountValue(10);
 
         Sale sale = Sale.builder()
                 .cashierName(cashierName)
@@ -200,7 +208,7 @@ public class SaleServiceImplTest {
                 .isCancelled(false)
                 .build();
 
-        when(bagService.getBagById(bagId)).thenReturn(bagDto);
+        when(bagService.checkoutBag(bagId)).thenReturn(bag);
         when(saleRepository.save(any(Sale.class))).thenReturn(sale);
 
         SaleDto saleDto = new SaleDto();
@@ -210,9 +218,59 @@ public class SaleServiceImplTest {
         saleService.completeSale(bagId, amountReceived, paymentMethod, cashierName);
 
         verify(saleRepository, times(1)).save(any(Sale.class));
-        verify(bagService, times(1)).deleteBagById(bagId);
-        verify(rabbitMqMessagePublisher, times(1)).publishMessage(any(ReceiptMessage.class), eq(RabbitMqMessagePublisher.MessageType.RECEIPT));
-        verify(rabbitMqMessagePublisher, times(1)).publishMessage(any(StockUpdateMessage.class), eq(RabbitMqMessagePublisher.MessageType.STOCK));
+        verify(bagService, times(1)).checkoutBag(bagId);
+        verify(outboxService, times(1)).enqueue(any(ReceiptMessage.class), eq(RabbitMqMessagePublisher.MessageType.RECEIPT));
+        verify(outboxService, times(1)).enqueue(any(String.class), eq(RabbitMqMessagePublisher.MessageType.EVENT));
+        verify(outboxService, times(1)).enqueue(
+                new StockAdjustmentMessage(null, bagId, List.of(new StockAdjustmentMessage.Item("12345", -2))),
+                RabbitMqMessagePublisher.MessageType.STOCK_ADJUSTMENT);
+    }
+
+    @Test
+    void whenCompleteSaleInJournalMode_thenAppendToJournalWithReservedId() {
+        Long bagId = 1L;
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.addItem(new BagItem("12345", 2, Money.of(BigDecimal.TEN), "Test Product"));
+        bag.setTotalPrice(Money.of(BigDecimal.valueOf(20)));
+
+        when(bagService.checkoutBag(bagId)).thenReturn(bag);
+        when(saleJournalProvider.getIfAvailable()).thenReturn(saleJournalService);
+        when(saleJournalService.nextSaleId()).thenReturn(101L);
+        when(saleJournalService.append(eq(bagId), any(ReceiptMessage.class))).thenReturn(true);
+        when(modelMapper.map(any(Sale.class), eq(SaleDto.class))).thenAnswer(invocation -> {
+            SaleDto saleDto = new SaleDto();
+            saleDto.setId(invocation.<Sale>getArgument(0).getId());
+            return saleDto;
+        });
+
+        ReceiptMessage receipt = saleService.completeSale(bagId, BigDecimal.valueOf(20), PaymentMethod.CASH, "Store-123");
+
+        assertEquals(101L, receipt.getSaleDto().getId());
+        assertNotNull(receipt.getRequestId());
+        verify(saleJournalService, times(1)).append(bagId, receipt);
+        verify(saleRepository, never()).save(any(Sale.class));
+        verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    void whenSaleJournalIsFull_thenSaveSaleDirectly() {
+        Long bagId = 1L;
+        Bag bag = new Bag();
+        bag.setId(bagId);
+        bag.addItem(new BagItem("12345", 2, Money.of(BigDecimal.TEN), "Test Product"));
+        bag.setTotalPrice(Money.of(BigDecimal.valueOf(20)));
+
+        when(bagService.checkoutBag(bagId)).thenReturn(bag);
+        when(saleJournalProvider.getIfAvailable()).thenReturn(saleJournalService);
+        when(saleJournalService.nextSaleId()).thenReturn(101L);
+        when(saleJournalService.append(eq(bagId), any(ReceiptMessage.class))).thenReturn(false);
+        when(modelMapper.map(any(Sale.class), eq(SaleDto.class))).thenReturn(new SaleDto());
+
+        saleService.completeSale(bagId, BigDecimal.valueOf(20), PaymentMethod.CASH, "Store-123");
+
+        verify(saleRepository, times(1)).save(argThat(sale -> sale.getId() == null));
+        verify(outboxService, times(1)).enqueue(any(ReceiptMessage.class), eq(RabbitMqMessagePublisher.MessageType.RECEIPT));
     }
 
 
@@ -249,7 +307,7 @@ public class SaleServiceImplTest {
     }
 
     @Test
-    void whenCancelSaleSuccessfully_thenPublishStockUpdateMessages() {
+    void whenCancelSaleSuccessfully_thenPublishOneStockAdjustmentMessage() {
         Long saleId = 1L;
 
         SaleItem saleItem1 = SaleItem.builder()
@@ -274,6 +332,10 @@ public class SaleServiceImplTest {
         assertTrue(sale.isCancelled());
         verify(saleRepository, times(1)).findById(saleId);
         verify(saleRepository, times(1)).save(sale);
-        verify(rabbitMqMessagePublisher, times(2)).publishMessage(any(StockUpdateMessage.class), eq(RabbitMqMessagePublisher.MessageType.STOCK));
+        verify(outboxService, times(1)).enqueue(
+                new StockAdjustmentMessage(saleId, null, List.of(
+                        new StockAdjustmentMessage.Item("12345", 2),
+                        new StockAdjustmentMessage.Item("67890", 1))),
+                RabbitMqMessagePublisher.MessageType.STOCK_ADJUSTMENT);
     }
 }
\ No newline at end of file
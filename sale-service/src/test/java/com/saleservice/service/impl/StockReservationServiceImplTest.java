@@ -0,0 +1,100 @@
+package com.saleservice.service.impl;
+
+import com.saleservice.exception.InvalidInputException;
+import com.saleservice.repository.StockReservationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockReservationServiceImplTest {
+
+    private static final Duration TIME_TO_LIVE = Duration.ofMinutes(35);
+    private static final Duration HOLD_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration STOCK_MAX_STALENESS = Duration.ofSeconds(5);
+
+    @Mock
+    private StockReservationRepository stockReservationRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StockReservationServiceImpl stockReservationService;
+
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stockReservationService = new StockReservationServiceImpl(stockReservationRepository, meterRegistry,
+                TIME_TO_LIVE, HOLD_TIMEOUT, STOCK_MAX_STALENESS);
+    }
+
+
+    @Test
+    void whenReserveWithEnoughUnreservedStock_thenNoExceptionShouldBeThrown() {
+        when(stockReservationRepository.reserve(1L, Map.of("111", 2), Map.of("111", 5), TIME_TO_LIVE, HOLD_TIMEOUT)).thenReturn(null);
+
+        assertDoesNotThrow(() -> stockReservationService.reserve(1L, Map.of("111", 2), Map.of("111", 5)));
+        assertEquals(0.0, meterRegistry.counter("stock.reservation.rejected").count());
+    }
+
+    @Test
+    void whenReserveWithStockHeldByOtherBags_thenThrowInvalidInputException() {
+        when(stockReservationRepository.reserve(1L, Map.of("111", 2), Map.of("111", 5), TIME_TO_LIVE, HOLD_TIMEOUT)).thenReturn("111");
+
+        InvalidInputException exception = assertThrows(InvalidInputException.class,
+                () -> stockReservationService.reserve(1L, Map.of("111", 2), Map.of("111", 5)));
+
+        assertEquals("The quantity of products in the bag cannot be more than stock", exception.getMessage());
+        assertEquals(1.0, meterRegistry.counter("stock.reservation.rejected").count());
+    }
+
+    @Test
+    void whenReleaseAll_thenEverythingTheBagHoldsShouldBeReleased() {
+        when(stockReservationRepository.findReserved(1L)).thenReturn(Map.of("111", 2, "222", 1));
+
+        stockReservationService.releaseAll(1L);
+
+        verify(stockReservationRepository, times(1)).release(1L, Map.of("111", 2, "222", 1), TIME_TO_LIVE);
+    }
+
+    @Test
+    void whenReleaseAllOfBagWithoutReservations_thenNothingShouldBeReleased() {
+        when(stockReservationRepository.findReserved(1L)).thenReturn(Map.of());
+
+        stockReservationService.releaseAll(1L);
+
+        verify(stockReservationRepository, never()).release(anyLong(), anyMap(), any());
+    }
+
+    @Test
+    void whenExtend_thenReservationsOfTheBagShouldLiveForAnotherTimeToLive() {
+        stockReservationService.extend(1L);
+
+        verify(stockReservationRepository, times(1)).extend(1L, TIME_TO_LIVE);
+    }
+
+    @Test
+    void whenHoldUntilStockChanged_thenTheBagsReservationShouldBeHeldPerProduct() {
+        stockReservationService.holdUntilStockChanged(1L, List.of("111", "222"));
+
+        verify(stockReservationRepository, times(1)).hold(1L, List.of("111", "222"), TIME_TO_LIVE);
+        verify(stockReservationRepository, never()).release(anyLong(), anyMap(), any());
+    }
+
+    @Test
+    void whenReleaseHeld_thenHeldStockOfTheBagShouldBeReleasedAfterTheStalenessOfOtherCaches() {
+        stockReservationService.releaseHeld(1L, "111");
+
+        verify(stockReservationRepository, times(1)).releaseHeld(1L, "111", HOLD_TIMEOUT, Duration.ofSeconds(6));
+    }
+}